@@ -7,16 +7,74 @@
 
 package zc.thread;
 
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 // ----------------------------------------------------------------------------
 //		AbstractSharedQueue - abstract class
 // ----------------------------------------------------------------------------
 /**
  * Base implementation for derived SharedQueue classes.
+ * <p>
+ * The state of the queue is guarded by the queue monitor. With the
+ * {@link WaitStrategy#BLOCKING} strategy, the default, the threads wait on
+ * the monitor itself; with the other strategies they wait outside of it,
+ * and only take the monitor to actually enqueue or dequeue. So do the
+ * blocking threads of a queue built in the parking mode of {@link WaitSet}.
+ * <p>
+ * A {@link WatermarkListener} can be notified when the size crosses a high
+ * and a low watermark, to throttle the Producers before they block.
+ * <p>
+ * A queue built with metrics maintains a {@link SharedQueueMetrics}; without
+ * metrics, the instrumentation costs a null test per operation.
+ * <p>
+ * A Consumer that works by batches lingers with
+ * <code>{@link #removeAll(Object[], long)}</code>: it is woken up once for the
+ * whole batch, not once per object.
  */
 public abstract class AbstractSharedQueue implements SharedQueue {
 
 	protected final int fMaxCapacity;
+	protected final WaitStrategy fWaitStrategy;
+
+	/** The metrics, null when disabled. */
+	protected final SharedQueueMetrics fMetrics;
+
+	/** True when the threads wait on the queue monitor. */
+	private final boolean fBlocking;
+
+	private final WaitSet fNotEmpty = new WaitSet();
+	private final WaitSet fNotFull = new WaitSet();
+
+	private final WaitSet.Condition fNotEmptyCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return !isEmpty();
+		}
+	};
+
+	private final WaitSet.Condition fNotFullCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return !isFull();
+		}
+	};
+
+	/** The Consumers lingering for a batch. */
+	private final WaitSet fBatchReady = new WaitSet();
+	private final AtomicInteger fLingerCount = new AtomicInteger();
+	/** The smallest batch a Consumer lingers for, zero when none does. */
+	private final AtomicInteger fBatchSize = new AtomicInteger();
+
+	/** The watermark listener, null when there is none. Guarded by this. */
+	private volatile WatermarkListener fWatermarkListener = null;
+	private int fLowWatermark, fHighWatermark;
+	/** True once the high watermark is reached, until the low one is. Guarded by this. */
+	private boolean fAboveHigh = false;
+	/** The number of watermark crossings. Guarded by this. */
+	private long fCrossingCount = 0;
+	/** The number of the last crossing notified. Guarded by fDeliveryLock. */
+	private long fDeliveredCount = 0;
+	private final Object fDeliveryLock = new Object();
 
 
 	// ----------------------------------------------------------------------------
@@ -28,11 +86,50 @@ public abstract class AbstractSharedQueue implements SharedQueue {
 	 * @throws IllegalArgumentException
 	 */
 	public AbstractSharedQueue(int inMaxCapacity) {
+		this(inMaxCapacity, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		AbstractSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a AbstractSharedQueue of capacity <code>inMaxCapacity</code>
+	 * whose threads wait with the given strategy.
+	 * <p>
+	 * Subclasses must keep <code>size</code> readable without holding the
+	 * monitor, i.e. backed by a volatile variable.
+	 * @param inMaxCapacity
+	 * @param inWaitStrategy
+	 * @throws IllegalArgumentException
+	 */
+	public AbstractSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		this(inMaxCapacity, inWaitStrategy, false);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		AbstractSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a AbstractSharedQueue of capacity <code>inMaxCapacity</code>
+	 * whose threads wait with the given strategy, with or without metrics.
+	 * @param inMaxCapacity
+	 * @param inWaitStrategy
+	 * @param inMetrics true to maintain a SharedQueueMetrics.
+	 * @throws IllegalArgumentException
+	 */
+	public AbstractSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy, boolean inMetrics) {
 		if(inMaxCapacity < 1) {
 			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
 		}
+		if(inWaitStrategy == null) {
+			throw new IllegalArgumentException("null wait strategy");
+		}
 
 		fMaxCapacity = inMaxCapacity;
+		fWaitStrategy = inWaitStrategy;
+		// A parking queue waits outside of its monitor, on the WaitSets.
+		fBlocking = (inWaitStrategy == WaitStrategy.BLOCKING) && !fNotFull.isParking();
+		fMetrics = inMetrics ? new SharedQueueMetrics(this) : null;
 	}
 
 	// ----------------------------------------------------------------------------
@@ -46,19 +143,43 @@ public abstract class AbstractSharedQueue implements SharedQueue {
 			throw new IllegalArgumentException("attempt to enqueue a null object");
 		}
 
-		synchronized(this) {
-			while(isFull()) {
-				// The queue is full, wait until a Consumer
-				// remove an object thus making space available.
-				// If we are interrupted, the exception is propagated to the caller.
-				this.wait();
+		long theCrossing;
+		long theWaitStart = 0;
+
+		for(;;) {
+			synchronized(this) {
+				while(fBlocking && isFull()) {
+					// The queue is full, wait until a Consumer
+					// remove an object thus making space available.
+					// If we are interrupted, the exception is propagated to the caller.
+					theWaitStart = wait_start(theWaitStart);
+					this.wait();
+				}
+
+				if(!isFull()) {
+					// Once we grab the lock AND the queue is not full we enqueue this object.
+					enqueue(inObject);
+
+					// Notify the threads that are waiting for available object.
+					this.notifyAll();
+					theCrossing = check_watermarks();
+					if(fMetrics != null) {
+						fMetrics.enqueued(1, size());
+					}
+					break;
+				}
 			}
 
-			// Once we grab the lock AND the queue is not full we enqueue this object.
-			enqueue(inObject);
+			// The queue is full, wait outside of the monitor.
+			theWaitStart = wait_start(theWaitStart);
+			fWaitStrategy.await(fNotFullCondition, fNotFull);
+		}
 
-			// Notify the threads that are waiting for available object.
-			this.notifyAll();
+		fNotEmpty.signalAll();
+		signal_batch();
+		fire_watermarks(theCrossing);
+		if(theWaitStart != 0) {
+			fMetrics.producerBlocked(System.nanoTime() - theWaitStart);
 		}
 	}
 
@@ -70,21 +191,367 @@ public abstract class AbstractSharedQueue implements SharedQueue {
 			throw new InterruptedException();
 		}
 
-		synchronized(this) {
+		Object theObject;
+		long theCrossing;
+		long theWaitStart = 0;
+
+		for(;;) {
+			synchronized(this) {
+				while(fBlocking && isEmpty()) {
+					// The queue is empty, wait until a producer add an object to the queue.
+					// If we are interrupted, the exception is propagated to the caller.
+					theWaitStart = wait_start(theWaitStart);
+					this.wait();
+				}
+
+				if(!isEmpty()) {
+					// Dequeue the oldest object.
+					theObject = dequeue();
+
+					// Notify the threads that are waiting for a free slot.
+					this.notifyAll();
+					theCrossing = check_watermarks();
+					break;
+				}
+			}
+
+			// The queue is empty, wait outside of the monitor.
+			theWaitStart = wait_start(theWaitStart);
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		fNotFull.signalAll();
+		fire_watermarks(theCrossing);
+		count_dequeued(1, theWaitStart);
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		check_objects(inObjects, inOffset, inLength);
+
+		long theWaitStart = 0;
+
+		while(inLength > 0) {
+			int theCount = 0;
+			long theCrossing = 0;
+
+			synchronized(this) {
+				while(fBlocking && isFull()) {
+					// The queue is full, wait until a Consumer
+					// remove an object thus making space available.
+					theWaitStart = wait_start(theWaitStart);
+					this.wait();
+				}
+
+				if(!isFull()) {
+					// Move as many objects as there are free slots.
+					theCount = Math.min(inLength, capacity() - size());
+					enqueue(inObjects, inOffset, theCount);
+
+					// Notify the threads that are waiting for available object.
+					this.notifyAll();
+					theCrossing = check_watermarks();
+					if(fMetrics != null) {
+						fMetrics.enqueued(theCount, size());
+					}
+				}
+			}
+
+			if(theCount == 0) {
+				// The queue is full, wait outside of the monitor.
+				theWaitStart = wait_start(theWaitStart);
+				fWaitStrategy.await(fNotFullCondition, fNotFull);
+				continue;
+			}
+
+			fNotEmpty.signalAll();
+			signal_batch();
+			fire_watermarks(theCrossing);
+			if(theWaitStart != 0) {
+				fMetrics.producerBlocked(System.nanoTime() - theWaitStart);
+				theWaitStart = 0;
+			}
+
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		int theCount;
+		long theCrossing;
+		long theWaitStart = 0;
+
+		for(;;) {
+			synchronized(this) {
+				while(fBlocking && isEmpty()) {
+					// The queue is empty, wait until a producer add an object to the queue.
+					theWaitStart = wait_start(theWaitStart);
+					this.wait();
+				}
+
+				if(!isEmpty()) {
+					// Dequeue as many objects as available.
+					theCount = dequeue(outObjects, 0, Math.min(outObjects.length, size()));
+
+					// Notify the threads that are waiting for a free slot.
+					this.notifyAll();
+					theCrossing = check_watermarks();
+					break;
+				}
+			}
+
+			// The queue is empty, wait outside of the monitor.
+			theWaitStart = wait_start(theWaitStart);
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		fNotFull.signalAll();
+		fire_watermarks(theCrossing);
+		count_dequeued(theCount, theWaitStart);
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove a batch of objects: wait for a first object, then linger up to
+	 * the given delay for the batch to fill, and remove as many objects as
+	 * available, up to the length of the given array.
+	 * <p>
+	 * While it lingers, the calling thread is only woken up once the batch is
+	 * complete, or the queue full, or the delay elapsed; it then takes the
+	 * whole batch under the monitor at once. If other Consumers take the
+	 * objects in the meantime, it waits again for at least one object.
+	 * @param outObjects the array receiving the removed objects, from index zero,
+	 * the oldest object first.
+	 * @param inLingerMicros the number of microseconds to wait for the batch to
+	 * fill once an object is available; zero or less not to wait.
+	 * @return the number of objects removed, which is zero only for an empty array.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * In that case no object is removed.
+	 */
+	public int removeAll(Object[] outObjects, long inLingerMicros) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		// Wait for a first object, without taking it.
+		if(fBlocking) {
+			synchronized(this) {
+				while(isEmpty()) {
+					this.wait();
+				}
+			}
+		}
+		else {
 			while(isEmpty()) {
-				// The queue is empty, wait until a producer add an object to the queue.
-				// If we are interrupted, the exception is propagated to the caller.
-				this.wait();
+				fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+			}
+		}
+
+		int theBatchSize = Math.min(outObjects.length, capacity());
+
+		if(inLingerMicros > 0 && size() < theBatchSize && !isFull()) {
+			linger(theBatchSize, inLingerMicros * 1000L);
+		}
+
+		return removeAll(outObjects);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		int theCount;
+		long theCrossing;
+
+		synchronized(this) {
+			theCount = Math.max(Math.min(inMaxCount, size()), 0);
+
+			if(theCount > 0) {
+				Object[] theObjects = new Object[theCount];
+
+				theCount = dequeue(theObjects, 0, theCount);
+				for(int i = 0; i < theCount; ++i) {
+					outCollection.add(theObjects[i]);
+				}
+			}
+
+			if(theCount > 0) {
+				// Notify the threads that are waiting for a free slot.
+				this.notifyAll();
+			}
+
+			theCrossing = check_watermarks();
+		}
+
+		if(theCount > 0) {
+			fNotFull.signalAll();
+		}
+		fire_watermarks(theCrossing);
+		count_dequeued(theCount, 0);
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object into this SharedQueue if it is not full. Never block.
+	 * @param inObject the object to enqueue.
+	 * @return true if the object was enqueued, false if the queue was full.
+	 * @exception IllegalArgumentException if inObject is null.
+	 */
+	public boolean offer(Object inObject) {
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		long theCrossing;
+
+		synchronized(this) {
+			if(isFull()) {
+				return false;
 			}
 
-			// Dequeue the oldest object.
-			Object theObject = dequeue();
+			enqueue(inObject);
+
+			// Notify the threads that are waiting for available object.
+			this.notifyAll();
+			theCrossing = check_watermarks();
+			if(fMetrics != null) {
+				fMetrics.enqueued(1, size());
+			}
+		}
+
+		fNotEmpty.signalAll();
+		signal_batch();
+		fire_watermarks(theCrossing);
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove and return the oldest object if this SharedQueue is not empty.
+	 * Never block.
+	 * @return the oldest object, or null if the queue was empty.
+	 */
+	public Object poll() {
+		Object theObject;
+		long theCrossing;
+
+		synchronized(this) {
+			if(isEmpty()) {
+				return null;
+			}
+
+			theObject = dequeue();
 
 			// Notify the threads that are waiting for a free slot.
 			this.notifyAll();
+			theCrossing = check_watermarks();
+		}
+
+		fNotFull.signalAll();
+		fire_watermarks(theCrossing);
+		count_dequeued(1, 0);
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		whenNotEmpty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run a callback once, as soon as this SharedQueue is not empty: right
+	 * away if it is not, otherwise by the next Producer, after it has released
+	 * the monitor. This lets non-blocking code consume the queue with
+	 * <code>poll</code>, without a thread waiting on <code>remove</code>.
+	 * <p>
+	 * The callback must be short and must neither block nor throw; it is
+	 * typically handed over to an executor.
+	 * @param inCallback the callback.
+	 * @exception IllegalArgumentException if inCallback is null.
+	 * @see WaitSet#onSignal
+	 */
+	public void whenNotEmpty(Runnable inCallback) {
+		fNotEmpty.onSignal(inCallback);
+
+		// An object may have come before the callback was registered.
+		if(!isEmpty()) {
+			fNotEmpty.signalAll();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getMetrics
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the metrics of this queue.
+	 * @return the metrics, or null if this queue was built without metrics.
+	 */
+	public SharedQueueMetrics getMetrics() {
+		return fMetrics;
+	}
 
-			return theObject;
+	// ----------------------------------------------------------------------------
+	//		setWatermarks
+	// ----------------------------------------------------------------------------
+	/**
+	 * Set the watermarks and the listener notified when the size crosses them.
+	 * The listener is notified when the size rises to <code>inHigh</code>,
+	 * then when it falls to <code>inLow</code>, and so on. No notification is
+	 * made for the current size, even if above the high watermark.
+	 * <p>
+	 * The notifications are made by the thread that crossed the watermark,
+	 * after it has released the monitor. When a crossing is immediately
+	 * followed by the opposite crossing in another thread, the first one may
+	 * be skipped, but the last notification always matches the last crossing.
+	 * @param inLow the low watermark.
+	 * @param inHigh the high watermark.
+	 * @param inListener the listener, or null to stop the notifications.
+	 * @exception IllegalArgumentException unless 0 <= inLow < inHigh <= capacity.
+	 */
+	public synchronized void setWatermarks(int inLow, int inHigh, WatermarkListener inListener) {
+		if(inLow < 0 || inLow >= inHigh || inHigh > capacity()) {
+			throw new IllegalArgumentException("illegal watermarks " + inLow + ", " + inHigh);
 		}
+
+		fLowWatermark = inLow;
+		fHighWatermark = inHigh;
+		fAboveHigh = size() >= inHigh;
+		fWatermarkListener = inListener;
 	}
 
 	// ----------------------------------------------------------------------------
@@ -134,6 +601,236 @@ public abstract class AbstractSharedQueue implements SharedQueue {
 	 * @return The oldest Object in the queue.
 	 */
 	protected abstract Object dequeue();
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put a range of objects into the next free slots and adjust the cursors.
+	 * The default implementation enqueues the objects one by one, subclasses
+	 * should override it with a bulk move.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 * @param inObjects the array holding the objects, none of them is null.
+	 * @param inOffset the index of the first object to enqueue.
+	 * @param inLength the number of objects to enqueue, there is room for all of them.
+	 */
+	protected void enqueue(Object[] inObjects, int inOffset, int inLength) {
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			enqueue(inObjects[i]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove a range of the oldest objects from the queue and adjust the cursors.
+	 * The default implementation dequeues the objects one by one, subclasses
+	 * should override it with a bulk move.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 * @param outObjects the array receiving the objects, the oldest object first.
+	 * @param inOffset the index receiving the oldest object.
+	 * @param inLength the number of objects to dequeue, there are at least as many.
+	 * @return the number of objects dequeued, at least one; less than inLength
+	 * only if some objects turned out to be unreadable, e.g. in a
+	 * {@link PersistentSharedQueue}.
+	 */
+	protected int dequeue(Object[] outObjects, int inOffset, int inLength) {
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			outObjects[i] = dequeue();
+		}
+
+		return inLength;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		notify_waiters
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up all the waiting threads, whatever their wait strategy. To be
+	 * called by the operations that change the state of the queue besides
+	 * the ones of this class, e.g. <code>clear</code>.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	protected void notify_waiters() {
+		this.notifyAll();
+
+		fNotFull.signalAll();
+		fNotEmpty.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		linger
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait up to the given delay for the queue to hold a batch of objects,
+	 * or to be full. The Producers only signal the lingering Consumers when
+	 * the smallest batch they linger for is ready.
+	 */
+	private void linger(final int inBatchSize, long inNanos) throws InterruptedException {
+		WaitSet.Condition theBatchReady = new WaitSet.Condition() {
+			public boolean isTrue() {
+				return size() >= inBatchSize || isFull();
+			}
+		};
+
+		fLingerCount.incrementAndGet();
+		try {
+			for(;;) {
+				int theBatchSize = fBatchSize.get();
+
+				if((theBatchSize != 0 && theBatchSize <= inBatchSize) || fBatchSize.compareAndSet(theBatchSize, inBatchSize)) {
+					break;
+				}
+			}
+
+			fBatchReady.awaitNanos(theBatchReady, inNanos);
+		}
+		finally {
+			// A Consumer coming right now may lose its batch size: it is then
+			// only woken up by its delay.
+			if(fLingerCount.decrementAndGet() == 0) {
+				fBatchSize.set(0);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal_batch
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up the lingering Consumers if the smallest batch is ready. Costs a
+	 * volatile read when no Consumer lingers.
+	 */
+	private void signal_batch() {
+		int theBatchSize = fBatchSize.get();
+
+		if(theBatchSize != 0 && (size() >= theBatchSize || isFull())) {
+			fBatchReady.signalAll();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		wait_start
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the time a thread starts to wait, if metrics are maintained.
+	 * @param inWaitStart the time the thread started to wait, zero if it has not waited yet.
+	 * @return the time the thread started to wait, zero if there are no metrics.
+	 */
+	private long wait_start(long inWaitStart) {
+		if(inWaitStart != 0 || fMetrics == null) {
+			return inWaitStart;
+		}
+
+		return System.nanoTime();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		count_dequeued
+	// ----------------------------------------------------------------------------
+	/**
+	 * Record removed objects and the time the Consumer waited, if metrics
+	 * are maintained.
+	 * @param inCount the number of objects removed.
+	 * @param inWaitStart the time the Consumer started to wait, zero if it has not waited.
+	 */
+	private void count_dequeued(int inCount, long inWaitStart) {
+		if(fMetrics != null) {
+			fMetrics.dequeued(inCount);
+
+			if(inWaitStart != 0) {
+				fMetrics.consumerBlocked(System.nanoTime() - inWaitStart);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_watermarks
+	// ----------------------------------------------------------------------------
+	/**
+	 * Detect a watermark crossing after the size has changed. The result is
+	 * to be given to <code>fire_watermarks</code> once the monitor is released.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 * @return the number of the crossing, negated for the low watermark, or
+	 * zero if no watermark was crossed.
+	 */
+	protected long check_watermarks() {
+		if(fWatermarkListener == null) {
+			return 0;
+		}
+
+		int theSize = size();
+
+		if(!fAboveHigh && theSize >= fHighWatermark) {
+			fAboveHigh = true;
+			return ++fCrossingCount;
+		}
+		if(fAboveHigh && theSize <= fLowWatermark) {
+			fAboveHigh = false;
+			return -(++fCrossingCount);
+		}
+
+		return 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		fire_watermarks
+	// ----------------------------------------------------------------------------
+	/**
+	 * Notify the listener of a crossing detected by <code>check_watermarks</code>,
+	 * unless a later crossing has already been notified.
+	 * <p>
+	 * <b>Must imperatively be called outside of the monitor.</b>
+	 * @param inCrossing the result of <code>check_watermarks</code>.
+	 */
+	protected void fire_watermarks(long inCrossing) {
+		if(inCrossing == 0) {
+			return;
+		}
+
+		long theNumber = Math.abs(inCrossing);
+
+		synchronized(fDeliveryLock) {
+			WatermarkListener theListener = fWatermarkListener;
+
+			if(theNumber <= fDeliveredCount || theListener == null) {
+				return;
+			}
+			fDeliveredCount = theNumber;
+
+			if(inCrossing > 0) {
+				theListener.highWatermarkReached(this);
+			}
+			else {
+				theListener.lowWatermarkReached(this);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_objects
+	// ----------------------------------------------------------------------------
+	/**
+	 * Check the arguments of an <code>addAll</code> request.
+	 * @exception IllegalArgumentException if one of the objects is null.
+	 * @exception IndexOutOfBoundsException if the range does not fit in the array.
+	 */
+	static void check_objects(Object[] inObjects, int inOffset, int inLength) {
+		if(inOffset < 0 || inLength < 0 || inOffset > inObjects.length - inLength) {
+			throw new IndexOutOfBoundsException("range [" + inOffset + ", " + (inOffset + inLength) + "[ out of [0, " + inObjects.length + "[");
+		}
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			if(inObjects[i] == null) {
+				throw new IllegalArgumentException("attempt to enqueue a null object");
+			}
+		}
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -26,6 +26,9 @@ package zc.thread;
  * If a Thread which is not a registered participant in the barrier attempts to
  * await at the barrier it is rejected with a IllegalMonitorStateException, the
  * Barrier is not broken by such a intruder attempt.
+ * <p>
+ * A Barrier built in the parking mode of {@link WaitSet} parks the waiting
+ * participants, it never blocks them while holding a monitor.
  */
 class Barrier {
 
@@ -36,9 +39,12 @@ class Barrier {
 
 	protected int fLatestParticipant = 0;
 	protected Barrier.Command fCommand = null;
-	protected BrokenBarrierException fException = null;
+	protected volatile BrokenBarrierException fException = null;
+
+	private volatile int fSpinCounter = 0;
 
-	private int fSpinCounter = 0;
+	/** The participants waiting, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
 
 
 	// ----------------------------------------------------------------------------
@@ -210,30 +216,37 @@ class Barrier {
 	 * penetrate the Barrier. Only the faulty thread receive this exception and the Barrier
 	 * is not broken by such an illegal attempt.
 	 **/
-	public synchronized void await() throws InterruptedException, BrokenBarrierException {
-		// Check that the calling Thread is a registered participant
-		if(is_registered_participant(Thread.currentThread()) == false) {
-			// Unregistered Threads are rejected with a RuntimeException
-			// but the Barrier itself is not considered broken by such an attempt.
-			throw new RuntimeException("not a registered participant");
+	public void await() throws InterruptedException, BrokenBarrierException {
+		if(fWaitSet.isParking()) {
+			park_participant(null);
+			return;
 		}
 
-		// Make sure the Thread is not interrupted
-		if(Thread.interrupted()) {
-			release();
-			throw new InterruptedException();
-		}
+		synchronized(this) {
+			// Check that the calling Thread is a registered participant
+			if(is_registered_participant(Thread.currentThread()) == false) {
+				// Unregistered Threads are rejected with a RuntimeException
+				// but the Barrier itself is not considered broken by such an attempt.
+				throw new RuntimeException("not a registered participant");
+			}
 
-		// Check the Barrier before waiting.
-		if(isBroken()) {
-			throw fException;
-		}
+			// Make sure the Thread is not interrupted
+			if(Thread.interrupted()) {
+				release();
+				throw new InterruptedException();
+			}
+
+			// Check the Barrier before waiting.
+			if(isBroken()) {
+				throw fException;
+			}
 
-		enter_waiting();
+			enter_waiting();
 
-		// Check again after waiting.
-		if(isBroken()) {
-			throw fException;
+			// Check again after waiting.
+			if(isBroken()) {
+				throw fException;
+			}
 		}
 	}
 
@@ -249,17 +262,23 @@ class Barrier {
 	 * penetrate the Barrier. Only the faulty thread receive this exception and the Barrier
 	 * is not broken by such an illegal attempt.
 	 */
-	public synchronized Object await(Object inObject) throws InterruptedException, BrokenBarrierException {
-		// Check-in the given Object
-		int theCheckInIndex = fLatestParticipant;
-		fObjectArray[theCheckInIndex] = inObject;
+	public Object await(Object inObject) throws InterruptedException, BrokenBarrierException {
+		if(fWaitSet.isParking()) {
+			return park_participant(inObject);
+		}
+
+		synchronized(this) {
+			// Check-in the given Object
+			int theCheckInIndex = fLatestParticipant;
+			fObjectArray[theCheckInIndex] = inObject;
 
-		this.await();
+			this.await();
 
-		Object theResult = fObjectArray[theCheckInIndex];
-		fObjectArray[theCheckInIndex] = null;
+			Object theResult = fObjectArray[theCheckInIndex];
+			fObjectArray[theCheckInIndex] = null;
 
-		return theResult;
+			return theResult;
+		}
 	}
 
 	// ----------------------------------------------------------------------------
@@ -286,6 +305,88 @@ class Barrier {
 	public synchronized void release(String inMessage) {
 		fException = new BrokenBarrierException(inMessage);
 		this.notifyAll();
+		fWaitSet.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		park_participant
+	// ----------------------------------------------------------------------------
+	/**
+	 * The parking mode of <code>await</code>: check-in under the monitor, then
+	 * park outside of it until the last participant arrives or the Barrier
+	 * is released.
+	 * @param inObject the Object presented at the synchronization point.
+	 * @return the Object affected to this Thread by the Command.
+	 */
+	private Object park_participant(Object inObject) throws InterruptedException, BrokenBarrierException {
+		final int theSpinCounter;
+		int theCheckInIndex;
+		boolean theLast = false;
+
+		synchronized(this) {
+			if(is_registered_participant(Thread.currentThread()) == false) {
+				throw new RuntimeException("not a registered participant");
+			}
+
+			if(Thread.interrupted()) {
+				release();
+				throw new InterruptedException();
+			}
+
+			if(isBroken()) {
+				throw fException;
+			}
+
+			theSpinCounter = fSpinCounter;
+			theCheckInIndex = fLatestParticipant++;
+			fObjectArray[theCheckInIndex] = inObject;
+
+			if(fLatestParticipant == getParticipantCount()) {
+				execute_command();
+				++ fSpinCounter;
+				fLatestParticipant = 0;
+				theLast = true;
+			}
+		}
+
+		if(theLast) {
+			fWaitSet.signalAll();
+		}
+		else {
+			WaitSet.Condition theCrossed = new WaitSet.Condition() {
+				public boolean isTrue() {
+					return fSpinCounter != theSpinCounter || fException != null;
+				}
+			};
+
+			try {
+				if(theCheckInIndex == 0 && theSpinCounter > 0) {
+					// The first arrived participant has the duty of periodically
+					// check the participant list to detect died Thread.
+					while(!fWaitSet.await(theCrossed, get_quantum())) {
+						check_participants();
+					}
+				}
+				else {
+					fWaitSet.await(theCrossed);
+				}
+			}
+			catch(InterruptedException inException) {
+				release();
+				throw inException;
+			}
+		}
+
+		synchronized(this) {
+			if(isBroken()) {
+				throw fException;
+			}
+
+			Object theResult = fObjectArray[theCheckInIndex];
+			fObjectArray[theCheckInIndex] = null;
+
+			return theResult;
+		}
 	}
 
 
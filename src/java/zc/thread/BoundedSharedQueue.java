@@ -7,6 +7,8 @@
 
 package zc.thread;
 
+import java.util.Arrays;
+
 
 // ----------------------------------------------------------------------------
 //		BoundedSharedQueue - class
@@ -50,6 +52,41 @@ public class BoundedSharedQueue extends AbstractSharedQueue {
 		fQueue = new Object[inMaxCapacity];
 	}
 
+	// ----------------------------------------------------------------------------
+	//		BoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SharedQueue with the given maximum capacity and wait strategy.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inCapacity is less than one, or if
+	 * inWaitStrategy is null.
+	 */
+	public BoundedSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+		fQueue = new Object[inMaxCapacity];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		BoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SharedQueue with the given maximum capacity and wait strategy,
+	 * with or without metrics.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @param inMetrics true to maintain a {@link SharedQueueMetrics}, see
+	 * {@link #getMetrics}.
+	 * @exception IllegalArgumentException if inCapacity is less than one, or if
+	 * inWaitStrategy is null.
+	 */
+	public BoundedSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy, boolean inMetrics) {
+		super(inMaxCapacity, inWaitStrategy, inMetrics);
+		fQueue = new Object[inMaxCapacity];
+	}
+
 	// ----------------------------------------------------------------------------
 	//		UnboundedSharedQueue - constructor
 	// ----------------------------------------------------------------------------
@@ -82,15 +119,22 @@ public class BoundedSharedQueue extends AbstractSharedQueue {
 	 * <p>
 	 * The SharedQueue will be empty after this call returns.
 	 */
-	public synchronized void clear() {
-		for(int i = 0; i < fQueue.length; ++i) {
-			fQueue[i] = null;
-		}
+	public void clear() {
+		long theCrossing;
 
-		fObjectCount = fPutCursor = fGetCursor = 0;
+		synchronized(this) {
+			for(int i = 0; i < fQueue.length; ++i) {
+				fQueue[i] = null;
+			}
+
+			fObjectCount = fPutCursor = fGetCursor = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
 
-		// Notify threads that are waiting for a free slot.
-		this.notifyAll();
+		fire_watermarks(theCrossing);
 	}
 
 	// ----------------------------------------------------------------------------
@@ -121,28 +165,62 @@ public class BoundedSharedQueue extends AbstractSharedQueue {
 		return theObject;
 	}
 
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the objects into the ring in at most two moves, the second one
+	 * when the range wraps around the end of the ring.
+	 */
+	protected void enqueue(Object[] inObjects, int inOffset, int inLength) {
+		int theFirstPart = Math.min(inLength, fQueue.length - fPutCursor);
+
+		System.arraycopy(inObjects, inOffset, fQueue, fPutCursor, theFirstPart);
+		System.arraycopy(inObjects, inOffset + theFirstPart, fQueue, 0, inLength - theFirstPart);
+
+		fPutCursor = (fPutCursor + inLength) % capacity();
+		fObjectCount += inLength;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the objects out of the ring in at most two moves, the second one
+	 * when the range wraps around the end of the ring.
+	 */
+	protected int dequeue(Object[] outObjects, int inOffset, int inLength) {
+		int theFirstPart = Math.min(inLength, fQueue.length - fGetCursor);
+
+		System.arraycopy(fQueue, fGetCursor, outObjects, inOffset, theFirstPart);
+		System.arraycopy(fQueue, 0, outObjects, inOffset + theFirstPart, inLength - theFirstPart);
+
+		// For the garbage collector.
+		Arrays.fill(fQueue, fGetCursor, fGetCursor + theFirstPart, null);
+		Arrays.fill(fQueue, 0, inLength - theFirstPart, null);
+
+		fGetCursor = (fGetCursor + inLength) % capacity();
+		fObjectCount -= inLength;
+
+		return inLength;
+	}
+
 
 	// ----------------------------------------------------------------------------
 	//		toString
 	// ----------------------------------------------------------------------------
-	public synchronized String toString() {
+	/**
+	 * Return a summary of the state of this queue, without taking the monitor:
+	 * the values may be inconsistent with each other.
+	 */
+	public String toString() {
 		StringBuffer theResult = new StringBuffer("BoundedSharedQueue(");
 
 		theResult.append("p=").append(fPutCursor);
 		theResult.append(",g=").append(fGetCursor);
 		theResult.append(",#=").append(fObjectCount);
-		theResult.append(")[");
-
-		if(fQueue.length > 0) {
-			theResult.append(fQueue[0]);
-
-			for(int i = 1; i < fQueue.length; ++i) {
-				theResult.append(";");
-				theResult.append(fQueue[i]);
-			}
-		}
-
-		theResult.append("]");
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
 
 		return theResult.toString();
 	}
@@ -0,0 +1,280 @@
+// ----------------------------------------------------------------------------
+//  ClockDaemon.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		ClockDaemon - class
+// ----------------------------------------------------------------------------
+/**
+ * A single background thread that runs commands at a given time, after a
+ * given delay, or periodically.
+ * <p>
+ * All the commands are run one after the other by the background thread,
+ * thus a command must be short, or start its own thread. The thread is
+ * started by the first request, and restarted by the next request if it
+ * has stopped, e.g. because a command has thrown an exception.
+ * <p>
+ * The pending commands are held in a {@link DelaySharedQueue}: scheduling and
+ * canceling a command costs O(1), whatever the number of pending commands.
+ * <p>
+ * The interface follows the <code>ClockDaemon</code> of Doug Lea's
+ * util.concurrent package. The commands are not run in real-time: they may
+ * be run late, never early.
+ *
+ * @see DelaySharedQueue
+ */
+public class ClockDaemon {
+
+	protected final DelaySharedQueue fQueue;
+
+	/** The thread running the commands, null when stopped. */
+	private volatile Thread fThread = null;
+
+
+	// ----------------------------------------------------------------------------
+	//		Task - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A scheduled command, also the task identifier returned to the caller.
+	 */
+	private final static class Task {
+		final Runnable fCommand;
+		/** The period, or zero for a one shot command. */
+		final long fPeriod;
+		/** The handle of the next run in the queue. */
+		Object fHandle;
+		boolean fCanceled = false;
+
+		// ----------------------------------------------------------------------------
+		//		Task - constructor
+		// ----------------------------------------------------------------------------
+		Task(Runnable inCommand, long inPeriod) {
+			fCommand = inCommand;
+			fPeriod = inPeriod;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		ClockDaemon - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a ClockDaemon whose commands are run with the given resolution.
+	 * @param inTickMillis the resolution of the schedule, in milliseconds.
+	 * @exception IllegalArgumentException if inTickMillis is less than one.
+	 */
+	public ClockDaemon(long inTickMillis) {
+		fQueue = new DelaySharedQueue(Integer.MAX_VALUE, inTickMillis);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		ClockDaemon - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a ClockDaemon with a resolution of one millisecond.
+	 */
+	public ClockDaemon() {
+		this(DelaySharedQueue.DEFAULT_TICK);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		executeAt
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the given command at the given time.
+	 * @param inTime the time to run the command, in milliseconds as given by
+	 * <code>System.currentTimeMillis</code>.
+	 * @param inCommand the command to run.
+	 * @return an opaque task identifier to cancel the command.
+	 */
+	public Object executeAt(long inTime, Runnable inCommand) {
+		return schedule(new Task(inCommand, 0), inTime);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		executeAfterDelay
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the given command after the given delay.
+	 * @param inDelay the delay, in milliseconds.
+	 * @param inCommand the command to run.
+	 * @return an opaque task identifier to cancel the command.
+	 */
+	public Object executeAfterDelay(long inDelay, Runnable inCommand) {
+		return executeAt(System.currentTimeMillis() + inDelay, inCommand);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		executePeriodically
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the given command periodically, until it is canceled. The next run
+	 * is scheduled one period after the start of the current one.
+	 * @param inPeriod the period, in milliseconds.
+	 * @param inCommand the command to run.
+	 * @param inStartNow true to run the command right now, false to run it
+	 * for the first time after one period.
+	 * @return an opaque task identifier to cancel the command.
+	 * @exception IllegalArgumentException if inPeriod is less than one.
+	 */
+	public Object executePeriodically(long inPeriod, Runnable inCommand, boolean inStartNow) {
+		if(inPeriod < 1) {
+			throw new IllegalArgumentException("illegal period " + inPeriod);
+		}
+
+		long theTime = System.currentTimeMillis();
+		if(!inStartNow) {
+			theTime += inPeriod;
+		}
+
+		return schedule(new Task(inCommand, inPeriod), theTime);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		cancel
+	// ----------------------------------------------------------------------------
+	/**
+	 * Cancel a command. A run in progress completes normally, but a periodic
+	 * command is never run again.
+	 * @param inTaskID a task identifier returned by one of the execute methods.
+	 * @return true if a future run was canceled.
+	 */
+	public boolean cancel(Object inTaskID) {
+		if(!(inTaskID instanceof Task)) {
+			return false;
+		}
+
+		Task theTask = (Task)inTaskID;
+
+		synchronized(theTask) {
+			if(theTask.fCanceled) {
+				return false;
+			}
+
+			theTask.fCanceled = true;
+			return fQueue.cancel(theTask.fHandle);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getThread
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the thread running the commands, or null if it is stopped.
+	 */
+	public synchronized Thread getThread() {
+		return fThread;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		restart
+	// ----------------------------------------------------------------------------
+	/**
+	 * Start the thread running the commands, if it is stopped.
+	 */
+	public synchronized void restart() {
+		if(fThread == null) {
+			fThread = new Thread("ClockDaemon") {
+				public void run() {
+					run_loop(this);
+				}
+			};
+			fThread.setDaemon(true);
+			fThread.start();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		shutDown
+	// ----------------------------------------------------------------------------
+	/**
+	 * Cancel all the commands and interrupt the thread running them.
+	 * A new thread is started by the next request.
+	 */
+	public synchronized void shutDown() {
+		fQueue.clear();
+
+		if(fThread != null) {
+			fThread.interrupt();
+			fThread = null;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		schedule
+	// ----------------------------------------------------------------------------
+	private Object schedule(Task inTask, long inTime) {
+		if(inTask.fCommand == null) {
+			throw new IllegalArgumentException("null command");
+		}
+
+		boolean theInterrupted = false;
+
+		synchronized(inTask) {
+			// Never blocks, the queue capacity is unlimited: only an interrupt
+			// pending on entry may fail the add, which then goes through.
+			for(;;) {
+				try {
+					inTask.fHandle = fQueue.addAt(inTask, inTime);
+					break;
+				}
+				catch(InterruptedException ex) {
+					theInterrupted = true;
+				}
+			}
+		}
+
+		if(theInterrupted) {
+			// Keep the interrupt for the caller.
+			Thread.currentThread().interrupt();
+		}
+
+		restart();
+
+		return inTask;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		run_loop
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the commands as they expire, until the thread is interrupted or
+	 * replaced: a command may swallow the interrupt of shutDown.
+	 */
+	private void run_loop(Thread inThread) {
+		try {
+			while(fThread == inThread) {
+				Task theTask = (Task)fQueue.remove();
+
+				synchronized(theTask) {
+					if(theTask.fCanceled) {
+						continue;
+					}
+					if(theTask.fPeriod > 0 && fThread == inThread) {
+						theTask.fHandle = fQueue.addAt(theTask, System.currentTimeMillis() + theTask.fPeriod);
+					}
+				}
+
+				theTask.fCommand.run();
+			}
+		}
+		catch(InterruptedException ex) {
+			// Shut down.
+		}
+		finally {
+			synchronized(this) {
+				if(fThread == inThread) {
+					fThread = null;
+				}
+			}
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -65,12 +65,24 @@ package zc.thread;
  *          theCondVar.set();
  *      }
  * </pre>
+ * A CondVar built in the parking mode of {@link WaitSet} parks its waiting
+ * threads instead of waiting on its monitor. It does not prevent the lockout
+ * above, the monitor of the caller is still held.
  */
 public class CondVar {
 
 	/** the CondVar state. Default to false */
 	private volatile boolean fState;
 
+	/** The threads waiting for the condition, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fFired = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fState;
+		}
+	};
+
 
 	// ----------------------------------------------------------------------------
 	//		CondVar - constructor
@@ -103,6 +115,7 @@ public class CondVar {
 		fState = true;
 		// Notify all threads that are waiting on this monitor.
 		this.notifyAll();
+		fWaitSet.signalAll();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -133,6 +146,11 @@ public class CondVar {
 			return;
 		}
 
+		if(fWaitSet.isParking()) {
+			fWaitSet.await(fFired);
+			return;
+		}
+
 		synchronized(this) {
 			while(fState != true) {
 				this.wait();
@@ -158,6 +176,10 @@ public class CondVar {
 			return true;
 		}
 
+		if(fWaitSet.isParking()) {
+			return fWaitSet.await(fFired, msecs);
+		}
+
 		synchronized(this) {
 			long t0 = System.currentTimeMillis();
 
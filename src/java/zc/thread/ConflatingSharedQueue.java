@@ -0,0 +1,278 @@
+// ----------------------------------------------------------------------------
+//  ConflatingSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+// ----------------------------------------------------------------------------
+//		ConflatingSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue that holds at most one pending object per key: an object
+ * whose key is already pending replaces the pending object in place, and
+ * is removed at the position of the object it replaced.
+ * <p>
+ * This suits the snapshot feeds, prices or states, whose Consumers only
+ * need the latest value of each key: a slow Consumer no longer works
+ * through a backlog of stale updates, and the queue never holds more
+ * objects than there are distinct keys, whatever the rate of the Producers.
+ * <p>
+ * The keys are given by a {@link KeyExtractor}, and compared with
+ * <code>equals</code>. Replacing a pending object never blocks, even if
+ * the queue is full; <code>{@link #add}</code> only blocks for a new key
+ * when the maximum capacity is reached.
+ *
+ * @see BoundedSharedQueue
+ */
+public class ConflatingSharedQueue extends AbstractSharedQueue {
+
+	protected final KeyExtractor fKeyExtractor;
+
+	/** The pending objects by key, in the order the keys were added. */
+	private final LinkedHashMap fEntries;
+	private volatile int fObjectCount = 0;
+	private volatile long fConflatedCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		KeyExtractor - interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * Give the key of an object of a ConflatingSharedQueue.
+	 */
+	public static interface KeyExtractor {
+
+		// ----------------------------------------------------------------------------
+		//		keyOf
+		// ----------------------------------------------------------------------------
+		/**
+		 * Return the key of an object. The key of an object must not change
+		 * while the object is in the queue.
+		 * @param inObject an object to enqueue, never null.
+		 * @return the key of inObject, not null.
+		 */
+		public Object keyOf(Object inObject);
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		ConflatingSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a ConflatingSharedQueue.
+	 * @param inMaxCapacity the maximum number of distinct keys pending.
+	 * @param inKeyExtractor the key of the objects.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one, or
+	 * if inKeyExtractor or inWaitStrategy is null.
+	 */
+	public ConflatingSharedQueue(int inMaxCapacity, KeyExtractor inKeyExtractor, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+
+		if(inKeyExtractor == null) {
+			throw new IllegalArgumentException("null key extractor");
+		}
+
+		fKeyExtractor = inKeyExtractor;
+		fEntries = new LinkedHashMap(Math.min(inMaxCapacity, 1024) * 4 / 3 + 1);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		ConflatingSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a ConflatingSharedQueue.
+	 * @param inMaxCapacity the maximum number of distinct keys pending.
+	 * @param inKeyExtractor the key of the objects.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one, or
+	 * if inKeyExtractor is null.
+	 */
+	public ConflatingSharedQueue(int inMaxCapacity, KeyExtractor inKeyExtractor) {
+		this(inMaxCapacity, inKeyExtractor, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			fEntries.clear();
+			fObjectCount = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object, or replace the pending object of the same key. Only
+	 * blocks if the key is not pending and the queue is full.
+	 * @param inObject the object to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if inObject or its key is null.
+	 */
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if(!replace_pending(inObject)) {
+			super.add(inObject);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add the objects one by one, so that an object whose key is pending
+	 * is never held back by the objects of new keys.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		check_objects(inObjects, inOffset, inLength);
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			add(inObjects[i]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object, or replace the pending object of the same key. Never block.
+	 * @param inObject the object to enqueue.
+	 * @return false if the key was not pending and the queue was full.
+	 * @exception IllegalArgumentException if inObject or its key is null.
+	 */
+	public boolean offer(Object inObject) {
+		return replace_pending(inObject) || super.offer(inObject);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getConflatedCount
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of objects that have replaced a pending object,
+	 * since the queue was built.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 */
+	public long getConflatedCount() {
+		return fConflatedCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put the object at the end of the queue, or in place of the pending
+	 * object of the same key.
+	 */
+	protected void enqueue(Object inObject) {
+		if(fEntries.put(key_of(inObject), inObject) != null) {
+			// A Producer has replaced the key between replace_pending and here.
+			++fConflatedCount;
+		}
+
+		fObjectCount = fEntries.size();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	protected Object dequeue() {
+		Iterator theIterator = fEntries.values().iterator();
+		Object theObject = theIterator.next();
+
+		theIterator.remove();
+		--fObjectCount;
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		replace_pending
+	// ----------------------------------------------------------------------------
+	/**
+	 * Replace the pending object of the same key, if any.
+	 * @return true if the object has replaced a pending one.
+	 * @exception IllegalArgumentException if inObject or its key is null.
+	 */
+	private boolean replace_pending(Object inObject) {
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		Object theKey = key_of(inObject);
+
+		synchronized(this) {
+			if(!fEntries.containsKey(theKey)) {
+				return false;
+			}
+
+			// Replacing the value of a key keeps its position.
+			fEntries.put(theKey, inObject);
+			++fConflatedCount;
+		}
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		key_of
+	// ----------------------------------------------------------------------------
+	private Object key_of(Object inObject) {
+		Object theKey = fKeyExtractor.keyOf(inObject);
+
+		if(theKey == null) {
+			throw new IllegalArgumentException("null key");
+		}
+
+		return theKey;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("ConflatingSharedQueue(");
+
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(",x=").append(fConflatedCount);
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
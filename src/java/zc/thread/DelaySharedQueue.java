@@ -0,0 +1,414 @@
+// ----------------------------------------------------------------------------
+//  DelaySharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Collection;
+
+
+// ----------------------------------------------------------------------------
+//		DelaySharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue whose objects can only be removed once their deadline has
+ * passed.
+ * <p>
+ * An object is added with a deadline, either explicitly with
+ * <code>{@link #addAt}</code> or <code>{@link #addAfterDelay}</code>, which
+ * return a handle to <code>{@link #cancel}</code> it, or implicitly with
+ * <code>{@link #add}</code>, in which case it must implement
+ * {@link DelaySharedQueue.Delayed}.
+ * <p>
+ * <code>{@link #remove}</code> blocks until the deadline of an object has
+ * passed; the objects are removed in the order of their deadlines, with the
+ * resolution of a tick. <code>{@link #size}</code> counts all the objects
+ * that have been added and not yet removed or canceled, whether their
+ * deadline has passed or not, and <code>{@link #add}</code> blocks when that
+ * count reaches the capacity.
+ * <p>
+ * The objects are held in a {@link TimerWheel}, thus adding and canceling
+ * an object costs O(1) even with hundreds of thousands of pending objects.
+ *
+ * @see ClockDaemon
+ */
+public class DelaySharedQueue implements SharedQueue {
+
+	/** The default tick, in milliseconds. */
+	public final static long DEFAULT_TICK = 1;
+
+	protected final int fMaxCapacity;
+	protected final TimerWheel fWheel;
+	private volatile int fObjectCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		Delayed - interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * An object that carries its own deadline.
+	 */
+	public interface Delayed {
+		// ----------------------------------------------------------------------------
+		//		getDeadline
+		// ----------------------------------------------------------------------------
+		/**
+		 * Return the time at which the object can be removed, in milliseconds
+		 * as given by <code>System.currentTimeMillis</code>.
+		 */
+		public long getDeadline();
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		DelaySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a DelaySharedQueue with the given maximum capacity and tick.
+	 * @param inMaxCapacity the maximum number of pending objects.
+	 * @param inTickMillis the resolution of the deadlines, in milliseconds.
+	 * @exception IllegalArgumentException if an argument is less than one.
+	 */
+	public DelaySharedQueue(int inMaxCapacity, long inTickMillis) {
+		if(inMaxCapacity < 1) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+
+		fMaxCapacity = inMaxCapacity;
+		fWheel = new TimerWheel(inTickMillis, System.currentTimeMillis());
+	}
+
+	// ----------------------------------------------------------------------------
+	//		DelaySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a DelaySharedQueue with the given maximum capacity and a tick
+	 * of one millisecond.
+	 * @param inMaxCapacity the maximum number of pending objects.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public DelaySharedQueue(int inMaxCapacity) {
+		this(inMaxCapacity, DEFAULT_TICK);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		DelaySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a DelaySharedQueue without practical capacity limit and with
+	 * a tick of one millisecond.
+	 */
+	public DelaySharedQueue() {
+		this(Integer.MAX_VALUE);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue, whether their deadline
+	 * has passed or not.
+	 * All waiting Producers will be notified.
+	 */
+	public synchronized void clear() {
+		fWheel.clear();
+		fObjectCount = 0;
+
+		// Notify threads that are waiting for a free slot.
+		this.notifyAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object that carries its own deadline.
+	 * May block the calling thread if the queue has reach its maximum capacity.
+	 * @param inObject the {@link DelaySharedQueue.Delayed} object to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if inObject is null or not Delayed.
+	 */
+	public void add(Object inObject) throws InterruptedException {
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+		if(!(inObject instanceof Delayed)) {
+			throw new IllegalArgumentException("attempt to enqueue an object that is not Delayed");
+		}
+
+		addAt(inObject, ((Delayed)inObject).getDeadline());
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAt
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object that can be removed once the given time has passed, and
+	 * notify waiting threads.
+	 * May block the calling thread if the queue has reach its maximum capacity.
+	 * @param inObject the object to enqueue.
+	 * @param inDeadline the time at which the object can be removed, in
+	 * milliseconds as given by <code>System.currentTimeMillis</code>.
+	 * @return an opaque handle to cancel the object.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if inObject is null.
+	 */
+	public Object addAt(Object inObject, long inDeadline) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		synchronized(this) {
+			while(fObjectCount >= fMaxCapacity) {
+				this.wait();
+			}
+
+			Object theHandle = fWheel.schedule(inObject, inDeadline);
+			++fObjectCount;
+
+			// The Consumers may have to wait less than they thought.
+			this.notifyAll();
+
+			return theHandle;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAfterDelay
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object that can be removed once the given delay has elapsed.
+	 * @param inObject the object to enqueue.
+	 * @param inDelay the delay, in milliseconds.
+	 * @return an opaque handle to cancel the object.
+	 * @see #addAt
+	 */
+	public Object addAfterDelay(Object inObject, long inDelay) throws InterruptedException {
+		return addAt(inObject, System.currentTimeMillis() + inDelay);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		cancel
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove an object before it is removed by a Consumer.
+	 * @param inHandle a handle returned by addAt or addAfterDelay.
+	 * @return true if the object was removed, false if it had already been
+	 * removed or canceled.
+	 */
+	public synchronized boolean cancel(Object inHandle) {
+		if(!(inHandle instanceof TimerWheel.Timer) || !fWheel.cancel((TimerWheel.Timer)inHandle)) {
+			return false;
+		}
+
+		--fObjectCount;
+
+		// Notify the threads that are waiting for a free slot.
+		this.notifyAll();
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove and return the object whose deadline is the oldest, and notify
+	 * waiting threads. Blocks the calling thread until a deadline has passed.
+	 * @return the object whose deadline is the oldest.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		synchronized(this) {
+			await_expired();
+
+			Object theObject = take();
+
+			// Notify the threads that are waiting for a free slot.
+			this.notifyAll();
+
+			return theObject;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * All the objects must be {@link DelaySharedQueue.Delayed}.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			if(!(inObjects[i] instanceof Delayed)) {
+				throw new IllegalArgumentException("attempt to enqueue an object that is not Delayed");
+			}
+		}
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			addAt(inObjects[i], ((Delayed)inObjects[i]).getDeadline());
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove as many objects whose deadline has passed as available, up to the
+	 * length of the given array, and notify waiting threads.
+	 * Blocks the calling thread until at least one deadline has passed.
+	 */
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		synchronized(this) {
+			await_expired();
+
+			int theCount = 0;
+			while(theCount < outObjects.length && fWheel.expiredCount() > 0) {
+				outObjects[theCount++] = take();
+			}
+
+			// Notify the threads that are waiting for a free slot.
+			this.notifyAll();
+
+			return theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove the objects whose deadline has passed, never blocks.
+	 */
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		synchronized(this) {
+			fWheel.advance(System.currentTimeMillis());
+
+			int theCount = 0;
+			while(theCount < inMaxCount && fWheel.expiredCount() > 0) {
+				outCollection.add(take());
+				++theCount;
+			}
+
+			if(theCount > 0) {
+				// Notify the threads that are waiting for a free slot.
+				this.notifyAll();
+			}
+
+			return theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	public int capacity() {
+		return fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of pending objects, whether their deadline has passed
+	 * or not.
+	 */
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await_expired
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait until an object has expired, sleeping until the next time the
+	 * wheel has work to do.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void await_expired() throws InterruptedException {
+		for(;;) {
+			long theNow = System.currentTimeMillis();
+
+			if(fWheel.advance(theNow) > 0) {
+				return;
+			}
+
+			long theNext = fWheel.nextAdvance();
+
+			if(theNext == Long.MAX_VALUE) {
+				// Nothing scheduled, wait for a Producer.
+				this.wait();
+			}
+			else if(theNext > theNow) {
+				this.wait(theNext - theNow);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		take
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the oldest expired object.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private Object take() {
+		--fObjectCount;
+		return fWheel.poll().getObject();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public synchronized String toString() {
+		StringBuffer theResult = new StringBuffer("DelaySharedQueue(");
+
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(",e=").append(fWheel.expiredCount());
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
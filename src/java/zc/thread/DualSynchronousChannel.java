@@ -0,0 +1,783 @@
+// ----------------------------------------------------------------------------
+//  DualSynchronousChannel.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+
+// ----------------------------------------------------------------------------
+//		DualSynchronousChannel - class
+// ----------------------------------------------------------------------------
+/**
+ * A lock-free synchronous channel, that many <i>Senders</i> and <i>Receivers</i>
+ * may use at once.
+ * <p>
+ * As in a {@link SynchronousChannel}, a Sender is blocked until a Receiver
+ * takes its message, and a Receiver until a Sender gives it one. But instead
+ * of a single message slot behind a monitor, the waiting threads are held in
+ * a <i>dual</i> structure: a linked list of nodes, either all Senders with
+ * their message or all Receivers. A thread that finds a waiter of the
+ * opposite kind matches it directly, with a compare-and-set, and wakes it
+ * up alone; otherwise it links its own node and waits.
+ * <p>
+ * Two orders are available:
+ * <ul>
+ * <li>the <i>fair</i> mode holds the waiters in a dual queue: the thread that
+ * has waited the longest is matched first.</li>
+ * <li>the <i>unfair</i> mode, the default, holds them in a dual stack: the
+ * latest waiter is matched first, it is the one whose data is the most
+ * likely to be still in the processor cache. It may starve the others
+ * under a sustained load.</li>
+ * </ul>
+ * A waiter at the front of the structure, the next to be matched, spins a
+ * little before it parks: a partner that comes soon finds it awake. The
+ * waiters never hold a monitor, they park.
+ * <p>
+ * <b>Keep in mind</b> that the ownership of the message object is transferred from
+ * the sender to the receiver.
+ *
+ * @see SynchronousChannel
+ * @see "Scalable Synchronous Queues, W. Scherer, D. Lea and M. Scott, 2006"
+ */
+public class DualSynchronousChannel implements Channel {
+
+	/** The number of times a waiter at the front spins before parking. */
+	public final static int SPIN_TRIES = (Runtime.getRuntime().availableProcessors() > 1) ? 512 : 0;
+	/** The remaining time under which a timed waiter spins rather than parks, in nanoseconds. */
+	private final static long SPIN_NANOS = 1000L;
+
+	private final Transferer fTransferer;
+
+
+	// ----------------------------------------------------------------------------
+	//		Transferer - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * The dual structure. A Sender transfers its message, a Receiver transfers null.
+	 */
+	private abstract static class Transferer {
+
+		// ----------------------------------------------------------------------------
+		//		transfer
+		// ----------------------------------------------------------------------------
+		/**
+		 * Match a waiter of the opposite kind, or wait for one.
+		 * @param inMessage the message to send, null to receive one.
+		 * @param inTimed true to give up after inNanos.
+		 * @param inNanos the number of nanoseconds to wait, if inTimed.
+		 * @return the message sent or received, or null if the calling thread
+		 * gave up, because of the delay or of an interruption.
+		 */
+		abstract Object transfer(Object inMessage, boolean inTimed, long inNanos);
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		TransferStack - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * The dual stack of the unfair mode.
+	 * <p>
+	 * A thread that finds a waiter of the opposite kind on top pushes a
+	 * <i>fulfilling</i> node over it, then matches it and pops both nodes.
+	 * The threads that find a fulfilling node on top help it complete
+	 * before they proceed.
+	 */
+	private final static class TransferStack extends Transferer {
+
+		final static int RECEIVER = 0;
+		final static int SENDER = 1;
+		/** Or'ed with the kind of the node of a thread matching the node below. */
+		final static int FULFILLING = 2;
+
+		private final static AtomicReferenceFieldUpdater fHeadUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(TransferStack.class, Node.class, "fHead");
+		private final static AtomicReferenceFieldUpdater fNextUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "fNext");
+		private final static AtomicReferenceFieldUpdater fMatchUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "fMatch");
+
+		/** The top of the stack. */
+		volatile Node fHead = null;
+
+
+		// ----------------------------------------------------------------------------
+		//		Node - inner class
+		// ----------------------------------------------------------------------------
+		/**
+		 * A node of the stack. A node matched by itself is cancelled.
+		 */
+		final static class Node {
+			volatile Node fNext;
+			/** The node that matched this one. */
+			volatile Node fMatch = null;
+			/** The thread to unpark, once it is about to park. */
+			volatile Thread fWaiter = null;
+			Object fMessage;
+			int fMode;
+
+			Node(Object inMessage) {
+				fMessage = inMessage;
+			}
+
+			boolean casNext(Node inExpected, Node inNext) {
+				return fNext == inExpected && fNextUpdater.compareAndSet(this, inExpected, inNext);
+			}
+
+			/**
+			 * Match this node with the given one, and wake its thread up.
+			 * @return true if this node is matched with inNode, by the calling
+			 * thread or another one.
+			 */
+			boolean tryMatch(Node inNode) {
+				if(fMatch == null && fMatchUpdater.compareAndSet(this, null, inNode)) {
+					Thread theWaiter = fWaiter;
+
+					if(theWaiter != null) {
+						fWaiter = null;
+						LockSupport.unpark(theWaiter);
+					}
+					return true;
+				}
+
+				return fMatch == inNode;
+			}
+
+			void tryCancel() {
+				fMatchUpdater.compareAndSet(this, null, this);
+			}
+
+			boolean isCancelled() {
+				return fMatch == this;
+			}
+		}
+
+
+		// ----------------------------------------------------------------------------
+		//		transfer
+		// ----------------------------------------------------------------------------
+		Object transfer(Object inMessage, boolean inTimed, long inNanos) {
+			Node theNode = null;
+			int theMode = (inMessage == null) ? RECEIVER : SENDER;
+
+			for(;;) {
+				Node theHead = fHead;
+
+				if(theHead == null || theHead.fMode == theMode) {
+					// Empty, or waiters of the same kind: push a node and wait.
+					if(inTimed && inNanos <= 0) {
+						if(theHead != null && theHead.isCancelled()) {
+							cas_head(theHead, theHead.fNext);
+							continue;
+						}
+						return null;
+					}
+
+					theNode = node(theNode, inMessage, theHead, theMode);
+					if(cas_head(theHead, theNode)) {
+						Node theMatch = await_match(theNode, inTimed, inNanos);
+
+						if(theMatch == theNode) {
+							clean(theNode);
+							return null;
+						}
+
+						// Help the matching thread pop both nodes.
+						if((theHead = fHead) != null && theHead.fNext == theNode) {
+							cas_head(theHead, theNode.fNext);
+						}
+
+						return (theMode == RECEIVER) ? theMatch.fMessage : theNode.fMessage;
+					}
+				}
+				else if((theHead.fMode & FULFILLING) == 0) {
+					// A waiter of the opposite kind: push a fulfilling node over it.
+					if(theHead.isCancelled()) {
+						cas_head(theHead, theHead.fNext);
+						continue;
+					}
+
+					theNode = node(theNode, inMessage, theHead, FULFILLING | theMode);
+					if(cas_head(theHead, theNode)) {
+						for(;;) {
+							Node theWaiter = theNode.fNext;
+
+							if(theWaiter == null) {
+								// All the waiters have left, start over.
+								cas_head(theNode, null);
+								theNode = null;
+								break;
+							}
+
+							Node theNext = theWaiter.fNext;
+
+							if(theWaiter.tryMatch(theNode)) {
+								cas_head(theNode, theNext);
+								return (theMode == RECEIVER) ? theWaiter.fMessage : theNode.fMessage;
+							}
+
+							// The waiter has left.
+							theNode.casNext(theWaiter, theNext);
+						}
+					}
+				}
+				else {
+					// Another thread is fulfilling, help it.
+					Node theWaiter = theHead.fNext;
+
+					if(theWaiter == null) {
+						cas_head(theHead, null);
+					}
+					else {
+						Node theNext = theWaiter.fNext;
+
+						if(theWaiter.tryMatch(theHead)) {
+							cas_head(theHead, theNext);
+						}
+						else {
+							theHead.casNext(theWaiter, theNext);
+						}
+					}
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		await_match
+		// ----------------------------------------------------------------------------
+		/**
+		 * Spin then park until the node is matched or cancelled.
+		 * @return the matching node, or inNode itself if cancelled.
+		 */
+		private Node await_match(Node inNode, boolean inTimed, long inNanos) {
+			long theDeadline = inTimed ? System.nanoTime() + inNanos : 0;
+			Thread theThread = Thread.currentThread();
+			int theSpins = should_spin(inNode) ? SPIN_TRIES : 0;
+
+			for(;;) {
+				if(theThread.isInterrupted()) {
+					inNode.tryCancel();
+				}
+
+				Node theMatch = inNode.fMatch;
+				if(theMatch != null) {
+					return theMatch;
+				}
+
+				if(inTimed) {
+					inNanos = theDeadline - System.nanoTime();
+					if(inNanos <= 0) {
+						inNode.tryCancel();
+						continue;
+					}
+				}
+
+				if(theSpins > 0) {
+					theSpins = should_spin(inNode) ? theSpins - 1 : 0;
+				}
+				else if(inNode.fWaiter == null) {
+					// Publish the thread, then check the match once more before parking.
+					inNode.fWaiter = theThread;
+				}
+				else if(!inTimed) {
+					LockSupport.park(this);
+				}
+				else if(inNanos > SPIN_NANOS) {
+					LockSupport.parkNanos(this, inNanos);
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		should_spin
+		// ----------------------------------------------------------------------------
+		/**
+		 * Returns true if the node is the next one to be matched.
+		 */
+		private boolean should_spin(Node inNode) {
+			Node theHead = fHead;
+
+			return theHead == inNode || theHead == null || (theHead.fMode & FULFILLING) != 0;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		clean
+		// ----------------------------------------------------------------------------
+		/**
+		 * Unlink a cancelled node, and the cancelled nodes above it.
+		 */
+		private void clean(Node inNode) {
+			inNode.fMessage = null;
+			inNode.fWaiter = null;
+
+			// The first node below that is not cancelled, or its next one.
+			Node thePast = inNode.fNext;
+			if(thePast != null && thePast.isCancelled()) {
+				thePast = thePast.fNext;
+			}
+
+			Node theNode;
+			while((theNode = fHead) != null && theNode != thePast && theNode.isCancelled()) {
+				cas_head(theNode, theNode.fNext);
+			}
+
+			while(theNode != null && theNode != thePast) {
+				Node theNext = theNode.fNext;
+
+				if(theNext != null && theNext.isCancelled()) {
+					theNode.casNext(theNext, theNext.fNext);
+				}
+				else {
+					theNode = theNext;
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		cas_head
+		// ----------------------------------------------------------------------------
+		private boolean cas_head(Node inExpected, Node inHead) {
+			return fHead == inExpected && fHeadUpdater.compareAndSet(this, inExpected, inHead);
+		}
+
+		// ----------------------------------------------------------------------------
+		//		node
+		// ----------------------------------------------------------------------------
+		/**
+		 * Create a node, or reuse the one that failed to be pushed.
+		 */
+		private static Node node(Node inNode, Object inMessage, Node inNext, int inMode) {
+			if(inNode == null) {
+				inNode = new Node(inMessage);
+			}
+
+			inNode.fMode = inMode;
+			inNode.fNext = inNext;
+
+			return inNode;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		TransferQueue - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * The dual queue of the fair mode.
+	 * <p>
+	 * A waiter appends its node at the tail. A thread that finds a waiter of
+	 * the opposite kind at the head matches it by swapping the message of its
+	 * node, then unlinks it. The head is a dummy node, the last one matched.
+	 */
+	private final static class TransferQueue extends Transferer {
+
+		private final static AtomicReferenceFieldUpdater fHeadUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(TransferQueue.class, Node.class, "fHead");
+		private final static AtomicReferenceFieldUpdater fTailUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(TransferQueue.class, Node.class, "fTail");
+		private final static AtomicReferenceFieldUpdater fCleanMeUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(TransferQueue.class, Node.class, "fCleanMe");
+		private final static AtomicReferenceFieldUpdater fNextUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "fNext");
+		private final static AtomicReferenceFieldUpdater fMessageUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "fMessage");
+
+		/** The dummy node preceding the oldest waiter. */
+		volatile Node fHead;
+		/** The last node, or a node close to the last one. */
+		volatile Node fTail;
+		/** The predecessor of a cancelled last node, that could not be unlinked yet. */
+		volatile Node fCleanMe = null;
+
+
+		// ----------------------------------------------------------------------------
+		//		Node - inner class
+		// ----------------------------------------------------------------------------
+		/**
+		 * A node of the queue. A node whose message is itself is cancelled, a
+		 * node whose next is itself is off the queue.
+		 */
+		final static class Node {
+			volatile Node fNext = null;
+			/** The message, swapped by the matching thread. */
+			volatile Object fMessage;
+			/** The thread to unpark, once it is about to park. */
+			volatile Thread fWaiter = null;
+			final boolean fIsSender;
+
+			Node(Object inMessage, boolean inIsSender) {
+				fMessage = inMessage;
+				fIsSender = inIsSender;
+			}
+
+			boolean casNext(Node inExpected, Node inNext) {
+				return fNext == inExpected && fNextUpdater.compareAndSet(this, inExpected, inNext);
+			}
+
+			boolean casMessage(Object inExpected, Object inMessage) {
+				return fMessage == inExpected && fMessageUpdater.compareAndSet(this, inExpected, inMessage);
+			}
+
+			void tryCancel(Object inExpected) {
+				fMessageUpdater.compareAndSet(this, inExpected, this);
+			}
+
+			boolean isCancelled() {
+				return fMessage == this;
+			}
+
+			boolean isOffList() {
+				return fNext == this;
+			}
+		}
+
+
+		// ----------------------------------------------------------------------------
+		//		TransferQueue - constructor
+		// ----------------------------------------------------------------------------
+		TransferQueue() {
+			fHead = fTail = new Node(null, false);
+		}
+
+		// ----------------------------------------------------------------------------
+		//		transfer
+		// ----------------------------------------------------------------------------
+		Object transfer(Object inMessage, boolean inTimed, long inNanos) {
+			Node theNode = null;
+			boolean theIsSender = (inMessage != null);
+
+			for(;;) {
+				Node theTail = fTail;
+				Node theHead = fHead;
+
+				if(theHead == theTail || theTail.fIsSender == theIsSender) {
+					// Empty, or waiters of the same kind: append a node and wait.
+					Node theTailNext = theTail.fNext;
+
+					if(theTail != fTail) {
+						continue;
+					}
+					if(theTailNext != null) {
+						advance_tail(theTail, theTailNext);
+						continue;
+					}
+					if(inTimed && inNanos <= 0) {
+						return null;
+					}
+					if(theNode == null) {
+						theNode = new Node(inMessage, theIsSender);
+					}
+					if(!theTail.casNext(null, theNode)) {
+						continue;
+					}
+
+					advance_tail(theTail, theNode);
+
+					Object theMessage = await_match(theNode, inMessage, inTimed, inNanos);
+
+					if(theMessage == theNode) {
+						clean(theTail, theNode);
+						return null;
+					}
+
+					if(!theNode.isOffList()) {
+						// Unlink the node, unless the matching thread already has.
+						advance_head(theTail, theNode);
+						if(theMessage != null) {
+							theNode.fMessage = theNode;
+						}
+						theNode.fWaiter = null;
+					}
+
+					return (theMessage != null) ? theMessage : inMessage;
+				}
+				else {
+					// A waiter of the opposite kind: match the oldest one.
+					Node theWaiter = theHead.fNext;
+
+					if(theTail != fTail || theWaiter == null || theHead != fHead) {
+						continue;
+					}
+
+					Object theMessage = theWaiter.fMessage;
+
+					if(theIsSender == (theMessage != null) || theMessage == theWaiter || !theWaiter.casMessage(theMessage, inMessage)) {
+						// Already matched or cancelled: unlink it and retry.
+						advance_head(theHead, theWaiter);
+						continue;
+					}
+
+					advance_head(theHead, theWaiter);
+					LockSupport.unpark(theWaiter.fWaiter);
+
+					return (theMessage != null) ? theMessage : inMessage;
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		await_match
+		// ----------------------------------------------------------------------------
+		/**
+		 * Spin then park until the message of the node is swapped or cancelled.
+		 * @return the new message of the node, the node itself if cancelled.
+		 */
+		private Object await_match(Node inNode, Object inMessage, boolean inTimed, long inNanos) {
+			long theDeadline = inTimed ? System.nanoTime() + inNanos : 0;
+			Thread theThread = Thread.currentThread();
+			int theSpins = (fHead.fNext == inNode) ? SPIN_TRIES : 0;
+
+			for(;;) {
+				if(theThread.isInterrupted()) {
+					inNode.tryCancel(inMessage);
+				}
+
+				Object theMessage = inNode.fMessage;
+				if(theMessage != inMessage) {
+					return theMessage;
+				}
+
+				if(inTimed) {
+					inNanos = theDeadline - System.nanoTime();
+					if(inNanos <= 0) {
+						inNode.tryCancel(inMessage);
+						continue;
+					}
+				}
+
+				if(theSpins > 0) {
+					--theSpins;
+				}
+				else if(inNode.fWaiter == null) {
+					// Publish the thread, then check the message once more before parking.
+					inNode.fWaiter = theThread;
+				}
+				else if(!inTimed) {
+					LockSupport.park(this);
+				}
+				else if(inNanos > SPIN_NANOS) {
+					LockSupport.parkNanos(this, inNanos);
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		clean
+		// ----------------------------------------------------------------------------
+		/**
+		 * Unlink a cancelled node. The last node cannot be unlinked safely, its
+		 * predecessor is kept in fCleanMe until a later call unlinks it.
+		 */
+		private void clean(Node inPred, Node inNode) {
+			inNode.fWaiter = null;
+
+			while(inPred.fNext == inNode) {
+				Node theHead = fHead;
+				Node theFirst = theHead.fNext;
+
+				if(theFirst != null && theFirst.isCancelled()) {
+					advance_head(theHead, theFirst);
+					continue;
+				}
+
+				Node theTail = fTail;
+				if(theTail == theHead) {
+					return;
+				}
+
+				Node theTailNext = theTail.fNext;
+				if(theTail != fTail) {
+					continue;
+				}
+				if(theTailNext != null) {
+					advance_tail(theTail, theTailNext);
+					continue;
+				}
+
+				if(inNode != theTail) {
+					Node theNext = inNode.fNext;
+
+					if(theNext == inNode || inPred.casNext(inNode, theNext)) {
+						return;
+					}
+				}
+
+				Node theCleanMe = fCleanMe;
+				if(theCleanMe != null) {
+					// Unlink the node left by a previous call.
+					Node theCancelled = theCleanMe.fNext;
+					Node theNext;
+
+					if(theCancelled == null || theCancelled == theCleanMe || !theCancelled.isCancelled()
+						|| (theCancelled != theTail && (theNext = theCancelled.fNext) != null
+							&& theNext != theCancelled && theCleanMe.casNext(theCancelled, theNext))) {
+						fCleanMeUpdater.compareAndSet(this, theCleanMe, null);
+					}
+					if(theCleanMe == inPred) {
+						return;
+					}
+				}
+				else if(fCleanMeUpdater.compareAndSet(this, null, inPred)) {
+					return;
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		advance_head
+		// ----------------------------------------------------------------------------
+		/**
+		 * Make inHead the new dummy node, and mark the previous one off the queue.
+		 */
+		private void advance_head(Node inExpected, Node inHead) {
+			if(fHead == inExpected && fHeadUpdater.compareAndSet(this, inExpected, inHead)) {
+				inExpected.fNext = inExpected;
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		advance_tail
+		// ----------------------------------------------------------------------------
+		private void advance_tail(Node inExpected, Node inTail) {
+			if(fTail == inExpected) {
+				fTailUpdater.compareAndSet(this, inExpected, inTail);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		DualSynchronousChannel - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a DualSynchronousChannel.
+	 * @param inFair true to match the waiters in FIFO order, false in LIFO order.
+	 */
+	public DualSynchronousChannel(boolean inFair) {
+		fTransferer = inFair ? (Transferer)new TransferQueue() : (Transferer)new TransferStack();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		DualSynchronousChannel - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an unfair DualSynchronousChannel.
+	 */
+	public DualSynchronousChannel() {
+		this(false);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		send
+	// ----------------------------------------------------------------------------
+	public void send(Object inMessage) throws InterruptedException {
+		check_message(inMessage);
+
+		if(Thread.interrupted() || fTransferer.transfer(inMessage, false, 0) == null) {
+			Thread.interrupted();
+			throw new InterruptedException();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		receive
+	// ----------------------------------------------------------------------------
+	public Object receive() throws InterruptedException {
+		Object theMessage = null;
+
+		if(Thread.interrupted() || (theMessage = fTransferer.transfer(null, false, 0)) == null) {
+			Thread.interrupted();
+			throw new InterruptedException();
+		}
+
+		return theMessage;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Send a message if a Receiver takes it within the given time.
+	 * @param inMessage the message to send.
+	 * @param msecs the number of milliseconds to wait for a Receiver, zero to
+	 * only hand the message to a Receiver already waiting.
+	 * @return true if the message has been received.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if inMessage is null.
+	 */
+	public boolean offer(Object inMessage, long msecs) throws InterruptedException {
+		check_message(inMessage);
+
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if(fTransferer.transfer(inMessage, true, msecs * 1000000L) != null) {
+			return true;
+		}
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		return false;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Receive a message if a Sender gives one within the given time.
+	 * @param msecs the number of milliseconds to wait for a Sender, zero to
+	 * only take the message of a Sender already waiting.
+	 * @return the message received, or null if the time is up.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public Object poll(long msecs) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Object theMessage = fTransferer.transfer(null, true, msecs * 1000000L);
+
+		if(theMessage == null && Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		return theMessage;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFair
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns true if the waiters are matched in FIFO order.
+	 * @return a boolean.
+	 */
+	public boolean isFair() {
+		return fTransferer instanceof TransferQueue;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_message
+	// ----------------------------------------------------------------------------
+	private static void check_message(Object inMessage) {
+		if(inMessage == null) {
+			throw new IllegalArgumentException("attempt to send a null message");
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		return "DualSynchronousChannel(" + (isFair() ? "fair" : "unfair") + ")";
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
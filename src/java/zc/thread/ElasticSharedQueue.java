@@ -0,0 +1,305 @@
+// ----------------------------------------------------------------------------
+//  ElasticSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		ElasticSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A bounded SharedQueue whose storage follows its occupancy: it starts small,
+ * grows geometrically during bursts up to the maximum capacity, and shrinks
+ * back after a sustained low occupancy.
+ * <p>
+ * The objects are held in a chain of rings. The Producers write into the
+ * last ring, the Consumers read from the first one. A resize never copies
+ * any object: to grow, a ring twice as large is appended when the last
+ * ring is full; to shrink, a ring half as large is appended. Either way
+ * the older rings are drained by the Consumers and then released, thus a
+ * resize costs one allocation, under the monitor, whatever the number of
+ * objects in the queue.
+ * <p>
+ * While the older rings drain, the storage may transiently exceed the
+ * capacity, up to about three times: the rings only grow until the last
+ * one holds the capacity.
+ *
+ * @see BoundedSharedQueue
+ */
+public class ElasticSharedQueue extends AbstractSharedQueue {
+
+	public final static int DEFAULT_INITIAL_CAPACITY = 16;
+
+	protected final int fInitialCapacity;
+
+	/** The ring holding the oldest objects. */
+	private Ring fHead;
+	/** The ring receiving the objects. */
+	private Ring fTail;
+	private volatile int fObjectCount = 0;
+	/** The number of slots of all the rings. */
+	private volatile int fStorageSize = 0;
+	/** The number of rings in the chain. */
+	private volatile int fRingCount = 1;
+	/** The number of consecutive dequeues that left the last ring under-used. */
+	private int fLowCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		Ring - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A circular array of slots, linked to the next ring of the queue.
+	 */
+	private final static class Ring {
+		final Object[] fSlots;
+		int fPutCursor = 0;
+		int fGetCursor = 0;
+		int fCount = 0;
+		Ring fNext = null;
+
+		// ----------------------------------------------------------------------------
+		//		Ring - constructor
+		// ----------------------------------------------------------------------------
+		Ring(int inSize) {
+			fSlots = new Object[inSize];
+		}
+
+		// ----------------------------------------------------------------------------
+		//		isFull
+		// ----------------------------------------------------------------------------
+		boolean isFull() {
+			return fCount == fSlots.length;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		ElasticSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an ElasticSharedQueue.
+	 * @param inInitialCapacity the size of the storage when the queue is quiet.
+	 * @param inMaxCapacity the maximum number of objects.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inInitialCapacity is out of
+	 * [1, inMaxCapacity], or if inWaitStrategy is null.
+	 */
+	public ElasticSharedQueue(int inInitialCapacity, int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+
+		if(inInitialCapacity < 1 || inInitialCapacity > inMaxCapacity) {
+			throw new IllegalArgumentException("illegal initial capacity " + inInitialCapacity);
+		}
+
+		fInitialCapacity = inInitialCapacity;
+		fHead = fTail = new Ring(inInitialCapacity);
+		fStorageSize = inInitialCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		ElasticSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an ElasticSharedQueue.
+	 * @param inInitialCapacity the size of the storage when the queue is quiet.
+	 * @param inMaxCapacity the maximum number of objects.
+	 * @exception IllegalArgumentException if inInitialCapacity is out of
+	 * [1, inMaxCapacity].
+	 */
+	public ElasticSharedQueue(int inInitialCapacity, int inMaxCapacity) {
+		this(inInitialCapacity, inMaxCapacity, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		ElasticSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an ElasticSharedQueue of the given maximum capacity, that
+	 * starts with 16 slots.
+	 * @param inMaxCapacity the maximum number of objects.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public ElasticSharedQueue(int inMaxCapacity) {
+		this(Math.min(DEFAULT_INITIAL_CAPACITY, Math.max(inMaxCapacity, 1)), inMaxCapacity);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue, and shrink the storage
+	 * back to the initial capacity.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			fHead = fTail = new Ring(fInitialCapacity);
+			fStorageSize = fInitialCapacity;
+			fRingCount = 1;
+			fObjectCount = 0;
+			fLowCount = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getStorageSize
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of slots currently allocated.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int > zero.
+	 */
+	public int getStorageSize() {
+		return fStorageSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getRingCount
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of rings the storage is currently made of.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int > zero.
+	 */
+	public int getRingCount() {
+		return fRingCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	protected void enqueue(Object inObject) {
+		Ring theTail = fTail;
+
+		if(theTail.isFull()) {
+			// Grow, never below the last ring: near the capacity, sizing the
+			// new ring by the free slots would end in a chain of tiny rings.
+			theTail = append_ring(Math.min(theTail.fSlots.length * 2, fMaxCapacity));
+		}
+
+		theTail.fSlots[theTail.fPutCursor] = inObject;
+		theTail.fPutCursor = next_index(theTail, theTail.fPutCursor);
+		++theTail.fCount;
+		++fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	protected Object dequeue() {
+		Ring theHead = fHead;
+		Object theObject = theHead.fSlots[theHead.fGetCursor];
+
+		theHead.fSlots[theHead.fGetCursor] = null;	// For the garbage collector.
+		theHead.fGetCursor = next_index(theHead, theHead.fGetCursor);
+		--theHead.fCount;
+		--fObjectCount;
+
+		if(theHead.fCount == 0 && theHead != fTail) {
+			// Release the drained ring.
+			fHead = theHead.fNext;
+			fStorageSize -= theHead.fSlots.length;
+			--fRingCount;
+		}
+
+		shrink_if_idle();
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		shrink_if_idle
+	// ----------------------------------------------------------------------------
+	/**
+	 * Append a ring half as large as the last one, once the last ring has been
+	 * less than a quarter full for as many dequeues as it has slots.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void shrink_if_idle() {
+		int theLength = fTail.fSlots.length;
+
+		if(fHead != fTail || theLength <= fInitialCapacity || fObjectCount * 4 >= theLength) {
+			fLowCount = 0;
+			return;
+		}
+
+		if(++fLowCount >= theLength) {
+			append_ring(Math.max(theLength / 2, fInitialCapacity));
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		append_ring
+	// ----------------------------------------------------------------------------
+	/**
+	 * Link a new ring after the last one, where the next objects go.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private Ring append_ring(int inSize) {
+		Ring theRing = new Ring(inSize);
+
+		fTail.fNext = theRing;
+		fTail = theRing;
+		fStorageSize += inSize;
+		++fRingCount;
+		fLowCount = 0;
+
+		if(fHead.fCount == 0) {
+			// The previous last ring was empty, release it right away.
+			fStorageSize -= fHead.fSlots.length;
+			--fRingCount;
+			fHead = theRing;
+		}
+
+		return theRing;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_index
+	// ----------------------------------------------------------------------------
+	private static int next_index(Ring inRing, int inIndex) {
+		return ++inIndex == inRing.fSlots.length ? 0 : inIndex;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("ElasticSharedQueue(");
+
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(",s=").append(fStorageSize);
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,35 @@
+// ----------------------------------------------------------------------------
+//  EventHandler.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		EventHandler - interface
+// ----------------------------------------------------------------------------
+/**
+ * Interface for the consumers of a {@link RingBuffer}, called by an
+ * {@link EventProcessor} for each published event, in sequence order.
+ */
+public interface EventHandler {
+
+	// ----------------------------------------------------------------------------
+	//		onEvent
+	// ----------------------------------------------------------------------------
+	/**
+	 * Process an event. The event belongs to the ring: it must not be kept
+	 * after the call, and may only be modified by a consumer that the
+	 * downstream consumers depend on.
+	 * @param inEvent the event.
+	 * @param inSequence the sequence of the event.
+	 * @param inEndOfBatch true for the last event currently available, e.g.
+	 * to flush buffered work.
+	 */
+	public void onEvent(Object inEvent, long inSequence, boolean inEndOfBatch);
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,88 @@
+// ----------------------------------------------------------------------------
+//  EventProcessor.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		EventProcessor - class
+// ----------------------------------------------------------------------------
+/**
+ * The loop of a {@link RingBuffer} consumer: wait on a barrier, hand every
+ * available event to an {@link EventHandler}, then advance the Sequence of
+ * the consumer, once per batch.
+ * <p>
+ * An EventProcessor is a Runnable, to be run by its own thread. It stops when
+ * this thread is interrupted, or when the handler throws.
+ *
+ * @see RingBuffer
+ */
+public class EventProcessor implements Runnable {
+
+	protected final RingBuffer fRingBuffer;
+	protected final SequenceBarrier fBarrier;
+	protected final EventHandler fHandler;
+
+	private final Sequence fSequence = new Sequence();
+
+
+	// ----------------------------------------------------------------------------
+	//		EventProcessor - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an EventProcessor.
+	 * @param inRingBuffer the ring holding the events.
+	 * @param inBarrier the barrier of the ring to wait on.
+	 * @param inHandler the consumer.
+	 */
+	public EventProcessor(RingBuffer inRingBuffer, SequenceBarrier inBarrier, EventHandler inHandler) {
+		fRingBuffer = inRingBuffer;
+		fBarrier = inBarrier;
+		fHandler = inHandler;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getSequence
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the Sequence of the last processed event, to build the barriers
+	 * of the downstream consumers, or to gate the producer.
+	 */
+	public Sequence getSequence() {
+		return fSequence;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		run
+	// ----------------------------------------------------------------------------
+	/**
+	 * Process the events until the thread is interrupted.
+	 */
+	public void run() {
+		long theNext = fSequence.get() + 1;
+
+		try {
+			for(;;) {
+				long theAvailable = fBarrier.waitFor(theNext);
+
+				for(long i = theNext; i <= theAvailable; ++i) {
+					fHandler.onEvent(fRingBuffer.get(i), i, i == theAvailable);
+				}
+
+				fSequence.set(theAvailable);
+				fRingBuffer.fProgress.signalAll();
+
+				theNext = theAvailable + 1;
+			}
+		}
+		catch(InterruptedException ex) {
+			// Stop.
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
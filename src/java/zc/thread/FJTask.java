@@ -0,0 +1,252 @@
+// ----------------------------------------------------------------------------
+//  FJTask.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		FJTask - abstract class
+// ----------------------------------------------------------------------------
+/**
+ * A lightweight task run by the threads of a {@link FJTaskRunnerGroup}, for
+ * parallel divide-and-conquer computations.
+ * <p>
+ * A task splits its work into sub tasks, <code>fork</code>s them, and
+ * <code>join</code>s them. A forked task is pushed on the deque of the current
+ * thread, where it is either popped back by this thread, or stolen by an
+ * idle thread of the group. A thread waiting in <code>join</code> runs other
+ * tasks meanwhile, thus a task never blocks a thread.
+ * <pre>
+ * class Fib extends FJTask {
+ *     volatile int fNumber;
+ *
+ *     Fib(int inNumber) { fNumber = inNumber; }
+ *
+ *     public void run() {
+ *         int n = fNumber;
+ *         if(n > 1) {
+ *             Fib f1 = new Fib(n - 1);
+ *             Fib f2 = new Fib(n - 2);
+ *             coInvoke(f1, f2);
+ *             fNumber = f1.fNumber + f2.fNumber;
+ *         }
+ *     }
+ * }
+ *
+ * FJTaskRunnerGroup theGroup = new FJTaskRunnerGroup(4);
+ * Fib theFib = new Fib(30);
+ * theGroup.invoke(theFib);
+ * </pre>
+ * A task must not block on a lock or a condition that another task
+ * establishes: use <code>join</code>, which keeps the thread busy, instead.
+ * <p>
+ * The interface follows the <code>FJTask</code> of Doug Lea's util.concurrent
+ * package.
+ *
+ * @see FJTaskRunnerGroup
+ * @see WorkStealingDeque
+ */
+public abstract class FJTask implements Runnable {
+
+	/** True when the task has completed or has been canceled. */
+	private volatile boolean fDone = false;
+
+
+	// ----------------------------------------------------------------------------
+	//		getFJTaskRunner
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the FJTaskRunner thread running the current task.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public static FJTaskRunner getFJTaskRunner() {
+		Thread theThread = Thread.currentThread();
+
+		if(!(theThread instanceof FJTaskRunner)) {
+			throw new IllegalStateException("not called from a FJTaskRunner");
+		}
+
+		return (FJTaskRunner)theThread;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getFJTaskRunnerGroup
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the FJTaskRunnerGroup of the thread running the current task.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public static FJTaskRunnerGroup getFJTaskRunnerGroup() {
+		return getFJTaskRunner().getGroup();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isDone
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this task has completed or has been canceled.
+	 * @return a boolean.
+	 */
+	public final boolean isDone() {
+		return fDone;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		setDone
+	// ----------------------------------------------------------------------------
+	/**
+	 * Mark this task as completed. Called by the runners only, the tasks use
+	 * <code>cancel</code>.
+	 */
+	protected final void setDone() {
+		fDone = true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		cancel
+	// ----------------------------------------------------------------------------
+	/**
+	 * Prevent this task from running, if it has not been started yet.
+	 * A running task is not affected, unless its run method checks isDone.
+	 */
+	public void cancel() {
+		setDone();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		reset
+	// ----------------------------------------------------------------------------
+	/**
+	 * Clear the completion status, to run this task again. Must only be called
+	 * once the previous run has completed and has been joined.
+	 */
+	public void reset() {
+		fDone = false;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		start
+	// ----------------------------------------------------------------------------
+	/**
+	 * Submit this task to the group of the current thread, where it will be
+	 * run by the next idle thread, in FIFO order with the other started tasks.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public void start() {
+		getFJTaskRunnerGroup().executeTask(this);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		fork
+	// ----------------------------------------------------------------------------
+	/**
+	 * Push this task on the deque of the current thread. Much cheaper than
+	 * start, but only meant for a task that will be joined by the current one.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public void fork() {
+		getFJTaskRunner().push(this);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		join
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run other tasks until this task has completed.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public void join() {
+		getFJTaskRunner().taskJoin(this);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		invoke
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run a task in the calling thread, unless it has already completed or
+	 * has been canceled. Always use it instead of calling run directly, so
+	 * that the completion status is maintained.
+	 * <p>
+	 * A task is marked completed even if its run method throws, so that its
+	 * joiners do not wait forever.
+	 * @param inTask the task to run.
+	 */
+	public static void invoke(FJTask inTask) {
+		if(!inTask.isDone()) {
+			try {
+				inTask.run();
+			}
+			finally {
+				inTask.setDone();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		coInvoke
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run two tasks in parallel and wait for both: the second one is forked,
+	 * the first one is run by the calling thread.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public static void coInvoke(FJTask inTask1, FJTask inTask2) {
+		inTask2.fork();
+		invoke(inTask1);
+		inTask2.join();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		coInvoke
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run tasks in parallel and wait for all of them: all but the first one
+	 * are forked, the first one is run by the calling thread.
+	 * @exception IllegalStateException if the calling thread is not a FJTaskRunner.
+	 */
+	public static void coInvoke(FJTask[] inTasks) {
+		if(inTasks.length == 0) {
+			return;
+		}
+
+		for(int i = inTasks.length - 1; i > 0; --i) {
+			inTasks[i].fork();
+		}
+
+		invoke(inTasks[0]);
+
+		for(int i = 1; i < inTasks.length; ++i) {
+			inTasks[i].join();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		Wrap - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A FJTask that runs a Runnable.
+	 */
+	public static class Wrap extends FJTask {
+		protected final Runnable fRunnable;
+
+		// ----------------------------------------------------------------------------
+		//		Wrap - constructor
+		// ----------------------------------------------------------------------------
+		public Wrap(Runnable inRunnable) {
+			fRunnable = inRunnable;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		run
+		// ----------------------------------------------------------------------------
+		public void run() {
+			fRunnable.run();
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,215 @@
+// ----------------------------------------------------------------------------
+//  FJTaskRunner.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		FJTaskRunner - class
+// ----------------------------------------------------------------------------
+/**
+ * A thread of a {@link FJTaskRunnerGroup}, that runs FJTasks.
+ * <p>
+ * Each runner owns a {@link WorkStealingDeque} where the tasks it forks are
+ * pushed. A runner looks for work in this order:
+ * <ol>
+ * <li>the last task it has forked, popped from its own deque;
+ * <li>the oldest task started on the group;
+ * <li>the oldest task forked by another runner, stolen from its deque,
+ * starting with a random victim.
+ * </ol>
+ * When there is no work at all, the runner sleeps until some task is started
+ * or forked.
+ * <p>
+ * The runners are created by their group, there is no public constructor.
+ *
+ * @see FJTask
+ * @see FJTaskRunnerGroup
+ */
+public class FJTaskRunner extends Thread {
+
+	protected final FJTaskRunnerGroup fGroup;
+	protected final WorkStealingDeque fDeque = new WorkStealingDeque();
+
+	/** The state of the victim generator, never zero. */
+	private int fSeed;
+
+
+	// ----------------------------------------------------------------------------
+	//		FJTaskRunner - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a FJTaskRunner of the given group.
+	 * @param inGroup the group this runner belongs to.
+	 * @param inIndex the index of this runner in the group.
+	 */
+	FJTaskRunner(FJTaskRunnerGroup inGroup, int inIndex) {
+		super("FJTaskRunner-" + inIndex);
+		fGroup = inGroup;
+		fSeed = (inIndex + 1) * 0x9E3779B9 | 1;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getGroup
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the group this runner belongs to.
+	 */
+	public FJTaskRunnerGroup getGroup() {
+		return fGroup;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		run
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the tasks until the thread is interrupted.
+	 */
+	public void run() {
+		try {
+			for(;;) {
+				if(Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+				FJTask theTask = scan();
+
+				if(theTask != null) {
+					run_task(theTask);
+				}
+				else {
+					fGroup.await_work();
+				}
+			}
+		}
+		catch(InterruptedException ex) {
+			// Shut down.
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		push
+	// ----------------------------------------------------------------------------
+	/**
+	 * Push a forked task on the deque of this runner, and wake up an idle
+	 * runner to steal it. Must only be called by this runner.
+	 */
+	void push(FJTask inTask) {
+		fDeque.push(inTask);
+		fGroup.signal_work();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		taskJoin
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run other tasks until the given task has completed. Must only be called
+	 * by this runner.
+	 */
+	void taskJoin(FJTask inTask) {
+		while(!inTask.isDone()) {
+			FJTask theTask = scan();
+
+			if(theTask != null) {
+				run_task(theTask);
+			}
+			else {
+				// The task is being run by a thief.
+				Thread.yield();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		steal
+	// ----------------------------------------------------------------------------
+	/**
+	 * Steal the oldest task forked by this runner. May be called by any thread.
+	 * @return a task, or null if none.
+	 */
+	FJTask steal() {
+		return (FJTask)fDeque.steal();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		hasTasks
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this runner has forked tasks waiting to be run.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 */
+	boolean hasTasks() {
+		return !fDeque.isEmpty();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		scan
+	// ----------------------------------------------------------------------------
+	/**
+	 * Look for a task to run: the own deque first, then the group entry queue,
+	 * then the deques of the other runners.
+	 * @return a task, or null if none was found.
+	 */
+	private FJTask scan() {
+		FJTask theTask = (FJTask)fDeque.pop();
+
+		if(theTask == null) {
+			theTask = fGroup.poll_entry();
+		}
+
+		if(theTask == null) {
+			FJTaskRunner[] theRunners = fGroup.fRunners;
+			int theCount = theRunners.length;
+			int theStart = next_victim(theCount);
+
+			for(int i = 0; i < theCount && theTask == null; ++i) {
+				FJTaskRunner theVictim = theRunners[(theStart + i) % theCount];
+				if(theVictim != this) {
+					theTask = theVictim.steal();
+				}
+			}
+		}
+
+		return theTask;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		run_task
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run a task. An exception thrown by the task is reported to the uncaught
+	 * exception handler of this thread, and does not stop the runner.
+	 */
+	private void run_task(FJTask inTask) {
+		try {
+			FJTask.invoke(inTask);
+		}
+		catch(Throwable ex) {
+			getUncaughtExceptionHandler().uncaughtException(this, ex);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_victim
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return a pseudo random index in [0, inCount), from a xorshift generator.
+	 */
+	private int next_victim(int inCount) {
+		int theSeed = fSeed;
+
+		theSeed ^= theSeed << 13;
+		theSeed ^= theSeed >>> 17;
+		theSeed ^= theSeed << 5;
+		fSeed = theSeed;
+
+		return (theSeed & 0x7FFFFFFF) % inCount;
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
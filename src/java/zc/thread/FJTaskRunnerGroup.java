@@ -0,0 +1,270 @@
+// ----------------------------------------------------------------------------
+//  FJTaskRunnerGroup.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.LinkedList;
+
+
+// ----------------------------------------------------------------------------
+//		FJTaskRunnerGroup - class
+// ----------------------------------------------------------------------------
+/**
+ * A fixed set of {@link FJTaskRunner} threads that run {@link FJTask}s.
+ * <p>
+ * The tasks submitted from outside the group are put in a FIFO entry queue;
+ * the tasks forked by a task are pushed on the deque of the runner that forks
+ * them, and stolen by the idle runners. Thus the runners only contend on a
+ * lock for the entry queue and for sleeping, never for the forked tasks.
+ * <pre>
+ * FJTaskRunnerGroup theGroup = new FJTaskRunnerGroup(Runtime.getRuntime().availableProcessors());
+ * theGroup.invoke(new SumTask(theArray, 0, theArray.length));
+ * </pre>
+ * The runners are daemon threads, started by the constructor and stopped
+ * by <code>interruptAll</code>.
+ * <p>
+ * The interface follows the <code>FJTaskRunnerGroup</code> of Doug Lea's
+ * util.concurrent package.
+ *
+ * @see FJTask
+ * @see FJTaskRunner
+ */
+public class FJTaskRunnerGroup {
+
+	final FJTaskRunner[] fRunners;
+
+	/** The tasks started on the group, guarded by this. */
+	private final LinkedList fEntries = new LinkedList();
+	/** The size of fEntries, read without the lock. */
+	private volatile int fEntryCount = 0;
+	/** The number of runners sleeping, or about to sleep, in await_work. */
+	private volatile int fIdleCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		FJTaskRunnerGroup - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a FJTaskRunnerGroup and start its threads.
+	 * @param inThreadCount the number of threads, usually the number of processors.
+	 * @exception IllegalArgumentException if inThreadCount is less than one.
+	 */
+	public FJTaskRunnerGroup(int inThreadCount) {
+		if(inThreadCount < 1) {
+			throw new IllegalArgumentException("illegal thread count " + inThreadCount);
+		}
+
+		fRunners = new FJTaskRunner[inThreadCount];
+
+		for(int i = 0; i < inThreadCount; ++i) {
+			fRunners[i] = new FJTaskRunner(this, i);
+			fRunners[i].setDaemon(true);
+		}
+
+		for(int i = 0; i < inThreadCount; ++i) {
+			fRunners[i].start();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the number of threads in this group.
+	 */
+	public int size() {
+		return fRunners.length;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		execute
+	// ----------------------------------------------------------------------------
+	/**
+	 * Arrange for the given command to be run by a thread of this group.
+	 * @param inCommand the command to run.
+	 * @exception IllegalArgumentException if inCommand is null.
+	 */
+	public void execute(Runnable inCommand) {
+		if(inCommand == null) {
+			throw new IllegalArgumentException("null command");
+		}
+
+		executeTask(new FJTask.Wrap(inCommand));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		executeTask
+	// ----------------------------------------------------------------------------
+	/**
+	 * Arrange for the given task to be run by a thread of this group, in FIFO
+	 * order with the other tasks executed on this group.
+	 * @param inTask the task to run.
+	 * @exception IllegalArgumentException if inTask is null.
+	 */
+	public void executeTask(FJTask inTask) {
+		if(inTask == null) {
+			throw new IllegalArgumentException("null task");
+		}
+
+		synchronized(this) {
+			fEntries.addLast(inTask);
+			fEntryCount = fEntries.size();
+
+			if(fIdleCount > 0) {
+				notify();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		invoke
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the given task on this group, and wait for its completion. Called
+	 * from a thread of this group, the task is run directly by this thread.
+	 * @param inTask the task to run.
+	 * @exception InterruptedException if the calling thread is interrupted
+	 * while waiting; the task still runs to completion.
+	 */
+	public void invoke(final FJTask inTask) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Thread theThread = Thread.currentThread();
+
+		if(theThread instanceof FJTaskRunner && ((FJTaskRunner)theThread).getGroup() == this) {
+			FJTask.invoke(inTask);
+			return;
+		}
+
+		final Latch theLatch = new Latch();
+
+		executeTask(new FJTask() {
+			public void run() {
+				try {
+					FJTask.invoke(inTask);
+				}
+				finally {
+					theLatch.fire();
+				}
+			}
+		});
+
+		theLatch.await();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		interruptAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Interrupt all the threads of this group. Each thread stops once it has
+	 * completed its current task; the tasks not yet run are discarded.
+	 */
+	public void interruptAll() {
+		for(int i = 0; i < fRunners.length; ++i) {
+			fRunners[i].interrupt();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll_entry
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove the oldest task of the entry queue.
+	 * @return a task, or null if none.
+	 */
+	FJTask poll_entry() {
+		if(fEntryCount == 0) {
+			return null;
+		}
+
+		synchronized(this) {
+			if(fEntries.isEmpty()) {
+				return null;
+			}
+
+			FJTask theTask = (FJTask)fEntries.removeFirst();
+			fEntryCount = fEntries.size();
+			return theTask;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal_work
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up an idle runner, if any, after a task has been forked.
+	 */
+	void signal_work() {
+		// The fork has written the deque before reading fIdleCount, and an
+		// idle runner has written fIdleCount before looking at the deques:
+		// either it sees the task, or we see it.
+		if(fIdleCount > 0) {
+			synchronized(this) {
+				notify();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await_work
+	// ----------------------------------------------------------------------------
+	/**
+	 * Sleep until some task is executed or forked. Called by a runner that
+	 * found nothing to run.
+	 */
+	synchronized void await_work() throws InterruptedException {
+		++fIdleCount;
+
+		try {
+			if(!has_work()) {
+				wait();
+			}
+		}
+		finally {
+			--fIdleCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		has_work
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if some task is waiting to be run, in the entry queue or in the
+	 * deque of a runner.
+	 */
+	private boolean has_work() {
+		if(fEntryCount > 0) {
+			return true;
+		}
+
+		for(int i = 0; i < fRunners.length; ++i) {
+			if(fRunners[i].hasTasks()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("FJTaskRunnerGroup(");
+
+		theResult.append("#=").append(fRunners.length);
+		theResult.append(",i=").append(fIdleCount);
+		theResult.append(",e=").append(fEntryCount);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
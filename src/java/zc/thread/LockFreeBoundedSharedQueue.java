@@ -0,0 +1,431 @@
+// ----------------------------------------------------------------------------
+//  LockFreeBoundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+// ----------------------------------------------------------------------------
+//		LockFreeBoundedSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A bounded SharedQueue for many <i>Producers</i> and many <i>Consumers</i>
+ * that does not serialize them through a monitor.
+ * <p>
+ * Each slot of the ring carries a sequence number telling whether the slot is
+ * free for the Producer of a given lap or ready for the Consumer of that lap.
+ * Producers and Consumers claim their slot with a single compare-and-set on the
+ * enqueue or dequeue cursor, then fill or empty it without any further
+ * synchronization. Producers never contend with Consumers, except on the very
+ * same slot.
+ * <p>
+ * A thread is blocked only when the queue is full (Producers) or empty
+ * (Consumers).
+ * <p>
+ * The ring length is the capacity rounded up to the next power of two; when
+ * they differ, a Producer also checks the distance between the two cursors,
+ * so that the queue never holds more than its capacity.
+ *
+ * @see BoundedSharedQueue
+ */
+public class LockFreeBoundedSharedQueue implements SharedQueue {
+
+	protected final int fCapacity;
+	protected final int fMask;
+	protected final Object[] fRing;
+
+	/** The per slot sequence: equals the lap position when free, the position+1 when ready. */
+	private final AtomicLongArray fSequences;
+	private final AtomicLong fEnqueuePos = new AtomicLong(0);
+	private final AtomicLong fDequeuePos = new AtomicLong(0);
+
+	protected final WaitStrategy fWaitStrategy;
+	private final WaitSet fNotEmpty = new WaitSet();
+	private final WaitSet fNotFull = new WaitSet();
+
+	private final WaitSet.Condition fNotEmptyCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			long thePos = fDequeuePos.get();
+			return fSequences.get((int)thePos & fMask) == thePos + 1;
+		}
+	};
+
+	private final WaitSet.Condition fNotFullCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			long thePos = fEnqueuePos.get();
+			return fSequences.get((int)thePos & fMask) == thePos && !is_full(thePos);
+		}
+	};
+
+
+	// ----------------------------------------------------------------------------
+	//		LockFreeBoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a LockFreeBoundedSharedQueue with the given capacity.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one or
+	 * greater than 2^30.
+	 */
+	public LockFreeBoundedSharedQueue(int inMaxCapacity) {
+		this(inMaxCapacity, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		LockFreeBoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a LockFreeBoundedSharedQueue with the given capacity and the
+	 * given wait strategy.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one or
+	 * greater than 2^30, or if inWaitStrategy is null.
+	 */
+	public LockFreeBoundedSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		if(inMaxCapacity < 1 || inMaxCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+		if(inWaitStrategy == null) {
+			throw new IllegalArgumentException("null wait strategy");
+		}
+
+		int theLength = 1;
+		while(theLength < inMaxCapacity) {
+			theLength <<= 1;
+		}
+
+		fCapacity = inMaxCapacity;
+		fMask = theLength - 1;
+		fRing = new Object[theLength];
+		fSequences = new AtomicLongArray(theLength);
+		fWaitStrategy = inWaitStrategy;
+
+		for(int i = 0; i < theLength; ++i) {
+			fSequences.set(i, i);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		LockFreeBoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a LockFreeBoundedSharedQueue of {@link BoundedSharedQueue#LARGE_CAPACITY} objects.
+	 */
+	public LockFreeBoundedSharedQueue() {
+		this(BoundedSharedQueue.LARGE_CAPACITY);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * All waiting Producers will be notified.
+	 * <p>
+	 * Objects added concurrently with the call may or may not be removed.
+	 */
+	public void clear() {
+		while(poll() != null) {
+			// Discard the object.
+		}
+
+		// Notify threads that are waiting for a free slot.
+		fNotFull.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		while(!offer(inObject)) {
+			// The queue is full, wait until a Consumer frees a slot.
+			fWaitStrategy.await(fNotFullCondition, fNotFull);
+		}
+
+		// Notify the threads that are waiting for available object.
+		fNotEmpty.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Object theObject;
+		while((theObject = poll()) == null) {
+			// The queue is empty, wait until a Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		// Notify the threads that are waiting for a free slot.
+		fNotFull.signalAll();
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Each object claims its own slot, but the waiting Consumers are notified
+	 * only once for all the objects enqueued in a row. Objects enqueued
+	 * concurrently by other Producers may be interleaved.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		int theEnd = inOffset + inLength;
+
+		while(inOffset < theEnd) {
+			int theStart = inOffset;
+
+			while(inOffset < theEnd && offer(inObjects[inOffset])) {
+				++inOffset;
+			}
+
+			if(inOffset > theStart) {
+				// Notify the threads that are waiting for available object.
+				fNotEmpty.signalAll();
+			}
+
+			if(inOffset < theEnd) {
+				// The queue is full, wait until a Consumer frees a slot.
+				fWaitStrategy.await(fNotFullCondition, fNotFull);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		int theCount;
+		while((theCount = poll(outObjects)) == 0) {
+			// The queue is empty, wait until a Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		// Notify the threads that are waiting for a free slot.
+		fNotFull.signalAll();
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		int theCount = 0;
+		Object theObject;
+
+		while(theCount < inMaxCount && (theObject = poll()) != null) {
+			outCollection.add(theObject);
+			++theCount;
+		}
+
+		if(theCount > 0) {
+			// Notify the threads that are waiting for a free slot.
+			fNotFull.signalAll();
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	public int capacity() {
+		return fCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		long theDequeuePos = fDequeuePos.get();
+		long theSize = fEnqueuePos.get() - theDequeuePos;
+
+		// The two cursors are not read atomically, clamp the result.
+		if(theSize < 0) {
+			return 0;
+		}
+		if(theSize > fCapacity) {
+			return fCapacity;
+		}
+		return (int)theSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Claim the next free slot and put an object into it.
+	 * @return false if the queue is full.
+	 */
+	private boolean offer(Object inObject) {
+		long thePos = fEnqueuePos.get();
+
+		for(;;) {
+			int theIndex = (int)thePos & fMask;
+			long theDelta = fSequences.get(theIndex) - thePos;
+
+			if(theDelta == 0) {
+				if(is_full(thePos)) {
+					// The ring has room, but not the queue.
+					return false;
+				}
+
+				// The slot is free for this lap, try to claim it.
+				if(fEnqueuePos.compareAndSet(thePos, thePos + 1)) {
+					fRing[theIndex] = inObject;
+					// Publish the slot to the Consumer of this lap.
+					fSequences.set(theIndex, thePos + 1);
+					return true;
+				}
+				thePos = fEnqueuePos.get();
+			}
+			else if(theDelta < 0) {
+				// The slot still holds the object of the previous lap.
+				return false;
+			}
+			else {
+				// Another Producer claimed the slot, move on.
+				thePos = fEnqueuePos.get();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Claim the oldest ready slot and remove the object from it.
+	 * @return the oldest object, or null if the queue is empty.
+	 */
+	private Object poll() {
+		long thePos = fDequeuePos.get();
+
+		for(;;) {
+			int theIndex = (int)thePos & fMask;
+			long theDelta = fSequences.get(theIndex) - (thePos + 1);
+
+			if(theDelta == 0) {
+				// The slot is ready for this lap, try to claim it.
+				if(fDequeuePos.compareAndSet(thePos, thePos + 1)) {
+					Object theObject = fRing[theIndex];
+					fRing[theIndex] = null;	// For the garbage collector.
+					// Give the slot back to the Producer of the next lap.
+					fSequences.set(theIndex, thePos + fMask + 1);
+					return theObject;
+				}
+				thePos = fDequeuePos.get();
+			}
+			else if(theDelta < 0) {
+				// The slot has not been filled yet.
+				return null;
+			}
+			else {
+				// Another Consumer claimed the slot, move on.
+				thePos = fDequeuePos.get();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove as many of the oldest objects as available, up to the array length.
+	 * @return the number of objects removed, zero if the queue is empty.
+	 */
+	private int poll(Object[] outObjects) {
+		int theCount = 0;
+		Object theObject;
+
+		// Never write past the objects removed.
+		while(theCount < outObjects.length && (theObject = poll()) != null) {
+			outObjects[theCount++] = theObject;
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		is_full
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if the queue holds its capacity when the enqueue cursor is at the
+	 * given position. Only a ring longer than the capacity needs the check:
+	 * the dequeue cursor only moves forward, so the distance is never
+	 * underestimated.
+	 */
+	private boolean is_full(long inEnqueuePos) {
+		return fCapacity < fRing.length && inEnqueuePos - fDequeuePos.get() >= fCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("LockFreeBoundedSharedQueue(");
+
+		theResult.append("p=").append(fEnqueuePos.get());
+		theResult.append(",g=").append(fDequeuePos.get());
+		theResult.append(",c=").append(fCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,360 @@
+// ----------------------------------------------------------------------------
+//  LockFreeUnboundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+
+// ----------------------------------------------------------------------------
+//		LockFreeUnboundedSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue that have no maximum capacity and that never blocks its
+ * <i>Producers</i>.
+ * <p>
+ * This is the linked queue of Michael and Scott: the objects are held in a
+ * singly linked list of nodes, Producers append a node at the tail and
+ * Consumers unlink the node at the head, each with a compare-and-set. There is
+ * no lock at all, a Producer or a Consumer that is suspended in the middle of
+ * an operation cannot prevent the others from progressing.
+ * <p>
+ * <code>{@link #remove}</code> keeps its blocking semantics: a Consumer is parked
+ * when, and only when, the queue is empty.
+ * <p>
+ * <b>Keep in mind</b> that an unbounded queue can grow until the memory is
+ * exhausted if the Producers are faster than the Consumers.
+ *
+ * @see UnboundedSharedQueue
+ * @see "Simple, Fast, and Practical Non-Blocking and Blocking Concurrent Queue Algorithms, M. Michael and M. Scott, 1996"
+ */
+public class LockFreeUnboundedSharedQueue implements SharedQueue {
+
+	private final static AtomicReferenceFieldUpdater fHeadUpdater =
+		AtomicReferenceFieldUpdater.newUpdater(LockFreeUnboundedSharedQueue.class, Node.class, "fHead");
+	private final static AtomicReferenceFieldUpdater fTailUpdater =
+		AtomicReferenceFieldUpdater.newUpdater(LockFreeUnboundedSharedQueue.class, Node.class, "fTail");
+	private final static AtomicReferenceFieldUpdater fNextUpdater =
+		AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "fNext");
+
+	/** The dummy node preceding the oldest object. */
+	private volatile Node fHead;
+	/** The last node, or a node close to the last one. */
+	private volatile Node fTail;
+
+	private final AtomicInteger fObjectCount = new AtomicInteger(0);
+
+	protected final WaitStrategy fWaitStrategy;
+	private final WaitSet fNotEmpty = new WaitSet();
+
+	private final WaitSet.Condition fNotEmptyCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fHead.fNext != null;
+		}
+	};
+
+
+	// ----------------------------------------------------------------------------
+	//		Node - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A link of the list.
+	 */
+	private final static class Node {
+		volatile Object fObject;
+		volatile Node fNext;
+
+		// ----------------------------------------------------------------------------
+		//		Node - constructor
+		// ----------------------------------------------------------------------------
+		Node(Object inObject) {
+			fObject = inObject;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		LockFreeUnboundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an empty LockFreeUnboundedSharedQueue.
+	 */
+	public LockFreeUnboundedSharedQueue() {
+		this(WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		LockFreeUnboundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an empty LockFreeUnboundedSharedQueue with the given wait strategy.
+	 * @param inWaitStrategy how the Consumers wait.
+	 * @exception IllegalArgumentException if inWaitStrategy is null.
+	 */
+	public LockFreeUnboundedSharedQueue(WaitStrategy inWaitStrategy) {
+		if(inWaitStrategy == null) {
+			throw new IllegalArgumentException("null wait strategy");
+		}
+
+		fHead = fTail = new Node(null);
+		fWaitStrategy = inWaitStrategy;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * <p>
+	 * Objects added concurrently with the call may or may not be removed.
+	 */
+	public void clear() {
+		while(poll() != null) {
+			// Discard the object.
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add an object into this SharedQueue and notify waiting threads.
+	 * Never blocks.
+	 * @param inObject the object to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted.
+	 * @exception IllegalArgumentException if inObject is null.
+	 */
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		Node theNode = new Node(inObject);
+		append(theNode, theNode, 1);
+
+		// Notify the threads that are waiting for available object.
+		fNotEmpty.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Object theObject;
+		while((theObject = poll()) == null) {
+			// The queue is empty, wait until a Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The objects are linked together beforehand and appended to the queue
+	 * with a single compare-and-set, thus they are never interleaved with
+	 * objects of other Producers. Never blocks.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		if(inLength == 0) {
+			return;
+		}
+
+		Node theFirst = new Node(inObjects[inOffset]);
+		Node theLast = theFirst;
+
+		for(int i = inOffset + 1; i < inOffset + inLength; ++i) {
+			theLast = theLast.fNext = new Node(inObjects[i]);
+		}
+
+		append(theFirst, theLast, inLength);
+
+		// Notify the threads that are waiting for available object.
+		fNotEmpty.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		while((outObjects[0] = poll()) == null) {
+			// The queue is empty, wait until a Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		int theCount = 1;
+		while(theCount < outObjects.length && (outObjects[theCount] = poll()) != null) {
+			++theCount;
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		int theCount = 0;
+		Object theObject;
+
+		while(theCount < inMaxCount && (theObject = poll()) != null) {
+			outCollection.add(theObject);
+			++theCount;
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return <code>Integer.MAX_VALUE</code>, an unbounded queue is never full.
+	 * @return an int.
+	 */
+	public int capacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		// The counter is adjusted after the list, it may be transiently negative.
+		return Math.max(fObjectCount.get(), 0);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		return fHead.fNext == null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return false, an unbounded queue is never full.
+	 * @return a boolean.
+	 */
+	public boolean isFull() {
+		return false;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		append
+	// ----------------------------------------------------------------------------
+	/**
+	 * Link a chain of nodes after the last node of the list.
+	 * @param inFirst the first node of the chain.
+	 * @param inLast the last node of the chain.
+	 * @param inCount the number of nodes of the chain.
+	 */
+	private void append(Node inFirst, Node inLast, int inCount) {
+		for(;;) {
+			Node theTail = fTail;
+			Node theNext = theTail.fNext;
+
+			if(theTail == fTail) {
+				if(theNext == null) {
+					// theTail is the last node, try to link the chain after it.
+					if(fNextUpdater.compareAndSet(theTail, null, inFirst)) {
+						// Swing the tail, failure means another thread already did.
+						fTailUpdater.compareAndSet(this, theTail, inLast);
+						break;
+					}
+				}
+				else {
+					// The tail is lagging behind, help to advance it.
+					fTailUpdater.compareAndSet(this, theTail, theNext);
+				}
+			}
+		}
+
+		fObjectCount.addAndGet(inCount);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Unlink the oldest object if there is one.
+	 * @return the oldest object, or null if the queue is empty.
+	 */
+	private Object poll() {
+		for(;;) {
+			Node theHead = fHead;
+			Node theTail = fTail;
+			Node theNext = theHead.fNext;
+
+			if(theHead == fHead) {
+				if(theNext == null) {
+					return null;
+				}
+
+				if(theHead == theTail) {
+					// The tail is lagging behind, help to advance it.
+					fTailUpdater.compareAndSet(this, theTail, theNext);
+				}
+				else {
+					// Read the object before the node becomes the new dummy.
+					Object theObject = theNext.fObject;
+
+					if(fHeadUpdater.compareAndSet(this, theHead, theNext)) {
+						theNext.fObject = null;	// For the garbage collector.
+						fObjectCount.decrementAndGet();
+						return theObject;
+					}
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("LockFreeUnboundedSharedQueue(");
+
+		theResult.append("#=").append(size());
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,289 @@
+// ----------------------------------------------------------------------------
+//  LongSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		LongSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A bounded SharedQueue of <code>long</code> values.
+ * <p>
+ * The values are held in a <code>long[]</code> ring, they are never boxed into
+ * <code>Long</code> objects, thus transferring a value does not allocate
+ * memory. Apart from the element type, a LongSharedQueue has exactly the
+ * blocking semantics of a {@link BoundedSharedQueue}:
+ * <code>{@link #add}</code> blocks when the queue is full and
+ * <code>{@link #remove}</code> blocks when the queue is empty.
+ *
+ * @see LongSharedQueue
+ * @see BoundedSharedQueue
+ */
+public class LongSharedQueue {
+
+	protected final int fMaxCapacity;
+	protected final long[] fQueue;
+	private volatile int fObjectCount = 0;
+	private int fPutCursor = 0, fGetCursor = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		LongSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a LongSharedQueue with the given maximum capacity.
+	 * @param inMaxCapacity the maximum number of values that this queue can
+	 * contain before blocking.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public LongSharedQueue(int inMaxCapacity) {
+		if(inMaxCapacity < 1) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+
+		fMaxCapacity = inMaxCapacity;
+		fQueue = new long[inMaxCapacity];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		LongSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a LongSharedQueue of {@link BoundedSharedQueue#LARGE_CAPACITY} values.
+	 */
+	public LongSharedQueue() {
+		this(BoundedSharedQueue.LARGE_CAPACITY);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the values from this queue.
+	 * All waiting threads will be notified.
+	 */
+	public synchronized void clear() {
+		fObjectCount = fPutCursor = fGetCursor = 0;
+
+		// Notify threads that are waiting for a free slot.
+		this.notifyAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add a value into this queue and notify waiting threads.
+	 * May block the calling thread if the queue has reach its maximum capacity.
+	 * @param inValue the value to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public void add(long inValue) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		synchronized(this) {
+			while(fObjectCount >= fMaxCapacity) {
+				this.wait();
+			}
+
+			fQueue[fPutCursor] = inValue;
+			fPutCursor = (fPutCursor + 1) % fMaxCapacity;
+			++fObjectCount;
+
+			// Notify the threads that are waiting for available value.
+			this.notifyAll();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove and return the oldest value from this queue and notify waiting threads.
+	 * May block the calling thread if the queue is empty.
+	 * @return the oldest value in the queue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public long remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		synchronized(this) {
+			while(fObjectCount == 0) {
+				this.wait();
+			}
+
+			long theValue = fQueue[fGetCursor];
+			fGetCursor = (fGetCursor + 1) % fMaxCapacity;
+			--fObjectCount;
+
+			// Notify the threads that are waiting for a free slot.
+			this.notifyAll();
+
+			return theValue;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add a range of values into this queue, in order, and notify waiting threads.
+	 * As many values as there are free slots are copied at once, then the calling
+	 * thread blocks until more slots are made available, if needed.
+	 * @param inValues the array holding the values to enqueue.
+	 * @param inOffset the index of the first value to enqueue.
+	 * @param inLength the number of values to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * In that case the values that were already enqueued stay in the queue.
+	 * @exception IndexOutOfBoundsException if the range does not fit in the array.
+	 */
+	public void addAll(long[] inValues, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inOffset < 0 || inLength < 0 || inOffset > inValues.length - inLength) {
+			throw new IndexOutOfBoundsException("range [" + inOffset + ", " + (inOffset + inLength) + "[ out of [0, " + inValues.length + "[");
+		}
+
+		while(inLength > 0) {
+			int theCount;
+
+			synchronized(this) {
+				while(fObjectCount >= fMaxCapacity) {
+					this.wait();
+				}
+
+				// Copy as many values as there are free slots, in at most two moves.
+				theCount = Math.min(inLength, fMaxCapacity - fObjectCount);
+				int theFirstPart = Math.min(theCount, fMaxCapacity - fPutCursor);
+
+				System.arraycopy(inValues, inOffset, fQueue, fPutCursor, theFirstPart);
+				System.arraycopy(inValues, inOffset + theFirstPart, fQueue, 0, theCount - theFirstPart);
+
+				fPutCursor = (fPutCursor + theCount) % fMaxCapacity;
+				fObjectCount += theCount;
+
+				this.notifyAll();
+			}
+
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove as many values as available, up to the length of the given array,
+	 * and notify waiting threads.
+	 * May block the calling thread until at least one value is available.
+	 * @param outValues the array receiving the removed values, from index zero,
+	 * the oldest value first.
+	 * @return the number of values removed, which is zero only for an empty array.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public int removeAll(long[] outValues) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outValues.length == 0) {
+			return 0;
+		}
+
+		synchronized(this) {
+			while(fObjectCount == 0) {
+				this.wait();
+			}
+
+			// Copy as many values as available, in at most two moves.
+			int theCount = Math.min(outValues.length, fObjectCount);
+			int theFirstPart = Math.min(theCount, fMaxCapacity - fGetCursor);
+
+			System.arraycopy(fQueue, fGetCursor, outValues, 0, theFirstPart);
+			System.arraycopy(fQueue, 0, outValues, theFirstPart, theCount - theFirstPart);
+
+			fGetCursor = (fGetCursor + theCount) % fMaxCapacity;
+			fObjectCount -= theCount;
+
+			this.notifyAll();
+
+			return theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the maximum number of values that can be held in this queue.
+	 * @return an int > zero.
+	 */
+	public int capacity() {
+		return fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of values currently enqueued.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int >= zero.
+	 */
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this queue is currently empty.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this queue is currently full.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public synchronized String toString() {
+		StringBuffer theResult = new StringBuffer("LongSharedQueue(");
+
+		theResult.append("p=").append(fPutCursor);
+		theResult.append(",g=").append(fGetCursor);
+		theResult.append(",#=").append(fObjectCount);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -13,6 +13,9 @@ package zc.thread;
  * some other thread can acquire the mutex at its turn. Mutex can be useful in constructions that cannot be
  * expressed using java synchronized blocks because the acquire/release pairs do not occur in the same method
  * or code block.
+ * <p>
+ * A Mutex built in the parking mode of {@link WaitSet} parks its waiting threads, it never blocks them while
+ * holding a monitor.
  * 
  * @see Semaphore
  * @see FIFOSemaphore
@@ -30,6 +33,17 @@ public class Mutex implements Lock {
 	 */
 	protected volatile int fCount = 0;
 
+	/**
+	 * The threads waiting for this mutex, in the parking mode.
+	 */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fFree = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fOwner == null;
+		}
+	};
+
 
 	/**
 	 * Acquire this mutex.
@@ -47,6 +61,14 @@ public class Mutex implements Lock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_acquire()) {
+				fWaitSet.await(fFree);
+			}
+
+			return;
+		}
+
 		synchronized(this) {
 			while(fOwner != null && fOwner != Thread.currentThread()) {
 				this.wait();
@@ -69,6 +91,20 @@ public class Mutex implements Lock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			long theDeadline = System.currentTimeMillis() + msecs;
+
+			while(!try_acquire()) {
+				long theRemaining = theDeadline - System.currentTimeMillis();
+
+				if(theRemaining <= 0 || !fWaitSet.await(fFree, theRemaining)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
 		synchronized(this) {
 			// This mutex is not yet owned by anyone or already owned
 			// by the current thread itself, acquire it immediately.
@@ -111,11 +147,15 @@ public class Mutex implements Lock {
 		}
 
 		synchronized(this) {
-			if((--fCount) == 0) {
-				fOwner = null;
-				this.notifyAll();
+			if((--fCount) != 0) {
+				return;
 			}
+
+			fOwner = null;
+			this.notifyAll();
 		}
+
+		fWaitSet.signal();
 	}
 
 	/**
@@ -136,6 +176,21 @@ public class Mutex implements Lock {
 	public Thread getOwner() {
 		return fOwner;
 	}
+
+	/**
+	 * Acquire this mutex if it is free or already owned by the current thread. Never block.
+	 * 
+	 * @return true if this mutex has been acquired.
+	 */
+	private synchronized boolean try_acquire() {
+		if(fOwner != null && fOwner != Thread.currentThread()) {
+			return false;
+		}
+
+		fOwner = Thread.currentThread();
+		++fCount;
+		return true;
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----
@@ -0,0 +1,692 @@
+// ----------------------------------------------------------------------------
+//  PersistentSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+// ----------------------------------------------------------------------------
+//		PersistentSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue whose objects are journaled to memory mapped files, so that
+ * the objects still pending when the JVM stops are recovered by the next
+ * PersistentSharedQueue opened on the same directory.
+ * <p>
+ * The objects are encoded by a {@link PersistentSharedQueue.Codec} and appended
+ * to a <i>segment</i> file of fixed size. When a segment is full, a new one is
+ * started (rollover); when the Consumers have read past the end of a segment,
+ * the segment file is deleted. The position of the oldest pending object is
+ * kept in a separate <i>cursor</i> file, also memory mapped.
+ * <p>
+ * The files are written through the memory mapping, thus an object is safe
+ * from a crash of the JVM as soon as <code>add</code> returns, without any
+ * system call. Forcing the pages to the disk, which protects against a crash
+ * of the operating system, is only done every <code>inFlushInterval</code>
+ * operations and on <code>{@link #flush}</code> and <code>{@link #close}</code>.
+ * <p>
+ * An object is delivered <i>at least</i> once: after a crash of the operating
+ * system, the objects removed since the last flush are delivered again.
+ * <p>
+ * The pending objects are decoded once when the queue is opened: the
+ * records that cannot be decoded, e.g. after a change of their class, are
+ * marked as skipped and not counted, so that a Consumer never stumbles on
+ * them.
+ * <p>
+ * A directory must not be used by two PersistentSharedQueue at the same time.
+ *
+ * @see BoundedSharedQueue
+ */
+public class PersistentSharedQueue extends AbstractSharedQueue {
+
+	public final static int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+	public final static int DEFAULT_FLUSH_INTERVAL = 1024;
+
+	/** Record header of the free space at the end of the written records. */
+	private final static int END_OF_DATA = 0;
+	/** Record header telling that the next record is in the next segment. */
+	private final static int END_OF_SEGMENT = -1;
+	/** Record header of a record that cannot be decoded, less its length. */
+	private final static int SKIPPED = -2;
+
+	private final static String SEGMENT_PREFIX = "segment-";
+	private final static String SEGMENT_SUFFIX = ".dat";
+	private final static String CURSOR_NAME = "cursor.dat";
+
+	protected final File fDirectory;
+	protected final int fSegmentSize;
+	protected final int fFlushInterval;
+	protected final Codec fCodec;
+
+	/** The segment being read, may be the same as fWriteSegment. */
+	private Segment fReadSegment;
+	private int fReadPosition;
+	/** The segment being appended to. */
+	private Segment fWriteSegment;
+	private int fWritePosition;
+
+	/**
+	 * The persisted read cursor, written at once as a single long: the segment
+	 * number in the high half, the position in the low half.
+	 */
+	private MappedByteBuffer fCursor;
+
+	private volatile int fObjectCount = 0;
+	private int fUnflushedCount = 0;
+	private boolean fClosed = false;
+
+
+	// ----------------------------------------------------------------------------
+	//		Codec - interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * Converts the objects of a PersistentSharedQueue to and from bytes.
+	 */
+	public interface Codec {
+		public byte[] encode(Object inObject) throws IOException;
+		public Object decode(byte[] inBytes) throws IOException;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		SerializableCodec - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * The default Codec, that relies on Java serialization.
+	 */
+	public static class SerializableCodec implements Codec {
+
+		// ----------------------------------------------------------------------------
+		//		encode
+		// ----------------------------------------------------------------------------
+		public byte[] encode(Object inObject) throws IOException {
+			ByteArrayOutputStream theBytes = new ByteArrayOutputStream();
+			ObjectOutputStream theStream = new ObjectOutputStream(theBytes);
+
+			theStream.writeObject(inObject);
+			theStream.close();
+
+			return theBytes.toByteArray();
+		}
+
+		// ----------------------------------------------------------------------------
+		//		decode
+		// ----------------------------------------------------------------------------
+		public Object decode(byte[] inBytes) throws IOException {
+			ObjectInputStream theStream = new ObjectInputStream(new ByteArrayInputStream(inBytes));
+
+			try {
+				return theStream.readObject();
+			}
+			catch(ClassNotFoundException ex) {
+				throw new IOException("cannot decode object: " + ex.getMessage());
+			}
+			finally {
+				theStream.close();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		Segment - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A mapped segment file.
+	 */
+	private final static class Segment {
+		final long fNumber;
+		final File fFile;
+		final MappedByteBuffer fBuffer;
+
+		// ----------------------------------------------------------------------------
+		//		Segment - constructor
+		// ----------------------------------------------------------------------------
+		Segment(long inNumber, File inFile, MappedByteBuffer inBuffer) {
+			fNumber = inNumber;
+			fFile = inFile;
+			fBuffer = inBuffer;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		PersistentSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Open the PersistentSharedQueue journaled in the given directory, and
+	 * recover the objects that it holds, if any.
+	 * @param inDirectory the directory holding the segment and cursor files,
+	 * created if needed.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inSegmentSize the size of a segment file, in bytes. An encoded
+	 * object must be at least 8 bytes smaller.
+	 * @param inFlushInterval the number of operations between two forced
+	 * writes to the disk, zero to only force them on flush and close.
+	 * @param inCodec the Codec of the objects.
+	 * @exception IOException if the files cannot be opened or created.
+	 * @exception IllegalArgumentException if an argument is illegal.
+	 */
+	public PersistentSharedQueue(File inDirectory, int inMaxCapacity, int inSegmentSize, int inFlushInterval, Codec inCodec) throws IOException {
+		super(inMaxCapacity);
+
+		if(inDirectory == null || inCodec == null) {
+			throw new IllegalArgumentException("null directory or codec");
+		}
+		if(inSegmentSize < 64) {
+			throw new IllegalArgumentException("illegal segment size " + inSegmentSize);
+		}
+		if(inFlushInterval < 0) {
+			throw new IllegalArgumentException("illegal flush interval " + inFlushInterval);
+		}
+		if(!inDirectory.isDirectory() && !inDirectory.mkdirs()) {
+			throw new IOException("cannot create directory " + inDirectory);
+		}
+
+		fDirectory = inDirectory;
+		fSegmentSize = inSegmentSize;
+		fFlushInterval = inFlushInterval;
+		fCodec = inCodec;
+
+		recover();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		PersistentSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Open a PersistentSharedQueue with the default segment size, flush
+	 * interval and Codec.
+	 * @see #PersistentSharedQueue(File, int, int, int, PersistentSharedQueue.Codec)
+	 */
+	public PersistentSharedQueue(File inDirectory, int inMaxCapacity) throws IOException {
+		this(inDirectory, inMaxCapacity, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL, new SerializableCodec());
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue, and delete the segment
+	 * files that are no longer needed.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			check_open();
+
+			while(fReadSegment != fWriteSegment) {
+				next_read_segment();
+			}
+
+			fReadPosition = fWritePosition;
+			fObjectCount = 0;
+			save_cursor();
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		flush
+	// ----------------------------------------------------------------------------
+	/**
+	 * Force the written objects and the read cursor to the disk.
+	 */
+	public synchronized void flush() {
+		check_open();
+
+		fWriteSegment.fBuffer.force();
+		if(fReadSegment != fWriteSegment) {
+			fReadSegment.fBuffer.force();
+		}
+		fCursor.force();
+
+		fUnflushedCount = 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		close
+	// ----------------------------------------------------------------------------
+	/**
+	 * Flush this SharedQueue and release its files. The pending objects will be
+	 * recovered by the next PersistentSharedQueue opened on the same directory.
+	 * <p>
+	 * Any further operation on this SharedQueue throws an IllegalStateException.
+	 */
+	public synchronized void close() {
+		if(fClosed) {
+			return;
+		}
+
+		flush();
+
+		fClosed = true;
+		fReadSegment = fWriteSegment = null;
+		fCursor = null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Append an encoded object to the write segment, rolling over to a new
+	 * segment if it does not fit.
+	 * @exception IllegalArgumentException if the object cannot be encoded, or
+	 * is too large for a segment.
+	 * @exception IllegalStateException if a new segment cannot be created.
+	 */
+	protected void enqueue(Object inObject) {
+		check_open();
+
+		byte[] theBytes;
+		try {
+			theBytes = fCodec.encode(inObject);
+		}
+		catch(IOException ex) {
+			throw new IllegalArgumentException("cannot encode object: " + ex.getMessage());
+		}
+
+		if(theBytes.length == 0 || theBytes.length > fSegmentSize - 8) {
+			throw new IllegalArgumentException("encoded object of " + theBytes.length + " bytes does not fit in a segment");
+		}
+
+		// Always keep room for the END_OF_SEGMENT header.
+		if(fWritePosition + 4 + theBytes.length + 4 > fSegmentSize) {
+			Segment theSegment;
+			try {
+				theSegment = open_segment(fWriteSegment.fNumber + 1);
+			}
+			catch(IOException ex) {
+				throw new IllegalStateException("cannot roll over: " + ex.getMessage());
+			}
+
+			fWriteSegment.fBuffer.putInt(fWritePosition, END_OF_SEGMENT);
+			fWriteSegment.fBuffer.force();
+			fWriteSegment = theSegment;
+			fWritePosition = 0;
+		}
+
+		MappedByteBuffer theBuffer = fWriteSegment.fBuffer;
+
+		// Write the header last: a record is never seen half written.
+		theBuffer.position(fWritePosition + 4);
+		theBuffer.put(theBytes);
+		theBuffer.putInt(fWritePosition, theBytes.length);
+
+		fWritePosition += 4 + theBytes.length;
+		++fObjectCount;
+
+		count_operation();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Read the oldest object and advance the read cursor, deleting the
+	 * segment files that have been read up to their end. The records that
+	 * cannot be decoded are skipped.
+	 * @exception IllegalStateException if only records added since the queue
+	 * was opened, that the Codec cannot read back, were left. They are
+	 * dropped nevertheless, and the waiting threads woken up.
+	 */
+	protected Object dequeue() {
+		check_open();
+
+		Object theObject = read_object();
+
+		if(theObject == null) {
+			notify_waiters();
+			throw new IllegalStateException("cannot decode object");
+		}
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Read the oldest objects one by one, skipping the records that cannot be
+	 * decoded; stop short rather than fail once some objects have been read,
+	 * so that none of them is lost.
+	 * @exception IllegalStateException if only records added since the queue
+	 * was opened, that the Codec cannot read back, were left.
+	 */
+	protected int dequeue(Object[] outObjects, int inOffset, int inLength) {
+		int theCount = 0;
+
+		while(theCount < inLength) {
+			Object theObject = (theCount == 0) ? dequeue() : read_object();
+
+			if(theObject == null) {
+				break;
+			}
+
+			outObjects[inOffset + theCount++] = theObject;
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		read_object
+	// ----------------------------------------------------------------------------
+	/**
+	 * Read the oldest object that can be decoded and advance the read cursor
+	 * past it, and past the records skipped on the way.
+	 * @return the object, or null if no record that can be decoded is left.
+	 */
+	private Object read_object() {
+		for(;;) {
+			if(fObjectCount == 0) {
+				save_cursor();
+				return null;
+			}
+
+			int theHeader = fReadSegment.fBuffer.getInt(fReadPosition);
+
+			if(theHeader == END_OF_SEGMENT) {
+				next_read_segment();
+				continue;
+			}
+
+			int thePosition = fReadPosition;
+			fReadPosition += 4 + record_length(theHeader);
+
+			if(theHeader < END_OF_SEGMENT) {
+				// Skipped when the queue was opened, thus not counted.
+				continue;
+			}
+
+			Object theObject = decode_record(fReadSegment.fBuffer, thePosition);
+			--fObjectCount;
+
+			if(theObject != null) {
+				save_cursor();
+				count_operation();
+
+				return theObject;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		recover
+	// ----------------------------------------------------------------------------
+	/**
+	 * Map the cursor file and the segment files, delete the segments that were
+	 * already read, then scan the others to count the pending objects and find
+	 * the end of the written records. The pending objects are decoded, and the
+	 * records that cannot be are marked as skipped.
+	 */
+	private void recover() throws IOException {
+		fCursor = map(new File(fDirectory, CURSOR_NAME), 8);
+
+		long theCursor = fCursor.getLong(0);
+		long theCursorNumber = theCursor >>> 32;
+		int theCursorPosition = (int)theCursor;
+
+		long[] theNumbers = list_segments();
+		int theFirst = 0;
+
+		while(theFirst < theNumbers.length && theNumbers[theFirst] < theCursorNumber) {
+			// Read before the last run stopped.
+			new File(fDirectory, segment_name(theNumbers[theFirst++])).delete();
+		}
+
+		if(theFirst == theNumbers.length) {
+			// A new queue, or the cursor segment was never written to.
+			theNumbers = new long[] { theCursorNumber };
+			theFirst = 0;
+		}
+
+		if(theNumbers[theFirst] > theCursorNumber) {
+			// The cursor segment is gone, start with the oldest one.
+			theCursorPosition = 0;
+		}
+
+		Segment theSegment = null;
+
+		for(int i = theFirst; i < theNumbers.length; ++i) {
+			theSegment = open_segment(theNumbers[i]);
+			int thePosition = 0;
+
+			if(fReadSegment == null) {
+				fReadSegment = theSegment;
+				fReadPosition = thePosition = theCursorPosition;
+			}
+
+			int theHeader;
+			while((theHeader = theSegment.fBuffer.getInt(thePosition)) > END_OF_DATA || theHeader < END_OF_SEGMENT) {
+				if(theHeader > END_OF_DATA && decode_record(theSegment.fBuffer, thePosition) != null) {
+					++fObjectCount;
+				}
+				thePosition += 4 + record_length(theHeader);
+			}
+
+			if(theHeader == END_OF_DATA && i < theNumbers.length - 1) {
+				// The marker was lost with the last pages, but a next segment exists.
+				theSegment.fBuffer.putInt(thePosition, END_OF_SEGMENT);
+			}
+
+			fWritePosition = thePosition;
+		}
+
+		fWriteSegment = theSegment;
+
+		save_cursor();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		list_segments
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the numbers of the segment files of the directory, in order.
+	 */
+	private long[] list_segments() {
+		String[] theNames = fDirectory.list();
+		ArrayList theNumbers = new ArrayList();
+
+		for(int i = 0; i < theNames.length; ++i) {
+			String theName = theNames[i];
+
+			if(theName.startsWith(SEGMENT_PREFIX) && theName.endsWith(SEGMENT_SUFFIX)) {
+				try {
+					theNumbers.add(Long.valueOf(theName.substring(SEGMENT_PREFIX.length(), theName.length() - SEGMENT_SUFFIX.length())));
+				}
+				catch(NumberFormatException ex) {
+					// Not one of ours.
+				}
+			}
+		}
+
+		long[] theResult = new long[theNumbers.size()];
+		for(int i = 0; i < theResult.length; ++i) {
+			theResult[i] = ((Long)theNumbers.get(i)).longValue();
+		}
+		Arrays.sort(theResult);
+
+		return theResult;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_read_segment
+	// ----------------------------------------------------------------------------
+	/**
+	 * Move the read cursor to the start of the next segment and delete the
+	 * segment file that has been read.
+	 */
+	private void next_read_segment() {
+		Segment theSegment = fReadSegment;
+
+		if(theSegment.fNumber + 1 == fWriteSegment.fNumber) {
+			fReadSegment = fWriteSegment;
+		}
+		else {
+			try {
+				fReadSegment = open_segment(theSegment.fNumber + 1);
+			}
+			catch(IOException ex) {
+				throw new IllegalStateException("cannot open next segment: " + ex.getMessage());
+			}
+		}
+
+		fReadPosition = 0;
+		save_cursor();
+
+		theSegment.fFile.delete();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		decode_record
+	// ----------------------------------------------------------------------------
+	/**
+	 * Decode the record at the given position, or mark it as skipped if it
+	 * cannot be decoded.
+	 * @return the object, or null if the record cannot be decoded.
+	 */
+	private Object decode_record(MappedByteBuffer inBuffer, int inPosition) {
+		byte[] theBytes = new byte[inBuffer.getInt(inPosition)];
+
+		inBuffer.position(inPosition + 4);
+		inBuffer.get(theBytes);
+
+		try {
+			Object theObject = fCodec.decode(theBytes);
+
+			if(theObject != null) {
+				return theObject;
+			}
+		}
+		catch(IOException ex) {
+			// Skipped below.
+		}
+
+		inBuffer.putInt(inPosition, SKIPPED - theBytes.length);
+
+		return null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		record_length
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the length of the record of the given header, skipped or not.
+	 */
+	private static int record_length(int inHeader) {
+		return inHeader > END_OF_DATA ? inHeader : SKIPPED - inHeader;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		save_cursor
+	// ----------------------------------------------------------------------------
+	private void save_cursor() {
+		// A single aligned write: a crash never leaves half a cursor.
+		fCursor.putLong(0, (fReadSegment.fNumber << 32) | fReadPosition);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		count_operation
+	// ----------------------------------------------------------------------------
+	/**
+	 * Apply the flush policy.
+	 */
+	private void count_operation() {
+		if(fFlushInterval > 0 && ++fUnflushedCount >= fFlushInterval) {
+			flush();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_open
+	// ----------------------------------------------------------------------------
+	private void check_open() {
+		if(fClosed) {
+			throw new IllegalStateException("queue closed");
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		open_segment
+	// ----------------------------------------------------------------------------
+	private Segment open_segment(long inNumber) throws IOException {
+		File theFile = new File(fDirectory, segment_name(inNumber));
+		return new Segment(inNumber, theFile, map(theFile, fSegmentSize));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		segment_name
+	// ----------------------------------------------------------------------------
+	private static String segment_name(long inNumber) {
+		String theNumber = Long.toString(inNumber);
+		return SEGMENT_PREFIX + "0000000000000000".substring(Math.min(theNumber.length(), 16)) + theNumber + SEGMENT_SUFFIX;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		map
+	// ----------------------------------------------------------------------------
+	/**
+	 * Map a file of the given size, creating it zero filled if needed.
+	 * The mapping stays valid after the file is closed.
+	 */
+	private static MappedByteBuffer map(File inFile, int inSize) throws IOException {
+		RandomAccessFile theFile = new RandomAccessFile(inFile, "rw");
+
+		try {
+			return theFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, inSize);
+		}
+		finally {
+			theFile.close();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public synchronized String toString() {
+		StringBuffer theResult = new StringBuffer("PersistentSharedQueue(");
+
+		if(!fClosed) {
+			theResult.append("r=").append(fReadSegment.fNumber).append(':').append(fReadPosition);
+			theResult.append(",w=").append(fWriteSegment.fNumber).append(':').append(fWritePosition);
+			theResult.append(",");
+		}
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -39,10 +39,12 @@ package zc.thread;
  * the sender to the receiver. Consequently the sender should not access a message
  * object after it has been sent through a Channel. If the sender need to reference
  * a message object in the future it should copy it before sending it.
+ * <p>
+ * A Receiver may wait on a Port and other Channels at once with a {@link Select}.
  *
  * @see SynchronousChannel
  */
-public class Port extends BoundedSharedQueue implements Channel {
+public class Port extends BoundedSharedQueue implements SelectableChannel {
 
 	// ----------------------------------------------------------------------------
 	//		Port - constructor
@@ -68,6 +70,31 @@ public class Port extends BoundedSharedQueue implements Channel {
 	public Object receive() throws InterruptedException {
 		return super.remove();
 	}
+
+	// ----------------------------------------------------------------------------
+	//		receiveAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Receive a batch of messages: wait for a first message, then linger up to
+	 * the given delay for more messages, up to the length of the given array.
+	 * @param outMessages the array receiving the messages, from index zero,
+	 * the oldest message first.
+	 * @param inLingerMicros the number of microseconds to wait for the batch to
+	 * fill once a message is available; zero or less not to wait.
+	 * @return the number of messages received, which is zero only for an empty array.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @see AbstractSharedQueue#removeAll(Object[], long)
+	 */
+	public int receiveAll(Object[] outMessages, long inLingerMicros) throws InterruptedException {
+		return super.removeAll(outMessages, inLingerMicros);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		whenReady
+	// ----------------------------------------------------------------------------
+	public void whenReady(Runnable inCallback) {
+		whenNotEmpty(inCallback);
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,275 @@
+// ----------------------------------------------------------------------------
+//  PrioritySharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+// ----------------------------------------------------------------------------
+//		PrioritySharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue that have a maximum capacity and that delivers the object of
+ * highest priority first.
+ * <p>
+ * The priority is given by a <code>Comparator</code>: the smallest object is
+ * removed first. Objects of equal priority are removed in the order they were
+ * added, so that a PrioritySharedQueue whose objects all compare equal behaves
+ * exactly like a {@link BoundedSharedQueue}.
+ * <p>
+ * The objects are held in a binary heap laid out in an array, there is no
+ * node per object. <code>add</code> and <code>remove</code> cost O(log n).
+ * <p>
+ * <code>{@link #add}</code> blocks when the maximum capacity is reached,
+ * <code>{@link #remove}</code> blocks when the queue is empty.
+ *
+ * @see BoundedSharedQueue
+ */
+public class PrioritySharedQueue extends AbstractSharedQueue {
+
+	protected final Comparator fComparator;
+
+	/** The heap, the object of highest priority at index zero. */
+	protected final Object[] fHeap;
+	/** The arrival sequence of the objects of fHeap, to break the ties. */
+	private final long[] fSequences;
+	private long fNextSequence = 0;
+	private volatile int fObjectCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		PrioritySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a PrioritySharedQueue with the given maximum capacity, comparator
+	 * and wait strategy.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inComparator the ordering of the objects, or null to use their
+	 * natural ordering, in which case they must be <code>Comparable</code>.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one, or
+	 * if inWaitStrategy is null.
+	 */
+	public PrioritySharedQueue(int inMaxCapacity, Comparator inComparator, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+
+		fComparator = inComparator;
+		fHeap = new Object[inMaxCapacity];
+		fSequences = new long[inMaxCapacity];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		PrioritySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a PrioritySharedQueue with the given maximum capacity and comparator.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inComparator the ordering of the objects, or null to use their
+	 * natural ordering, in which case they must be <code>Comparable</code>.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public PrioritySharedQueue(int inMaxCapacity, Comparator inComparator) {
+		this(inMaxCapacity, inComparator, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		PrioritySharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a PrioritySharedQueue of <code>Comparable</code> objects.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public PrioritySharedQueue(int inMaxCapacity) {
+		this(inMaxCapacity, null);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			Arrays.fill(fHeap, 0, fObjectCount, null);
+			fObjectCount = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * @exception IllegalArgumentException if inObject is null, or if it is not
+	 * <code>Comparable</code> and the queue has no comparator.
+	 */
+	public void add(Object inObject) throws InterruptedException {
+		check_comparable(inObject);
+		super.add(inObject);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * @exception IllegalArgumentException if one of the objects is not
+	 * <code>Comparable</code> and the queue has no comparator.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		check_objects(inObjects, inOffset, inLength);
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			check_comparable(inObjects[i]);
+		}
+
+		super.addAll(inObjects, inOffset, inLength);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Sift the object up from the first free leaf.
+	 */
+	protected void enqueue(Object inObject) {
+		long theSequence = fNextSequence++;
+		int theIndex = fObjectCount;
+
+		while(theIndex > 0) {
+			int theParent = (theIndex - 1) >>> 1;
+
+			if(!precedes(inObject, theSequence, theParent)) {
+				break;
+			}
+
+			// Move the parent down into the hole.
+			fHeap[theIndex] = fHeap[theParent];
+			fSequences[theIndex] = fSequences[theParent];
+			theIndex = theParent;
+		}
+
+		fHeap[theIndex] = inObject;
+		fSequences[theIndex] = theSequence;
+		++fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the root, then sift the last leaf down from the root.
+	 */
+	protected Object dequeue() {
+		Object theResult = fHeap[0];
+		int theCount = fObjectCount - 1;
+
+		Object theLast = fHeap[theCount];
+		long theLastSequence = fSequences[theCount];
+		fHeap[theCount] = null;	// For the garbage collector.
+
+		int theIndex = 0;
+		int theHalf = theCount >>> 1;
+
+		while(theIndex < theHalf) {
+			int theChild = 2 * theIndex + 1;
+
+			if(theChild + 1 < theCount && precedes(fHeap[theChild + 1], fSequences[theChild + 1], theChild)) {
+				++theChild;
+			}
+
+			if(precedes(theLast, theLastSequence, theChild)) {
+				break;
+			}
+
+			// Move the child up into the hole.
+			fHeap[theIndex] = fHeap[theChild];
+			fSequences[theIndex] = fSequences[theChild];
+			theIndex = theChild;
+		}
+
+		if(theCount > 0) {
+			fHeap[theIndex] = theLast;
+			fSequences[theIndex] = theLastSequence;
+		}
+
+		fObjectCount = theCount;
+
+		return theResult;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		precedes
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if an object must be removed before the object at the given index.
+	 */
+	private boolean precedes(Object inObject, long inSequence, int inIndex) {
+		int theOrder;
+
+		if(fComparator != null) {
+			theOrder = fComparator.compare(inObject, fHeap[inIndex]);
+		}
+		else {
+			theOrder = ((Comparable)inObject).compareTo(fHeap[inIndex]);
+		}
+
+		return theOrder < 0 || (theOrder == 0 && inSequence < fSequences[inIndex]);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_comparable
+	// ----------------------------------------------------------------------------
+	/**
+	 * Reject an object that cannot be ordered, before it reaches the heap.
+	 */
+	private void check_comparable(Object inObject) {
+		if(fComparator == null && inObject != null && !(inObject instanceof Comparable)) {
+			throw new IllegalArgumentException("attempt to enqueue an object that is not Comparable");
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("PrioritySharedQueue(");
+
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
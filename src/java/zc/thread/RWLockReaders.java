@@ -20,6 +20,9 @@ package zc.thread;
  * <p>
  * On a heavily loaded system it is possible that the number of <i>Readers</i>
  * never drop to zero and consequently the RWLockReaders denies access to waiting <i>Writers</i>.
+ * <p>
+ * A RWLockReaders built in the parking mode of {@link WaitSet} parks the waiting
+ * threads, it never blocks them while holding a monitor.
  *
  * @see "Concurrency - State Models & Java Programs, chap: 7.5, page: 144"
  * @see RWLockWriters
@@ -29,6 +32,21 @@ public class RWLockReaders implements RWLock {
 	protected volatile int fReaderCount = 0;
 	protected volatile boolean fWritingFlag = false;
 
+	/** The Readers and the Writers waiting, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fReadable = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return safe_to_read();
+		}
+	};
+
+	private final WaitSet.Condition fWritable = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return safe_to_write();
+		}
+	};
+
 
 	// ----------------------------------------------------------------------------
 	//		acquireRead
@@ -38,6 +56,14 @@ public class RWLockReaders implements RWLock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_read()) {
+				fWaitSet.await(fReadable);
+			}
+
+			return;
+		}
+
 		synchronized(this) {
 			// Block all incoming Readers while it is not safe to read.
 			while(!safe_to_read()) {
@@ -56,6 +82,14 @@ public class RWLockReaders implements RWLock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_write()) {
+				fWaitSet.await(fWritable);
+			}
+
+			return;
+		}
+
 		synchronized(this) {
 			while(!safe_to_write()) {
 				this.wait();
@@ -75,11 +109,18 @@ public class RWLockReaders implements RWLock {
 				this.notifyAll();
 			}
 			else if(fReaderCount > 0) {
-				if((--fReaderCount) == 0) {
-					this.notify();
+				if((--fReaderCount) != 0) {
+					return;
 				}
+
+				this.notify();
+			}
+			else {
+				return;
 			}
 		}
+
+		fWaitSet.signalAll();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -117,6 +158,38 @@ public class RWLockReaders implements RWLock {
 	protected boolean safe_to_write() {
 		return fWritingFlag == false && fReaderCount == 0;
 	}
+
+	// ----------------------------------------------------------------------------
+	//		try_read
+	// ----------------------------------------------------------------------------
+	/**
+	 * Register a new <i>Reader</i> if it is safe to read. Never block.
+	 * @return true if the read lock has been acquired.
+	 */
+	private synchronized boolean try_read() {
+		if(!safe_to_read()) {
+			return false;
+		}
+
+		++fReaderCount;
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		try_write
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the write lock if it is safe to write. Never block.
+	 * @return true if the write lock has been acquired.
+	 */
+	private synchronized boolean try_write() {
+		if(!safe_to_write()) {
+			return false;
+		}
+
+		fWritingFlag = true;
+		return true;
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
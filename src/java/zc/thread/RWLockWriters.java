@@ -8,6 +8,7 @@
 package zc.thread;
 
 import java.util.LinkedList;
+import java.util.concurrent.locks.LockSupport;
 
 
 // ----------------------------------------------------------------------------
@@ -26,6 +27,9 @@ import java.util.LinkedList;
  * <p>
  * Writes are guaranteed to execute in the order that they were
  * requested, the oldest request is processed first.
+ * <p>
+ * A RWLockWriters built in the parking mode of {@link WaitSet} parks the waiting
+ * threads, it never blocks them while holding a monitor.
  * @see "Tom Cargill paper on
  * <a href="http://www.profcon.com/cargill/jgf/9809/SpecificNotification.html">
  * Specific Notification for Java Thread Synchronization</a>"
@@ -50,6 +54,18 @@ public class RWLockWriters implements RWLock {
 	 */
 	private final LinkedList fSNLQ = new LinkedList();
 
+	/** The size of fSNLQ, readable without holding the monitor. */
+	private volatile int fWaitingWriterCount = 0;
+
+	/** The Readers waiting, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fReadable = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fActiveWriter == null && fWaitingWriterCount == 0;
+		}
+	};
+
 
 	/** Specific Notification Lock */
 	private final static class SNL {
@@ -70,6 +86,14 @@ public class RWLockWriters implements RWLock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_read()) {
+				fWaitSet.await(fReadable);
+			}
+
+			return;
+		}
+
 		synchronized(this) {
 			// Block all incoming Readers while it is not safe to read.
 			while(!safe_to_read()) {
@@ -92,6 +116,11 @@ public class RWLockWriters implements RWLock {
 		// to make sure no one could inadvertently call wait() or notify().
 		SNL theSNL = new SNL(Thread.currentThread());
 
+		if(fWaitSet.isParking()) {
+			park_writer(theSNL);
+			return;
+		}
+
 		// :NOTE: it is mandatory to synchronize on the local theSNL object
 		// in order to prevent a possible race condition at point P below.
 		synchronized(theSNL) {
@@ -102,6 +131,7 @@ public class RWLockWriters implements RWLock {
 				}
 
 				fSNLQ.addLast(theSNL);
+				++fWaitingWriterCount;
 			}
 
 			// point P:
@@ -147,6 +177,48 @@ public class RWLockWriters implements RWLock {
 		}
 	}
 
+	// ----------------------------------------------------------------------------
+	//		park_writer
+	// ----------------------------------------------------------------------------
+	/**
+	 * The parking mode of <code>acquireWrite</code>: queue the <i>Writer</i>
+	 * then park it until <code>notify_writer_or_readers</code> makes it the
+	 * active one. A permit given by <code>unpark</code> before the thread
+	 * parks is not lost, thus there is no race at the point P of the monitor mode.
+	 */
+	private void park_writer(SNL inSNL) throws InterruptedException {
+		synchronized(this) {
+			if(safe_to_write() && fSNLQ.size() == 0) {
+				fActiveWriter = inSNL;
+				return;
+			}
+
+			fSNLQ.addLast(inSNL);
+			++fWaitingWriterCount;
+		}
+
+		while(fActiveWriter != inSNL) {
+			LockSupport.park(this);
+
+			if(Thread.interrupted()) {
+				synchronized(this) {
+					if(fActiveWriter == inSNL) {
+						// Too late, the write lock is ours.
+						Thread.currentThread().interrupt();
+						return;
+					}
+
+					fSNLQ.remove(inSNL);
+					--fWaitingWriterCount;
+				}
+
+				// The Readers may proceed if this was the last waiting Writer.
+				fWaitSet.signalAll();
+				throw new InterruptedException();
+			}
+		}
+	}
+
 	// ----------------------------------------------------------------------------
 	//		notify_writer_or_readers
 	// ----------------------------------------------------------------------------
@@ -163,7 +235,14 @@ public class RWLockWriters implements RWLock {
 		if(fSNLQ.size() > 0) {
 			// Notify the next Writer in the list.
 			Object theOldestSNL = fSNLQ.removeFirst();
+			--fWaitingWriterCount;
 			fActiveWriter = (SNL)theOldestSNL;
+
+			if(fWaitSet.isParking()) {
+				LockSupport.unpark(fActiveWriter.fThread);
+				return;
+			}
+
 			synchronized(theOldestSNL) {
 				theOldestSNL.notify();
 			}
@@ -171,6 +250,7 @@ public class RWLockWriters implements RWLock {
 		else {
 			// Notify all waiting Readers.
 			this.notifyAll();
+			fWaitSet.signalAll();
 		}
 	}
 
@@ -210,6 +290,22 @@ public class RWLockWriters implements RWLock {
 	protected boolean safe_to_write() {
 		return fActiveWriter == null && fReaderCount == 0;
 	}
+
+	// ----------------------------------------------------------------------------
+	//		try_read
+	// ----------------------------------------------------------------------------
+	/**
+	 * Register a new <i>Reader</i> if it is safe to read. Never block.
+	 * @return true if the read lock has been acquired.
+	 */
+	private synchronized boolean try_read() {
+		if(!safe_to_read()) {
+			return false;
+		}
+
+		++fReaderCount;
+		return true;
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
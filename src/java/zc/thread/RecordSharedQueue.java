@@ -0,0 +1,355 @@
+// ----------------------------------------------------------------------------
+//  RecordSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+
+// ----------------------------------------------------------------------------
+//		RecordSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A bounded SharedQueue of fixed size binary records, held outside of the
+ * Java heap in a direct <code>ByteBuffer</code>.
+ * <p>
+ * The queue is a ring of <code>capacity</code> slots of <code>recordSize</code>
+ * bytes each. There is no object per record: the slots are exposed through
+ * <code>ByteBuffer</code> views created once at construction, so transferring
+ * a record neither allocates memory nor grows the GC-visible footprint.
+ * <p>
+ * Records can be transferred without any copy:
+ * <pre>
+ *  // Producer side
+ *  ByteBuffer theRecord = theQueue.claim();
+ *  theRecord.putLong(theTimestamp).putDouble(thePrice);
+ *  theQueue.commit();
+ *
+ *  // Consumer side
+ *  ByteBuffer theRecord = theQueue.acquire();
+ *  long theTimestamp = theRecord.getLong();
+ *  double thePrice = theRecord.getDouble();
+ *  theQueue.release();
+ * </pre>
+ * or copied, exactly once, from and to a caller supplied buffer with
+ * <code>{@link #add}</code> and <code>{@link #remove}</code>.
+ * <p>
+ * At most one record may be claimed and one record acquired at any time:
+ * a second Producer calling <code>claim</code> waits until the first one
+ * commits, a second Consumer calling <code>acquire</code> waits until the
+ * first one releases.
+ *
+ * @see BoundedSharedQueue
+ */
+public class RecordSharedQueue {
+
+	protected final int fMaxCapacity;
+	protected final int fRecordSize;
+	protected final ByteBuffer fBuffer;
+
+	/** One view of fBuffer per slot. */
+	private final ByteBuffer[] fSlots;
+
+	/** The number of committed records, including the acquired one. */
+	private volatile int fObjectCount = 0;
+	private int fPutCursor = 0, fGetCursor = 0;
+	private boolean fPutClaimed = false, fGetClaimed = false;
+
+
+	// ----------------------------------------------------------------------------
+	//		RecordSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a RecordSharedQueue and allocate its direct buffer.
+	 * @param inMaxCapacity the maximum number of records that this queue can
+	 * contain before blocking.
+	 * @param inRecordSize the size of a record, in bytes.
+	 * @exception IllegalArgumentException if an argument is less than one, or if
+	 * the buffer would be larger than 2 GB.
+	 */
+	public RecordSharedQueue(int inMaxCapacity, int inRecordSize) {
+		if(inMaxCapacity < 1) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+		if(inRecordSize < 1) {
+			throw new IllegalArgumentException("illegal record size " + inRecordSize);
+		}
+		if((long)inMaxCapacity * inRecordSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("buffer too large " + ((long)inMaxCapacity * inRecordSize));
+		}
+
+		fMaxCapacity = inMaxCapacity;
+		fRecordSize = inRecordSize;
+		fBuffer = ByteBuffer.allocateDirect(inMaxCapacity * inRecordSize);
+		fSlots = new ByteBuffer[inMaxCapacity];
+
+		for(int i = 0; i < inMaxCapacity; ++i) {
+			fBuffer.limit((i + 1) * inRecordSize).position(i * inRecordSize);
+			fSlots[i] = fBuffer.slice();
+		}
+
+		fBuffer.clear();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the committed records from this queue.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * A claimed record is not affected and can still be committed.
+	 * @exception IllegalStateException if a record is currently acquired.
+	 */
+	public synchronized void clear() {
+		if(fGetClaimed) {
+			throw new IllegalStateException("a record is acquired");
+		}
+
+		fGetCursor = fPutCursor;
+		fObjectCount = 0;
+
+		// Notify threads that are waiting for a free slot.
+		this.notifyAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		claim
+	// ----------------------------------------------------------------------------
+	/**
+	 * Reserve the next free slot for writing a record in place.
+	 * May block the calling thread if the queue has reach its maximum capacity,
+	 * or if another record is already claimed.
+	 * <p>
+	 * The returned view has its position set to zero and its limit set to the
+	 * record size. It must not be used after the record has been committed.
+	 * @return the view of the claimed slot.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public ByteBuffer claim() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		synchronized(this) {
+			while(fPutClaimed || fObjectCount >= fMaxCapacity) {
+				this.wait();
+			}
+
+			fPutClaimed = true;
+		}
+
+		// The slot at fPutCursor belongs to us until commit.
+		ByteBuffer theSlot = fSlots[fPutCursor];
+		theSlot.clear();
+		return theSlot;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		commit
+	// ----------------------------------------------------------------------------
+	/**
+	 * Publish the claimed record to the Consumers and notify waiting threads.
+	 * @exception IllegalStateException if no record is claimed.
+	 */
+	public synchronized void commit() {
+		if(!fPutClaimed) {
+			throw new IllegalStateException("no record claimed");
+		}
+
+		fPutClaimed = false;
+		fPutCursor = (fPutCursor + 1) % fMaxCapacity;
+		++fObjectCount;
+
+		// Notify the threads that are waiting for available record, and
+		// the Producers waiting for their turn to claim.
+		this.notifyAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		acquire
+	// ----------------------------------------------------------------------------
+	/**
+	 * Reserve the oldest record for reading it in place.
+	 * May block the calling thread if the queue is empty, or if another record
+	 * is already acquired.
+	 * <p>
+	 * The returned view has its position set to zero and its limit set to the
+	 * record size. It must not be used after the record has been released.
+	 * @return the view of the acquired slot.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public ByteBuffer acquire() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		synchronized(this) {
+			while(fGetClaimed || fObjectCount == 0) {
+				this.wait();
+			}
+
+			fGetClaimed = true;
+		}
+
+		// The slot at fGetCursor belongs to us until release.
+		ByteBuffer theSlot = fSlots[fGetCursor];
+		theSlot.clear();
+		return theSlot;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		release
+	// ----------------------------------------------------------------------------
+	/**
+	 * Give the acquired slot back to the Producers and notify waiting threads.
+	 * @exception IllegalStateException if no record is acquired.
+	 */
+	public synchronized void release() {
+		if(!fGetClaimed) {
+			throw new IllegalStateException("no record acquired");
+		}
+
+		fGetClaimed = false;
+		fGetCursor = (fGetCursor + 1) % fMaxCapacity;
+		--fObjectCount;
+
+		// Notify the threads that are waiting for a free slot, and
+		// the Consumers waiting for their turn to acquire.
+		this.notifyAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy a record into this queue and notify waiting threads.
+	 * May block the calling thread if the queue has reach its maximum capacity.
+	 * @param inRecord the buffer holding the record between its position and
+	 * its limit. Its position is advanced by the record size.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if the buffer does not hold exactly one record.
+	 */
+	public void add(ByteBuffer inRecord) throws InterruptedException {
+		if(inRecord.remaining() != fRecordSize) {
+			throw new IllegalArgumentException("record of " + inRecord.remaining() + " bytes instead of " + fRecordSize);
+		}
+
+		claim().put(inRecord);
+		commit();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the oldest record out of this queue and notify waiting threads.
+	 * May block the calling thread if the queue is empty.
+	 * @param outRecord the buffer receiving the record at its position.
+	 * Its position is advanced by the record size.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if the buffer has not room for one record.
+	 * @exception ReadOnlyBufferException if the buffer is read-only.
+	 */
+	public void remove(ByteBuffer outRecord) throws InterruptedException {
+		if(outRecord.remaining() < fRecordSize) {
+			throw new IllegalArgumentException("room for " + outRecord.remaining() + " bytes instead of " + fRecordSize);
+		}
+		if(outRecord.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+
+		ByteBuffer theRecord = acquire();
+
+		try {
+			outRecord.put(theRecord);
+		}
+		finally {
+			// Never keep the slot, or no Consumer would get past it.
+			release();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		recordSize
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the size of a record, in bytes.
+	 * @return an int > zero.
+	 */
+	public int recordSize() {
+		return fRecordSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the maximum number of records that can be held in this queue.
+	 * @return an int > zero.
+	 */
+	public int capacity() {
+		return fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of committed records, including the acquired one.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int >= zero.
+	 */
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this queue is currently empty.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this queue is currently full.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public synchronized String toString() {
+		StringBuffer theResult = new StringBuffer("RecordSharedQueue(");
+
+		theResult.append("p=").append(fPutCursor);
+		theResult.append(",g=").append(fGetCursor);
+		theResult.append(",#=").append(fObjectCount);
+		theResult.append(",r=").append(fRecordSize);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,280 @@
+// ----------------------------------------------------------------------------
+//  RingBuffer.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		RingBuffer - class
+// ----------------------------------------------------------------------------
+/**
+ * A preallocated ring of events, published by one producer and seen by every
+ * consumer.
+ * <p>
+ * Unlike a SharedQueue, the events are not removed: each consumer tracks its
+ * own {@link Sequence}, the last event it has processed, and the producer only
+ * reuses a slot once the <i>gating</i> consumers, usually the last ones of
+ * the chain, have all passed it. A consumer can be made to run after other
+ * consumers by waiting on a {@link SequenceBarrier} built on their Sequences.
+ * <p>
+ * The events are created once by an {@link EventFactory} and then mutated in
+ * place: the producer claims a slot, fills its event, and publishes it.
+ * <pre>
+ * RingBuffer theRing = new RingBuffer(factory, 1024, WaitStrategy.BLOCKING);
+ *
+ * // journal and replicate in parallel, then apply.
+ * EventProcessor theJournal = new EventProcessor(theRing, theRing.newBarrier(), journaler);
+ * EventProcessor theReplicate = new EventProcessor(theRing, theRing.newBarrier(), replicator);
+ * EventProcessor theApply = new EventProcessor(theRing,
+ *     theRing.newBarrier(new Sequence[] { theJournal.getSequence(), theReplicate.getSequence() }),
+ *     applier);
+ * theRing.addGatingSequence(theApply.getSequence());
+ *
+ * // publish.
+ * long theSequence = theRing.next();
+ * ((Message)theRing.get(theSequence)).set(...);
+ * theRing.publish(theSequence);
+ * </pre>
+ * <b>Important:</b> only one thread may publish; this is not enforced.
+ *
+ * @see EventProcessor
+ * @see SequenceBarrier
+ */
+public final class RingBuffer {
+
+	// ----------------------------------------------------------------------------
+	//		EventFactory - inner interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * Create the events that fill a RingBuffer.
+	 */
+	public interface EventFactory {
+		/**
+		 * Create an empty event.
+		 * @return a new event, never null.
+		 */
+		public Object newEvent();
+	}
+
+
+	private final Object[] fEvents;
+	private final int fMask;
+	protected final WaitStrategy fWaitStrategy;
+
+	/** The last published sequence. */
+	final Sequence fCursor = new Sequence();
+	/** The Sequences the producer must not overtake. Copied on write. */
+	private volatile Sequence[] fGatingSequences = new Sequence[0];
+
+	/** The last claimed sequence, owned by the producer. */
+	private long fNextValue = Sequence.INITIAL_VALUE;
+	/** The smallest gating sequence last seen, owned by the producer. */
+	private long fCachedGating = Sequence.INITIAL_VALUE;
+
+	/** Signaled after each publish, and after a consumer has advanced. */
+	final WaitSet fProgress = new WaitSet();
+
+
+	// ----------------------------------------------------------------------------
+	//		RingBuffer - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a RingBuffer and fill it with events.
+	 * @param inFactory the factory of the events.
+	 * @param inSize the number of events, a power of two.
+	 * @param inWaitStrategy how the producer and the consumers wait.
+	 * @exception IllegalArgumentException if inSize is not a power of two, if
+	 * inWaitStrategy is null, or if the factory returns null.
+	 */
+	public RingBuffer(EventFactory inFactory, int inSize, WaitStrategy inWaitStrategy) {
+		if(inSize < 1 || (inSize & (inSize - 1)) != 0) {
+			throw new IllegalArgumentException("illegal capacity " + inSize);
+		}
+		if(inWaitStrategy == null) {
+			throw new IllegalArgumentException("null wait strategy");
+		}
+
+		fEvents = new Object[inSize];
+		fMask = inSize - 1;
+		fWaitStrategy = inWaitStrategy;
+
+		for(int i = 0; i < inSize; ++i) {
+			fEvents[i] = inFactory.newEvent();
+			if(fEvents[i] == null) {
+				throw new IllegalArgumentException("null event");
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		RingBuffer - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a RingBuffer whose threads block when they wait.
+	 * @param inFactory the factory of the events.
+	 * @param inSize the number of events, a power of two.
+	 * @exception IllegalArgumentException if inSize is not a power of two, or if
+	 * the factory returns null.
+	 */
+	public RingBuffer(EventFactory inFactory, int inSize) {
+		this(inFactory, inSize, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getSize
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the number of events in the ring.
+	 */
+	public int getSize() {
+		return fEvents.length;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getCursor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the last published sequence, or Sequence.INITIAL_VALUE.
+	 */
+	public long getCursor() {
+		return fCursor.get();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		get
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the event of the given sequence. The producer may only modify it
+	 * between <code>next</code> and <code>publish</code>, a consumer may only
+	 * read it once its barrier has returned the sequence.
+	 * @param inSequence the sequence of the event.
+	 * @return the event.
+	 */
+	public Object get(long inSequence) {
+		return fEvents[(int)inSequence & fMask];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addGatingSequence
+	// ----------------------------------------------------------------------------
+	/**
+	 * Prevent the producer from overwriting the events not yet processed by
+	 * the consumer of the given Sequence. To be called before publishing.
+	 * @param inSequence the Sequence of a consumer.
+	 */
+	public synchronized void addGatingSequence(Sequence inSequence) {
+		Sequence[] theSequences = new Sequence[fGatingSequences.length + 1];
+
+		System.arraycopy(fGatingSequences, 0, theSequences, 0, fGatingSequences.length);
+		theSequences[fGatingSequences.length] = inSequence;
+		fGatingSequences = theSequences;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		newBarrier
+	// ----------------------------------------------------------------------------
+	/**
+	 * Create a barrier for a consumer that only depends on the producer.
+	 * @return a new SequenceBarrier.
+	 */
+	public SequenceBarrier newBarrier() {
+		return new SequenceBarrier(this, new Sequence[0]);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		newBarrier
+	// ----------------------------------------------------------------------------
+	/**
+	 * Create a barrier for a consumer that runs after other consumers.
+	 * @param inDependencies the Sequences of the upstream consumers.
+	 * @return a new SequenceBarrier.
+	 */
+	public SequenceBarrier newBarrier(Sequence[] inDependencies) {
+		return new SequenceBarrier(this, inDependencies.clone());
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next
+	// ----------------------------------------------------------------------------
+	/**
+	 * Claim the next slot. May block the producer until the gating consumers
+	 * have processed the event it holds.
+	 * @return the sequence of the claimed slot.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public long next() throws InterruptedException {
+		return next(1);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next
+	// ----------------------------------------------------------------------------
+	/**
+	 * Claim the next slots, to be published at once. May block the producer
+	 * until the gating consumers have processed the events they hold.
+	 * @param inCount the number of slots, at most the size of the ring.
+	 * @return the sequence of the last claimed slot.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if inCount is out of [1, size].
+	 */
+	public long next(int inCount) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inCount < 1 || inCount > fEvents.length) {
+			throw new IllegalArgumentException("illegal count " + inCount);
+		}
+
+		long theNext = fNextValue + inCount;
+		final long theWrapPoint = theNext - fEvents.length;
+
+		if(theWrapPoint > fCachedGating) {
+			fCachedGating = Sequence.minimum_of(fGatingSequences, fNextValue);
+
+			if(theWrapPoint > fCachedGating) {
+				fWaitStrategy.await(new WaitSet.Condition() {
+					public boolean isTrue() {
+						return Sequence.minimum_of(fGatingSequences, Long.MAX_VALUE) >= theWrapPoint;
+					}
+				}, fProgress);
+
+				fCachedGating = Sequence.minimum_of(fGatingSequences, fNextValue);
+			}
+		}
+
+		fNextValue = theNext;
+		return theNext;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		publish
+	// ----------------------------------------------------------------------------
+	/**
+	 * Make the claimed slots up to the given sequence visible to the consumers.
+	 * @param inSequence the last sequence to publish.
+	 */
+	public void publish(long inSequence) {
+		fCursor.set(inSequence);
+		fProgress.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("RingBuffer(");
+
+		theResult.append("c=").append(fCursor.get());
+		theResult.append(",g=").append(Sequence.minimum_of(fGatingSequences, fCursor.get()));
+		theResult.append(",s=").append(fEvents.length);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,470 @@
+// ----------------------------------------------------------------------------
+//  SPSCSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+
+// ----------------------------------------------------------------------------
+//		SPSCSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A bounded SharedQueue dedicated to exactly one <i>Producer</i> thread and
+ * exactly one <i>Consumer</i> thread.
+ * <p>
+ * Unlike the {@link BoundedSharedQueue}, <code>add</code> and <code>remove</code>
+ * do not take any lock: the Producer owns the tail sequence, the Consumer owns
+ * the head sequence, and each side only reads the other side's sequence.
+ * A thread is blocked only when the ring is really full (Producer) or really
+ * empty (Consumer).
+ * <p>
+ * The ring length is the power of two above the requested capacity, so that
+ * the slot index is computed with a mask instead of a modulo. The capacity
+ * itself is honored exactly.
+ * <p>
+ * <b>Important:</b> the single Producer / single Consumer restriction is not
+ * enforced. Calling <code>add</code> from two threads, or <code>remove</code>
+ * from two threads, silently corrupts the queue. Use a {@link BoundedSharedQueue}
+ * when the number of Producers or Consumers is not known.
+ *
+ * @see BoundedSharedQueue
+ */
+public class SPSCSharedQueue implements SharedQueue {
+
+	protected final int fMaxCapacity;
+	protected final int fMask;
+	protected final Object[] fRing;
+
+	// The head and tail sequences are written by different threads,
+	// the padding keeps them in separate cache lines.
+	protected long p00, p01, p02, p03, p04, p05, p06;
+	/** The sequence of the next slot to read, written by the Consumer only. */
+	private volatile long fHead = 0;
+	/** The Consumer's cached copy of fTail. */
+	private long fTailCache = 0;
+	protected long p10, p11, p12, p13, p14, p15, p16;
+	/** The sequence of the next slot to write, written by the Producer only. */
+	private volatile long fTail = 0;
+	/** The Producer's cached copy of fHead. */
+	private long fHeadCache = 0;
+	protected long p20, p21, p22, p23, p24, p25, p26;
+
+	protected final WaitStrategy fWaitStrategy;
+	private final WaitSet fNotEmpty = new WaitSet();
+	private final WaitSet fNotFull = new WaitSet();
+
+	private final WaitSet.Condition fNotEmptyCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fTail != fHead;
+		}
+	};
+
+	private final WaitSet.Condition fNotFullCondition = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fTail - fHead < fMaxCapacity;
+		}
+	};
+
+
+	// ----------------------------------------------------------------------------
+	//		SPSCSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SPSCSharedQueue with the given maximum capacity.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one or
+	 * greater than 2^30.
+	 */
+	public SPSCSharedQueue(int inMaxCapacity) {
+		this(inMaxCapacity, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		SPSCSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SPSCSharedQueue with the given maximum capacity and wait strategy.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @param inWaitStrategy how the Producer and the Consumer wait.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one or
+	 * greater than 2^30, or if inWaitStrategy is null.
+	 */
+	public SPSCSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		if(inMaxCapacity < 1 || inMaxCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+		if(inWaitStrategy == null) {
+			throw new IllegalArgumentException("null wait strategy");
+		}
+
+		int theLength = 1;
+		while(theLength < inMaxCapacity) {
+			theLength <<= 1;
+		}
+
+		fMaxCapacity = inMaxCapacity;
+		fMask = theLength - 1;
+		fRing = new Object[theLength];
+		fWaitStrategy = inWaitStrategy;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		SPSCSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SPSCSharedQueue of {@link BoundedSharedQueue#LARGE_CAPACITY} objects.
+	 */
+	public SPSCSharedQueue() {
+		this(BoundedSharedQueue.LARGE_CAPACITY);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * A waiting Producer will be notified.
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 */
+	public void clear() {
+		while(poll() != null) {
+			// Discard the object.
+		}
+
+		// Notify the Producer if it is waiting for a free slot.
+		fNotFull.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * <b>Must imperatively be called from the Producer thread.</b>
+	 */
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		while(!offer(inObject)) {
+			// The ring is full, wait until the Consumer frees a slot.
+			fWaitStrategy.await(fNotFullCondition, fNotFull);
+		}
+
+		// Notify the Consumer if it is waiting for an object.
+		fNotEmpty.signalAll();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 */
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Object theObject;
+		while((theObject = poll()) == null) {
+			// The ring is empty, wait until the Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		// Notify the Producer if it is waiting for a free slot.
+		fNotFull.signalAll();
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * <b>Must imperatively be called from the Producer thread.</b>
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		while(inLength > 0) {
+			int theCount = offer(inObjects, inOffset, inLength);
+
+			if(theCount == 0) {
+				// The ring is full, wait until the Consumer frees a slot.
+				fWaitStrategy.await(fNotFullCondition, fNotFull);
+				continue;
+			}
+
+			// Notify the Consumer if it is waiting for an object.
+			fNotEmpty.signalAll();
+
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 */
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		int theCount;
+		while((theCount = poll(outObjects, 0, outObjects.length)) == 0) {
+			// The ring is empty, wait until the Producer adds an object.
+			fWaitStrategy.await(fNotEmptyCondition, fNotEmpty);
+		}
+
+		// Notify the Producer if it is waiting for a free slot.
+		fNotFull.signalAll();
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 */
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		int theCount = 0;
+		Object theObject;
+
+		while(theCount < inMaxCount && (theObject = poll()) != null) {
+			outCollection.add(theObject);
+			++theCount;
+		}
+
+		if(theCount > 0) {
+			// Notify the Producer if it is waiting for a free slot.
+			fNotFull.signalAll();
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	public int capacity() {
+		return fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		long theHead = fHead;
+		long theSize = fTail - theHead;
+
+		// The two sequences are not read atomically, clamp the result.
+		if(theSize < 0) {
+			return 0;
+		}
+		if(theSize > fMaxCapacity) {
+			return fMaxCapacity;
+		}
+		return (int)theSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put an object into the next free slot if there is one.
+	 * <p>
+	 * <b>Must imperatively be called from the Producer thread.</b>
+	 * @return false if the ring is full.
+	 */
+	private boolean offer(Object inObject) {
+		long theTail = fTail;
+
+		if(theTail - fHeadCache >= fMaxCapacity) {
+			// Only read the Consumer's sequence when the cached one says we are full.
+			fHeadCache = fHead;
+			if(theTail - fHeadCache >= fMaxCapacity) {
+				return false;
+			}
+		}
+
+		fRing[(int)theTail & fMask] = inObject;
+		// Publish the slot to the Consumer.
+		fTail = theTail + 1;
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove the oldest object if there is one.
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 * @return the oldest object, or null if the ring is empty.
+	 */
+	private Object poll() {
+		long theHead = fHead;
+
+		if(theHead >= fTailCache) {
+			// Only read the Producer's sequence when the cached one says we are empty.
+			fTailCache = fTail;
+			if(theHead >= fTailCache) {
+				return null;
+			}
+		}
+
+		int theIndex = (int)theHead & fMask;
+		Object theObject = fRing[theIndex];
+		fRing[theIndex] = null;	// For the garbage collector.
+		// Give the slot back to the Producer.
+		fHead = theHead + 1;
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		offer
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put as many objects as possible into the free slots, then publish them all at once.
+	 * <p>
+	 * <b>Must imperatively be called from the Producer thread.</b>
+	 * @return the number of objects put, zero if the ring is full.
+	 */
+	private int offer(Object[] inObjects, int inOffset, int inLength) {
+		long theTail = fTail;
+		long theFree = fMaxCapacity - (theTail - fHeadCache);
+
+		if(theFree < inLength) {
+			fHeadCache = fHead;
+			theFree = fMaxCapacity - (theTail - fHeadCache);
+		}
+
+		int theCount = (int)Math.min(theFree, inLength);
+		if(theCount <= 0) {
+			return 0;
+		}
+
+		// Copy in at most two moves, the second one when wrapping around the ring.
+		int theIndex = (int)theTail & fMask;
+		int theFirstPart = Math.min(theCount, fRing.length - theIndex);
+
+		System.arraycopy(inObjects, inOffset, fRing, theIndex, theFirstPart);
+		System.arraycopy(inObjects, inOffset + theFirstPart, fRing, 0, theCount - theFirstPart);
+
+		// Publish all the slots to the Consumer.
+		fTail = theTail + theCount;
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove as many of the oldest objects as available, then free their slots all at once.
+	 * <p>
+	 * <b>Must imperatively be called from the Consumer thread.</b>
+	 * @return the number of objects removed, zero if the ring is empty.
+	 */
+	private int poll(Object[] outObjects, int inOffset, int inLength) {
+		long theHead = fHead;
+		long theAvailable = fTailCache - theHead;
+
+		if(theAvailable < inLength) {
+			fTailCache = fTail;
+			theAvailable = fTailCache - theHead;
+		}
+
+		int theCount = (int)Math.min(theAvailable, inLength);
+		if(theCount <= 0) {
+			return 0;
+		}
+
+		// Copy in at most two moves, the second one when wrapping around the ring.
+		int theIndex = (int)theHead & fMask;
+		int theFirstPart = Math.min(theCount, fRing.length - theIndex);
+
+		System.arraycopy(fRing, theIndex, outObjects, inOffset, theFirstPart);
+		System.arraycopy(fRing, 0, outObjects, inOffset + theFirstPart, theCount - theFirstPart);
+
+		// For the garbage collector.
+		Arrays.fill(fRing, theIndex, theIndex + theFirstPart, null);
+		Arrays.fill(fRing, 0, theCount - theFirstPart, null);
+
+		// Give all the slots back to the Producer.
+		fHead = theHead + theCount;
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("SPSCSharedQueue(");
+
+		theResult.append("h=").append(fHead);
+		theResult.append(",t=").append(fTail);
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
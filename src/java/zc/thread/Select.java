@@ -0,0 +1,295 @@
+// ----------------------------------------------------------------------------
+//  Select.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+
+// ----------------------------------------------------------------------------
+//		Select - class
+// ----------------------------------------------------------------------------
+/**
+ * Implements the <i>alternative</i> command of CSP: a Receiver waits on
+ * several Channels at once, and receives the first message available on
+ * any of them.
+ * <pre>
+ *  Select theSelect = new Select(new SelectableChannel[] { theCommands, theData });
+ *
+ *  for(;;) {
+ *      // Only accept data when there is room for it.
+ *      Object theMessage = theSelect.select(new boolean[] { true, !isFull() });
+ *
+ *      if(theSelect.getIndex() == 0) ...
+ *  }
+ * </pre>
+ * A <i>guard</i> may close a Channel for a select: its messages are then
+ * left for later. The open Channels are scanned in turn, starting after the
+ * one of the previous message, so that a busy Channel does not starve the
+ * others.
+ * <p>
+ * No thread polls: when no open Channel holds a message, the Select registers
+ * a callback on each of them (see {@link SelectableChannel#whenReady}), and
+ * parks until a Sender runs one. A Channel holds at most one callback of a
+ * given Select, however many times it is selected without a message.
+ * <p>
+ * A Select is meant to be used by a single Receiver thread at a time; other
+ * threads may still receive from its Channels.
+ *
+ * @see SelectableChannel
+ */
+public class Select {
+
+	protected final SelectableChannel[] fChannels;
+
+	/** The callback of each Channel, and whether it is registered. */
+	private final Runnable[] fCallbacks;
+	private final AtomicBoolean[] fRegistered;
+
+	/** Set by the callbacks once a Channel may be ready. */
+	private volatile boolean fSignaled = false;
+	/** The thread running the select, null when none does. */
+	private volatile Thread fThread = null;
+
+	/** The index of the Channel of the last message, -1 if none. */
+	private int fIndex = -1;
+
+
+	// ----------------------------------------------------------------------------
+	//		Select - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a Select over the given Channels.
+	 * @param inChannels the Channels, the array is copied.
+	 * @exception IllegalArgumentException if inChannels is null or empty, or
+	 * holds a null Channel.
+	 */
+	public Select(SelectableChannel[] inChannels) {
+		if(inChannels == null || inChannels.length == 0) {
+			throw new IllegalArgumentException("no channel to select");
+		}
+
+		fChannels = inChannels.clone();
+		fCallbacks = new Runnable[fChannels.length];
+		fRegistered = new AtomicBoolean[fChannels.length];
+
+		for(int i = 0; i < fChannels.length; ++i) {
+			if(fChannels[i] == null) {
+				throw new IllegalArgumentException("null channel at " + i);
+			}
+
+			final AtomicBoolean theRegistered = fRegistered[i] = new AtomicBoolean();
+
+			fCallbacks[i] = new Runnable() {
+				public void run() {
+					theRegistered.set(false);
+					fSignaled = true;
+
+					Thread theThread = fThread;
+					if(theThread != null) {
+						LockSupport.unpark(theThread);
+					}
+				}
+			};
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		select
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait for a message on any of the Channels.
+	 * @return the message received.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public Object select() throws InterruptedException {
+		return select(null);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		select
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait for a message on any of the Channels whose guard is true.
+	 * @param inGuards the guard of each Channel, or null to open all of them.
+	 * @return the message received.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if there is not a guard per Channel,
+	 * or if no guard is true.
+	 */
+	public Object select(boolean[] inGuards) throws InterruptedException {
+		return do_select(inGuards, false, 0);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		select
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait at most msecs milliseconds for a message on any of the Channels
+	 * whose guard is true.
+	 * @param inGuards the guard of each Channel, or null to open all of them.
+	 * @param msecs the number of milliseconds to wait before giving up, zero
+	 * or less to only take a message already available.
+	 * @return the message received, or null if the time is up.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * @exception IllegalArgumentException if there is not a guard per Channel,
+	 * or if no guard is true.
+	 */
+	public Object select(boolean[] inGuards, long msecs) throws InterruptedException {
+		return do_select(inGuards, true, msecs * 1000000L);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getIndex
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the index of the Channel the last message was received from.
+	 * A select that times out leaves it unchanged.
+	 * @return an index in the array of Channels, or -1 before the first message.
+	 */
+	public int getIndex() {
+		return fIndex;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getChannel
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns a Channel of this Select.
+	 * @param inIndex the index of the Channel.
+	 * @return the Channel.
+	 */
+	public SelectableChannel getChannel(int inIndex) {
+		return fChannels[inIndex];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		do_select
+	// ----------------------------------------------------------------------------
+	/**
+	 * Scan the open Channels; if none holds a message, register the callbacks,
+	 * scan again, then park until a callback runs and start over.
+	 */
+	private Object do_select(boolean[] inGuards, boolean inTimed, long inNanos) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		check_guards(inGuards);
+
+		long theDeadline = inTimed ? System.nanoTime() + inNanos : 0;
+		Object theMessage = scan(inGuards);
+
+		if(theMessage != null || (inTimed && inNanos <= 0)) {
+			return theMessage;
+		}
+
+		fThread = Thread.currentThread();
+		try {
+			for(;;) {
+				// Reset the signal before looking at the Channels: a message
+				// that comes after the scan is bound to run a callback.
+				fSignaled = false;
+
+				for(int i = 0; i < fChannels.length; ++i) {
+					if((inGuards == null || inGuards[i]) && fRegistered[i].compareAndSet(false, true)) {
+						fChannels[i].whenReady(fCallbacks[i]);
+					}
+				}
+
+				theMessage = scan(inGuards);
+				if(theMessage != null) {
+					return theMessage;
+				}
+
+				while(!fSignaled) {
+					if(Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+
+					if(!inTimed) {
+						LockSupport.park(this);
+					}
+					else {
+						long theRemaining = theDeadline - System.nanoTime();
+
+						if(theRemaining <= 0) {
+							return null;
+						}
+
+						LockSupport.parkNanos(this, theRemaining);
+					}
+				}
+			}
+		}
+		finally {
+			fThread = null;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		scan
+	// ----------------------------------------------------------------------------
+	/**
+	 * Poll the open Channels once, starting after the Channel of the last message.
+	 * @return the first message found, or null if none.
+	 */
+	private Object scan(boolean[] inGuards) {
+		int theCount = fChannels.length;
+		int theStart = fIndex + 1;
+
+		for(int n = 0; n < theCount; ++n) {
+			int theIndex = (theStart + n) % theCount;
+
+			if(inGuards == null || inGuards[theIndex]) {
+				Object theMessage = fChannels[theIndex].poll();
+
+				if(theMessage != null) {
+					fIndex = theIndex;
+					return theMessage;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		check_guards
+	// ----------------------------------------------------------------------------
+	private void check_guards(boolean[] inGuards) {
+		if(inGuards == null) {
+			return;
+		}
+		if(inGuards.length != fChannels.length) {
+			throw new IllegalArgumentException("illegal guard count " + inGuards.length);
+		}
+
+		for(int i = 0; i < inGuards.length; ++i) {
+			if(inGuards[i]) {
+				return;
+			}
+		}
+
+		throw new IllegalArgumentException("no open guard");
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("Select(");
+
+		theResult.append("#=").append(fChannels.length);
+		theResult.append(",i=").append(fIndex);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,47 @@
+// ----------------------------------------------------------------------------
+//  SelectableChannel.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		SelectableChannel - interface
+// ----------------------------------------------------------------------------
+/**
+ * Interface for the Channels a {@link Select} can wait on: besides blocking
+ * receives, they offer a non-blocking receive and tell when a message may
+ * be available.
+ *
+ * @see Select
+ */
+public interface SelectableChannel extends Channel {
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Receive a message if one is available. Never block.
+	 * @return the message, or null if there is none.
+	 */
+	public Object poll();
+
+	// ----------------------------------------------------------------------------
+	//		whenReady
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run a callback once, as soon as a message may be available: right away
+	 * if one is, otherwise by the next Sender. The message may have been
+	 * taken by another Receiver by the time the callback runs.
+	 * <p>
+	 * The callback must be short and must neither block nor throw.
+	 * @param inCallback the callback.
+	 * @exception IllegalArgumentException if inCallback is null.
+	 */
+	public void whenReady(Runnable inCallback);
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
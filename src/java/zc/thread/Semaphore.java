@@ -42,6 +42,8 @@ package zc.thread;
  *      // could acquire the semaphore, nothing to do.
  *  }
  * </pre>
+ * A Semaphore built in the parking mode of {@link WaitSet} parks its waiting
+ * threads, it never blocks them while holding a monitor.
  * @see Mutex
  * @see FIFOSemaphore
  * @see "Concurrency - State Models & Java Programs, chap: 5.2, page: 87"
@@ -50,6 +52,15 @@ public class Semaphore implements Lock {
 
 	protected volatile int fValue;
 
+	/** The threads waiting for a permit, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fAvailable = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fValue > 0;
+		}
+	};
+
 
 	// ----------------------------------------------------------------------------
 	//		Semaphore - constructor
@@ -80,6 +91,14 @@ public class Semaphore implements Lock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_acquire()) {
+				fWaitSet.await(fAvailable);
+			}
+
+			return;
+		}
+
 		synchronized(this) {
 			while(fValue <= 0) {
 				this.wait();
@@ -100,6 +119,20 @@ public class Semaphore implements Lock {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			long theDeadline = System.currentTimeMillis() + msecs;
+
+			while(!try_acquire()) {
+				long theRemaining = theDeadline - System.currentTimeMillis();
+
+				if(theRemaining <= 0 || !fWaitSet.await(fAvailable, theRemaining)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
 		synchronized(this) {
 			if(fValue > 0) {
 				--fValue;
@@ -146,10 +179,14 @@ public class Semaphore implements Lock {
 	 */
 	public void release() {
 		synchronized(this) {
-			if((++fValue) > 0) {
-				this.notify();
+			if((++fValue) <= 0) {
+				return;
 			}
+
+			this.notify();
 		}
+
+		fWaitSet.signal();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -170,12 +207,16 @@ public class Semaphore implements Lock {
 		}
 
 		synchronized(this) {
-			if((fValue += n) > 0) {
-				for(int i = 0; i < fValue; ++i) {
-					this.notify();
-				}
+			if((fValue += n) <= 0) {
+				return;
+			}
+
+			for(int i = 0; i < fValue; ++i) {
+				this.notify();
 			}
 		}
+
+		fWaitSet.signalAll();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -189,6 +230,22 @@ public class Semaphore implements Lock {
 	public int value() {
 		return fValue;
 	}
+
+	// ----------------------------------------------------------------------------
+	//		try_acquire
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take a permit if one is available. Never block.
+	 * @return true if a permit has been taken.
+	 */
+	private synchronized boolean try_acquire() {
+		if(fValue <= 0) {
+			return false;
+		}
+
+		--fValue;
+		return true;
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
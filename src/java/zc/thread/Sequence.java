@@ -0,0 +1,103 @@
+// ----------------------------------------------------------------------------
+//  Sequence.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		Sequence - class
+// ----------------------------------------------------------------------------
+/**
+ * A position in a {@link RingBuffer}: the cursor of the producer, or the last
+ * event processed by a consumer.
+ * <p>
+ * A Sequence is written by a single thread and read by the others. The value
+ * is padded on both sides so that two Sequences updated by different threads
+ * never share a cache line.
+ *
+ * @see RingBuffer
+ */
+public final class Sequence {
+
+	/** The value of a Sequence before the first event. */
+	public final static long INITIAL_VALUE = -1;
+
+	// Padding, against false sharing with the preceding object.
+	long p1, p2, p3, p4, p5, p6, p7;
+	private volatile long fValue;
+	// Padding, against false sharing with the following object.
+	long q1, q2, q3, q4, q5, q6, q7;
+
+
+	// ----------------------------------------------------------------------------
+	//		Sequence - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a Sequence at INITIAL_VALUE.
+	 */
+	public Sequence() {
+		this(INITIAL_VALUE);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		Sequence - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a Sequence at the given value.
+	 * @param inValue the initial value.
+	 */
+	public Sequence(long inValue) {
+		fValue = inValue;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		get
+	// ----------------------------------------------------------------------------
+	public long get() {
+		return fValue;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		set
+	// ----------------------------------------------------------------------------
+	/**
+	 * Set the value. Must only be called by the thread owning this Sequence.
+	 * @param inValue the new value.
+	 */
+	public void set(long inValue) {
+		fValue = inValue;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		minimum_of
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the smallest value of the given Sequences, or inDefault if there
+	 * are none.
+	 */
+	static long minimum_of(Sequence[] inSequences, long inDefault) {
+		long theMinimum = inDefault;
+
+		for(int i = 0; i < inSequences.length; ++i) {
+			long theValue = inSequences[i].get();
+			if(theValue < theMinimum) {
+				theMinimum = theValue;
+			}
+		}
+
+		return theMinimum;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		return Long.toString(fValue);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,81 @@
+// ----------------------------------------------------------------------------
+//  SequenceBarrier.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		SequenceBarrier - class
+// ----------------------------------------------------------------------------
+/**
+ * What a consumer of a {@link RingBuffer} waits on: the events published by
+ * the producer and already processed by the upstream consumers, if any.
+ * <p>
+ * Created by <code>RingBuffer.newBarrier</code>.
+ *
+ * @see RingBuffer
+ * @see EventProcessor
+ */
+public final class SequenceBarrier {
+
+	private final RingBuffer fRingBuffer;
+	private final Sequence[] fDependencies;
+
+
+	// ----------------------------------------------------------------------------
+	//		SequenceBarrier - constructor
+	// ----------------------------------------------------------------------------
+	SequenceBarrier(RingBuffer inRingBuffer, Sequence[] inDependencies) {
+		fRingBuffer = inRingBuffer;
+		fDependencies = inDependencies;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getAvailable
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the last sequence that can be processed, without waiting.
+	 * @return a sequence, Sequence.INITIAL_VALUE if none.
+	 */
+	public long getAvailable() {
+		// The upstream consumers are never ahead of the producer.
+		return Sequence.minimum_of(fDependencies, fRingBuffer.fCursor.get());
+	}
+
+	// ----------------------------------------------------------------------------
+	//		waitFor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait until the given sequence can be processed.
+	 * @param inSequence the sequence to wait for.
+	 * @return the last sequence that can be processed, which may be greater
+	 * than inSequence: all the events up to it can be processed as a batch.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public long waitFor(final long inSequence) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		long theAvailable = getAvailable();
+
+		if(theAvailable < inSequence) {
+			// Both the producer and the upstream consumers signal their progress.
+			fRingBuffer.fWaitStrategy.await(new WaitSet.Condition() {
+				public boolean isTrue() {
+					return getAvailable() >= inSequence;
+				}
+			}, fRingBuffer.fProgress);
+
+			theAvailable = getAvailable();
+		}
+
+		return theAvailable;
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -7,6 +7,8 @@
 
 package zc.thread;
 
+import java.util.Collection;
+
 
 // ----------------------------------------------------------------------------
 //		SharedQueue - interface
@@ -57,6 +59,56 @@ public interface SharedQueue {
 	 */
 	public Object remove() throws InterruptedException;
 
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add a range of objects into this SharedQueue, in order, and notify waiting threads.
+	 * As many objects as there are free slots are moved at once, then the calling
+	 * thread blocks until more slots are made available, if needed.
+	 * <p>
+	 * Equivalent in effect to, but more efficient than:
+	 * <pre>
+	 *  for(int i = inOffset ; i < inOffset + inLength ; ++i)
+	 *      add(inObjects[i]);
+	 * </pre>
+	 * @param inObjects the array holding the objects to enqueue.
+	 * @param inOffset the index of the first object to enqueue.
+	 * @param inLength the number of objects to enqueue.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 * In that case the objects that were already enqueued stay in the queue.
+	 * @exception IllegalArgumentException if one of the objects is null, in which
+	 * case no object is enqueued.
+	 * @exception IndexOutOfBoundsException if the range does not fit in the array.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException;
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove as many objects as available, up to the length of the given array,
+	 * and notify waiting threads.
+	 * May block the calling thread until at least one object is available.
+	 * @param outObjects the array receiving the removed objects, from index zero,
+	 * the oldest object first.
+	 * @return the number of objects removed, which is zero only for an empty array.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public int removeAll(Object[] outObjects) throws InterruptedException;
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove the available objects, up to inMaxCount, and add them to the given
+	 * collection, the oldest object first. Never block.
+	 * @param outCollection the collection receiving the removed objects.
+	 * @param inMaxCount the maximum number of objects to remove.
+	 * @return the number of objects removed.
+	 */
+	public int drainTo(Collection outCollection, int inMaxCount);
+
 	// ----------------------------------------------------------------------------
 	//		capacity
 	// ----------------------------------------------------------------------------
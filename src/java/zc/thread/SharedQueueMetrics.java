@@ -0,0 +1,292 @@
+// ----------------------------------------------------------------------------
+//  SharedQueueMetrics.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+// ----------------------------------------------------------------------------
+//		SharedQueueMetrics - class
+// ----------------------------------------------------------------------------
+/**
+ * The instrumentation of a SharedQueue: enqueue and dequeue counters, peak
+ * occupancy, and histograms of the times the Producers and the Consumers
+ * have been blocked.
+ * <p>
+ * The counters are striped, so that the threads updating them do not contend
+ * with each other. A queue built without metrics has no SharedQueueMetrics
+ * at all, and pays a single null test per operation.
+ * <pre>
+ * BoundedSharedQueue theQueue = new BoundedSharedQueue(1024, WaitStrategy.BLOCKING, true);
+ * theQueue.getMetrics().register("zc.thread:type=SharedQueue,name=input");
+ * </pre>
+ *
+ * @see AbstractSharedQueue#getMetrics
+ */
+public class SharedQueueMetrics implements SharedQueueMetricsMBean {
+
+	/** The number of histogram buckets, one per bit of a long. */
+	public final static int BUCKET_COUNT = 64;
+
+	protected final SharedQueue fQueue;
+
+	private final LongAdder fEnqueueCount = new LongAdder();
+	private final LongAdder fDequeueCount = new LongAdder();
+	private volatile int fPeakSize = 0;
+
+	private final LongAdder fProducerBlockedNanos = new LongAdder();
+	private final LongAdder fConsumerBlockedNanos = new LongAdder();
+	private final AtomicLongArray fProducerHistogram = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLongArray fConsumerHistogram = new AtomicLongArray(BUCKET_COUNT);
+
+
+	// ----------------------------------------------------------------------------
+	//		SharedQueueMetrics - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct the metrics of the given queue.
+	 * @param inQueue the instrumented queue.
+	 */
+	public SharedQueueMetrics(SharedQueue inQueue) {
+		fQueue = inQueue;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		register
+	// ----------------------------------------------------------------------------
+	/**
+	 * Register these metrics in the platform MBean server.
+	 * @param inName the JMX object name, e.g. "zc.thread:type=SharedQueue,name=input".
+	 * @exception JMException if the name is malformed or already registered.
+	 */
+	public void register(String inName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(inName));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		unregister
+	// ----------------------------------------------------------------------------
+	/**
+	 * Unregister these metrics from the platform MBean server.
+	 * @param inName the JMX object name given to <code>register</code>.
+	 * @exception JMException if the name is malformed or not registered.
+	 */
+	public void unregister(String inName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(inName));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueued
+	// ----------------------------------------------------------------------------
+	/**
+	 * Record objects added to the queue.
+	 * <p>
+	 * <b>Must imperatively be called from a block synchronized on the queue.</b>
+	 * @param inCount the number of objects added.
+	 * @param inSize the size of the queue after the addition.
+	 */
+	void enqueued(int inCount, int inSize) {
+		fEnqueueCount.add(inCount);
+
+		if(inSize > fPeakSize) {
+			fPeakSize = inSize;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeued
+	// ----------------------------------------------------------------------------
+	/**
+	 * Record objects removed from the queue.
+	 * @param inCount the number of objects removed.
+	 */
+	void dequeued(int inCount) {
+		fDequeueCount.add(inCount);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		producerBlocked
+	// ----------------------------------------------------------------------------
+	/**
+	 * Record the time a Producer has been blocked.
+	 * @param inNanos the blocked time, in nanoseconds.
+	 */
+	void producerBlocked(long inNanos) {
+		fProducerBlockedNanos.add(inNanos);
+		fProducerHistogram.incrementAndGet(bucket_of(inNanos));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		consumerBlocked
+	// ----------------------------------------------------------------------------
+	/**
+	 * Record the time a Consumer has been blocked.
+	 * @param inNanos the blocked time, in nanoseconds.
+	 */
+	void consumerBlocked(long inNanos) {
+		fConsumerBlockedNanos.add(inNanos);
+		fConsumerHistogram.incrementAndGet(bucket_of(inNanos));
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getEnqueueCount
+	// ----------------------------------------------------------------------------
+	public long getEnqueueCount() {
+		return fEnqueueCount.sum();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getDequeueCount
+	// ----------------------------------------------------------------------------
+	public long getDequeueCount() {
+		return fDequeueCount.sum();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getSize
+	// ----------------------------------------------------------------------------
+	public int getSize() {
+		return fQueue.size();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getCapacity
+	// ----------------------------------------------------------------------------
+	public int getCapacity() {
+		return fQueue.capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getPeakSize
+	// ----------------------------------------------------------------------------
+	public int getPeakSize() {
+		return fPeakSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getProducerBlockedCount
+	// ----------------------------------------------------------------------------
+	public long getProducerBlockedCount() {
+		return total_of(fProducerHistogram);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getProducerBlockedNanos
+	// ----------------------------------------------------------------------------
+	public long getProducerBlockedNanos() {
+		return fProducerBlockedNanos.sum();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getProducerBlockedHistogram
+	// ----------------------------------------------------------------------------
+	public long[] getProducerBlockedHistogram() {
+		return copy_of(fProducerHistogram);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getConsumerBlockedCount
+	// ----------------------------------------------------------------------------
+	public long getConsumerBlockedCount() {
+		return total_of(fConsumerHistogram);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getConsumerBlockedNanos
+	// ----------------------------------------------------------------------------
+	public long getConsumerBlockedNanos() {
+		return fConsumerBlockedNanos.sum();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getConsumerBlockedHistogram
+	// ----------------------------------------------------------------------------
+	public long[] getConsumerBlockedHistogram() {
+		return copy_of(fConsumerHistogram);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		reset
+	// ----------------------------------------------------------------------------
+	/**
+	 * Reset all the counters, the peak size and the histograms. The updates
+	 * made concurrently with the reset may be lost.
+	 */
+	public void reset() {
+		fEnqueueCount.reset();
+		fDequeueCount.reset();
+		fPeakSize = fQueue.size();
+		fProducerBlockedNanos.reset();
+		fConsumerBlockedNanos.reset();
+
+		for(int i = 0; i < BUCKET_COUNT; ++i) {
+			fProducerHistogram.set(i, 0);
+			fConsumerHistogram.set(i, 0);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		bucket_of
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the histogram bucket of a duration: the index of its highest bit.
+	 */
+	private static int bucket_of(long inNanos) {
+		return inNanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(inNanos);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		total_of
+	// ----------------------------------------------------------------------------
+	private static long total_of(AtomicLongArray inHistogram) {
+		long theTotal = 0;
+
+		for(int i = 0; i < BUCKET_COUNT; ++i) {
+			theTotal += inHistogram.get(i);
+		}
+
+		return theTotal;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		copy_of
+	// ----------------------------------------------------------------------------
+	private static long[] copy_of(AtomicLongArray inHistogram) {
+		long[] theCopy = new long[BUCKET_COUNT];
+
+		for(int i = 0; i < BUCKET_COUNT; ++i) {
+			theCopy[i] = inHistogram.get(i);
+		}
+
+		return theCopy;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("SharedQueueMetrics(");
+
+		theResult.append("e=").append(getEnqueueCount());
+		theResult.append(",d=").append(getDequeueCount());
+		theResult.append(",#=").append(getSize());
+		theResult.append(",peak=").append(getPeakSize());
+		theResult.append(",pb=").append(getProducerBlockedCount());
+		theResult.append(",cb=").append(getConsumerBlockedCount());
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
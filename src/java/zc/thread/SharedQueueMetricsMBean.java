@@ -0,0 +1,60 @@
+// ----------------------------------------------------------------------------
+//  SharedQueueMetricsMBean.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		SharedQueueMetricsMBean - interface
+// ----------------------------------------------------------------------------
+/**
+ * The JMX management interface of {@link SharedQueueMetrics}.
+ * <p>
+ * The histograms have one bucket per power of two nanoseconds: bucket
+ * <i>i</i> counts the waits that lasted from 2<sup><i>i</i></sup> up to
+ * 2<sup><i>i</i>+1</sup> nanoseconds.
+ */
+public interface SharedQueueMetricsMBean {
+
+	/** The number of objects added since the creation or the last reset. */
+	public long getEnqueueCount();
+
+	/** The number of objects removed since the creation or the last reset. */
+	public long getDequeueCount();
+
+	/** The current number of objects in the queue. */
+	public int getSize();
+
+	/** The capacity of the queue. */
+	public int getCapacity();
+
+	/** The largest number of objects in the queue since the creation or the last reset. */
+	public int getPeakSize();
+
+	/** The number of times a Producer has been blocked because the queue was full. */
+	public long getProducerBlockedCount();
+
+	/** The total time the Producers have been blocked, in nanoseconds. */
+	public long getProducerBlockedNanos();
+
+	/** The histogram of the times the Producers have been blocked. */
+	public long[] getProducerBlockedHistogram();
+
+	/** The number of times a Consumer has been blocked because the queue was empty. */
+	public long getConsumerBlockedCount();
+
+	/** The total time the Consumers have been blocked, in nanoseconds. */
+	public long getConsumerBlockedNanos();
+
+	/** The histogram of the times the Consumers have been blocked. */
+	public long[] getConsumerBlockedHistogram();
+
+	/** Reset all the counters, the peak size and the histograms. */
+	public void reset();
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,332 @@
+// ----------------------------------------------------------------------------
+//  SharedQueuePublisher.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// ----------------------------------------------------------------------------
+//		SharedQueuePublisher - class
+// ----------------------------------------------------------------------------
+/**
+ * Expose a SharedQueue, e.g. a {@link BoundedSharedQueue} or a {@link Port},
+ * as a <code>Flow.Publisher</code>: the bridge between a pipeline of blocking
+ * threads and non-blocking code.
+ * <p>
+ * The objects are delivered on the demand of the Subscribers, expressed with
+ * <code>Flow.Subscription.request</code>, by tasks run on the given executor.
+ * No thread ever blocks on the queue: a task takes the objects with
+ * <code>poll</code>, and when the queue runs dry while some demand is left,
+ * the next Producer schedules a new task (see
+ * {@link AbstractSharedQueue#whenNotEmpty}). The objects the Subscribers have
+ * not asked for stay in the queue, and hold back the Producers once the queue
+ * is full: the demand flows up to them.
+ * <p>
+ * The Subscribers of a same publisher compete for the objects of the queue, as
+ * the Consumers of a SharedQueue do; each object goes to a single Subscriber.
+ * The signals to a Subscriber are never concurrent, but they may come from
+ * different threads of the executor.
+ * <p>
+ * A queue never ends by itself: once the Producers are done, {@link #close}
+ * completes the Subscribers after they have taken the remaining objects.
+ *
+ * @see AbstractSharedQueue
+ */
+public class SharedQueuePublisher implements Flow.Publisher {
+
+	protected final AbstractSharedQueue fQueue;
+	protected final Executor fExecutor;
+
+	/** The Subscriptions not cancelled nor terminated yet. */
+	private final ConcurrentLinkedQueue fSubscriptions = new ConcurrentLinkedQueue();
+	private volatile boolean fClosed = false;
+
+
+	// ----------------------------------------------------------------------------
+	//		QueueSubscription - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * The link between the queue and a Subscriber; also the delivery task.
+	 * <p>
+	 * A delivery is scheduled on each event, a request, a Producer or the close
+	 * of the publisher. Only the first one of the events that occur together
+	 * actually goes to the executor: the others are counted, and the running
+	 * task delivers again until it has caught up with them.
+	 */
+	private final class QueueSubscription implements Flow.Subscription, Runnable {
+
+		private final Flow.Subscriber fSubscriber;
+		/** The number of objects requested and not delivered yet. */
+		private final AtomicLong fDemand = new AtomicLong();
+		/** The number of deliveries scheduled and not done yet. */
+		private final AtomicInteger fScheduledCount = new AtomicInteger();
+		/** True while a callback is registered on the queue. */
+		private final AtomicBoolean fWatching = new AtomicBoolean();
+		/** The error of an illegal request, to be signaled. */
+		private volatile Throwable fError = null;
+		/** True once cancelled or terminated. */
+		private volatile boolean fDone = false;
+		/** True once onSubscribe has been signaled. Only used by the delivery. */
+		private boolean fSubscribed = false;
+
+		/** The callback that a Producer runs when objects come in. */
+		private final Runnable fWakeUp = new Runnable() {
+			public void run() {
+				fWatching.set(false);
+				schedule();
+			}
+		};
+
+		// ----------------------------------------------------------------------------
+		//		QueueSubscription - constructor
+		// ----------------------------------------------------------------------------
+		QueueSubscription(Flow.Subscriber inSubscriber) {
+			fSubscriber = inSubscriber;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		request
+		// ----------------------------------------------------------------------------
+		/**
+		 * Add to the demand, up to Long.MAX_VALUE that stands for an unbounded
+		 * demand. A request of zero or less is signaled as an
+		 * IllegalArgumentException, and terminates the subscription.
+		 */
+		public void request(long n) {
+			if(n <= 0) {
+				if(fError == null) {
+					fError = new IllegalArgumentException("illegal request " + n);
+				}
+			}
+			else {
+				long theDemand, theNewDemand;
+
+				do {
+					theDemand = fDemand.get();
+					theNewDemand = theDemand + n;
+					if(theNewDemand < 0) {
+						theNewDemand = Long.MAX_VALUE;
+					}
+				} while(!fDemand.compareAndSet(theDemand, theNewDemand));
+			}
+
+			schedule();
+		}
+
+		// ----------------------------------------------------------------------------
+		//		cancel
+		// ----------------------------------------------------------------------------
+		/**
+		 * Stop the delivery. The objects not delivered yet stay in the queue.
+		 */
+		public void cancel() {
+			fDone = true;
+			fSubscriptions.remove(this);
+		}
+
+		// ----------------------------------------------------------------------------
+		//		schedule
+		// ----------------------------------------------------------------------------
+		/**
+		 * Have the delivery run, unless it is already scheduled. A subscription
+		 * whose delivery is rejected by the executor is cancelled.
+		 */
+		void schedule() {
+			if(fScheduledCount.getAndIncrement() == 0) {
+				try {
+					fExecutor.execute(this);
+				}
+				catch(RejectedExecutionException ex) {
+					cancel();
+				}
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		run
+		// ----------------------------------------------------------------------------
+		public void run() {
+			int theScheduledCount = 1;
+
+			try {
+				do {
+					deliver();
+					theScheduledCount = fScheduledCount.addAndGet(-theScheduledCount);
+				} while(theScheduledCount != 0);
+			}
+			catch(RuntimeException ex) {
+				// The Subscriber has broken the rules.
+				cancel();
+				throw ex;
+			}
+		}
+
+		// ----------------------------------------------------------------------------
+		//		deliver
+		// ----------------------------------------------------------------------------
+		/**
+		 * Deliver as many objects as the queue holds and the demand allows, then
+		 * watch the queue if the demand is left unsatisfied.
+		 */
+		private void deliver() {
+			if(fDone) {
+				return;
+			}
+
+			if(!fSubscribed) {
+				fSubscribed = true;
+				fSubscriber.onSubscribe(this);
+			}
+
+			if(fError != null) {
+				cancel();
+				fSubscriber.onError(fError);
+				return;
+			}
+
+			long theDemand = fDemand.get();
+			long theCount = 0;
+
+			while(theCount < theDemand && !fDone) {
+				Object theObject = fQueue.poll();
+
+				if(theObject == null) {
+					break;
+				}
+
+				fSubscriber.onNext(theObject);
+				++theCount;
+			}
+
+			if(theCount > 0 && theDemand != Long.MAX_VALUE) {
+				fDemand.addAndGet(-theCount);
+			}
+
+			if(fDone) {
+				return;
+			}
+
+			// The publisher is closed, thus the queue stays empty.
+			if(fClosed && fQueue.isEmpty()) {
+				cancel();
+				fSubscriber.onComplete();
+				return;
+			}
+
+			// The queue has run dry before the demand, let the next Producer schedule a delivery.
+			if(theCount < theDemand && fWatching.compareAndSet(false, true)) {
+				fQueue.whenNotEmpty(fWakeUp);
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		SharedQueuePublisher - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SharedQueuePublisher.
+	 * @param inQueue the queue the objects are taken from.
+	 * @param inExecutor the executor running the deliveries.
+	 * @exception IllegalArgumentException if inQueue or inExecutor is null.
+	 */
+	public SharedQueuePublisher(AbstractSharedQueue inQueue, Executor inExecutor) {
+		if(inQueue == null) {
+			throw new IllegalArgumentException("null queue");
+		}
+		if(inExecutor == null) {
+			throw new IllegalArgumentException("null executor");
+		}
+
+		fQueue = inQueue;
+		fExecutor = inExecutor;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		subscribe
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add a Subscriber. Its <code>onSubscribe</code> is signaled from the
+	 * executor, and no object is delivered before it requests some.
+	 * @param inSubscriber the Subscriber.
+	 * @exception NullPointerException if inSubscriber is null, as required by
+	 * the <code>Flow</code> specification.
+	 */
+	public void subscribe(Flow.Subscriber inSubscriber) {
+		if(inSubscriber == null) {
+			throw new NullPointerException("null subscriber");
+		}
+
+		QueueSubscription theSubscription = new QueueSubscription(inSubscriber);
+
+		fSubscriptions.offer(theSubscription);
+		theSubscription.schedule();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		close
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tell that no object is to be added to the queue anymore: each Subscriber,
+	 * current or future, is completed as soon as it finds the queue empty.
+	 */
+	public void close() {
+		fClosed = true;
+
+		for(Iterator theIterator = fSubscriptions.iterator(); theIterator.hasNext();) {
+			((QueueSubscription)theIterator.next()).schedule();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isClosed
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns true once <code>close</code> has been called.
+	 * @return a boolean.
+	 */
+	public boolean isClosed() {
+		return fClosed;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getSubscriberCount
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of Subscribers neither cancelled nor terminated.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int >= zero.
+	 */
+	public int getSubscriberCount() {
+		return fSubscriptions.size();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("SharedQueuePublisher(");
+
+		theResult.append("s=").append(fSubscriptions.size());
+		theResult.append(",closed=").append(fClosed);
+		theResult.append(",q=").append(fQueue);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
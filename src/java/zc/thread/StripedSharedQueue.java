@@ -0,0 +1,489 @@
+// ----------------------------------------------------------------------------
+//  StripedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// ----------------------------------------------------------------------------
+//		StripedSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue spread over several {@link BoundedSharedQueue} shards, for a
+ * large number of Producers that would contend on the monitor of a single
+ * queue.
+ * <p>
+ * Two modes are available:
+ * <ul>
+ * <li><b>FIFO</b>, the default: each object is given a ticket from a counter,
+ * and goes to the shard <code>ticket % shards</code>; each Consumer takes
+ * the next ticket from another counter and waits on the matching shard. The
+ * objects come out in the order of their tickets, while the Producers
+ * only share the counter, not the monitor. As the Consumer of a ticket waits
+ * on its shard, a ticket is never lost: a Producer blocked on a full shard
+ * waits for room even when interrupted, and keeps the interrupt for the
+ * caller; a Consumer interrupted while blocked gives its ticket back, for
+ * the next Consumer to take before a new one.
+ * <li><b>relaxed</b>: each thread has a home shard, derived from its
+ * identifier. A Producer adds to its home shard, or to any shard with room
+ * if its home shard is full; a Consumer removes from its home shard, or
+ * steals from the other shards if its home shard is empty. There is no order
+ * between objects added by different threads, nor between objects added
+ * by the same thread once its home shard has been full, but the Producers
+ * do not share anything.
+ * </ul>
+ * A blocked Producer waits on its shard; a Consumer blocked in relaxed mode
+ * waits on the monitor of this queue, which the Producers only take when
+ * some Consumer is waiting.
+ *
+ * @see BoundedSharedQueue
+ */
+public class StripedSharedQueue implements SharedQueue {
+
+	protected final BoundedSharedQueue[] fShards;
+	protected final boolean fRelaxed;
+
+	/** The next ticket of a Producer, in FIFO mode. */
+	private final AtomicLong fPutTicket = new AtomicLong(0);
+	/** The next ticket of a Consumer, in FIFO mode. */
+	private final AtomicLong fGetTicket = new AtomicLong(0);
+	/** The tickets given back by the Consumers, in FIFO mode. */
+	private final ConcurrentLinkedQueue fGetOrphans = new ConcurrentLinkedQueue();
+	/** The number of Consumers waiting on this monitor, in relaxed mode. */
+	private volatile int fWaiterCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		StripedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a StripedSharedQueue.
+	 * @param inShardCount the number of shards.
+	 * @param inShardCapacity the capacity of each shard.
+	 * @param inRelaxed true to trade the global FIFO order for the scalability
+	 * of the Producers.
+	 * @exception IllegalArgumentException if inShardCount or inShardCapacity is
+	 * less than one, or if the total capacity overflows.
+	 */
+	public StripedSharedQueue(int inShardCount, int inShardCapacity, boolean inRelaxed) {
+		if(inShardCount < 1) {
+			throw new IllegalArgumentException("illegal shard count " + inShardCount);
+		}
+		if(inShardCapacity < 1 || (long)inShardCount * inShardCapacity > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("illegal capacity " + inShardCapacity);
+		}
+
+		fShards = new BoundedSharedQueue[inShardCount];
+		for(int i = 0; i < inShardCount; ++i) {
+			fShards[i] = new BoundedSharedQueue(inShardCapacity);
+		}
+
+		fRelaxed = inRelaxed;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		StripedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a FIFO StripedSharedQueue.
+	 * @param inShardCount the number of shards.
+	 * @param inShardCapacity the capacity of each shard.
+	 * @exception IllegalArgumentException if inShardCount or inShardCapacity is
+	 * less than one, or if the total capacity overflows.
+	 */
+	public StripedSharedQueue(int inShardCount, int inShardCapacity) {
+		this(inShardCount, inShardCapacity, false);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue. In FIFO mode, must not be
+	 * called while Producers or Consumers are active, as the tickets are reset.
+	 */
+	public void clear() {
+		for(int i = 0; i < fShards.length; ++i) {
+			fShards[i].clear();
+		}
+
+		if(!fRelaxed) {
+			fGetOrphans.clear();
+			fGetTicket.set(0);
+			fPutTicket.set(0);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		if(!fRelaxed) {
+			put(fPutTicket.getAndIncrement(), inObject);
+			return;
+		}
+
+		int theHome = home_shard();
+
+		if(!fShards[theHome].offer(inObject)) {
+			// The home shard is full, look for room elsewhere before blocking.
+			boolean theDone = false;
+
+			for(int i = 1; i < fShards.length && !theDone; ++i) {
+				theDone = fShards[(theHome + i) % fShards.length].offer(inObject);
+			}
+
+			if(!theDone) {
+				fShards[theHome].add(inObject);
+			}
+		}
+
+		signal_waiters();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if(!fRelaxed) {
+			long theTicket = next_ticket();
+
+			try {
+				return fShards[shard_of(theTicket)].remove();
+			}
+			catch(InterruptedException ex) {
+				// Give the ticket back, its object is still to come.
+				fGetOrphans.offer(Long.valueOf(theTicket));
+				throw ex;
+			}
+		}
+
+		int theHome = home_shard();
+
+		for(;;) {
+			Object theObject = steal(theHome);
+
+			if(theObject != null) {
+				return theObject;
+			}
+
+			await_not_empty();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			add(inObjects[i]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		// Wait for the first object, then take what is available.
+		outObjects[0] = remove();
+
+		return 1 + poll(outObjects, 1, outObjects.length - 1);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		Object[] theObjects = new Object[Math.max(Math.min(inMaxCount, size()), 0)];
+		int theCount = poll(theObjects, 0, theObjects.length);
+
+		for(int i = 0; i < theCount; ++i) {
+			outCollection.add(theObjects[i]);
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	public int capacity() {
+		return fShards.length * fShards[0].capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		int theSize = 0;
+
+		for(int i = 0; i < fShards.length; ++i) {
+			theSize += fShards[i].size();
+		}
+
+		return theSize;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		for(int i = 0; i < fShards.length; ++i) {
+			if(!fShards[i].isEmpty()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	public boolean isFull() {
+		for(int i = 0; i < fShards.length; ++i) {
+			if(!fShards[i].isFull()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getShardCount
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the number of shards.
+	 */
+	public int getShardCount() {
+		return fShards.length;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isRelaxed
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if this queue trades the global FIFO order for scalability.
+	 */
+	public boolean isRelaxed() {
+		return fRelaxed;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Remove the available objects, up to inLength, without blocking.
+	 * @return the number of objects removed.
+	 */
+	private int poll(Object[] outObjects, int inOffset, int inLength) {
+		int theCount = 0;
+
+		if(fRelaxed) {
+			int theHome = home_shard();
+
+			while(theCount < inLength) {
+				Object theObject = steal(theHome);
+				if(theObject == null) {
+					break;
+				}
+				outObjects[inOffset + theCount++] = theObject;
+			}
+
+			return theCount;
+		}
+
+		while(theCount < inLength) {
+			Long theOrphan = (Long)fGetOrphans.poll();
+			long theTicket;
+
+			if(theOrphan != null) {
+				theTicket = theOrphan.longValue();
+			}
+			else {
+				theTicket = fGetTicket.get();
+
+				// Only take a ticket already given to a Producer.
+				if(theTicket >= fPutTicket.get()) {
+					break;
+				}
+				if(!fGetTicket.compareAndSet(theTicket, theTicket + 1)) {
+					continue;
+				}
+			}
+
+			Object theObject = fShards[shard_of(theTicket)].poll();
+
+			if(theObject == null) {
+				// The object is not there yet: rather than waiting for it,
+				// give the ticket back and stop.
+				fGetOrphans.offer(Long.valueOf(theTicket));
+				break;
+			}
+
+			outObjects[inOffset + theCount++] = theObject;
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		put
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add the object of a ticket to its shard, in FIFO mode. The Consumer of
+	 * the ticket waits on that shard: once the ticket is taken, the object
+	 * must get there, so the wait for room is not interruptible.
+	 */
+	private void put(long inTicket, Object inObject) {
+		BoundedSharedQueue theShard = fShards[shard_of(inTicket)];
+		boolean theInterrupted = false;
+
+		for(;;) {
+			try {
+				theShard.add(inObject);
+				break;
+			}
+			catch(InterruptedException ex) {
+				theInterrupted = true;
+			}
+		}
+
+		if(theInterrupted) {
+			// Keep the interrupt for the caller.
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_ticket
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the ticket of a Consumer, in FIFO mode: a ticket given back if
+	 * any, as it is older than the next one.
+	 */
+	private long next_ticket() {
+		Long theOrphan = (Long)fGetOrphans.poll();
+
+		return theOrphan != null ? theOrphan.longValue() : fGetTicket.getAndIncrement();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		steal
+	// ----------------------------------------------------------------------------
+	/**
+	 * Poll the home shard, then the other shards in turn.
+	 * @return an object, or null if all the shards were empty.
+	 */
+	private Object steal(int inHome) {
+		for(int i = 0; i < fShards.length; ++i) {
+			Object theObject = fShards[(inHome + i) % fShards.length].poll();
+			if(theObject != null) {
+				return theObject;
+			}
+		}
+
+		return null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await_not_empty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait on this monitor until some shard is not empty, in relaxed mode.
+	 */
+	private synchronized void await_not_empty() throws InterruptedException {
+		++fWaiterCount;
+
+		try {
+			// A Producer writes a shard before reading fWaiterCount, we write
+			// fWaiterCount before reading the shards: one sees the other.
+			if(isEmpty()) {
+				this.wait();
+			}
+		}
+		finally {
+			--fWaiterCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal_waiters
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up the Consumers waiting on this monitor, if any, in relaxed mode.
+	 */
+	private void signal_waiters() {
+		if(fWaiterCount > 0) {
+			synchronized(this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		home_shard
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the home shard of the calling thread.
+	 */
+	private int home_shard() {
+		return (int)(Thread.currentThread().getId() % fShards.length);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		shard_of
+	// ----------------------------------------------------------------------------
+	private int shard_of(long inTicket) {
+		return (int)(inTicket % fShards.length);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("StripedSharedQueue(");
+
+		theResult.append("s=").append(fShards.length);
+		theResult.append(",r=").append(fRelaxed);
+		theResult.append(",#=").append(size());
+		theResult.append(",c=").append(capacity());
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
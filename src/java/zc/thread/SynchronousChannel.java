@@ -33,13 +33,34 @@ package zc.thread;
  * the sender to the receiver. Consequently the sender should not access a message
  * object after it has been sent through a Channel. If the sender need to reference
  * a message object in the future it should copy it before sending it.
+ * <p>
+ * A SynchronousChannel built in the parking mode of {@link WaitSet} parks
+ * the waiting threads, it never blocks them while holding a monitor.
+ * <p>
+ * A Receiver may wait on a SynchronousChannel and other Channels at once
+ * with a {@link Select}.
  *
  * @see Port
  */
-public class SynchronousChannel implements Channel {
+public class SynchronousChannel implements SelectableChannel {
 
 	protected volatile Object fMessage = null;
 
+	/** The Sender and the Receiver waiting, in the parking mode. */
+	private final WaitSet fWaitSet = new WaitSet();
+
+	private final WaitSet.Condition fEmpty = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fMessage == null;
+		}
+	};
+
+	private final WaitSet.Condition fFull = new WaitSet.Condition() {
+		public boolean isTrue() {
+			return fMessage != null;
+		}
+	};
+
 
 	// ----------------------------------------------------------------------------
 	//		send
@@ -59,6 +80,15 @@ public class SynchronousChannel implements Channel {
 			throw new IllegalArgumentException("attempt to send a null message");
 		}
 
+		if(fWaitSet.isParking()) {
+			while(!try_send(inMessage)) {
+				fWaitSet.await(fEmpty);
+			}
+
+			fWaitSet.signalAll();
+			return;
+		}
+
 		synchronized(this) {
 			while(fMessage != null) {
 				this.wait();
@@ -68,6 +98,9 @@ public class SynchronousChannel implements Channel {
 
 			this.notifyAll();
 		}
+
+		// Run the callbacks of the Selects.
+		fWaitSet.signalAll();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -84,6 +117,17 @@ public class SynchronousChannel implements Channel {
 			throw new InterruptedException();
 		}
 
+		if(fWaitSet.isParking()) {
+			Object theMessage;
+
+			while((theMessage = try_receive()) == null) {
+				fWaitSet.await(fFull);
+			}
+
+			fWaitSet.signalAll();
+			return theMessage;
+		}
+
 		synchronized(this) {
 			while(fMessage == null) {
 				this.wait();
@@ -97,6 +141,68 @@ public class SynchronousChannel implements Channel {
 			return theMessage;
 		}
 	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	public Object poll() {
+		Object theMessage;
+
+		synchronized(this) {
+			theMessage = fMessage;
+			if(theMessage == null) {
+				return null;
+			}
+
+			fMessage = null;
+			this.notifyAll();
+		}
+
+		fWaitSet.signalAll();
+		return theMessage;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		whenReady
+	// ----------------------------------------------------------------------------
+	public void whenReady(Runnable inCallback) {
+		fWaitSet.onSignal(inCallback);
+
+		// A message may have come before the callback was registered.
+		if(fMessage != null) {
+			fWaitSet.signalAll();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		try_send
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put a message into this Channel if it is empty. Never block.
+	 * @return true if the message has been put.
+	 */
+	private synchronized boolean try_send(Object inMessage) {
+		if(fMessage != null) {
+			return false;
+		}
+
+		fMessage = inMessage;
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		try_receive
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the message of this Channel, if any. Never block.
+	 * @return the message, or null if there is none.
+	 */
+	private synchronized Object try_receive() {
+		Object theMessage = fMessage;
+
+		fMessage = null;
+		return theMessage;
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
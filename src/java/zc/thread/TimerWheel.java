@@ -0,0 +1,425 @@
+// ----------------------------------------------------------------------------
+//  TimerWheel.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		TimerWheel - class
+// ----------------------------------------------------------------------------
+/**
+ * A hashed hierarchical timer wheel: a set of timers, each one holding an
+ * object until a deadline.
+ * <p>
+ * Time is divided in <i>ticks</i> of a fixed number of milliseconds. The
+ * wheel has four levels of 256 slots: a timer due in less than 256 ticks sits
+ * in the slot of its tick at level 0, a timer due later sits at the level and
+ * in the slot covering its deadline, and is moved down (<i>cascaded</i>) when
+ * the lower level has turned once. A timer is an element of a doubly linked
+ * list, thus scheduling and canceling a timer cost O(1) whatever the number
+ * of pending timers, and there is no allocation besides the timer itself.
+ * <p>
+ * Expired timers are moved, in order of expiration, to a list from which
+ * they are taken with <code>{@link #poll}</code>.
+ * <p>
+ * <b>NOTE:</b> a TimerWheel is not synchronized, it is meant to be guarded by
+ * the monitor of the container that uses it.
+ *
+ * @see DelaySharedQueue
+ * @see "Hashed and Hierarchical Timing Wheels, G. Varghese and T. Lauck, 1987"
+ */
+public class TimerWheel {
+
+	private final static int LEVELS = 4;
+	private final static int SLOT_BITS = 8;
+	private final static int SLOTS = 1 << SLOT_BITS;
+	private final static int SLOT_MASK = SLOTS - 1;
+
+	protected final long fTickMillis;
+	protected final long fStartMillis;
+
+	/** The slot lists of all levels, the level 0 ones first. */
+	private final Timer[] fSlots = new Timer[LEVELS * SLOTS];
+	/** The expired timers, oldest first. */
+	private final Timer fExpired = new Timer(null, 0, 0);
+
+	/** The next tick to process. */
+	private long fCurrentTick = 0;
+	/** The number of timers in the slots. */
+	private int fScheduledCount = 0;
+	/** The number of timers in the expired list. */
+	private int fExpiredCount = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		Timer - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A scheduled object, also the handle used to cancel it.
+	 */
+	public final static class Timer {
+		final Object fObject;
+		final long fDeadline;
+		final long fTick;
+		TimerWheel fWheel;
+		Timer fPrevious, fNext;
+
+		// ----------------------------------------------------------------------------
+		//		Timer - constructor
+		// ----------------------------------------------------------------------------
+		Timer(Object inObject, long inDeadline, long inTick) {
+			fObject = inObject;
+			fDeadline = inDeadline;
+			fTick = inTick;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		getObject
+		// ----------------------------------------------------------------------------
+		/**
+		 * Return the scheduled object.
+		 */
+		public Object getObject() {
+			return fObject;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		getDeadline
+		// ----------------------------------------------------------------------------
+		/**
+		 * Return the time at which this timer expires, in milliseconds.
+		 */
+		public long getDeadline() {
+			return fDeadline;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		link
+		// ----------------------------------------------------------------------------
+		/**
+		 * Append a timer to the circular list of which this timer is the head.
+		 */
+		void link(Timer inTimer) {
+			inTimer.fPrevious = fPrevious;
+			inTimer.fNext = this;
+			fPrevious.fNext = inTimer;
+			fPrevious = inTimer;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		unlink
+		// ----------------------------------------------------------------------------
+		void unlink() {
+			fPrevious.fNext = fNext;
+			fNext.fPrevious = fPrevious;
+			fPrevious = fNext = null;
+		}
+
+		// ----------------------------------------------------------------------------
+		//		isEmpty
+		// ----------------------------------------------------------------------------
+		/**
+		 * Tests if the list of which this timer is the head is empty.
+		 */
+		boolean isEmpty() {
+			return fNext == this;
+		}
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		TimerWheel - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an empty TimerWheel.
+	 * @param inTickMillis the duration of a tick, in milliseconds: the
+	 * resolution of the timers.
+	 * @param inNowMillis the current time, the origin of the ticks.
+	 * @exception IllegalArgumentException if inTickMillis is less than one.
+	 */
+	public TimerWheel(long inTickMillis, long inNowMillis) {
+		if(inTickMillis < 1) {
+			throw new IllegalArgumentException("illegal tick " + inTickMillis);
+		}
+
+		fTickMillis = inTickMillis;
+		fStartMillis = inNowMillis;
+
+		for(int i = 0; i < fSlots.length; ++i) {
+			fSlots[i] = new Timer(null, 0, 0);
+			fSlots[i].fPrevious = fSlots[i].fNext = fSlots[i];
+		}
+		fExpired.fPrevious = fExpired.fNext = fExpired;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		schedule
+	// ----------------------------------------------------------------------------
+	/**
+	 * Schedule an object until the given deadline. A deadline in the past
+	 * expires at the next <code>advance</code>.
+	 * @param inObject the object to schedule.
+	 * @param inDeadline the time at which the timer expires, in milliseconds.
+	 * @return the timer, to be used for canceling.
+	 */
+	public Timer schedule(Object inObject, long inDeadline) {
+		// Round up, a timer never expires before its deadline.
+		long theTick = (inDeadline - fStartMillis + fTickMillis - 1) / fTickMillis;
+		Timer theTimer = new Timer(inObject, inDeadline, Math.max(theTick, fCurrentTick));
+
+		theTimer.fWheel = this;
+		insert(theTimer);
+		++fScheduledCount;
+
+		return theTimer;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		cancel
+	// ----------------------------------------------------------------------------
+	/**
+	 * Cancel a timer, whether it has expired or not, provided it has not been
+	 * taken by <code>poll</code>.
+	 * @param inTimer a timer returned by schedule.
+	 * @return true if the timer was canceled, false if it was already taken,
+	 * canceled, or does not belong to this wheel.
+	 */
+	public boolean cancel(Timer inTimer) {
+		if(inTimer == null || inTimer.fWheel != this || inTimer.fNext == null) {
+			return false;
+		}
+
+		inTimer.unlink();
+
+		if(inTimer.fTick < fCurrentTick) {
+			// Only the expired timers are behind the current tick.
+			--fExpiredCount;
+		}
+		else {
+			--fScheduledCount;
+		}
+
+		return true;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		advance
+	// ----------------------------------------------------------------------------
+	/**
+	 * Process the ticks up to the given time, moving the due timers to the
+	 * expired list.
+	 * @param inNowMillis the current time, in milliseconds.
+	 * @return the number of expired timers.
+	 */
+	public int advance(long inNowMillis) {
+		long theNowTick = (inNowMillis - fStartMillis) / fTickMillis;
+
+		while(fCurrentTick <= theNowTick) {
+			long theTick = next_tick();
+
+			if(theTick > theNowTick) {
+				// Nothing happens in between, jump.
+				fCurrentTick = theNowTick + 1;
+				break;
+			}
+
+			fCurrentTick = theTick;
+
+			// Cascade from the top, so that a timer can go down several levels.
+			for(int theLevel = LEVELS - 1; theLevel > 0; --theLevel) {
+				if((theTick & ((1L << (SLOT_BITS * theLevel)) - 1)) == 0) {
+					cascade(theLevel, (int)(theTick >>> (SLOT_BITS * theLevel)) & SLOT_MASK);
+				}
+			}
+
+			// Expire the level 0 slot of this tick.
+			Timer theSlot = fSlots[(int)theTick & SLOT_MASK];
+
+			while(!theSlot.isEmpty()) {
+				Timer theTimer = theSlot.fNext;
+
+				theTimer.unlink();
+				fExpired.link(theTimer);
+
+				--fScheduledCount;
+				++fExpiredCount;
+			}
+
+			fCurrentTick = theTick + 1;
+		}
+
+		return fExpiredCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		poll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the oldest expired timer.
+	 * @return the oldest expired timer, or null if none has expired.
+	 */
+	public Timer poll() {
+		if(fExpired.isEmpty()) {
+			return null;
+		}
+
+		Timer theTimer = fExpired.fNext;
+		theTimer.unlink();
+		--fExpiredCount;
+
+		return theTimer;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		nextAdvance
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the earliest time at which <code>advance</code> may have work to
+	 * do: the expiration of a timer, or the cascade of a higher level.
+	 * @return a time in milliseconds, or <code>Long.MAX_VALUE</code> if no
+	 * timer is scheduled.
+	 */
+	public long nextAdvance() {
+		long theTick = next_tick();
+
+		if(theTick == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return fStartMillis + theTick * fTickMillis;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Cancel all the timers, expired or not.
+	 */
+	public void clear() {
+		for(int i = 0; i < fSlots.length; ++i) {
+			clear_list(fSlots[i]);
+		}
+		clear_list(fExpired);
+
+		fScheduledCount = fExpiredCount = 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of timers, expired or not, that have not been taken
+	 * or canceled.
+	 * @return an int >= zero.
+	 */
+	public int size() {
+		return fScheduledCount + fExpiredCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		expiredCount
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of expired timers that have not been taken.
+	 * @return an int >= zero.
+	 */
+	public int expiredCount() {
+		return fExpiredCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		insert
+	// ----------------------------------------------------------------------------
+	/**
+	 * Link a timer whose tick is not behind the current one into its slot.
+	 */
+	private void insert(Timer inTimer) {
+		long theDelta = inTimer.fTick - fCurrentTick;
+		int theLevel = 0;
+
+		while(theLevel < LEVELS - 1 && (theDelta >>> (SLOT_BITS * (theLevel + 1))) != 0) {
+			++theLevel;
+		}
+
+		// Beyond the top level, the slot index wraps: the timer is cascaded
+		// early, and inserted again according to its real tick.
+		int theIndex = (int)(inTimer.fTick >>> (SLOT_BITS * theLevel)) & SLOT_MASK;
+		fSlots[theLevel * SLOTS + theIndex].link(inTimer);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		cascade
+	// ----------------------------------------------------------------------------
+	/**
+	 * Insert again the timers of a slot of a higher level.
+	 */
+	private void cascade(int inLevel, int inIndex) {
+		Timer theSlot = fSlots[inLevel * SLOTS + inIndex];
+
+		if(theSlot.isEmpty()) {
+			return;
+		}
+
+		// Detach the list first, a timer may go back into the same slot.
+		Timer theFirst = theSlot.fNext;
+		theSlot.fPrevious.fNext = null;
+		theSlot.fPrevious = theSlot.fNext = theSlot;
+
+		while(theFirst != null) {
+			Timer theTimer = theFirst;
+			theFirst = theTimer.fNext;
+
+			insert(theTimer);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_tick
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the first tick, from the current one, that has a timer to expire
+	 * at level 0 or a cascade to perform, Long.MAX_VALUE if no timer is scheduled.
+	 */
+	private long next_tick() {
+		if(fScheduledCount == 0) {
+			return Long.MAX_VALUE;
+		}
+
+		long theTick = fCurrentTick;
+
+		// A cascade occurs every SLOTS ticks at the most, the loop is bounded.
+		while((theTick & SLOT_MASK) != 0 && fSlots[(int)theTick & SLOT_MASK].isEmpty()) {
+			++theTick;
+		}
+
+		return theTick;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear_list
+	// ----------------------------------------------------------------------------
+	private static void clear_list(Timer inHead) {
+		while(!inHead.isEmpty()) {
+			inHead.fNext.unlink();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("TimerWheel(");
+
+		theResult.append("t=").append(fCurrentTick);
+		theResult.append(",s=").append(fScheduledCount);
+		theResult.append(",e=").append(fExpiredCount);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,403 @@
+// ----------------------------------------------------------------------------
+//  TwoLockBoundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// ----------------------------------------------------------------------------
+//		TwoLockBoundedSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue that have a maximum capacity and that uses one lock for the
+ * <i>Producers</i> and another lock for the <i>Consumers</i>.
+ * <p>
+ * Producers only synchronize on the put lock and wait on it when the queue is
+ * full; Consumers only synchronize on the take lock and wait on it when the
+ * queue is empty. Consequently a put and a take can always proceed
+ * simultaneously, and each wait set only holds threads of a single role.
+ * <p>
+ * The opposite role is signaled only when the state of the queue actually
+ * changes: a Consumer is notified when the queue turns from empty to not
+ * empty, a Producer is notified when the queue turns from full to not full.
+ * A thread that wakes up and finds that more work is available notifies the
+ * next waiter of its own role, so that a single <code>notify</code> replaces
+ * the <code>notifyAll</code> of the {@link BoundedSharedQueue}. A thread
+ * interrupted while waiting passes on the notification it may have received.
+ *
+ * @see BoundedSharedQueue
+ */
+public class TwoLockBoundedSharedQueue implements SharedQueue {
+
+	protected final int fMaxCapacity;
+	protected final Object[] fQueue;
+
+	/** The number of objects in the queue, the only state shared by Producers and Consumers. */
+	private final AtomicInteger fObjectCount = new AtomicInteger(0);
+
+	/** Guards fPutCursor, Producers wait on it while the queue is full. */
+	private final Object fPutLock = new Object();
+	private int fPutCursor = 0;
+
+	/** Guards fGetCursor, Consumers wait on it while the queue is empty. */
+	private final Object fTakeLock = new Object();
+	private int fGetCursor = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		TwoLockBoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SharedQueue with the given maximum capacity.
+	 * @param inMaxCapacity the maximum number of object that this SharedQueue can
+	 * contain before blocking.
+	 * @exception IllegalArgumentException if inMaxCapacity is less than one.
+	 */
+	public TwoLockBoundedSharedQueue(int inMaxCapacity) {
+		if(inMaxCapacity < 1) {
+			throw new IllegalArgumentException("illegal capacity " + inMaxCapacity);
+		}
+
+		fMaxCapacity = inMaxCapacity;
+		fQueue = new Object[inMaxCapacity];
+	}
+
+	// ----------------------------------------------------------------------------
+	//		TwoLockBoundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a TwoLockBoundedSharedQueue of {@link BoundedSharedQueue#LARGE_CAPACITY} objects.
+	 */
+	public TwoLockBoundedSharedQueue() {
+		this(BoundedSharedQueue.LARGE_CAPACITY);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue.
+	 * All waiting Producers will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		// :NOTE: clear is the only function that holds both locks,
+		// always in the same order, thus it cannot deadlock.
+		synchronized(fPutLock) {
+			synchronized(fTakeLock) {
+				Arrays.fill(fQueue, null);
+				fPutCursor = fGetCursor = 0;
+				fObjectCount.set(0);
+			}
+
+			// Notify threads that are waiting for a free slot.
+			fPutLock.notifyAll();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		add
+	// ----------------------------------------------------------------------------
+	public void add(Object inObject) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to enqueue a null object");
+		}
+
+		int thePreviousCount;
+
+		synchronized(fPutLock) {
+			try {
+				while(fObjectCount.get() >= fMaxCapacity) {
+					// The queue is full, wait until a Consumer
+					// remove an object thus making space available.
+					fPutLock.wait();
+				}
+			}
+			catch(InterruptedException ex) {
+				// Pass on the notify this thread may have received.
+				fPutLock.notify();
+				throw ex;
+			}
+
+			fQueue[fPutCursor] = inObject;
+			fPutCursor = (fPutCursor + 1) % fMaxCapacity;
+			thePreviousCount = fObjectCount.getAndIncrement();
+
+			if(thePreviousCount + 1 < fMaxCapacity) {
+				// There is still room, pass the turn to the next Producer.
+				fPutLock.notify();
+			}
+		}
+
+		if(thePreviousCount == 0) {
+			// The queue turned from empty to not empty.
+			signal_not_empty();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove
+	// ----------------------------------------------------------------------------
+	public Object remove() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Object theObject;
+		int thePreviousCount;
+
+		synchronized(fTakeLock) {
+			try {
+				while(fObjectCount.get() == 0) {
+					// The queue is empty, wait until a producer add an object to the queue.
+					fTakeLock.wait();
+				}
+			}
+			catch(InterruptedException ex) {
+				// Pass on the notify this thread may have received.
+				fTakeLock.notify();
+				throw ex;
+			}
+
+			theObject = fQueue[fGetCursor];
+			fQueue[fGetCursor] = null;	// For the garbage collector.
+			fGetCursor = (fGetCursor + 1) % fMaxCapacity;
+			thePreviousCount = fObjectCount.getAndDecrement();
+
+			if(thePreviousCount > 1) {
+				// There are still objects, pass the turn to the next Consumer.
+				fTakeLock.notify();
+			}
+		}
+
+		if(thePreviousCount == fMaxCapacity) {
+			// The queue turned from full to not full.
+			signal_not_full();
+		}
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		AbstractSharedQueue.check_objects(inObjects, inOffset, inLength);
+
+		while(inLength > 0) {
+			int theCount;
+			int thePreviousCount;
+
+			synchronized(fPutLock) {
+				try {
+					while(fObjectCount.get() >= fMaxCapacity) {
+						fPutLock.wait();
+					}
+				}
+				catch(InterruptedException ex) {
+					fPutLock.notify();
+					throw ex;
+				}
+
+				// Move as many objects as there are free slots, in at most two moves.
+				theCount = Math.min(inLength, fMaxCapacity - fObjectCount.get());
+				int theFirstPart = Math.min(theCount, fMaxCapacity - fPutCursor);
+
+				System.arraycopy(inObjects, inOffset, fQueue, fPutCursor, theFirstPart);
+				System.arraycopy(inObjects, inOffset + theFirstPart, fQueue, 0, theCount - theFirstPart);
+
+				fPutCursor = (fPutCursor + theCount) % fMaxCapacity;
+				thePreviousCount = fObjectCount.getAndAdd(theCount);
+
+				if(thePreviousCount + theCount < fMaxCapacity) {
+					fPutLock.notify();
+				}
+			}
+
+			if(thePreviousCount == 0) {
+				signal_not_empty();
+			}
+
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		removeAll
+	// ----------------------------------------------------------------------------
+	public int removeAll(Object[] outObjects) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if(outObjects.length == 0) {
+			return 0;
+		}
+
+		int theCount;
+		int thePreviousCount;
+
+		synchronized(fTakeLock) {
+			try {
+				while(fObjectCount.get() == 0) {
+					fTakeLock.wait();
+				}
+			}
+			catch(InterruptedException ex) {
+				fTakeLock.notify();
+				throw ex;
+			}
+
+			theCount = Math.min(outObjects.length, fObjectCount.get());
+			thePreviousCount = take(outObjects, theCount);
+
+			if(thePreviousCount > theCount) {
+				fTakeLock.notify();
+			}
+		}
+
+		if(thePreviousCount == fMaxCapacity) {
+			signal_not_full();
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		drainTo
+	// ----------------------------------------------------------------------------
+	public int drainTo(Collection outCollection, int inMaxCount) {
+		if(outCollection == null) {
+			throw new IllegalArgumentException("null collection");
+		}
+
+		int theCount;
+		int thePreviousCount;
+
+		synchronized(fTakeLock) {
+			theCount = Math.min(inMaxCount, fObjectCount.get());
+			if(theCount <= 0) {
+				return 0;
+			}
+
+			Object[] theObjects = new Object[theCount];
+			thePreviousCount = take(theObjects, theCount);
+			outCollection.addAll(Arrays.asList(theObjects));
+
+			if(thePreviousCount > theCount) {
+				fTakeLock.notify();
+			}
+		}
+
+		if(thePreviousCount == fMaxCapacity) {
+			signal_not_full();
+		}
+
+		return theCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		capacity
+	// ----------------------------------------------------------------------------
+	public int capacity() {
+		return fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount.get();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	public boolean isFull() {
+		return size() >= capacity();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		take
+	// ----------------------------------------------------------------------------
+	/**
+	 * Move the oldest objects out of the ring in at most two moves.
+	 * <p>
+	 * <b>Must imperatively be called while holding the take lock.</b>
+	 * @return the number of objects in the queue before the move.
+	 */
+	private int take(Object[] outObjects, int inCount) {
+		int theFirstPart = Math.min(inCount, fMaxCapacity - fGetCursor);
+
+		System.arraycopy(fQueue, fGetCursor, outObjects, 0, theFirstPart);
+		System.arraycopy(fQueue, 0, outObjects, theFirstPart, inCount - theFirstPart);
+
+		// For the garbage collector.
+		Arrays.fill(fQueue, fGetCursor, fGetCursor + theFirstPart, null);
+		Arrays.fill(fQueue, 0, inCount - theFirstPart, null);
+
+		fGetCursor = (fGetCursor + inCount) % fMaxCapacity;
+
+		return fObjectCount.getAndAdd(-inCount);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal_not_empty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up one waiting Consumer. Called by Producers, without holding the put lock.
+	 */
+	private void signal_not_empty() {
+		synchronized(fTakeLock) {
+			fTakeLock.notify();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal_not_full
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up one waiting Producer. Called by Consumers, without holding the take lock.
+	 */
+	private void signal_not_full() {
+		synchronized(fPutLock) {
+			fPutLock.notify();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("TwoLockBoundedSharedQueue(");
+
+		theResult.append("#=").append(fObjectCount.get());
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
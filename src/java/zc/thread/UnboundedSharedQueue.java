@@ -15,6 +15,11 @@ import java.util.*;
 // ----------------------------------------------------------------------------
 /**
  * A SharedQueue that have no maximum capacity.
+ * <p>
+ * The objects are held in a chain of fixed size array segments. The segments
+ * that have been consumed are kept in a small pool and reused by the
+ * Producers, thus in steady state the queue does not allocate any memory,
+ * not even a list node per object.
  *
  * @deprecated Conceptually an UnboundedSharedQueue should be, well, unbounded,
  * but in real world  an unbounded queue that grow continually will certainly
@@ -23,7 +28,34 @@ import java.util.*;
  */
 public class UnboundedSharedQueue extends AbstractSharedQueue {
 
-	protected final LinkedList fList = new LinkedList();
+	/** The number of slots of a segment. */
+	protected final static int SEGMENT_SIZE = 1024;
+	/** The maximum number of free segments kept for reuse. */
+	protected final static int MAX_POOL_SIZE = 4;
+
+	/** The segment holding the oldest object, and the index of that object. */
+	private Segment fHead;
+	private int fGetCursor = 0;
+	/** The segment receiving the next object, and the index of its slot. */
+	private Segment fTail;
+	private int fPutCursor = 0;
+	private volatile int fObjectCount = 0;
+
+	/** The free segments, linked through their fNext field. */
+	private Segment fPool = null;
+	private int fPoolSize = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		Segment - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A fixed size array of slots, linked to the next segment of the queue.
+	 */
+	private final static class Segment {
+		final Object[] fSlots = new Object[SEGMENT_SIZE];
+		Segment fNext = null;
+	}
 
 
 	// ----------------------------------------------------------------------------
@@ -39,6 +71,22 @@ public class UnboundedSharedQueue extends AbstractSharedQueue {
 	 */
 	public UnboundedSharedQueue(int inMaxCapacity) {
 		super(inMaxCapacity);
+		fHead = fTail = new Segment();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		UnboundedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a SharedQueue whose threads wait with the given strategy.
+	 * @param inMaxCapacity the maximum allowable capacity for the queue.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inMaxCapacity argument is less than
+	 * one, or if inWaitStrategy is null.
+	 */
+	public UnboundedSharedQueue(int inMaxCapacity, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+		fHead = fTail = new Segment();
 	}
 
 	// ----------------------------------------------------------------------------
@@ -48,7 +96,7 @@ public class UnboundedSharedQueue extends AbstractSharedQueue {
 	 * Construct an UnboundedSharedQueue.
 	 */
 	public UnboundedSharedQueue() {
-		super(1024 * 8);
+		this(1024 * 8);
 	}
 
 	// ----------------------------------------------------------------------------
@@ -56,7 +104,7 @@ public class UnboundedSharedQueue extends AbstractSharedQueue {
 	// ----------------------------------------------------------------------------
 	public void finalize() throws Throwable {
 		// Do not call the clear member function as it notify threads.
-		fList.clear();
+		fHead = fTail = fPool = null;
 		super.finalize();
 	}
 
@@ -69,31 +117,191 @@ public class UnboundedSharedQueue extends AbstractSharedQueue {
 	 * <p>
 	 * The SharedQueue will be empty after this call returns.
 	 */
-	public synchronized void clear() {
-		fList.clear();
-		// Notify threads that are waiting for a free slot.
-		this.notifyAll();
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			// Give all the segments but the tail one back to the pool.
+			while(fHead != fTail) {
+				Segment theSegment = fHead;
+				fHead = theSegment.fNext;
+				recycle_segment(theSegment);
+			}
+
+			Arrays.fill(fTail.fSlots, null);
+			fGetCursor = fPutCursor = fObjectCount = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
 	}
 
 	// ----------------------------------------------------------------------------
 	//		size
 	// ----------------------------------------------------------------------------
 	public int size() {
-		return fList.size();
+		return fObjectCount;
 	}
 
 	// ----------------------------------------------------------------------------
 	//		enqueue
 	// ----------------------------------------------------------------------------
 	protected void enqueue(Object inObject) {
-		fList.addLast(inObject);
+		if(fPutCursor == SEGMENT_SIZE) {
+			append_segment();
+		}
+
+		fTail.fSlots[fPutCursor++] = inObject;
+		++fObjectCount;
 	}
 
 	// ----------------------------------------------------------------------------
 	//		dequeue
 	// ----------------------------------------------------------------------------
 	protected Object dequeue() {
-		return fList.removeFirst();
+		if(fGetCursor == SEGMENT_SIZE) {
+			remove_segment();
+		}
+
+		Object theObject = fHead.fSlots[fGetCursor];
+		fHead.fSlots[fGetCursor++] = null;	// For the garbage collector.
+		--fObjectCount;
+
+		rewind_if_empty();
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the objects segment by segment.
+	 */
+	protected void enqueue(Object[] inObjects, int inOffset, int inLength) {
+		while(inLength > 0) {
+			if(fPutCursor == SEGMENT_SIZE) {
+				append_segment();
+			}
+
+			int theCount = Math.min(inLength, SEGMENT_SIZE - fPutCursor);
+			System.arraycopy(inObjects, inOffset, fTail.fSlots, fPutCursor, theCount);
+
+			fPutCursor += theCount;
+			fObjectCount += theCount;
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the objects segment by segment.
+	 */
+	protected int dequeue(Object[] outObjects, int inOffset, int inLength) {
+		int theResult = inLength;
+
+		while(inLength > 0) {
+			if(fGetCursor == SEGMENT_SIZE) {
+				remove_segment();
+			}
+
+			int theCount = Math.min(inLength, SEGMENT_SIZE - fGetCursor);
+			System.arraycopy(fHead.fSlots, fGetCursor, outObjects, inOffset, theCount);
+			Arrays.fill(fHead.fSlots, fGetCursor, fGetCursor + theCount, null);
+
+			fGetCursor += theCount;
+			fObjectCount -= theCount;
+			inOffset += theCount;
+			inLength -= theCount;
+		}
+
+		rewind_if_empty();
+
+		return theResult;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		append_segment
+	// ----------------------------------------------------------------------------
+	/**
+	 * Link a new segment after the tail segment, preferably one taken from the pool.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void append_segment() {
+		Segment theSegment = fPool;
+
+		if(theSegment != null) {
+			fPool = theSegment.fNext;
+			theSegment.fNext = null;
+			--fPoolSize;
+		}
+		else {
+			theSegment = new Segment();
+		}
+
+		fTail.fNext = theSegment;
+		fTail = theSegment;
+		fPutCursor = 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		remove_segment
+	// ----------------------------------------------------------------------------
+	/**
+	 * Unlink the exhausted head segment and give it back to the pool.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void remove_segment() {
+		Segment theSegment = fHead;
+
+		fHead = theSegment.fNext;
+		fGetCursor = 0;
+
+		recycle_segment(theSegment);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		recycle_segment
+	// ----------------------------------------------------------------------------
+	/**
+	 * Put an unlinked segment into the pool, unless the pool is already full.
+	 * The slots of the segment must already be cleared.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void recycle_segment(Segment inSegment) {
+		if(fPoolSize < MAX_POOL_SIZE) {
+			inSegment.fNext = fPool;
+			fPool = inSegment;
+			++fPoolSize;
+		}
+		else {
+			inSegment.fNext = null;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		rewind_if_empty
+	// ----------------------------------------------------------------------------
+	/**
+	 * When the queue becomes empty restart at the beginning of the current
+	 * segment, so that a queue that is drained as fast as it is filled does
+	 * not even cycle through the pool.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void rewind_if_empty() {
+		if(fObjectCount == 0 && fHead == fTail) {
+			fGetCursor = fPutCursor = 0;
+		}
 	}
 }
 
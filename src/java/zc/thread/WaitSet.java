@@ -0,0 +1,492 @@
+// ----------------------------------------------------------------------------
+//  WaitSet.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+
+// ----------------------------------------------------------------------------
+//		WaitSet - class
+// ----------------------------------------------------------------------------
+/**
+ * The slow path of the non-blocking containers: a set of threads waiting for
+ * a {@link WaitSet.Condition} to turn true.
+ * <p>
+ * A WaitSet is what the {@link WaitStrategy#BLOCKING} strategy blocks on, and
+ * what the queues signal when the state of the condition may have changed.
+ * <p>
+ * The state guarded by the condition is <b>not</b> protected by the WaitSet
+ * monitor, it must be published through volatile (or atomic) variables.
+ * The WaitSet only counts its waiters so that <code>signalAll</code> costs a
+ * single volatile read when nobody waits, which is the common case.
+ * <p>
+ * The lost notification syndrome is avoided because a waiter registers itself
+ * <i>before</i> re-evaluating the condition, while a signaler changes the state
+ * <i>before</i> looking for waiters; one of the two is bound to see the other.
+ * <p>
+ * A WaitSet blocks its waiters in one of two modes, chosen when it is built:
+ * <ul>
+ * <li>the <i>monitor</i> mode, the default, waits on the WaitSet monitor with
+ * <code>Object.wait</code>.</li>
+ * <li>the <i>parking</i> mode queues the waiters and blocks them with
+ * <code>LockSupport.park</code>, without ever holding a monitor. A virtual
+ * thread that parks releases its carrier thread, whereas one that waits on
+ * a monitor pins it.</li>
+ * </ul>
+ * The mode of the WaitSets built without an explicit mode is given by
+ * {@link #setDefaultParking}, initially true if the <code>zc.thread.parking</code>
+ * system property is set to <code>true</code>. The blocking primitives of
+ * this package that own a WaitSet wait through it, outside of their monitor,
+ * when it parks.
+ * <p>
+ * Code that must not block at all registers a callback with
+ * {@link #onSignal} instead of waiting: the next signal runs it.
+ */
+public final class WaitSet {
+
+	/** The fewest cancelled Waiters worth sweeping out of the queue. */
+	private static final int SWEEP_THRESHOLD = 64;
+
+	/** The mode of the WaitSets built from now on. */
+	private static volatile boolean fDefaultParking = Boolean.getBoolean("zc.thread.parking");
+
+	/** The number of threads and callbacks currently waiting (or about to wait) on this WaitSet. */
+	private final AtomicInteger fWaiterCount = new AtomicInteger();
+
+	/** The Waiters of the parked threads, oldest first; null in the monitor mode. */
+	private final ConcurrentLinkedQueue fParked;
+
+	/** The number of Waiters cancelled since the last sweep, some of which the signals may have skipped already. */
+	private final AtomicInteger fCancelledCount = new AtomicInteger();
+
+	/** The Runnables to run at the next signal. */
+	private final ConcurrentLinkedQueue fCallbacks = new ConcurrentLinkedQueue();
+
+
+	// ----------------------------------------------------------------------------
+	//		Waiter - inner class
+	// ----------------------------------------------------------------------------
+	/**
+	 * A parked thread. Its state turns either SIGNALED, by the thread that
+	 * wakes it up, or CANCELLED, by itself when it leaves on its own, but not
+	 * both: a signal is never lost on a thread that has left.
+	 */
+	private final static class Waiter extends AtomicInteger {
+		private static final long serialVersionUID = 1L;
+
+		final static int WAITING = 0;
+		final static int SIGNALED = 1;
+		final static int CANCELLED = 2;
+
+		final Thread fThread = Thread.currentThread();
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		Condition - inner interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * The predicate a waiting thread is waiting for.
+	 */
+	public interface Condition {
+		// ----------------------------------------------------------------------------
+		//		isTrue
+		// ----------------------------------------------------------------------------
+		/**
+		 * Evaluate the predicate. Must not block and must only read volatile state.
+		 * @return true when the waiting thread may proceed.
+		 */
+		public boolean isTrue();
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		WaitSet - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WaitSet in the default mode.
+	 */
+	public WaitSet() {
+		this(fDefaultParking);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		WaitSet - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WaitSet in the given mode.
+	 * @param inParking true to park the waiters, false to wait on the monitor.
+	 */
+	public WaitSet(boolean inParking) {
+		fParked = inParking ? new ConcurrentLinkedQueue() : null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		setDefaultParking
+	// ----------------------------------------------------------------------------
+	/**
+	 * Set the mode of the WaitSets, thus of the primitives, built from now on.
+	 * The existing ones keep their mode.
+	 * @param inParking true to park the waiters, false to wait on the monitor.
+	 */
+	public static void setDefaultParking(boolean inParking) {
+		fDefaultParking = inParking;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getDefaultParking
+	// ----------------------------------------------------------------------------
+	/**
+	 * Return the mode of the WaitSets built from now on.
+	 * @return true for the parking mode.
+	 */
+	public static boolean getDefaultParking() {
+		return fDefaultParking;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isParking
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns true if this WaitSet parks its waiters instead of waiting on its monitor.
+	 * @return a boolean.
+	 */
+	public boolean isParking() {
+		return fParked != null;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await
+	// ----------------------------------------------------------------------------
+	/**
+	 * Block the calling thread until the given condition turns true.
+	 * If the condition is already true, then no wait occurs.
+	 * @param inCondition the predicate to wait for.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public void await(WaitSet.Condition inCondition) throws InterruptedException {
+		if(fParked != null) {
+			park(inCondition, 0);
+			return;
+		}
+
+		synchronized(this) {
+			fWaiterCount.incrementAndGet();
+			try {
+				while(!inCondition.isTrue()) {
+					this.wait();
+				}
+			}
+			finally {
+				fWaiterCount.decrementAndGet();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await
+	// ----------------------------------------------------------------------------
+	/**
+	 * Block the calling thread at most msecs milliseconds for the given
+	 * condition to turn true.
+	 * If the condition is already true, then no wait occurs.
+	 * @param inCondition the predicate to wait for.
+	 * @param msecs the number of milliseconds to wait before giving up.
+	 * @return true if the condition turned true within the given time.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public boolean await(WaitSet.Condition inCondition, long msecs) throws InterruptedException {
+		return awaitNanos(inCondition, msecs * 1000000L);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		awaitNanos
+	// ----------------------------------------------------------------------------
+	/**
+	 * Block the calling thread at most nanos nanoseconds for the given
+	 * condition to turn true.
+	 * If the condition is already true, then no wait occurs.
+	 * @param inCondition the predicate to wait for.
+	 * @param nanos the number of nanoseconds to wait before giving up.
+	 * @return true if the condition turned true within the given time.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public boolean awaitNanos(WaitSet.Condition inCondition, long nanos) throws InterruptedException {
+		if(inCondition.isTrue()) {
+			return true;
+		}
+		if(nanos <= 0) {
+			return false;
+		}
+
+		long theDeadline = System.nanoTime() + nanos;
+
+		if(fParked != null) {
+			return park(inCondition, theDeadline);
+		}
+
+		synchronized(this) {
+			fWaiterCount.incrementAndGet();
+			try {
+				while(!inCondition.isTrue()) {
+					long theRemaining = theDeadline - System.nanoTime();
+
+					if(theRemaining <= 0) {
+						return false;
+					}
+
+					this.wait(theRemaining / 1000000L, (int)(theRemaining % 1000000L));
+				}
+
+				return true;
+			}
+			finally {
+				fWaiterCount.decrementAndGet();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signal
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up the thread that has waited the longest on this WaitSet, if any.
+	 * Must be called <i>after</i> the guarded state has been changed.
+	 * <p>
+	 * Only for the conditions that a single thread can take advantage of,
+	 * e.g. a free lock: if the woken thread leaves without waiting again,
+	 * because it is interrupted or its time is up, it passes the signal on.
+	 * In the monitor mode all the threads are woken up.
+	 */
+	public void signal() {
+		if(fWaiterCount.get() == 0) {
+			return;
+		}
+
+		run_callbacks();
+
+		if(fParked == null) {
+			signalAll();
+			return;
+		}
+
+		Object theHead;
+
+		while((theHead = fParked.poll()) != null) {
+			if(theHead instanceof Waiter && wake_up((Waiter)theHead)) {
+				return;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		signalAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wake up all the threads waiting on this WaitSet, if any.
+	 * Must be called <i>after</i> the guarded state has been changed.
+	 */
+	public void signalAll() {
+		if(fWaiterCount.get() == 0) {
+			return;
+		}
+
+		run_callbacks();
+
+		if(fParked != null) {
+			if(fParked.isEmpty()) {
+				return;
+			}
+
+			// Only wake up the threads queued before the marker: the ones that
+			// queue themselves again wait for the next signal.
+			Object theMarker = new Object();
+			Object theHead;
+
+			fParked.offer(theMarker);
+			while((theHead = fParked.poll()) != null && theHead != theMarker) {
+				if(theHead instanceof Waiter) {
+					wake_up((Waiter)theHead);
+				}
+			}
+		}
+		else {
+			synchronized(this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		onSignal
+	// ----------------------------------------------------------------------------
+	/**
+	 * Register a callback to run once, by the thread calling the next
+	 * <code>signal</code> or <code>signalAll</code>: the non-blocking
+	 * counterpart of <code>await</code>.
+	 * <p>
+	 * As a waiter, the caller must re-evaluate its condition <i>after</i>
+	 * registering, the signal may have been sent just before. The callback runs
+	 * in the thread of the signaler, possibly while it holds a monitor, so it
+	 * must be short and must neither block nor throw.
+	 * @param inCallback the callback.
+	 * @exception IllegalArgumentException if inCallback is null.
+	 */
+	public void onSignal(Runnable inCallback) {
+		if(inCallback == null) {
+			throw new IllegalArgumentException("null callback");
+		}
+
+		fWaiterCount.incrementAndGet();
+		fCallbacks.offer(inCallback);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		hasWaiters
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns true if some threads or callbacks are currently waiting on this WaitSet.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean hasWaiters() {
+		return fWaiterCount.get() > 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		park
+	// ----------------------------------------------------------------------------
+	/**
+	 * The parking mode of <code>await</code>: queue the calling thread then
+	 * park it until it is signaled and the condition is true. A signaled
+	 * thread whose condition is still false queues itself again.
+	 * @param inDeadline the System.nanoTime to give up at, zero to wait forever.
+	 * @return true if the condition turned true before the deadline.
+	 */
+	private boolean park(WaitSet.Condition inCondition, long inDeadline) throws InterruptedException {
+		fWaiterCount.incrementAndGet();
+		try {
+			for(;;) {
+				Waiter theWaiter = new Waiter();
+				fParked.offer(theWaiter);
+
+				while(theWaiter.get() == Waiter.WAITING) {
+					if(inCondition.isTrue()) {
+						leave(theWaiter);
+						return true;
+					}
+					if(Thread.interrupted()) {
+						leave(theWaiter);
+						throw new InterruptedException();
+					}
+
+					if(inDeadline == 0) {
+						LockSupport.park(this);
+					}
+					else {
+						long theRemaining = inDeadline - System.nanoTime();
+
+						if(theRemaining <= 0) {
+							leave(theWaiter);
+							return inCondition.isTrue();
+						}
+
+						LockSupport.parkNanos(this, theRemaining);
+					}
+				}
+
+				if(inCondition.isTrue()) {
+					return true;
+				}
+			}
+		}
+		finally {
+			fWaiterCount.decrementAndGet();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		leave
+	// ----------------------------------------------------------------------------
+	/**
+	 * Withdraw a Waiter of the calling thread; if it has been signaled in the
+	 * meantime, the signal goes to the next Waiter.
+	 * <p>
+	 * A cancelled Waiter stays in the queue for the next signal to skip, as
+	 * taking it out costs a scan of the queue. Since no signal may ever come,
+	 * the queue is swept once the cancelled Waiters outnumber the waiting
+	 * threads, which keeps the cost of a leave constant on average.
+	 */
+	private void leave(Waiter inWaiter) {
+		if(!inWaiter.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+			signal();
+			return;
+		}
+
+		int theCancelled = fCancelledCount.incrementAndGet();
+
+		if(theCancelled >= SWEEP_THRESHOLD
+				&& theCancelled >= fWaiterCount.get()
+				&& fCancelledCount.compareAndSet(theCancelled, 0)) {
+			sweep();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		sweep
+	// ----------------------------------------------------------------------------
+	/**
+	 * Take the cancelled Waiters out of the queue.
+	 */
+	private void sweep() {
+		for(Iterator it = fParked.iterator(); it.hasNext(); ) {
+			Object theEntry = it.next();
+
+			if(theEntry instanceof Waiter && ((Waiter)theEntry).get() == Waiter.CANCELLED) {
+				it.remove();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		run_callbacks
+	// ----------------------------------------------------------------------------
+	/**
+	 * Run the callbacks registered so far, each one once.
+	 */
+	private void run_callbacks() {
+		Runnable theCallback;
+
+		while((theCallback = (Runnable)fCallbacks.poll()) != null) {
+			fWaiterCount.decrementAndGet();
+			theCallback.run();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		wake_up
+	// ----------------------------------------------------------------------------
+	/**
+	 * Signal a Waiter dequeued by the calling thread, unless it has left.
+	 * @return true if the Waiter has been signaled.
+	 */
+	private static boolean wake_up(Waiter inWaiter) {
+		if(!inWaiter.compareAndSet(Waiter.WAITING, Waiter.SIGNALED)) {
+			return false;
+		}
+
+		LockSupport.unpark(inWaiter.fThread);
+		return true;
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,133 @@
+// ----------------------------------------------------------------------------
+//  WaitStrategy.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+// ----------------------------------------------------------------------------
+//		WaitStrategy - abstract class
+// ----------------------------------------------------------------------------
+/**
+ * How a thread waits for a SharedQueue to become not empty or not full.
+ * <p>
+ * The strategy is chosen when the queue is constructed, it trades CPU for
+ * latency:
+ * <ul>
+ * <li>{@link #BUSY_SPIN} never gives the processor up. The lowest latency,
+ * at the price of one fully used core per waiting thread.</li>
+ * <li>{@link #SPIN_YIELD} spins a little, then yields the processor to other
+ * threads between two checks.</li>
+ * <li>{@link #SPIN_PARK} spins a little, then parks the thread for short
+ * periods between two checks. Nearly idle, with a latency bounded by the
+ * park period.</li>
+ * <li>{@link #BLOCKING} blocks the thread until it is signaled, the
+ * behaviour of the queues that do not specify a strategy.</li>
+ * </ul>
+ * The three first strategies poll the condition, and never need to be
+ * signaled.
+ *
+ * @see WaitSet
+ */
+public abstract class WaitStrategy {
+
+	/** The number of checks before a spinning strategy backs off. */
+	public final static int SPIN_TRIES = 100;
+	/** The park period of {@link #SPIN_PARK}, in nanoseconds. */
+	public final static long PARK_NANOS = 50 * 1000;
+
+	public final static WaitStrategy BUSY_SPIN = new WaitStrategy("BUSY_SPIN") {
+		public void await(WaitSet.Condition inCondition, WaitSet inWaitSet) throws InterruptedException {
+			while(!inCondition.isTrue()) {
+				check_interrupted();
+			}
+		}
+	};
+
+	public final static WaitStrategy SPIN_YIELD = new WaitStrategy("SPIN_YIELD") {
+		public void await(WaitSet.Condition inCondition, WaitSet inWaitSet) throws InterruptedException {
+			for(int theTries = 0; !inCondition.isTrue(); ++theTries) {
+				check_interrupted();
+
+				if(theTries >= SPIN_TRIES) {
+					Thread.yield();
+				}
+			}
+		}
+	};
+
+	public final static WaitStrategy SPIN_PARK = new WaitStrategy("SPIN_PARK") {
+		public void await(WaitSet.Condition inCondition, WaitSet inWaitSet) throws InterruptedException {
+			for(int theTries = 0; !inCondition.isTrue(); ++theTries) {
+				check_interrupted();
+
+				if(theTries >= SPIN_TRIES) {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+		}
+	};
+
+	public final static WaitStrategy BLOCKING = new WaitStrategy("BLOCKING") {
+		public void await(WaitSet.Condition inCondition, WaitSet inWaitSet) throws InterruptedException {
+			if(!inCondition.isTrue()) {
+				inWaitSet.await(inCondition);
+			}
+		}
+	};
+
+	private final String fName;
+
+
+	// ----------------------------------------------------------------------------
+	//		WaitStrategy - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WaitStrategy.
+	 * @param inName the name returned by toString.
+	 */
+	protected WaitStrategy(String inName) {
+		fName = inName;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		await
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait until the given condition turns true.
+	 * If the condition is already true, then no wait occurs.
+	 * <p>
+	 * The queues signal the given WaitSet after every change that can turn the
+	 * condition true, thus a strategy may block on it.
+	 * @param inCondition the predicate to wait for.
+	 * @param inWaitSet the WaitSet signaled when the condition may have changed.
+	 * @exception InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public abstract void await(WaitSet.Condition inCondition, WaitSet inWaitSet) throws InterruptedException;
+
+	// ----------------------------------------------------------------------------
+	//		check_interrupted
+	// ----------------------------------------------------------------------------
+	/**
+	 * Throw an InterruptedException if the calling thread has been interrupted.
+	 */
+	protected static void check_interrupted() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		return fName;
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,48 @@
+// ----------------------------------------------------------------------------
+//  WatermarkListener.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		WatermarkListener - interface
+// ----------------------------------------------------------------------------
+/**
+ * Interface for the backpressure callbacks of a SharedQueue, notified when
+ * its size crosses its high and low watermarks.
+ * <p>
+ * The two callbacks alternate: once the size has reached the high watermark,
+ * the listener is not notified again until it has fallen to the low one.
+ * The callbacks are invoked outside of the queue monitor, by the thread that
+ * made the size cross the watermark, one at a time.
+ *
+ * @see AbstractSharedQueue#setWatermarks
+ */
+public interface WatermarkListener {
+
+	// ----------------------------------------------------------------------------
+	//		highWatermarkReached
+	// ----------------------------------------------------------------------------
+	/**
+	 * Called when the size of the queue has risen to the high watermark.
+	 * The Producers should slow down.
+	 * @param inQueue the queue.
+	 */
+	public void highWatermarkReached(SharedQueue inQueue);
+
+	// ----------------------------------------------------------------------------
+	//		lowWatermarkReached
+	// ----------------------------------------------------------------------------
+	/**
+	 * Called when the size of the queue has fallen to the low watermark, after
+	 * it had reached the high watermark. The Producers may resume.
+	 * @param inQueue the queue.
+	 */
+	public void lowWatermarkReached(SharedQueue inQueue);
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
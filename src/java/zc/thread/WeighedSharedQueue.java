@@ -0,0 +1,315 @@
+// ----------------------------------------------------------------------------
+//  WeighedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+
+// ----------------------------------------------------------------------------
+//		WeighedSharedQueue - class
+// ----------------------------------------------------------------------------
+/**
+ * A SharedQueue bounded by the total weight of its objects, e.g. their size in
+ * bytes, rather than by their number alone.
+ * <p>
+ * The weight of each object is given by a {@link Weigher}, called once when
+ * the object is enqueued; the weight is kept beside the object, thus the
+ * accounting costs an addition and a subtraction per object. The queue is full
+ * as soon as the total weight reaches the budget, or the number of objects
+ * reaches the capacity, and <code>{@link #add}</code> then blocks.
+ * <p>
+ * The budget is a soft limit: an object is accepted as long as the total
+ * weight is under the budget, whatever its own weight, so that an object
+ * heavier than the whole budget still goes through. The total weight never
+ * exceeds the budget by more than the weight of one object.
+ * <p>
+ * The storage grows with the number of objects, up to the capacity, and is
+ * only released by <code>clear</code>. The watermarks, if any, are still
+ * expressed in number of objects.
+ *
+ * @see BoundedSharedQueue
+ */
+public class WeighedSharedQueue extends AbstractSharedQueue {
+
+	public final static int INITIAL_STORAGE_SIZE = 16;
+
+	protected final long fMaxWeight;
+	protected final Weigher fWeigher;
+
+	/** The ring of the objects, and the ring of their weights. */
+	private Object[] fObjects;
+	private int[] fWeights;
+	private int fPutCursor = 0, fGetCursor = 0;
+	private volatile int fObjectCount = 0;
+	private volatile long fWeight = 0;
+
+
+	// ----------------------------------------------------------------------------
+	//		Weigher - interface
+	// ----------------------------------------------------------------------------
+	/**
+	 * Give the weight of an object of a WeighedSharedQueue.
+	 */
+	public static interface Weigher {
+
+		// ----------------------------------------------------------------------------
+		//		weigh
+		// ----------------------------------------------------------------------------
+		/**
+		 * Return the weight of an object. Called under the queue monitor, thus
+		 * must be cheap and must not block.
+		 * @param inObject an object to enqueue, never null.
+		 * @return the weight of inObject, zero or more.
+		 */
+		public int weigh(Object inObject);
+	}
+
+
+	// ----------------------------------------------------------------------------
+	//		WeighedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WeighedSharedQueue.
+	 * @param inMaxCapacity the maximum number of objects.
+	 * @param inMaxWeight the budget of the total weight of the objects.
+	 * @param inWeigher the weight of the objects.
+	 * @param inWaitStrategy how the Producers and the Consumers wait.
+	 * @exception IllegalArgumentException if inMaxCapacity or inMaxWeight is
+	 * less than one, or if inWeigher or inWaitStrategy is null.
+	 */
+	public WeighedSharedQueue(int inMaxCapacity, long inMaxWeight, Weigher inWeigher, WaitStrategy inWaitStrategy) {
+		super(inMaxCapacity, inWaitStrategy);
+
+		if(inMaxWeight < 1) {
+			throw new IllegalArgumentException("illegal max weight " + inMaxWeight);
+		}
+		if(inWeigher == null) {
+			throw new IllegalArgumentException("null weigher");
+		}
+
+		fMaxWeight = inMaxWeight;
+		fWeigher = inWeigher;
+		allocate_storage();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		WeighedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WeighedSharedQueue.
+	 * @param inMaxCapacity the maximum number of objects.
+	 * @param inMaxWeight the budget of the total weight of the objects.
+	 * @param inWeigher the weight of the objects.
+	 * @exception IllegalArgumentException if inMaxCapacity or inMaxWeight is
+	 * less than one, or if inWeigher is null.
+	 */
+	public WeighedSharedQueue(int inMaxCapacity, long inMaxWeight, Weigher inWeigher) {
+		this(inMaxCapacity, inMaxWeight, inWeigher, WaitStrategy.BLOCKING);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		WeighedSharedQueue - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct a WeighedSharedQueue only bounded by the weight of its objects.
+	 * @param inMaxWeight the budget of the total weight of the objects.
+	 * @param inWeigher the weight of the objects.
+	 * @exception IllegalArgumentException if inMaxWeight is less than one, or
+	 * if inWeigher is null.
+	 */
+	public WeighedSharedQueue(long inMaxWeight, Weigher inWeigher) {
+		this(Integer.MAX_VALUE, inMaxWeight, inWeigher);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		clear
+	// ----------------------------------------------------------------------------
+	/**
+	 * Removes all the objects from this SharedQueue, and release the storage.
+	 * All waiting threads will be notified.
+	 * <p>
+	 * The SharedQueue will be empty after this call returns.
+	 */
+	public void clear() {
+		long theCrossing;
+
+		synchronized(this) {
+			allocate_storage();
+			fObjectCount = 0;
+			fWeight = 0;
+
+			// Notify threads that are waiting for a free slot.
+			notify_waiters();
+			theCrossing = check_watermarks();
+		}
+
+		fire_watermarks(theCrossing);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		addAll
+	// ----------------------------------------------------------------------------
+	/**
+	 * Add the objects one by one, so that the budget is checked before each
+	 * of them.
+	 */
+	public void addAll(Object[] inObjects, int inOffset, int inLength) throws InterruptedException {
+		check_objects(inObjects, inOffset, inLength);
+
+		for(int i = inOffset; i < inOffset + inLength; ++i) {
+			add(inObjects[i]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isFull
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns true if the total weight has reached the budget, or the number
+	 * of objects the capacity.
+	 */
+	public boolean isFull() {
+		return fWeight >= fMaxWeight || fObjectCount >= fMaxCapacity;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	public int size() {
+		return fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getWeight
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the total weight of the objects in the queue.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a long >= zero.
+	 */
+	public long getWeight() {
+		return fWeight;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		getMaxWeight
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the budget of the total weight.
+	 * @return a long > zero.
+	 */
+	public long getMaxWeight() {
+		return fMaxWeight;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		enqueue
+	// ----------------------------------------------------------------------------
+	/**
+	 * Weigh the object, then put it at the end of the ring, growing the
+	 * ring if it is full.
+	 * @exception IllegalArgumentException if the weight of inObject is negative.
+	 */
+	protected void enqueue(Object inObject) {
+		int theWeight = fWeigher.weigh(inObject);
+
+		if(theWeight < 0) {
+			throw new IllegalArgumentException("illegal weight " + theWeight);
+		}
+
+		if(fObjectCount == fObjects.length) {
+			grow_storage();
+		}
+
+		fObjects[fPutCursor] = inObject;
+		fWeights[fPutCursor] = theWeight;
+		fPutCursor = next_index(fPutCursor);
+		fWeight += theWeight;
+		++fObjectCount;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		dequeue
+	// ----------------------------------------------------------------------------
+	protected Object dequeue() {
+		Object theObject = fObjects[fGetCursor];
+
+		fObjects[fGetCursor] = null;	// For the garbage collector.
+		fWeight -= fWeights[fGetCursor];
+		fGetCursor = next_index(fGetCursor);
+		--fObjectCount;
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		allocate_storage
+	// ----------------------------------------------------------------------------
+	/**
+	 * Start over with empty rings of the initial size.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void allocate_storage() {
+		int theSize = Math.min(INITIAL_STORAGE_SIZE, fMaxCapacity);
+
+		fObjects = new Object[theSize];
+		fWeights = new int[theSize];
+		fPutCursor = fGetCursor = 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		grow_storage
+	// ----------------------------------------------------------------------------
+	/**
+	 * Double the size of the full rings, without exceeding the capacity. The
+	 * objects are moved to the start of the new rings, oldest first.
+	 * <p>
+	 * <b>Must imperatively be called from a synchronized block.</b>
+	 */
+	private void grow_storage() {
+		int theLength = fObjects.length;
+		int theSize = (int)Math.min((long)theLength * 2, fMaxCapacity);
+		Object[] theObjects = new Object[theSize];
+		int[] theWeights = new int[theSize];
+		int theFirstPart = theLength - fGetCursor;
+
+		System.arraycopy(fObjects, fGetCursor, theObjects, 0, theFirstPart);
+		System.arraycopy(fObjects, 0, theObjects, theFirstPart, fGetCursor);
+		System.arraycopy(fWeights, fGetCursor, theWeights, 0, theFirstPart);
+		System.arraycopy(fWeights, 0, theWeights, theFirstPart, fGetCursor);
+
+		fObjects = theObjects;
+		fWeights = theWeights;
+		fGetCursor = 0;
+		fPutCursor = theLength;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		next_index
+	// ----------------------------------------------------------------------------
+	private int next_index(int inIndex) {
+		return ++inIndex == fObjects.length ? 0 : inIndex;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("WeighedSharedQueue(");
+
+		theResult.append("#=").append(fObjectCount);
+		theResult.append(",w=").append(fWeight);
+		theResult.append(",mw=").append(fMaxWeight);
+		theResult.append(",c=").append(fMaxCapacity);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,207 @@
+// ----------------------------------------------------------------------------
+//  WorkStealingDeque.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+// ----------------------------------------------------------------------------
+//		WorkStealingDeque - class
+// ----------------------------------------------------------------------------
+/**
+ * A double ended queue owned by one thread, from which other threads can
+ * steal.
+ * <p>
+ * The <i>owner</i> pushes and pops objects at the bottom, in LIFO order;
+ * <i>thieves</i> steal objects at the top, the oldest ones first. The owner
+ * only synchronizes with the thieves (one compare-and-set) when a single
+ * object is left; the thieves synchronize with each other with one
+ * compare-and-set per steal. The array grows as needed, without any lock.
+ * <p>
+ * <b>Important:</b> only the owner thread may call <code>push</code> and
+ * <code>pop</code>; this is not enforced.
+ *
+ * @see FJTaskRunner
+ * @see "Dynamic Circular Work-Stealing Deque, D. Chase and Y. Lev, 2005"
+ */
+public final class WorkStealingDeque {
+
+	public final static int INITIAL_CAPACITY = 64;
+
+	/** The ring, replaced by a larger one when full. */
+	private volatile AtomicReferenceArray fArray;
+	/** The index of the next push, written by the owner only. */
+	private volatile long fBottom = 0;
+	/** The index of the next steal. */
+	private final AtomicLong fTop = new AtomicLong(0);
+
+
+	// ----------------------------------------------------------------------------
+	//		WorkStealingDeque - constructor
+	// ----------------------------------------------------------------------------
+	/**
+	 * Construct an empty WorkStealingDeque.
+	 */
+	public WorkStealingDeque() {
+		fArray = new AtomicReferenceArray(INITIAL_CAPACITY);
+	}
+
+	// ----------------------------------------------------------------------------
+	//		push
+	// ----------------------------------------------------------------------------
+	/**
+	 * Push an object at the bottom. Must only be called by the owner.
+	 * @param inObject the object to push.
+	 * @exception IllegalArgumentException if inObject is null.
+	 */
+	public void push(Object inObject) {
+		if(inObject == null) {
+			throw new IllegalArgumentException("attempt to push a null object");
+		}
+
+		long theBottom = fBottom;
+		AtomicReferenceArray theArray = fArray;
+
+		if(theBottom - fTop.get() >= theArray.length() - 1) {
+			theArray = grow(theArray, theBottom);
+		}
+
+		theArray.set((int)theBottom & (theArray.length() - 1), inObject);
+		fBottom = theBottom + 1;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		pop
+	// ----------------------------------------------------------------------------
+	/**
+	 * Pop the object at the bottom, the last pushed. Must only be called by
+	 * the owner.
+	 * @return the last pushed object, or null if the deque is empty.
+	 */
+	public Object pop() {
+		long theBottom = fBottom - 1;
+		AtomicReferenceArray theArray = fArray;
+
+		// Reserve the bottom slot before looking at the top.
+		fBottom = theBottom;
+		long theTop = fTop.get();
+
+		if(theTop > theBottom) {
+			// Empty.
+			fBottom = theTop;
+			return null;
+		}
+
+		int theIndex = (int)theBottom & (theArray.length() - 1);
+		Object theObject = theArray.get(theIndex);
+
+		if(theTop == theBottom) {
+			// The last object, race against the thieves for it.
+			if(!fTop.compareAndSet(theTop, theTop + 1)) {
+				theObject = null;
+			}
+			fBottom = theTop + 1;
+		}
+
+		if(theObject != null) {
+			theArray.set(theIndex, null);	// For the garbage collector.
+		}
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		steal
+	// ----------------------------------------------------------------------------
+	/**
+	 * Steal the object at the top, the oldest one. May be called by any thread.
+	 * @return the oldest object, or null if the deque is empty or if another
+	 * thread took the object first.
+	 */
+	public Object steal() {
+		long theTop = fTop.get();
+		long theBottom = fBottom;
+
+		if(theTop >= theBottom) {
+			return null;
+		}
+
+		AtomicReferenceArray theArray = fArray;
+		Object theObject = theArray.get((int)theTop & (theArray.length() - 1));
+
+		if(!fTop.compareAndSet(theTop, theTop + 1)) {
+			// Lost the race against the owner or another thief.
+			return null;
+		}
+
+		return theObject;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		size
+	// ----------------------------------------------------------------------------
+	/**
+	 * Returns the number of objects in the deque.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return an int >= zero.
+	 */
+	public int size() {
+		long theSize = fBottom - fTop.get();
+		return theSize > 0 ? (int)theSize : 0;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		isEmpty
+	// ----------------------------------------------------------------------------
+	/**
+	 * Tests if the deque is currently empty.
+	 * <p>
+	 * <b>NOTE:</b> This is only a snapshot value, that may have changed before returning.
+	 * @return a boolean.
+	 */
+	public boolean isEmpty() {
+		return fBottom <= fTop.get();
+	}
+
+	// ----------------------------------------------------------------------------
+	//		grow
+	// ----------------------------------------------------------------------------
+	/**
+	 * Copy the live objects into a ring twice as large and publish it.
+	 * The old ring is left intact for the thieves still reading it.
+	 */
+	private AtomicReferenceArray grow(AtomicReferenceArray inArray, long inBottom) {
+		AtomicReferenceArray theArray = new AtomicReferenceArray(inArray.length() * 2);
+		int theOldMask = inArray.length() - 1;
+		int theNewMask = theArray.length() - 1;
+
+		for(long i = fTop.get(); i < inBottom; ++i) {
+			theArray.set((int)i & theNewMask, inArray.get((int)i & theOldMask));
+		}
+
+		fArray = theArray;
+		return theArray;
+	}
+
+	// ----------------------------------------------------------------------------
+	//		toString
+	// ----------------------------------------------------------------------------
+	public String toString() {
+		StringBuffer theResult = new StringBuffer("WorkStealingDeque(");
+
+		theResult.append("t=").append(fTop.get());
+		theResult.append(",b=").append(fBottom);
+		theResult.append(")");
+
+		return theResult.toString();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -206,6 +206,367 @@ public class Test_BoundedSharedQueue extends TestCase {
 			// OK
 		}
 	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the batch operations, including moves that wrap around the end of the ring.
+	 */
+	public void test_6() throws Exception {
+		BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		Object[] theObjects = new Object[MAX_CAPACITY * 2];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		// Shift the cursors so that the next batch wraps around the ring.
+		theBSQ.add(new Integer(-1));
+		theBSQ.add(new Integer(-2));
+		assertEquals(new Integer(-1), theBSQ.remove());
+		assertEquals(new Integer(-2), theBSQ.remove());
+
+		theBSQ.addAll(theObjects, 1, MAX_CAPACITY);
+		assertTrue(theBSQ.isFull());
+
+		Object[] theResult = new Object[3];
+		assertEquals(3, theBSQ.removeAll(theResult));
+		for(int i = 0; i < 3; ++i) {
+			assertEquals(new Integer(i + 1), theResult[i]);
+		}
+
+		java.util.List theList = new java.util.ArrayList();
+		assertEquals(1, theBSQ.drainTo(theList, 1));
+		assertEquals(MAX_CAPACITY - 4, theBSQ.drainTo(theList, MAX_CAPACITY));
+		assertEquals(MAX_CAPACITY - 3, theList.size());
+		for(int i = 0; i < theList.size(); ++i) {
+			assertEquals(new Integer(i + 4), theList.get(i));
+		}
+
+		checkEmptyness(theBSQ);
+
+		// A null object in the range is rejected before anything is enqueued.
+		theObjects[3] = null;
+		try {
+			theBSQ.addAll(theObjects, 0, 5);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a batch larger than the capacity is moved in several steps
+	 * while a Consumer drains the queue.
+	 */
+	public void test_7() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		final Object[] theObjects = new Object[MAX_CAPACITY * 100];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theBSQ.addAll(theObjects, 0, theObjects.length);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		Object[] theResult = new Object[3];
+		int theNext = 0;
+		while(theNext < theObjects.length) {
+			int theCount = theBSQ.removeAll(theResult);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(theNext++, ((Integer)theResult[i]).intValue());
+			}
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that offer and poll never block.
+	 */
+	public void test_8() throws Exception {
+		BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+
+		assertNull(theBSQ.poll());
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			assertTrue(theBSQ.offer(new Integer(i)));
+		}
+		assertTrue(theBSQ.isFull());
+		assertTrue(!theBSQ.offer(new Integer(-1)));
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			assertEquals(new Integer(i), theBSQ.poll());
+		}
+		assertNull(theBSQ.poll());
+
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the watermark listener is notified on the crossings only,
+	 * alternately high and low.
+	 */
+	public void test_9() throws Exception {
+		BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		final StringBuffer theEvents = new StringBuffer();
+
+		try {
+			theBSQ.setWatermarks(3, 3, null);
+			fail("illegal watermarks accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		theBSQ.setWatermarks(1, 4, new WatermarkListener() {
+			public void highWatermarkReached(SharedQueue inQueue) {
+				theEvents.append("H").append(inQueue.size());
+			}
+			public void lowWatermarkReached(SharedQueue inQueue) {
+				theEvents.append("L").append(inQueue.size());
+			}
+		});
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theBSQ.add(new Integer(i));
+		}
+		assertEquals("H4", theEvents.toString());
+
+		// Oscillating between the watermarks does not notify.
+		theBSQ.remove();
+		theBSQ.remove();
+		assertTrue(theBSQ.offer(new Integer(5)));
+		theBSQ.poll();
+		assertEquals("H4", theEvents.toString());
+
+		Object[] theObjects = new Object[MAX_CAPACITY];
+		assertEquals(3, theBSQ.removeAll(theObjects));
+		assertEquals("H4L0", theEvents.toString());
+
+		theBSQ.addAll(new Object[] { "a", "b", "c", "d" }, 0, 4);
+		theBSQ.clear();
+		assertEquals("H4L0H4L0", theEvents.toString());
+
+		// No more notifications without a listener.
+		theBSQ.setWatermarks(1, 4, null);
+		theBSQ.addAll(new Object[] { "a", "b", "c", "d" }, 0, 4);
+		assertEquals(4, theBSQ.drainTo(new java.util.ArrayList(), 4));
+		assertEquals("H4L0H4L0", theEvents.toString());
+
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the metrics: counters, peak size, blocked times, and their export
+	 * through JMX.
+	 */
+	public void test_10() throws Exception {
+		assertNull(new BoundedSharedQueue(MAX_CAPACITY).getMetrics());
+
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY, WaitStrategy.BLOCKING, true);
+		SharedQueueMetrics theMetrics = theBSQ.getMetrics();
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theBSQ.add(new Integer(i));
+		}
+		assertEquals(MAX_CAPACITY, theBSQ.drainTo(new java.util.ArrayList(), MAX_CAPACITY));
+		assertTrue(theBSQ.offer("a"));
+		theBSQ.addAll(new Object[] { "b", "c" }, 0, 2);
+
+		assertEquals(MAX_CAPACITY + 3, theMetrics.getEnqueueCount());
+		assertEquals(MAX_CAPACITY, theMetrics.getDequeueCount());
+		assertEquals(MAX_CAPACITY, theMetrics.getPeakSize());
+		assertEquals(3, theMetrics.getSize());
+		assertEquals(0, theMetrics.getConsumerBlockedCount());
+
+		theBSQ.clear();
+		theMetrics.reset();
+		assertEquals(0, theMetrics.getEnqueueCount());
+		assertEquals(0, theMetrics.getPeakSize());
+
+		// A Consumer blocked for about 50ms.
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					Thread.sleep(50);
+					theBSQ.add("x");
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+		theProducer.start();
+		assertEquals("x", theBSQ.remove());
+		theProducer.join();
+
+		assertEquals(1, theMetrics.getConsumerBlockedCount());
+		assertTrue(theMetrics.getConsumerBlockedNanos() >= 40000000L);
+		long[] theHistogram = theMetrics.getConsumerBlockedHistogram();
+		assertEquals(SharedQueueMetrics.BUCKET_COUNT, theHistogram.length);
+		// 2^25ns = 33ms.
+		long theLongWaits = 0;
+		for(int i = 25; i < theHistogram.length; ++i) {
+			theLongWaits += theHistogram[i];
+		}
+		assertEquals(1, theLongWaits);
+		assertEquals(0, theMetrics.getProducerBlockedCount());
+
+		String theName = "zc.thread:type=SharedQueue,name=Test_BoundedSharedQueue";
+		theMetrics.register(theName);
+		try {
+			javax.management.MBeanServer theServer = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+			javax.management.ObjectName theObjectName = new javax.management.ObjectName(theName);
+			assertEquals(new Long(1), theServer.getAttribute(theObjectName, "EnqueueCount"));
+			assertEquals(new Integer(MAX_CAPACITY), theServer.getAttribute(theObjectName, "Capacity"));
+		}
+		finally {
+			theMetrics.unregister(theName);
+		}
+
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the lingering removeAll: a partial batch is returned once the delay
+	 * is over, a complete batch or a full queue right away.
+	 */
+	public void test_11() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		Object[] theObjects = new Object[MAX_CAPACITY - 1];
+
+		// A partial batch.
+		theBSQ.add("a");
+		theBSQ.add("b");
+		long theStart = System.currentTimeMillis();
+		assertEquals(2, theBSQ.removeAll(theObjects, 50000));
+		assertTrue(System.currentTimeMillis() - theStart >= 40);
+		assertEquals("a", theObjects[0]);
+		assertEquals("b", theObjects[1]);
+		checkEmptyness(theBSQ);
+
+		// No delay.
+		theBSQ.add("c");
+		assertEquals(1, theBSQ.removeAll(theObjects, 0));
+		assertEquals("c", theObjects[0]);
+
+		// A batch larger than the capacity is complete when the queue is full.
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theBSQ.add(new Integer(i));
+		}
+		theStart = System.currentTimeMillis();
+		assertEquals(MAX_CAPACITY, theBSQ.removeAll(new Object[MAX_CAPACITY * 2], 10000000));
+		assertTrue(System.currentTimeMillis() - theStart < 5000);
+		checkEmptyness(theBSQ);
+
+		// A batch that fills up while the Consumer lingers.
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY - 1; ++i) {
+						Thread.sleep(5);
+						theBSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+		theProducer.start();
+
+		theStart = System.currentTimeMillis();
+		assertEquals(MAX_CAPACITY - 1, theBSQ.removeAll(theObjects, 10000000));
+		assertTrue(System.currentTimeMillis() - theStart < 5000);
+		for(int i = 0; i < MAX_CAPACITY - 1; ++i) {
+			assertEquals(new Integer(i), theObjects[i]);
+		}
+		theProducer.join();
+
+		// An interrupted Consumer leaves the objects in the queue.
+		theBSQ.add("d");
+		Thread.currentThread().interrupt();
+		try {
+			theBSQ.removeAll(theObjects, 10000000);
+			fail("interruption not detected");
+		}
+		catch(InterruptedException ex) {
+			// Expected.
+		}
+		assertEquals(1, theBSQ.size());
+		theBSQ.clear();
+
+		checkEmptyness(theBSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test Senders and a Receiver of batches through a Port.
+	 */
+	public void test_12() throws Exception {
+		final Port thePort = new Port(MAX_CAPACITY * 20);
+		final int theCount = 20000;
+		final int theSenderCount = 4;
+
+		Thread[] theSenders = new Thread[theSenderCount];
+		for(int s = 0; s < theSenderCount; ++s) {
+			theSenders[s] = new Thread("Sender" + s) {
+				public void run() {
+					try {
+						for(int i = 0; i < theCount; ++i) {
+							thePort.send(new Integer(i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theSenders[s].start();
+		}
+
+		Object[] theMessages = new Object[16];
+		long theSum = 0;
+		int theReceived = 0;
+
+		while(theReceived < theSenderCount * theCount) {
+			int theBatch = thePort.receiveAll(theMessages, 1000);
+
+			assertTrue(theBatch > 0);
+			for(int i = 0; i < theBatch; ++i) {
+				theSum += ((Integer)theMessages[i]).intValue();
+			}
+			theReceived += theBatch;
+		}
+
+		for(int s = 0; s < theSenderCount; ++s) {
+			theSenders[s].join();
+		}
+
+		assertEquals((long)theSenderCount * theCount * (theCount - 1) / 2, theSum);
+		assertEquals(theSenderCount * theCount, theReceived);
+		assertTrue(thePort.isEmpty());
+	}
 }
 
 // ----- THAT'S ALL FOLKS -----------------------------------------------------
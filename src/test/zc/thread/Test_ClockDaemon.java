@@ -0,0 +1,172 @@
+// ----------------------------------------------------------------------------
+//  Test_ClockDaemon.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_ClockDaemon - class
+// ----------------------------------------------------------------------------
+public class Test_ClockDaemon extends TestCase {
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_ClockDaemon.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_ClockDaemon.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_ClockDaemon(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** A command that counts its runs. */
+	private static class Counter implements Runnable {
+		int fCount = 0;
+
+		public synchronized void run() {
+			++fCount;
+			notifyAll();
+		}
+
+		synchronized int get() {
+			return fCount;
+		}
+
+		synchronized void await(int inCount) throws InterruptedException {
+			long theEnd = System.currentTimeMillis() + 5000;
+			while(fCount < inCount && System.currentTimeMillis() < theEnd) {
+				wait(100);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a delayed command is run once, not before its delay, and that
+	 * a canceled command is never run.
+	 */
+	public void test_1() throws Exception {
+		ClockDaemon theDaemon = new ClockDaemon();
+		Counter theRun = new Counter();
+		Counter theCanceled = new Counter();
+
+		long theStart = System.currentTimeMillis();
+		Object theTask = theDaemon.executeAfterDelay(30, theCanceled);
+		theDaemon.executeAfterDelay(50, theRun);
+		assertTrue(theDaemon.cancel(theTask));
+		assertTrue(!theDaemon.cancel(theTask));
+
+		theRun.await(1);
+		assertTrue(System.currentTimeMillis() >= theStart + 50);
+		assertEquals(1, theRun.get());
+
+		Thread.sleep(50);
+		assertEquals(1, theRun.get());
+		assertEquals(0, theCanceled.get());
+
+		theDaemon.shutDown();
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a periodic command runs until it is canceled, and that the
+	 * daemon restarts after a shut down.
+	 */
+	public void test_2() throws Exception {
+		ClockDaemon theDaemon = new ClockDaemon();
+		Counter thePeriodic = new Counter();
+
+		Object theTask = theDaemon.executePeriodically(10, thePeriodic, true);
+		thePeriodic.await(5);
+		assertTrue(thePeriodic.get() >= 5);
+
+		assertTrue(theDaemon.cancel(theTask));
+		Thread.sleep(30);
+		int theCount = thePeriodic.get();
+		Thread.sleep(50);
+		assertEquals(theCount, thePeriodic.get());
+
+		theDaemon.shutDown();
+		assertNull(theDaemon.getThread());
+
+		Counter theRun = new Counter();
+		theDaemon.executeAt(System.currentTimeMillis(), theRun);
+		assertNotNull(theDaemon.getThread());
+		theRun.await(1);
+		assertEquals(1, theRun.get());
+
+		theDaemon.shutDown();
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a thread whose command swallows the interrupt of a shut down
+	 * stops anyway, and that an interrupted caller still schedules.
+	 */
+	public void test_3() throws Exception {
+		ClockDaemon theDaemon = new ClockDaemon();
+		final Counter theStarted = new Counter();
+
+		theDaemon.executeAt(System.currentTimeMillis(), new Runnable() {
+			public void run() {
+				theStarted.run();
+				try {
+					Thread.sleep(10000);
+				}
+				catch(InterruptedException ex) {
+					// Swallowed.
+				}
+			}
+		});
+		theStarted.await(1);
+		Thread theOldThread = theDaemon.getThread();
+		theDaemon.shutDown();
+
+		Counter theRun = new Counter();
+		Thread.currentThread().interrupt();
+		assertNotNull(theDaemon.executeAfterDelay(20, theRun));
+		assertTrue(Thread.interrupted());
+
+		theOldThread.join(5000);
+		assertTrue(!theOldThread.isAlive());
+		assertTrue(theDaemon.getThread() != theOldThread);
+
+		theRun.await(1);
+		assertEquals(1, theRun.get());
+
+		theDaemon.shutDown();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,216 @@
+// ----------------------------------------------------------------------------
+//  Test_ConflatingSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_ConflatingSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_ConflatingSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 10;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_ConflatingSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_ConflatingSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_ConflatingSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** A price update of an instrument. */
+	private static class Quote {
+		final String fSymbol;
+		final int fPrice;
+
+		Quote(String inSymbol, int inPrice) {
+			fSymbol = inSymbol;
+			fPrice = inPrice;
+		}
+	}
+
+	private final static ConflatingSharedQueue.KeyExtractor SYMBOL = new ConflatingSharedQueue.KeyExtractor() {
+		public Object keyOf(Object inObject) {
+			return ((Quote)inObject).fSymbol;
+		}
+	};
+
+	private void checkEmptyness(ConflatingSharedQueue inCSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inCSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inCSQ.size());
+		assertTrue(inCSQ.isEmpty());
+		assertTrue(!inCSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a pending value is replaced in place, keeping the FIFO
+	 * position of its key.
+	 */
+	public void test_1() throws Exception {
+		ConflatingSharedQueue theCSQ = new ConflatingSharedQueue(MAX_CAPACITY, SYMBOL);
+
+		checkEmptyness(theCSQ);
+
+		theCSQ.add(new Quote("A", 1));
+		theCSQ.add(new Quote("B", 1));
+		theCSQ.add(new Quote("A", 2));
+		theCSQ.add(new Quote("C", 1));
+		theCSQ.add(new Quote("B", 2));
+		theCSQ.add(new Quote("A", 3));
+
+		assertEquals(3, theCSQ.size());
+		assertEquals(3, theCSQ.getConflatedCount());
+
+		Quote theQuote = (Quote)theCSQ.remove();
+		assertEquals("A", theQuote.fSymbol);
+		assertEquals(3, theQuote.fPrice);
+
+		// Once removed, a key goes to the end of the queue.
+		theCSQ.add(new Quote("A", 4));
+
+		theQuote = (Quote)theCSQ.remove();
+		assertEquals("B", theQuote.fSymbol);
+		assertEquals(2, theQuote.fPrice);
+		assertEquals("C", ((Quote)theCSQ.remove()).fSymbol);
+		assertEquals(4, ((Quote)theCSQ.remove()).fPrice);
+
+		checkEmptyness(theCSQ);
+
+		try {
+			theCSQ.add(new Quote(null, 0));
+			fail("null key accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		checkEmptyness(theCSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the capacity bounds the number of distinct keys: a full queue
+	 * still accepts the updates of the pending keys, without blocking.
+	 */
+	public void test_2() throws Exception {
+		ConflatingSharedQueue theCSQ = new ConflatingSharedQueue(MAX_CAPACITY, SYMBOL);
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theCSQ.add(new Quote("S" + i, 0));
+		}
+		assertTrue(theCSQ.isFull());
+		assertTrue(!theCSQ.offer(new Quote("X", 0)));
+
+		for(int p = 1; p <= 100; ++p) {
+			theCSQ.add(new Quote("S" + (p % MAX_CAPACITY), p));
+		}
+		assertTrue(theCSQ.offer(new Quote("S0", 1000)));
+		theCSQ.addAll(new Object[] { new Quote("S1", 1001), new Quote("S2", 1002) }, 0, 2);
+		assertEquals(MAX_CAPACITY, theCSQ.size());
+
+		Object[] theObjects = new Object[MAX_CAPACITY];
+		assertEquals(MAX_CAPACITY, theCSQ.removeAll(theObjects));
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			Quote theQuote = (Quote)theObjects[i];
+			assertEquals("S" + i, theQuote.fSymbol);
+			assertEquals(i < 3 ? 1000 + i : 90 + i, theQuote.fPrice);
+		}
+
+		theCSQ.add(new Quote("A", 0));
+		theCSQ.clear();
+		checkEmptyness(theCSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test fast Producers and a slow Consumer: the Consumer sees, for each
+	 * key, increasing prices ending with the last one.
+	 */
+	public void test_3() throws Exception {
+		final ConflatingSharedQueue theCSQ = new ConflatingSharedQueue(MAX_CAPACITY, SYMBOL);
+		final int theCount = 100000;
+		final int theProducerCount = 4;
+
+		Thread[] theProducers = new Thread[theProducerCount];
+		for(int p = 0; p < theProducerCount; ++p) {
+			final String theSymbol = "S" + p;
+
+			theProducers[p] = new Thread("Producer" + p) {
+				public void run() {
+					try {
+						for(int i = 1; i <= theCount; ++i) {
+							theCSQ.add(new Quote(theSymbol, i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theProducers[p].start();
+		}
+
+		int[] theLast = new int[theProducerCount];
+		int theReceived = 0;
+		int theDone = 0;
+
+		while(theDone < theProducerCount) {
+			Quote theQuote = (Quote)theCSQ.remove();
+			int theIndex = Integer.parseInt(theQuote.fSymbol.substring(1));
+
+			assertTrue(theQuote.fPrice > theLast[theIndex]);
+			theLast[theIndex] = theQuote.fPrice;
+			if(theQuote.fPrice == theCount) {
+				++theDone;
+			}
+			++theReceived;
+		}
+
+		for(int p = 0; p < theProducerCount; ++p) {
+			theProducers[p].join();
+		}
+
+		assertEquals(theProducerCount * theCount, theReceived + theCSQ.getConflatedCount());
+		checkEmptyness(theCSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
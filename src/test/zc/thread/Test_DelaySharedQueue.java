@@ -0,0 +1,214 @@
+// ----------------------------------------------------------------------------
+//  Test_DelaySharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_DelaySharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_DelaySharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_DelaySharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_DelaySharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_DelaySharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** An object that carries its own deadline. */
+	private static class Deadline implements DelaySharedQueue.Delayed {
+		final long fDeadline;
+
+		Deadline(long inDeadline) {
+			fDeadline = inDeadline;
+		}
+
+		public long getDeadline() {
+			return fDeadline;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the TimerWheel alone, on a simulated clock: every timer expires at
+	 * its tick, never before, across all the levels, and canceled timers
+	 * never expire.
+	 */
+	public void test_1() throws Exception {
+		TimerWheel theWheel = new TimerWheel(1, 0);
+		Random theRandom = new Random(42);
+		TimerWheel.Timer[] theTimers = new TimerWheel.Timer[20000];
+
+		for(int i = 0; i < theTimers.length; ++i) {
+			// Deadlines spread over the four levels.
+			long theDeadline = (long)theRandom.nextInt(1 << (2 + 2 * (i % 15)));
+			theTimers[i] = theWheel.schedule(new Integer(i), theDeadline);
+		}
+
+		// Cancel one timer out of three.
+		int theCanceled = 0;
+		for(int i = 0; i < theTimers.length; i += 3) {
+			assertTrue(theWheel.cancel(theTimers[i]));
+			assertTrue(!theWheel.cancel(theTimers[i]));
+			++theCanceled;
+		}
+		assertEquals(theTimers.length - theCanceled, theWheel.size());
+
+		long theNow = 0;
+		int theExpired = 0;
+		long thePrevious = -1;
+
+		while(theWheel.size() > 0) {
+			theNow = Math.max(theNow + 1, Math.min(theWheel.nextAdvance(), theNow + 10007));
+			theWheel.advance(theNow);
+
+			TimerWheel.Timer theTimer;
+			while((theTimer = theWheel.poll()) != null) {
+				int theIndex = ((Integer)theTimer.getObject()).intValue();
+
+				assertTrue(theIndex % 3 != 0);
+				assertTrue(theTimer.getDeadline() <= theNow);
+				assertTrue(theTimer.getDeadline() >= thePrevious);
+				thePrevious = theTimer.getDeadline();
+				++theExpired;
+			}
+		}
+
+		assertEquals(theTimers.length - theCanceled, theExpired);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the objects are removed in the order of their deadlines, and
+	 * not before.
+	 */
+	public void test_2() throws Exception {
+		DelaySharedQueue theDSQ = new DelaySharedQueue(MAX_CAPACITY);
+		long theStart = System.currentTimeMillis();
+
+		theDSQ.addAfterDelay("third", 150);
+		theDSQ.addAfterDelay("first", 50);
+		theDSQ.add(new Deadline(theStart + 100));
+
+		assertEquals(3, theDSQ.size());
+		assertEquals(0, theDSQ.drainTo(new ArrayList(), 10));
+
+		assertEquals("first", theDSQ.remove());
+		assertTrue(System.currentTimeMillis() >= theStart + 50);
+		assertTrue(theDSQ.remove() instanceof Deadline);
+		assertTrue(System.currentTimeMillis() >= theStart + 100);
+		assertEquals("third", theDSQ.remove());
+		assertTrue(System.currentTimeMillis() >= theStart + 150);
+
+		assertTrue(theDSQ.isEmpty());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a canceled object is never removed, and that a Consumer waiting
+	 * for a far deadline is released by a nearer one.
+	 */
+	public void test_3() throws Exception {
+		final DelaySharedQueue theDSQ = new DelaySharedQueue(MAX_CAPACITY);
+
+		Object theHandle = theDSQ.addAfterDelay("canceled", 20);
+		theDSQ.addAfterDelay("far", 60 * 60 * 1000);
+
+		assertTrue(theDSQ.cancel(theHandle));
+		assertTrue(!theDSQ.cancel(theHandle));
+		assertEquals(1, theDSQ.size());
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					Thread.sleep(50);
+					theDSQ.addAfterDelay("near", 10);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		Object[] theObjects = new Object[MAX_CAPACITY];
+		assertEquals(1, theDSQ.removeAll(theObjects));
+		assertEquals("near", theObjects[0]);
+
+		theProducer.join();
+
+		assertEquals(1, theDSQ.size());
+		theDSQ.clear();
+		assertTrue(theDSQ.isEmpty());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that adding an object without deadline throws a
+	 * IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		DelaySharedQueue theDSQ = new DelaySharedQueue(MAX_CAPACITY);
+
+		try {
+			theDSQ.add("no deadline");
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		try {
+			theDSQ.addAfterDelay(null, 10);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		assertTrue(theDSQ.isEmpty());
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,271 @@
+// ----------------------------------------------------------------------------
+//  Test_DualSynchronousChannel.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_DualSynchronousChannel - class
+// ----------------------------------------------------------------------------
+public class Test_DualSynchronousChannel extends TestCase {
+
+	public final static int THREAD_COUNT = 8;
+	public final static int COUNT = 20000;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_DualSynchronousChannel.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_DualSynchronousChannel.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_DualSynchronousChannel(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** Wait until the given thread is parked. */
+	private void waitParked(Thread inThread) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(Thread.State.WAITING, inThread.getState());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test many Senders and Receivers in both modes: each message is received
+	 * once, and the messages of a Sender in order.
+	 */
+	public void test_1() throws Exception {
+		for(int f = 0; f < 2; ++f) {
+			final DualSynchronousChannel theChannel = new DualSynchronousChannel(f == 0);
+			final long[] theSums = new long[THREAD_COUNT];
+			final int[] theErrors = new int[1];
+
+			Thread[] theThreads = new Thread[THREAD_COUNT * 2];
+			for(int t = 0; t < THREAD_COUNT; ++t) {
+				final int theIndex = t;
+
+				theThreads[t] = new Thread("Sender" + t) {
+					public void run() {
+						try {
+							for(int i = 0; i < COUNT; ++i) {
+								theChannel.send(new long[] { theIndex, i });
+							}
+						}
+						catch(Exception ex) {
+							fail(ex.getMessage());
+						}
+					}
+				};
+
+				theThreads[THREAD_COUNT + t] = new Thread("Receiver" + t) {
+					public void run() {
+						try {
+							int[] theLast = new int[THREAD_COUNT];
+							for(int i = 0; i < THREAD_COUNT; ++i) {
+								theLast[i] = -1;
+							}
+
+							for(int i = 0; i < COUNT; ++i) {
+								long[] theMessage = (long[])theChannel.receive();
+								int theSender = (int)theMessage[0];
+
+								if(theMessage[1] <= theLast[theSender]) {
+									synchronized(theErrors) {
+										++theErrors[0];
+									}
+								}
+								theLast[theSender] = (int)theMessage[1];
+								theSums[theIndex] += theMessage[1];
+							}
+						}
+						catch(Exception ex) {
+							fail(ex.getMessage());
+						}
+					}
+				};
+			}
+
+			for(int t = 0; t < theThreads.length; ++t) {
+				theThreads[t].start();
+			}
+			for(int t = 0; t < theThreads.length; ++t) {
+				theThreads[t].join(60000);
+				assertTrue(theThreads[t].getName() + " is stuck", !theThreads[t].isAlive());
+			}
+
+			long theSum = 0;
+			for(int t = 0; t < THREAD_COUNT; ++t) {
+				theSum += theSums[t];
+			}
+			assertEquals((long)THREAD_COUNT * COUNT * (COUNT - 1) / 2, theSum);
+			assertEquals(0, theErrors[0]);
+			assertEquals(f == 0, theChannel.isFair());
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the order the waiting Senders are matched in: FIFO in the fair
+	 * mode, LIFO in the unfair one.
+	 */
+	public void test_2() throws Exception {
+		for(int f = 0; f < 2; ++f) {
+			final DualSynchronousChannel theChannel = new DualSynchronousChannel(f == 0);
+			Thread[] theSenders = new Thread[5];
+
+			for(int i = 0; i < theSenders.length; ++i) {
+				final Integer theMessage = new Integer(i);
+
+				theSenders[i] = new Thread("Sender" + i) {
+					public void run() {
+						try {
+							theChannel.send(theMessage);
+						}
+						catch(Exception ex) {
+							fail(ex.getMessage());
+						}
+					}
+				};
+				theSenders[i].start();
+				waitParked(theSenders[i]);
+			}
+
+			for(int i = 0; i < theSenders.length; ++i) {
+				int theExpected = (f == 0) ? i : theSenders.length - 1 - i;
+				assertEquals(new Integer(theExpected), theChannel.receive());
+			}
+
+			for(int i = 0; i < theSenders.length; ++i) {
+				theSenders[i].join();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the timed and the interrupted operations: a waiter that gives up
+	 * leaves the channel usable.
+	 */
+	public void test_3() throws Exception {
+		for(int f = 0; f < 2; ++f) {
+			final DualSynchronousChannel theChannel = new DualSynchronousChannel(f == 0);
+
+			// Nobody on the other side.
+			assertNull(theChannel.poll(0));
+			assertTrue(!theChannel.offer("a", 0));
+
+			long theStart = System.currentTimeMillis();
+			assertNull(theChannel.poll(50));
+			assertTrue(System.currentTimeMillis() - theStart >= 40);
+			assertTrue(!theChannel.offer("a", 10));
+
+			try {
+				theChannel.send(null);
+				fail("null message accepted");
+			}
+			catch(IllegalArgumentException ex) {
+				// Expected.
+			}
+
+			// An interrupted Receiver leaves.
+			Thread theReceiver = new Thread("Receiver") {
+				public void run() {
+					try {
+						theChannel.receive();
+						fail("interruption not detected");
+					}
+					catch(InterruptedException ex) {
+						// Expected.
+					}
+				}
+			};
+			theReceiver.start();
+			waitParked(theReceiver);
+			theReceiver.interrupt();
+			theReceiver.join();
+			assertTrue(!theChannel.offer("b", 0));
+
+			// A waiting Sender is matched by a non-blocking poll.
+			Thread theSender = new Thread("Sender") {
+				public void run() {
+					try {
+						theChannel.send("c");
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theSender.start();
+			waitParked(theSender);
+			assertEquals("c", theChannel.poll(0));
+			theSender.join();
+
+			// A waiting Receiver is matched by a non-blocking offer.
+			final Object[] theReceived = new Object[1];
+			theReceiver = new Thread("Receiver") {
+				public void run() {
+					try {
+						theReceived[0] = theChannel.receive();
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theReceiver.start();
+			waitParked(theReceiver);
+			assertTrue(theChannel.offer("d", 0));
+			theReceiver.join();
+			assertEquals("d", theReceived[0]);
+
+			Thread.currentThread().interrupt();
+			try {
+				theChannel.receive();
+				fail("interruption not detected");
+			}
+			catch(InterruptedException ex) {
+				// Expected.
+			}
+			assertTrue(!Thread.currentThread().isInterrupted());
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,214 @@
+// ----------------------------------------------------------------------------
+//  Test_ElasticSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_ElasticSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_ElasticSharedQueue extends TestCase {
+
+	public final static int INITIAL_CAPACITY = 4;
+	public final static int MAX_CAPACITY = 100;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_ElasticSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_ElasticSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_ElasticSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(ElasticSharedQueue inESQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inESQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inESQ.size());
+		assertTrue(inESQ.isEmpty());
+		assertTrue(!inESQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the storage grows up to the maximum capacity, keeping the FIFO
+	 * order across the rings, and is released as the rings drain.
+	 */
+	public void test_1() throws Exception {
+		ElasticSharedQueue theESQ = new ElasticSharedQueue(INITIAL_CAPACITY, MAX_CAPACITY);
+
+		checkEmptyness(theESQ);
+		assertEquals(INITIAL_CAPACITY, theESQ.getStorageSize());
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theESQ.add(new Integer(i));
+			assertTrue(theESQ.getStorageSize() >= theESQ.size());
+			assertTrue(theESQ.getStorageSize() <= 3 * MAX_CAPACITY);
+		}
+		assertTrue(theESQ.isFull());
+		assertTrue(!theESQ.offer(new Integer(-1)));
+
+		// 4 + 8 + 16 + 32 + 64 slots, the last ring is never sized by the free slots.
+		assertEquals(124, theESQ.getStorageSize());
+		assertEquals(5, theESQ.getRingCount());
+
+		for(int i = 0; i < MAX_CAPACITY / 2; ++i) {
+			assertEquals(new Integer(i), theESQ.remove());
+		}
+		// The three first rings have been released.
+		assertEquals(96, theESQ.getStorageSize());
+		assertEquals(2, theESQ.getRingCount());
+
+		// Refill, with a ring wrapping around.
+		for(int i = 0; i < MAX_CAPACITY / 2; ++i) {
+			theESQ.add(new Integer(MAX_CAPACITY + i));
+		}
+
+		Object[] theObjects = new Object[7];
+		int theNext = MAX_CAPACITY / 2;
+		while(!theESQ.isEmpty()) {
+			int theCount = theESQ.removeAll(theObjects);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(new Integer(theNext++), theObjects[i]);
+			}
+		}
+		assertEquals(MAX_CAPACITY + MAX_CAPACITY / 2, theNext);
+
+		checkEmptyness(theESQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the storage shrinks back to the initial capacity after a
+	 * sustained low occupancy, and that clear resets it.
+	 */
+	public void test_2() throws Exception {
+		ElasticSharedQueue theESQ = new ElasticSharedQueue(INITIAL_CAPACITY, MAX_CAPACITY);
+
+		// A burst.
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theESQ.add(new Integer(i));
+		}
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theESQ.remove();
+		}
+		assertEquals(64, theESQ.getStorageSize());
+		assertEquals(1, theESQ.getRingCount());
+
+		// A quiet period: one object at a time.
+		for(int i = 0; i < 1000; ++i) {
+			theESQ.add(new Integer(i));
+			assertEquals(new Integer(i), theESQ.remove());
+		}
+		assertEquals(INITIAL_CAPACITY, theESQ.getStorageSize());
+
+		// Another burst, then clear.
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theESQ.add(new Integer(i));
+		}
+		theESQ.clear();
+		assertEquals(INITIAL_CAPACITY, theESQ.getStorageSize());
+
+		checkEmptyness(theESQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a queue held full by a steady remove and add: the new rings do not
+	 * shrink to the free slots, so their number and the storage stay bounded.
+	 */
+	public void test_4() throws Exception {
+		ElasticSharedQueue theESQ = new ElasticSharedQueue(16, MAX_CAPACITY);
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theESQ.add(new Integer(i));
+		}
+
+		for(int i = MAX_CAPACITY; i < MAX_CAPACITY * 20; ++i) {
+			assertEquals(new Integer(i - MAX_CAPACITY), theESQ.remove());
+			theESQ.add(new Integer(i));
+
+			assertTrue(theESQ.isFull());
+			// At most 16, 32, 64 and 100 slots.
+			assertTrue(theESQ.getRingCount() <= 4);
+			assertTrue(theESQ.getStorageSize() <= 3 * MAX_CAPACITY);
+		}
+
+		// Once the burst rings have drained, a single ring holds the capacity.
+		assertEquals(1, theESQ.getRingCount());
+		assertEquals(MAX_CAPACITY, theESQ.getStorageSize());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a Producer and a Consumer of different speeds, so that the storage
+	 * grows and shrinks while objects flow.
+	 */
+	public void test_3() throws Exception {
+		final ElasticSharedQueue theESQ = new ElasticSharedQueue(INITIAL_CAPACITY, MAX_CAPACITY);
+		final int theCount = 200000;
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < theCount; ++i) {
+						theESQ.add(new Integer(i));
+						if(i % 10000 == 0) {
+							// Let the queue drain and shrink.
+							Thread.sleep(10);
+						}
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		for(int i = 0; i < theCount; ++i) {
+			assertEquals(i, ((Integer)theESQ.remove()).intValue());
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theESQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
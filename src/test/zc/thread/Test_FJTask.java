@@ -0,0 +1,218 @@
+// ----------------------------------------------------------------------------
+//  Test_FJTask.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_FJTask - class
+// ----------------------------------------------------------------------------
+public class Test_FJTask extends TestCase {
+
+	private FJTaskRunnerGroup fGroup;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_FJTask.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_FJTask.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_FJTask(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+		fGroup = new FJTaskRunnerGroup(4);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		fGroup.interruptAll();
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** The classic recursive Fibonacci, with coInvoke of two tasks. */
+	private static class Fib extends FJTask {
+		volatile int fNumber;
+
+		Fib(int inNumber) {
+			fNumber = inNumber;
+		}
+
+		public void run() {
+			int n = fNumber;
+			if(n > 1) {
+				Fib f1 = new Fib(n - 1);
+				Fib f2 = new Fib(n - 2);
+				coInvoke(f1, f2);
+				fNumber = f1.fNumber + f2.fNumber;
+			}
+		}
+	}
+
+	/** A sum of an array slice, split in four with coInvoke of an array. */
+	private static class Sum extends FJTask {
+		final long[] fArray;
+		final int fFrom;
+		final int fTo;
+		volatile long fSum;
+
+		Sum(long[] inArray, int inFrom, int inTo) {
+			fArray = inArray;
+			fFrom = inFrom;
+			fTo = inTo;
+		}
+
+		public void run() {
+			if(fTo - fFrom < 1000) {
+				long theSum = 0;
+				for(int i = fFrom; i < fTo; ++i) {
+					theSum += fArray[i];
+				}
+				fSum = theSum;
+			}
+			else {
+				int theStep = (fTo - fFrom) / 4;
+				Sum[] theTasks = new Sum[4];
+				for(int i = 0; i < 4; ++i) {
+					theTasks[i] = new Sum(fArray, fFrom + i * theStep, i == 3 ? fTo : fFrom + (i + 1) * theStep);
+				}
+				coInvoke(theTasks);
+				fSum = theTasks[0].fSum + theTasks[1].fSum + theTasks[2].fSum + theTasks[3].fSum;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a recursive computation with forks and joins.
+	 */
+	public void test_1() throws Exception {
+		Fib theFib = new Fib(24);
+
+		assertTrue(!theFib.isDone());
+		fGroup.invoke(theFib);
+		assertTrue(theFib.isDone());
+		assertEquals(46368, theFib.fNumber);
+
+		// Run it again.
+		theFib.reset();
+		theFib.fNumber = 10;
+		fGroup.invoke(theFib);
+		assertEquals(55, theFib.fNumber);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a parallel sum with coInvoke of task arrays, run several times on
+	 * the same group.
+	 */
+	public void test_2() throws Exception {
+		final long[] theArray = new long[1000000];
+		long theExpected = 0;
+
+		for(int i = 0; i < theArray.length; ++i) {
+			theArray[i] = i;
+			theExpected += i;
+		}
+
+		for(int i = 0; i < 10; ++i) {
+			Sum theSum = new Sum(theArray, 0, theArray.length);
+			fGroup.invoke(theSum);
+			assertEquals(theExpected, theSum.fSum);
+		}
+
+		assertEquals(4, fGroup.size());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test execute, canceled tasks, and that a throwing task does not stop
+	 * its runner.
+	 */
+	public void test_3() throws Exception {
+		final int[] theCount = new int[1];
+		Runnable theCommand = new Runnable() {
+			public void run() {
+				synchronized(theCount) {
+					++theCount[0];
+					theCount.notifyAll();
+				}
+			}
+		};
+
+		// The default handler would print the stack trace.
+		Thread.UncaughtExceptionHandler theHandler = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread inThread, Throwable inException) {
+			}
+		});
+
+		try {
+			for(int i = 0; i < 20; ++i) {
+				fGroup.execute(new Runnable() {
+					public void run() {
+						throw new RuntimeException("expected");
+					}
+				});
+			}
+
+			FJTask theCanceled = new FJTask.Wrap(theCommand);
+			theCanceled.cancel();
+			fGroup.executeTask(theCanceled);
+
+			for(int i = 0; i < 100; ++i) {
+				fGroup.execute(theCommand);
+			}
+
+			synchronized(theCount) {
+				long theEnd = System.currentTimeMillis() + 5000;
+				while(theCount[0] < 100 && System.currentTimeMillis() < theEnd) {
+					theCount.wait(100);
+				}
+			}
+
+			Thread.sleep(20);
+			synchronized(theCount) {
+				assertEquals(100, theCount[0]);
+			}
+		}
+		finally {
+			Thread.setDefaultUncaughtExceptionHandler(theHandler);
+		}
+
+		try {
+			new Fib(2).fork();
+			fail("fork outside a runner accepted");
+		}
+		catch(IllegalStateException ex) {
+			// Expected.
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,184 @@
+// ----------------------------------------------------------------------------
+//  Test_IntSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_IntSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_IntSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_IntSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_IntSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_IntSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(IntSharedQueue inISQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inISQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inISQ.size());
+		assertTrue(inISQ.isEmpty());
+		assertTrue(!inISQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the IntSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		IntSharedQueue theISQ = new IntSharedQueue(MAX_CAPACITY);
+
+		checkEmptyness(theISQ);
+
+		// Fill the Queue
+		for(int i = 0; i < theISQ.capacity(); ++i) {
+			assertEquals(i, theISQ.size());
+			theISQ.add(i);
+		}
+
+		assertEquals(theISQ.capacity(), theISQ.size());
+		assertTrue(!theISQ.isEmpty());
+		assertTrue(theISQ.isFull());
+
+		// Empty the queue
+		for(int i = 0; i < theISQ.capacity(); ++i) {
+			assertEquals(i, theISQ.remove());
+		}
+
+		checkEmptyness(theISQ);
+
+		theISQ.add(1);
+		theISQ.clear();
+		checkEmptyness(theISQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the values are received in the same order as they where sent,
+	 * one by one by the Producer and in batches by the Consumer.
+	 */
+	public void test_2() throws Exception {
+		final IntSharedQueue theISQ = new IntSharedQueue(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						theISQ.add(i);
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		int[] theValues = new int[3];
+		int theNext = 0;
+		while(theNext < MAX_CAPACITY * 1000) {
+			int theCount = theISQ.removeAll(theValues);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(theNext++, theValues[i]);
+			}
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theISQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a batch larger than the capacity, and wrapping around the ring,
+	 * is received in order.
+	 */
+	public void test_3() throws Exception {
+		final IntSharedQueue theISQ = new IntSharedQueue(MAX_CAPACITY);
+		final int[] theValues = new int[MAX_CAPACITY * 100 + 1];
+
+		for(int i = 0; i < theValues.length; ++i) {
+			theValues[i] = i;
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theISQ.addAll(theValues, 1, theValues.length - 1);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theISQ.add(0);
+		theProducer.start();
+
+		for(int i = 0; i < theValues.length; ++i) {
+			assertEquals(i, theISQ.remove());
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theISQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing an IntSharedQueue whith a zero or less size throws
+	 * a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		try {
+			IntSharedQueue theISQ = new IntSharedQueue(0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,284 @@
+// ----------------------------------------------------------------------------
+//  Test_LockFreeBoundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_LockFreeBoundedSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_LockFreeBoundedSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 8;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_LockFreeBoundedSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_LockFreeBoundedSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_LockFreeBoundedSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(LockFreeBoundedSharedQueue inSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inSQ.size());
+		assertTrue(inSQ.isEmpty());
+		assertTrue(!inSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the LockFreeBoundedSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure that the queue properties are right
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		// Fill the Queue
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure the size is right after the filling loop
+		assertEquals(theSQ.capacity(), theSQ.size());
+		// make sure that the queue properties are right
+		assertTrue(!theSQ.isEmpty());
+		assertTrue(theSQ.isFull());
+
+		// Empty the queue
+		for(int i = theSQ.capacity(); i > 0 ; --i) {
+			assertEquals(i, theSQ.size());
+			Object theObject = theSQ.remove();
+			assertEquals(theObject, new Integer(theSQ.capacity()-i));
+		}
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the LockFreeBoundedSharedQueue.clear() function.
+	 */
+	public void test_2() throws Exception {
+		LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// clear the queue
+		theSQ.clear();
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that LockFreeBoundedSharedQueue.get() retrieve element in the same order as
+	 * they where put by LockFreeBoundedSharedQueue.put().
+	 */
+	public void test_3() throws Exception {
+		final LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						theSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						Integer theInteger = (Integer)theSQ.remove();
+						// Consume the Integers, make sure they arrive in the same
+						// order they where produced
+						assertEquals(i, theInteger.intValue());
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+		theConsumer.start();
+
+		theProducer.join();
+		theConsumer.join();
+
+		// Make sure avery and all Integers have been consumed
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that putting a null element throw a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(MAX_CAPACITY);
+
+		try {
+			theSQ.add(null);  // null is not an accepted value
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing a LockFreeBoundedSharedQueue whith a zero or less size throws
+	 * a IllegalArgumentException.
+	 */
+	public void test_5() throws Exception {
+		try {
+			LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a capacity that is not a power of two is enforced exactly,
+	 * and that removeAll leaves the rest of the array alone.
+	 */
+	public void test_6() throws Exception {
+		assertEquals(1, new LockFreeBoundedSharedQueue(1).capacity());
+		assertEquals(8, new LockFreeBoundedSharedQueue(8).capacity());
+
+		LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(5);
+		assertEquals(5, theSQ.capacity());
+
+		for(int n = 0; n < 3; ++n) {
+			for(int i = 0; i < 5; ++i) {
+				assertTrue(!theSQ.isFull());
+				theSQ.add(new Integer(i));
+			}
+			assertTrue(theSQ.isFull());
+			assertEquals(5, theSQ.size());
+
+			Object[] theObjects = new Object[8];
+			theObjects[5] = "untouched";
+			assertEquals(5, theSQ.removeAll(theObjects));
+			assertEquals(new Integer(4), theObjects[4]);
+			assertEquals("untouched", theObjects[5]);
+			assertTrue(theSQ.isEmpty());
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that several Producers and several Consumers exchange every object
+	 * exactly once.
+	 */
+	public void test_7() throws Exception {
+		final LockFreeBoundedSharedQueue theSQ = new LockFreeBoundedSharedQueue(MAX_CAPACITY);
+		final int theCount = MAX_CAPACITY * 1000;
+		final long[] theSums = new long[4];
+
+		Thread[] theThreads = new Thread[8];
+
+		for(int t = 0; t < 4; ++t) {
+			theThreads[t] = new Thread("Producer" + t) {
+				public void run() {
+					try {
+						for(int i = 1; i <= theCount; ++i) {
+							theSQ.add(new Integer(i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+
+			final int theIndex = t;
+			theThreads[t + 4] = new Thread("Consumer" + t) {
+				public void run() {
+					try {
+						for(int i = 0; i < theCount; ++i) {
+							theSums[theIndex] += ((Integer)theSQ.remove()).intValue();
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+		}
+
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].start();
+		}
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].join();
+		}
+
+		long theSum = theSums[0] + theSums[1] + theSums[2] + theSums[3];
+		assertEquals(4L * theCount * (theCount + 1) / 2, theSum);
+
+		checkEmptyness(theSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,215 @@
+// ----------------------------------------------------------------------------
+//  Test_LockFreeUnboundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_LockFreeUnboundedSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_LockFreeUnboundedSharedQueue extends TestCase {
+
+	public final static int COUNT = 5000;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_LockFreeUnboundedSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_LockFreeUnboundedSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_LockFreeUnboundedSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(LockFreeUnboundedSharedQueue inSQ) {
+		assertEquals(Integer.MAX_VALUE, inSQ.capacity());
+		assertEquals(0, inSQ.size());
+		assertTrue(inSQ.isEmpty());
+		assertTrue(!inSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the LockFreeUnboundedSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		LockFreeUnboundedSharedQueue theSQ = new LockFreeUnboundedSharedQueue();
+
+		checkEmptyness(theSQ);
+
+		for(int i = 0; i < COUNT; ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+			assertTrue(!theSQ.isFull());
+		}
+
+		for(int i = 0; i < COUNT; ++i) {
+			assertEquals(COUNT - i, theSQ.size());
+			assertEquals(new Integer(i), theSQ.remove());
+		}
+
+		checkEmptyness(theSQ);
+
+		theSQ.add(new Integer(0));
+		theSQ.clear();
+		checkEmptyness(theSQ);
+
+		try {
+			theSQ.add(null);  // null is not an accepted value
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a Consumer blocked on an empty queue is woken up by a Producer,
+	 * and that the objects arrive in the same order they where produced.
+	 */
+	public void test_2() throws Exception {
+		final LockFreeUnboundedSharedQueue theSQ = new LockFreeUnboundedSharedQueue();
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					for(int i = 0; i < COUNT; ++i) {
+						assertEquals(i, ((Integer)theSQ.remove()).intValue());
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theConsumer.start();
+
+		for(int i = 0; i < COUNT; ++i) {
+			theSQ.add(new Integer(i));
+			if(i % 100 == 0) {
+				Thread.yield();
+			}
+		}
+
+		theConsumer.join();
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the batch operations.
+	 */
+	public void test_3() throws Exception {
+		LockFreeUnboundedSharedQueue theSQ = new LockFreeUnboundedSharedQueue();
+		Object[] theObjects = new Object[10];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		theSQ.addAll(theObjects, 2, 8);
+		assertEquals(8, theSQ.size());
+
+		Object[] theResult = new Object[5];
+		assertEquals(5, theSQ.removeAll(theResult));
+		for(int i = 0; i < 5; ++i) {
+			assertEquals(new Integer(i + 2), theResult[i]);
+		}
+
+		java.util.List theList = new java.util.ArrayList();
+		assertEquals(3, theSQ.drainTo(theList, 10));
+		assertEquals(new Integer(7), theList.get(0));
+		assertEquals(new Integer(9), theList.get(2));
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that several Producers and several Consumers exchange every object
+	 * exactly once.
+	 */
+	public void test_4() throws Exception {
+		final LockFreeUnboundedSharedQueue theSQ = new LockFreeUnboundedSharedQueue();
+		final int theCount = COUNT;
+		final long[] theSums = new long[4];
+
+		Thread[] theThreads = new Thread[8];
+
+		for(int t = 0; t < 4; ++t) {
+			theThreads[t] = new Thread("Producer" + t) {
+				public void run() {
+					try {
+						for(int i = 1; i <= theCount; ++i) {
+							theSQ.add(new Integer(i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+
+			final int theIndex = t;
+			theThreads[t + 4] = new Thread("Consumer" + t) {
+				public void run() {
+					try {
+						for(int i = 0; i < theCount; ++i) {
+							theSums[theIndex] += ((Integer)theSQ.remove()).intValue();
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+		}
+
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].start();
+		}
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].join();
+		}
+
+		long theSum = theSums[0] + theSums[1] + theSums[2] + theSums[3];
+		assertEquals(4L * theCount * (theCount + 1) / 2, theSum);
+
+		checkEmptyness(theSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,186 @@
+// ----------------------------------------------------------------------------
+//  Test_LongSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_LongSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_LongSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+	/** Added to the values, so that they do not fit in an int. */
+	public final static long BASE = 1L << 40;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_LongSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_LongSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_LongSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(LongSharedQueue inLSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inLSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inLSQ.size());
+		assertTrue(inLSQ.isEmpty());
+		assertTrue(!inLSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the LongSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		LongSharedQueue theLSQ = new LongSharedQueue(MAX_CAPACITY);
+
+		checkEmptyness(theLSQ);
+
+		// Fill the Queue
+		for(int i = 0; i < theLSQ.capacity(); ++i) {
+			assertEquals(i, theLSQ.size());
+			theLSQ.add(BASE + i);
+		}
+
+		assertEquals(theLSQ.capacity(), theLSQ.size());
+		assertTrue(!theLSQ.isEmpty());
+		assertTrue(theLSQ.isFull());
+
+		// Empty the queue
+		for(int i = 0; i < theLSQ.capacity(); ++i) {
+			assertEquals(BASE + i, theLSQ.remove());
+		}
+
+		checkEmptyness(theLSQ);
+
+		theLSQ.add(1);
+		theLSQ.clear();
+		checkEmptyness(theLSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the values are received in the same order as they where sent,
+	 * one by one by the Producer and in batches by the Consumer.
+	 */
+	public void test_2() throws Exception {
+		final LongSharedQueue theLSQ = new LongSharedQueue(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						theLSQ.add(BASE + i);
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		long[] theValues = new long[3];
+		int theNext = 0;
+		while(theNext < MAX_CAPACITY * 1000) {
+			int theCount = theLSQ.removeAll(theValues);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(BASE + theNext++, theValues[i]);
+			}
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theLSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a batch larger than the capacity, and wrapping around the ring,
+	 * is received in order.
+	 */
+	public void test_3() throws Exception {
+		final LongSharedQueue theLSQ = new LongSharedQueue(MAX_CAPACITY);
+		final long[] theValues = new long[MAX_CAPACITY * 100 + 1];
+
+		for(int i = 0; i < theValues.length; ++i) {
+			theValues[i] = BASE + i;
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theLSQ.addAll(theValues, 1, theValues.length - 1);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theLSQ.add(BASE);
+		theProducer.start();
+
+		for(int i = 0; i < theValues.length; ++i) {
+			assertEquals(BASE + i, theLSQ.remove());
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theLSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing a LongSharedQueue whith a zero or less size throws
+	 * a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		try {
+			LongSharedQueue theLSQ = new LongSharedQueue(0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,379 @@
+// ----------------------------------------------------------------------------
+//  Test_Parking.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.concurrent.locks.LockSupport;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_Parking - class
+// ----------------------------------------------------------------------------
+/**
+ * Test the primitives built in the parking mode of WaitSet: the tests of
+ * this class, then the tests of the primitives themselves.
+ */
+public class Test_Parking extends TestCase {
+
+	public final static int THREAD_COUNT = 200;
+	public final static int COUNT = 200;
+
+	/** The default mode before setUp, restored by tearDown. */
+	private boolean fDefaultParking;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_Parking.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite = new TestSuite(Test_Parking.class);
+
+		theSuite.addTestSuite(Test_Mutex.class);
+		theSuite.addTestSuite(Test_Semaphore.class);
+		theSuite.addTestSuite(Test_CondVar.class);
+		theSuite.addTestSuite(Test_Latch.class);
+		theSuite.addTestSuite(Test_SynchronousChannel.class);
+		theSuite.addTestSuite(Test_Barrier.class);
+		theSuite.addTestSuite(Test_BoundedSharedQueue.class);
+		theSuite.addTestSuite(Test_WaitStrategy.class);
+
+		// Build everything in the parking mode.
+		return new TestSetup(theSuite) {
+			protected void setUp() throws Exception {
+				WaitSet.setDefaultParking(true);
+			}
+
+			protected void tearDown() throws Exception {
+				WaitSet.setDefaultParking(false);
+			}
+		};
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_Parking(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDefaultParking = WaitSet.getDefaultParking();
+		WaitSet.setDefaultParking(true);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		WaitSet.setDefaultParking(fDefaultParking);
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** A thread that runs a blocking action, and keeps its failure. */
+	private abstract static class Worker extends Thread {
+		volatile Throwable fFailure = null;
+
+		Worker(String inName) {
+			super(inName);
+		}
+
+		public void run() {
+			try {
+				work();
+			}
+			catch(Throwable ex) {
+				fFailure = ex;
+			}
+		}
+
+		abstract void work() throws Exception;
+	}
+
+	// ----------------------------------------------------------------------------
+	private void join(Worker[] inWorkers) throws Exception {
+		for(int i = 0; i < inWorkers.length; ++i) {
+			inWorkers[i].join(30000);
+			assertTrue(inWorkers[i].getName() + " is stuck", !inWorkers[i].isAlive());
+			assertNull(String.valueOf(inWorkers[i].fFailure), inWorkers[i].fFailure);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Wait until the given thread is blocked, then check that it is parked
+	 * rather than waiting on a monitor, which has no blocker.
+	 */
+	private void checkParked(Thread inThread) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(Thread.State.WAITING, inThread.getState());
+		assertNotNull(LockSupport.getBlocker(inThread));
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the WaitSet itself: timed waits, signal and interruption.
+	 */
+	public void test_1() throws Exception {
+		final WaitSet theWaitSet = new WaitSet();
+		final int[] theTickets = new int[1];
+
+		assertTrue(theWaitSet.isParking());
+		assertTrue(!new WaitSet(false).isParking());
+
+		WaitSet.Condition theTicket = new WaitSet.Condition() {
+			public boolean isTrue() {
+				synchronized(theTickets) {
+					return theTickets[0] > 0;
+				}
+			}
+		};
+
+		assertTrue(!theWaitSet.await(theTicket, 50));
+		assertTrue(!theWaitSet.hasWaiters());
+
+		// Each waiter takes a ticket, a signal per ticket lets them all through.
+		Worker[] theWorkers = new Worker[10];
+		for(int i = 0; i < theWorkers.length; ++i) {
+			theWorkers[i] = new Worker("Waiter" + i) {
+				void work() throws Exception {
+					for(;;) {
+						theWaitSet.await(new WaitSet.Condition() {
+							public boolean isTrue() {
+								synchronized(theTickets) {
+									return theTickets[0] > 0;
+								}
+							}
+						});
+
+						synchronized(theTickets) {
+							if(theTickets[0] > 0) {
+								--theTickets[0];
+								return;
+							}
+						}
+					}
+				}
+			};
+			theWorkers[i].start();
+		}
+		for(int i = 0; i < theWorkers.length; ++i) {
+			checkParked(theWorkers[i]);
+		}
+
+		for(int i = 0; i < theWorkers.length; ++i) {
+			synchronized(theTickets) {
+				++theTickets[0];
+			}
+			theWaitSet.signal();
+		}
+		join(theWorkers);
+		assertTrue(!theWaitSet.hasWaiters());
+
+		// An interrupted waiter leaves.
+		Worker theInterrupted = new Worker("Interrupted") {
+			void work() throws Exception {
+				try {
+					theWaitSet.await(new WaitSet.Condition() {
+						public boolean isTrue() {
+							return false;
+						}
+					});
+					fail("interruption not detected");
+				}
+				catch(InterruptedException ex) {
+					// Expected.
+				}
+			}
+		};
+		theInterrupted.start();
+		checkParked(theInterrupted);
+		theInterrupted.interrupt();
+		join(new Worker[] { theInterrupted });
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test many threads contending on a Mutex and on a Semaphore, all of them
+	 * parked while they wait.
+	 */
+	public void test_2() throws Exception {
+		final Mutex theMutex = new Mutex();
+		final Semaphore theSemaphore = new Semaphore(3);
+		final int[] theCounters = new int[2];
+
+		// Hold both, so that all the workers block.
+		theMutex.acquire();
+		for(int i = 0; i < 3; ++i) {
+			theSemaphore.acquire();
+		}
+
+		Worker[] theWorkers = new Worker[THREAD_COUNT];
+		for(int i = 0; i < THREAD_COUNT; ++i) {
+			theWorkers[i] = new Worker("Worker" + i) {
+				void work() throws Exception {
+					for(int n = 0; n < COUNT; ++n) {
+						theMutex.acquire();
+						try {
+							++theCounters[0];
+						}
+						finally {
+							theMutex.release();
+						}
+
+						theSemaphore.acquire();
+						try {
+							synchronized(theCounters) {
+								++theCounters[1];
+							}
+						}
+						finally {
+							theSemaphore.release();
+						}
+					}
+				}
+			};
+			theWorkers[i].start();
+		}
+
+		checkParked(theWorkers[0]);
+		theMutex.release();
+		theSemaphore.release(3);
+
+		join(theWorkers);
+
+		assertEquals(THREAD_COUNT * COUNT, theCounters[0]);
+		assertEquals(THREAD_COUNT * COUNT, theCounters[1]);
+		assertEquals(3, theSemaphore.value());
+		assertNull(theMutex.getOwner());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test Readers and Writers on both kinds of RWLock: a Writer is always
+	 * alone, and the Writers blocked are parked.
+	 */
+	public void test_3() throws Exception {
+		RWLock[] theLocks = new RWLock[] { new RWLockReaders(), new RWLockWriters() };
+
+		for(int l = 0; l < theLocks.length; ++l) {
+			final RWLock theLock = theLocks[l];
+			final int[] theState = new int[2];	// Readers inside, Writers inside.
+			final int[] theWrites = new int[1];
+
+			theLock.acquireRead();
+
+			Worker[] theWorkers = new Worker[THREAD_COUNT / 4];
+			for(int i = 0; i < theWorkers.length; ++i) {
+				final boolean theWriter = (i % 4 == 0);
+
+				theWorkers[i] = new Worker((theWriter ? "Writer" : "Reader") + i) {
+					void work() throws Exception {
+						for(int n = 0; n < COUNT; ++n) {
+							if(theWriter) {
+								theLock.acquireWrite();
+							}
+							else {
+								theLock.acquireRead();
+							}
+
+							try {
+								synchronized(theState) {
+									if(theWriter) {
+										assertEquals(0, theState[0]);
+										assertEquals(0, theState[1]);
+										++theState[1];
+										++theWrites[0];
+									}
+									else {
+										assertEquals(0, theState[1]);
+										++theState[0];
+									}
+								}
+
+								Thread.yield();
+
+								synchronized(theState) {
+									--theState[theWriter ? 1 : 0];
+								}
+							}
+							finally {
+								theLock.release();
+							}
+						}
+					}
+				};
+				theWorkers[i].start();
+			}
+
+			// The first Writer waits for the read lock held by this thread.
+			checkParked(theWorkers[0]);
+			theLock.release();
+
+			join(theWorkers);
+			assertEquals((theWorkers.length + 3) / 4 * COUNT, theWrites[0]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a BLOCKING queue with more Producers and Consumers than slots: they
+	 * park outside of the queue monitor.
+	 */
+	public void test_4() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(4);
+		final long[] theSum = new long[1];
+
+		Worker[] theConsumers = new Worker[THREAD_COUNT / 2];
+		for(int i = 0; i < theConsumers.length; ++i) {
+			theConsumers[i] = new Worker("Consumer" + i) {
+				void work() throws Exception {
+					for(int n = 0; n < COUNT; ++n) {
+						int theValue = ((Integer)theBSQ.remove()).intValue();
+
+						synchronized(theSum) {
+							theSum[0] += theValue;
+						}
+					}
+				}
+			};
+			theConsumers[i].start();
+		}
+
+		checkParked(theConsumers[0]);
+
+		Worker[] theProducers = new Worker[THREAD_COUNT / 2];
+		for(int i = 0; i < theProducers.length; ++i) {
+			theProducers[i] = new Worker("Producer" + i) {
+				void work() throws Exception {
+					for(int n = 0; n < COUNT; ++n) {
+						theBSQ.add(new Integer(n));
+					}
+				}
+			};
+			theProducers[i].start();
+		}
+
+		join(theProducers);
+		join(theConsumers);
+
+		assertEquals((long)theProducers.length * COUNT * (COUNT - 1) / 2, theSum[0]);
+		assertTrue(theBSQ.isEmpty());
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,306 @@
+// ----------------------------------------------------------------------------
+//  Test_PersistentSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_PersistentSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_PersistentSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+	public final static int SEGMENT_SIZE = 256;
+
+	private File fDirectory;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_PersistentSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_PersistentSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_PersistentSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		fDirectory = File.createTempFile("Test_PersistentSharedQueue", "");
+		fDirectory.delete();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		File[] theFiles = fDirectory.listFiles();
+
+		for(int i = 0; theFiles != null && i < theFiles.length; ++i) {
+			theFiles[i].delete();
+		}
+		fDirectory.delete();
+
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private PersistentSharedQueue open(int inCapacity) throws Exception {
+		return new PersistentSharedQueue(fDirectory, inCapacity, SEGMENT_SIZE, 0, new PersistentSharedQueue.SerializableCodec());
+	}
+
+	private void checkEmptyness(PersistentSharedQueue inPSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inPSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inPSQ.size());
+		assertTrue(inPSQ.isEmpty());
+		assertTrue(!inPSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the PersistentSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		PersistentSharedQueue thePSQ = open(MAX_CAPACITY);
+
+		checkEmptyness(thePSQ);
+
+		// Fill the Queue
+		for(int i = 0; i < thePSQ.capacity(); ++i) {
+			assertEquals(i, thePSQ.size());
+			thePSQ.add(new Integer(i));
+		}
+
+		assertEquals(thePSQ.capacity(), thePSQ.size());
+		assertTrue(!thePSQ.isEmpty());
+		assertTrue(thePSQ.isFull());
+
+		// Empty the queue
+		for(int i = 0; i < thePSQ.capacity(); ++i) {
+			assertEquals(new Integer(i), thePSQ.remove());
+		}
+
+		checkEmptyness(thePSQ);
+
+		thePSQ.add("one");
+		thePSQ.clear();
+		checkEmptyness(thePSQ);
+
+		thePSQ.close();
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the pending objects are recovered, in order, by a queue
+	 * reopened on the same directory.
+	 */
+	public void test_2() throws Exception {
+		PersistentSharedQueue thePSQ = open(MAX_CAPACITY);
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			thePSQ.add(new Integer(i));
+		}
+		assertEquals(new Integer(0), thePSQ.remove());
+		assertEquals(new Integer(1), thePSQ.remove());
+
+		// Do not close, as if the JVM had died.
+		thePSQ = open(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY - 2, thePSQ.size());
+		for(int i = 2; i < MAX_CAPACITY; ++i) {
+			assertEquals(new Integer(i), thePSQ.remove());
+		}
+
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+
+		thePSQ = open(MAX_CAPACITY);
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the objects are received in order across many segment
+	 * rollovers, and that the segments that have been read are deleted.
+	 */
+	public void test_3() throws Exception {
+		final PersistentSharedQueue thePSQ = open(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < 1000; ++i) {
+						thePSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		for(int i = 0; i < 1000; ++i) {
+			assertEquals(new Integer(i), thePSQ.remove());
+		}
+
+		theProducer.join();
+
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+
+		// Only the cursor and the last segment are left.
+		assertEquals(2, fDirectory.list().length);
+
+		// Leave objects in several segments and recover them.
+		PersistentSharedQueue theOther = open(100);
+		for(int i = 0; i < 100; ++i) {
+			theOther.add(new Integer(i));
+		}
+		theOther.close();
+
+		theOther = open(100);
+		for(int i = 0; i < 100; ++i) {
+			assertEquals(new Integer(i), theOther.remove());
+		}
+		assertTrue(theOther.isEmpty());
+		theOther.close();
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that an object too large for a segment throws an
+	 * IllegalArgumentException, and that a closed queue throws an
+	 * IllegalStateException.
+	 */
+	public void test_4() throws Exception {
+		PersistentSharedQueue thePSQ = open(MAX_CAPACITY);
+
+		try {
+			thePSQ.add(new byte[SEGMENT_SIZE]);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+
+		try {
+			thePSQ.add("one");
+			fail("should throw an IllegalStateException");
+		}
+		catch(IllegalStateException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the objects that cannot be decoded are skipped, and that a
+	 * failed dequeue leaves the queue usable.
+	 */
+	public void test_5() throws Exception {
+		// A Codec that cannot decode the string "bad".
+		PersistentSharedQueue.Codec theCodec = new PersistentSharedQueue.SerializableCodec() {
+			public Object decode(byte[] inBytes) throws IOException {
+				Object theObject = super.decode(inBytes);
+
+				if("bad".equals(theObject)) {
+					throw new IOException("bad object");
+				}
+
+				return theObject;
+			}
+		};
+
+		PersistentSharedQueue thePSQ = open(MAX_CAPACITY);
+		thePSQ.add("bad");
+		thePSQ.add(new Integer(1));
+		thePSQ.add("bad");
+		thePSQ.add(new Integer(2));
+		thePSQ.add("bad");
+
+		// Reopened, the objects that cannot be decoded are not counted.
+		thePSQ = new PersistentSharedQueue(fDirectory, MAX_CAPACITY, SEGMENT_SIZE, 0, theCodec);
+		assertEquals(2, thePSQ.size());
+
+		Object[] theObjects = new Object[MAX_CAPACITY];
+		assertEquals(2, thePSQ.removeAll(theObjects));
+		assertEquals(new Integer(1), theObjects[0]);
+		assertEquals(new Integer(2), theObjects[1]);
+		checkEmptyness(thePSQ);
+
+		// Added since, they are skipped when removed.
+		thePSQ.add("bad");
+		thePSQ.add(new Integer(3));
+		assertEquals(new Integer(3), thePSQ.remove());
+		checkEmptyness(thePSQ);
+
+		thePSQ.add("bad");
+		try {
+			thePSQ.poll();
+			fail("should throw an IllegalStateException");
+		}
+		catch(IllegalStateException ex) {
+			// OK
+		}
+		checkEmptyness(thePSQ);
+
+		thePSQ.add(new Integer(4));
+		assertEquals(new Integer(4), thePSQ.remove());
+
+		// A batch keeps the objects read before the ones that cannot be.
+		thePSQ.add(new Integer(5));
+		thePSQ.add(new Integer(6));
+		thePSQ.add("bad");
+		assertEquals(2, thePSQ.removeAll(theObjects));
+		assertEquals(new Integer(5), theObjects[0]);
+		assertEquals(new Integer(6), theObjects[1]);
+		checkEmptyness(thePSQ);
+
+		thePSQ.add(new Integer(7));
+		thePSQ.add("bad");
+		List theList = new ArrayList();
+		assertEquals(1, thePSQ.drainTo(theList, MAX_CAPACITY));
+		assertEquals(new Integer(7), theList.get(0));
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+
+		thePSQ = open(MAX_CAPACITY);
+		checkEmptyness(thePSQ);
+		thePSQ.close();
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
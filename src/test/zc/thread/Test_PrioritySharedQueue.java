@@ -0,0 +1,196 @@
+// ----------------------------------------------------------------------------
+//  Test_PrioritySharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_PrioritySharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_PrioritySharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_PrioritySharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_PrioritySharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_PrioritySharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** Orders the Strings on their first character only. */
+	private final static Comparator FIRST_CHAR = new Comparator() {
+		public int compare(Object inLeft, Object inRight) {
+			return ((String)inLeft).charAt(0) - ((String)inRight).charAt(0);
+		}
+	};
+
+	private void checkEmptyness(PrioritySharedQueue inPSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inPSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inPSQ.size());
+		assertTrue(inPSQ.isEmpty());
+		assertTrue(!inPSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the PrioritySharedQueue always bear correct
+	 * values, and that the smallest object is removed first.
+	 */
+	public void test_1() throws Exception {
+		PrioritySharedQueue thePSQ = new PrioritySharedQueue(MAX_CAPACITY);
+
+		checkEmptyness(thePSQ);
+
+		// Fill the Queue in reverse order
+		for(int i = 0; i < thePSQ.capacity(); ++i) {
+			assertEquals(i, thePSQ.size());
+			thePSQ.add(new Integer(thePSQ.capacity() - i));
+		}
+
+		assertEquals(thePSQ.capacity(), thePSQ.size());
+		assertTrue(!thePSQ.isEmpty());
+		assertTrue(thePSQ.isFull());
+
+		// Empty the queue
+		for(int i = 1; i <= thePSQ.capacity(); ++i) {
+			assertEquals(new Integer(i), thePSQ.remove());
+		}
+
+		checkEmptyness(thePSQ);
+
+		thePSQ.add(new Integer(1));
+		thePSQ.clear();
+		checkEmptyness(thePSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that objects of equal priority are removed in arrival order.
+	 */
+	public void test_2() throws Exception {
+		PrioritySharedQueue thePSQ = new PrioritySharedQueue(100, FIRST_CHAR);
+		Random theRandom = new Random(42);
+		int[] theSequences = new int[26];
+
+		for(int i = 0; i < 100; ++i) {
+			char theChar = (char)('a' + theRandom.nextInt(26));
+			thePSQ.add(theChar + Integer.toString(theSequences[theChar - 'a']++));
+		}
+
+		char thePrevious = 'a';
+		int theNext = 0;
+		for(int i = 0; i < 100; ++i) {
+			String theString = (String)thePSQ.remove();
+			char theChar = theString.charAt(0);
+
+			assertTrue(theChar >= thePrevious);
+			if(theChar != thePrevious) {
+				thePrevious = theChar;
+				theNext = 0;
+			}
+			assertEquals(theNext++, Integer.parseInt(theString.substring(1)));
+		}
+
+		assertTrue(thePSQ.isEmpty());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a blocked Consumer is released by a Producer, and that a batch
+	 * is received in priority order.
+	 */
+	public void test_3() throws Exception {
+		final PrioritySharedQueue thePSQ = new PrioritySharedQueue(MAX_CAPACITY);
+		final Object[] theReceived = new Object[1];
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					theReceived[0] = thePSQ.remove();
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theConsumer.start();
+		Thread.sleep(50);
+		assertTrue(theConsumer.isAlive());
+
+		thePSQ.add(new Integer(7));
+		theConsumer.join(5000);
+		assertEquals(new Integer(7), theReceived[0]);
+
+		thePSQ.addAll(new Object[] { new Integer(3), new Integer(1), new Integer(2) }, 0, 3);
+
+		Object[] theObjects = new Object[MAX_CAPACITY];
+		assertEquals(3, thePSQ.removeAll(theObjects));
+		assertEquals(new Integer(1), theObjects[0]);
+		assertEquals(new Integer(2), theObjects[1]);
+		assertEquals(new Integer(3), theObjects[2]);
+
+		checkEmptyness(thePSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that adding an object that cannot be ordered throws a
+	 * IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		PrioritySharedQueue thePSQ = new PrioritySharedQueue(MAX_CAPACITY);
+
+		try {
+			thePSQ.add(new Object());
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		checkEmptyness(thePSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
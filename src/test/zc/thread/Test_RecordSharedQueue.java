@@ -0,0 +1,245 @@
+// ----------------------------------------------------------------------------
+//  Test_RecordSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_RecordSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_RecordSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+	public final static int RECORD_SIZE = 16;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_RecordSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_RecordSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_RecordSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(RecordSharedQueue inRSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inRSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inRSQ.size());
+		assertTrue(inRSQ.isEmpty());
+		assertTrue(!inRSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the RecordSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, RECORD_SIZE);
+		ByteBuffer theRecord = ByteBuffer.allocate(RECORD_SIZE);
+
+		checkEmptyness(theRSQ);
+		assertEquals(RECORD_SIZE, theRSQ.recordSize());
+
+		// Fill the Queue
+		for(int i = 0; i < theRSQ.capacity(); ++i) {
+			assertEquals(i, theRSQ.size());
+			theRecord.clear();
+			theRecord.putLong(i).putLong(-i).flip();
+			theRSQ.add(theRecord);
+		}
+
+		assertEquals(theRSQ.capacity(), theRSQ.size());
+		assertTrue(!theRSQ.isEmpty());
+		assertTrue(theRSQ.isFull());
+
+		// Empty the queue
+		for(int i = 0; i < theRSQ.capacity(); ++i) {
+			theRecord.clear();
+			theRSQ.remove(theRecord);
+			theRecord.flip();
+			assertEquals(i, theRecord.getLong());
+			assertEquals(-i, theRecord.getLong());
+		}
+
+		checkEmptyness(theRSQ);
+
+		theRSQ.claim().putLong(1);
+		theRSQ.commit();
+		theRSQ.clear();
+		checkEmptyness(theRSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the records are received in the same order as they where sent,
+	 * written and read in place.
+	 */
+	public void test_2() throws Exception {
+		final RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, RECORD_SIZE);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						ByteBuffer theRecord = theRSQ.claim();
+						assertEquals(RECORD_SIZE, theRecord.remaining());
+						theRecord.putLong(i).putDouble(i / 2.0);
+						theRSQ.commit();
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+			ByteBuffer theRecord = theRSQ.acquire();
+			assertEquals(i, theRecord.getLong());
+			assertEquals(i / 2.0, theRecord.getDouble(), 0.0);
+			theRSQ.release();
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theRSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that commit and release without a claimed record, and clear while a
+	 * record is acquired, throw an IllegalStateException.
+	 */
+	public void test_3() throws Exception {
+		RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, RECORD_SIZE);
+
+		try {
+			theRSQ.commit();
+			fail("should throw an IllegalStateException");
+		}
+		catch(IllegalStateException ex) {
+			// OK
+		}
+
+		try {
+			theRSQ.release();
+			fail("should throw an IllegalStateException");
+		}
+		catch(IllegalStateException ex) {
+			// OK
+		}
+
+		theRSQ.claim();
+		theRSQ.commit();
+		theRSQ.acquire();
+
+		try {
+			theRSQ.clear();
+			fail("should throw an IllegalStateException");
+		}
+		catch(IllegalStateException ex) {
+			// OK
+		}
+
+		theRSQ.release();
+		checkEmptyness(theRSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing a RecordSharedQueue whith a zero or less size, or
+	 * adding a record of the wrong size, throws a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		try {
+			RecordSharedQueue theRSQ = new RecordSharedQueue(0, RECORD_SIZE);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		try {
+			RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, 0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		try {
+			RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, RECORD_SIZE);
+			theRSQ.add(ByteBuffer.allocate(RECORD_SIZE - 1));
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that removing into a read-only buffer throws, and leaves the record
+	 * for the next Consumer.
+	 */
+	public void test_5() throws Exception {
+		RecordSharedQueue theRSQ = new RecordSharedQueue(MAX_CAPACITY, RECORD_SIZE);
+		ByteBuffer theRecord = ByteBuffer.allocate(RECORD_SIZE);
+
+		theRecord.put(0, (byte)42);
+		theRSQ.add(theRecord);
+
+		try {
+			theRSQ.remove(ByteBuffer.allocate(RECORD_SIZE).asReadOnlyBuffer());
+			fail("should throw a ReadOnlyBufferException");
+		}
+		catch(ReadOnlyBufferException ex) {
+			// OK
+		}
+
+		theRecord.clear();
+		theRSQ.remove(theRecord);
+		assertEquals(42, theRecord.get(0));
+		checkEmptyness(theRSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,238 @@
+// ----------------------------------------------------------------------------
+//  Test_RingBuffer.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_RingBuffer - class
+// ----------------------------------------------------------------------------
+public class Test_RingBuffer extends TestCase {
+
+	private final static int RING_SIZE = 16;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_RingBuffer.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_RingBuffer.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_RingBuffer(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** The event, mutated in place. */
+	private static class Message {
+		long fValue;
+		long fJournaled;
+		long fReplicated;
+	}
+
+	private final static RingBuffer.EventFactory FACTORY = new RingBuffer.EventFactory() {
+		public Object newEvent() {
+			return new Message();
+		}
+	};
+
+	/** A consumer that checks the order of the events and sums them. */
+	private static class Summer implements EventHandler {
+		long fSum = 0;
+		long fLast = Sequence.INITIAL_VALUE;
+		int fBatchCount = 0;
+		boolean fChained = false;
+		String fError = null;
+
+		public void onEvent(Object inEvent, long inSequence, boolean inEndOfBatch) {
+			Message theMessage = (Message)inEvent;
+
+			if(inSequence != fLast + 1 || theMessage.fValue != inSequence) {
+				fError = "unexpected event " + inSequence;
+			}
+			if(fChained && (theMessage.fJournaled != inSequence || theMessage.fReplicated != inSequence)) {
+				fError = "event " + inSequence + " processed before its upstream consumers";
+			}
+
+			fLast = inSequence;
+			fSum += theMessage.fValue;
+			if(inEndOfBatch) {
+				++fBatchCount;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	private void publish(RingBuffer inRing, long inCount) throws InterruptedException {
+		for(long i = 0; i < inCount; ++i) {
+			long theSequence = inRing.next();
+			((Message)inRing.get(theSequence)).fValue = theSequence;
+			inRing.publish(theSequence);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	private void await_sequence(Sequence inSequence, long inValue) throws InterruptedException {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inSequence.get() < inValue && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(inValue, inSequence.get());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the producer side alone: the events are preallocated and reused,
+	 * and a gated producer cannot wrap over an unprocessed event.
+	 */
+	public void test_1() throws Exception {
+		RingBuffer theRing = new RingBuffer(FACTORY, RING_SIZE);
+
+		try {
+			new RingBuffer(FACTORY, 12);
+			fail("size not a power of two accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		assertEquals(RING_SIZE, theRing.getSize());
+		assertEquals(Sequence.INITIAL_VALUE, theRing.getCursor());
+		assertSame(theRing.get(0), theRing.get(RING_SIZE));
+
+		Sequence theConsumer = new Sequence();
+		theRing.addGatingSequence(theConsumer);
+
+		long theLast = theRing.next(RING_SIZE);
+		assertEquals(RING_SIZE - 1, theLast);
+		theRing.publish(theLast);
+		assertEquals(RING_SIZE - 1, theRing.newBarrier().waitFor(0));
+
+		// The ring is full: next would block, an interrupted producer gives up.
+		Thread.currentThread().interrupt();
+		try {
+			theRing.next();
+			fail("interrupted next not detected");
+		}
+		catch(InterruptedException ex) {
+			// Expected.
+		}
+
+		theConsumer.set(1);
+		assertEquals(RING_SIZE + 1, theRing.next(2));
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test one producer and one consumer through many laps of the ring, with
+	 * each of the wait strategies.
+	 */
+	public void test_2() throws Exception {
+		WaitStrategy[] theStrategies = new WaitStrategy[] {
+			WaitStrategy.BLOCKING, WaitStrategy.SPIN_YIELD, WaitStrategy.SPIN_PARK
+		};
+		final long theCount = 100000;
+
+		for(int s = 0; s < theStrategies.length; ++s) {
+			RingBuffer theRing = new RingBuffer(FACTORY, RING_SIZE, theStrategies[s]);
+			Summer theSummer = new Summer();
+			EventProcessor theProcessor = new EventProcessor(theRing, theRing.newBarrier(), theSummer);
+			theRing.addGatingSequence(theProcessor.getSequence());
+
+			Thread theThread = new Thread(theProcessor, "Consumer");
+			theThread.start();
+
+			publish(theRing, theCount);
+			await_sequence(theProcessor.getSequence(), theCount - 1);
+
+			theThread.interrupt();
+			theThread.join();
+
+			assertNull(theSummer.fError, theSummer.fError);
+			assertEquals(theCount * (theCount - 1) / 2, theSummer.fSum);
+			assertTrue(theSummer.fBatchCount <= theCount);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a dependency graph: two consumers in parallel, and a third one that
+	 * only sees the events once both have processed them.
+	 */
+	public void test_3() throws Exception {
+		final long theCount = 50000;
+		RingBuffer theRing = new RingBuffer(FACTORY, RING_SIZE);
+
+		EventProcessor theJournal = new EventProcessor(theRing, theRing.newBarrier(), new EventHandler() {
+			public void onEvent(Object inEvent, long inSequence, boolean inEndOfBatch) {
+				((Message)inEvent).fJournaled = inSequence;
+			}
+		});
+		EventProcessor theReplicate = new EventProcessor(theRing, theRing.newBarrier(), new EventHandler() {
+			public void onEvent(Object inEvent, long inSequence, boolean inEndOfBatch) {
+				((Message)inEvent).fReplicated = inSequence;
+			}
+		});
+
+		Summer theSummer = new Summer();
+		theSummer.fChained = true;
+		EventProcessor theApply = new EventProcessor(theRing,
+			theRing.newBarrier(new Sequence[] { theJournal.getSequence(), theReplicate.getSequence() }),
+			theSummer);
+		theRing.addGatingSequence(theApply.getSequence());
+
+		Thread[] theThreads = new Thread[] {
+			new Thread(theJournal, "Journal"), new Thread(theReplicate, "Replicate"), new Thread(theApply, "Apply")
+		};
+		for(int i = 0; i < theThreads.length; ++i) {
+			theThreads[i].start();
+		}
+
+		publish(theRing, theCount);
+		await_sequence(theApply.getSequence(), theCount - 1);
+
+		for(int i = 0; i < theThreads.length; ++i) {
+			theThreads[i].interrupt();
+			theThreads[i].join();
+		}
+
+		assertNull(theSummer.fError, theSummer.fError);
+		assertEquals(theCount * (theCount - 1) / 2, theSummer.fSum);
+		assertEquals(theCount - 1, theJournal.getSequence().get());
+		assertEquals(theCount - 1, theReplicate.getSequence().get());
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
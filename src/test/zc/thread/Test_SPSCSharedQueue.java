@@ -0,0 +1,316 @@
+// ----------------------------------------------------------------------------
+//  Test_SPSCSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_SPSCSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_SPSCSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_SPSCSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_SPSCSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_SPSCSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(SPSCSharedQueue inSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inSQ.size());
+		assertTrue(inSQ.isEmpty());
+		assertTrue(!inSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the SPSCSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure that the queue properties are right
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		// Fill the Queue
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure the size is right after the filling loop
+		assertEquals(theSQ.capacity(), theSQ.size());
+		// make sure that the queue properties are right
+		assertTrue(!theSQ.isEmpty());
+		assertTrue(theSQ.isFull());
+
+		// Empty the queue
+		for(int i = theSQ.capacity(); i > 0 ; --i) {
+			assertEquals(i, theSQ.size());
+			Object theObject = theSQ.remove();
+			assertEquals(theObject, new Integer(theSQ.capacity()-i));
+		}
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the SPSCSharedQueue.clear() function.
+	 */
+	public void test_2() throws Exception {
+		SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// clear the queue
+		theSQ.clear();
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that SPSCSharedQueue.get() retrieve element in the same order as
+	 * they where put by SPSCSharedQueue.put().
+	 */
+	public void test_3() throws Exception {
+		final SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						theSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						Integer theInteger = (Integer)theSQ.remove();
+						// Consume the Integers, make sure they arrive in the same
+						// order they where produced
+						assertEquals(i, theInteger.intValue());
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+		theConsumer.start();
+
+		theProducer.join();
+		theConsumer.join();
+
+		// Make sure avery and all Integers have been consumed
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that putting a null element throw a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+
+		try {
+			theSQ.add(null);  // null is not an accepted value
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing a SPSCSharedQueue whith a zero or less size throws
+	 * a IllegalArgumentException.
+	 */
+	public void test_5() throws Exception {
+		try {
+			SPSCSharedQueue theSQ = new SPSCSharedQueue(0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a capacity which is not a power of two is honored exactly, and
+	 * that the cursors wrap correctly around the ring.
+	 */
+	public void test_6() throws Exception {
+		SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+
+		for(int i = 0; i < MAX_CAPACITY * 10; ++i) {
+			theSQ.add(new Integer(i));
+			theSQ.add(new Integer(-i));
+			assertEquals(2, theSQ.size());
+			assertEquals(new Integer(i), theSQ.remove());
+			assertEquals(new Integer(-i), theSQ.remove());
+		}
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theSQ.add(new Integer(i));
+		}
+		assertTrue(theSQ.isFull());
+		assertEquals(MAX_CAPACITY, theSQ.size());
+
+		theSQ.clear();
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the batch operations, including moves that wrap around the end of the ring.
+	 */
+	public void test_7() throws Exception {
+		SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+		Object[] theObjects = new Object[MAX_CAPACITY * 2];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		// Shift the cursors so that the next batch wraps around the ring.
+		theSQ.add(new Integer(-1));
+		theSQ.add(new Integer(-2));
+		assertEquals(new Integer(-1), theSQ.remove());
+		assertEquals(new Integer(-2), theSQ.remove());
+
+		theSQ.addAll(theObjects, 1, MAX_CAPACITY);
+		assertTrue(theSQ.isFull());
+
+		Object[] theResult = new Object[3];
+		assertEquals(3, theSQ.removeAll(theResult));
+		for(int i = 0; i < 3; ++i) {
+			assertEquals(new Integer(i + 1), theResult[i]);
+		}
+
+		java.util.List theList = new java.util.ArrayList();
+		assertEquals(1, theSQ.drainTo(theList, 1));
+		assertEquals(MAX_CAPACITY - 4, theSQ.drainTo(theList, MAX_CAPACITY));
+		assertEquals(MAX_CAPACITY - 3, theList.size());
+		for(int i = 0; i < theList.size(); ++i) {
+			assertEquals(new Integer(i + 4), theList.get(i));
+		}
+
+		checkEmptyness(theSQ);
+
+		// A null object in the range is rejected before anything is enqueued.
+		theObjects[3] = null;
+		try {
+			theSQ.addAll(theObjects, 0, 5);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a batch larger than the capacity is moved in several steps
+	 * while a Consumer drains the queue.
+	 */
+	public void test_8() throws Exception {
+		final SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY);
+		final Object[] theObjects = new Object[MAX_CAPACITY * 100];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theSQ.addAll(theObjects, 0, theObjects.length);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		Object[] theResult = new Object[3];
+		int theNext = 0;
+		while(theNext < theObjects.length) {
+			int theCount = theSQ.removeAll(theResult);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(theNext++, ((Integer)theResult[i]).intValue());
+			}
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
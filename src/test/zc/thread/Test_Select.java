@@ -0,0 +1,242 @@
+// ----------------------------------------------------------------------------
+//  Test_Select.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_Select - class
+// ----------------------------------------------------------------------------
+public class Test_Select extends TestCase {
+
+	public final static int MAX_CAPACITY = 10;
+	public final static int COUNT = 20000;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_Select.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_Select.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_Select(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** Wait until the given thread is parked. */
+	private void waitParked(Thread inThread) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(Thread.State.WAITING, inThread.getState());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the messages already available: the Channels are taken in turn,
+	 * the closed ones are left alone.
+	 */
+	public void test_1() throws Exception {
+		Port thePort = new Port(MAX_CAPACITY);
+		SynchronousChannel theChannel = new SynchronousChannel();
+		Select theSelect = new Select(new SelectableChannel[] { thePort, theChannel });
+
+		assertEquals(-1, theSelect.getIndex());
+		assertNull(theSelect.select(null, 0));
+
+		thePort.send("p1");
+		thePort.send("p2");
+		thePort.send("p3");
+		theChannel.send("c1");
+
+		// In turn while both hold messages.
+		assertEquals("p1", theSelect.select());
+		assertEquals(0, theSelect.getIndex());
+		assertEquals("c1", theSelect.select());
+		assertEquals(1, theSelect.getIndex());
+		assertEquals("p2", theSelect.select());
+
+		// A closed Channel keeps its messages.
+		theChannel.send("c2");
+		assertEquals("c2", theSelect.select(new boolean[] { false, true }));
+		assertNull(theSelect.select(new boolean[] { false, true }, 10));
+		assertEquals(1, theSelect.getIndex());
+		assertEquals("p3", theSelect.select(new boolean[] { true, false }, 0));
+		assertTrue(thePort.isEmpty());
+
+		try {
+			theSelect.select(new boolean[] { false, false });
+			fail("no open guard accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		try {
+			theSelect.select(new boolean[] { true });
+			fail("missing guard accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		try {
+			new Select(new SelectableChannel[] { thePort, null });
+			fail("null channel accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a Receiver parked on a Select: a Sender on any open Channel wakes it
+	 * up, a timed select gives up, an interrupted one leaves.
+	 */
+	public void test_2() throws Exception {
+		final Port thePort = new Port(MAX_CAPACITY);
+		final SynchronousChannel theChannel = new SynchronousChannel();
+		final Select theSelect = new Select(new SelectableChannel[] { thePort, theChannel });
+		final Object[] theReceived = new Object[2];
+
+		for(int c = 0; c < 2; ++c) {
+			Thread theReceiver = new Thread("Receiver") {
+				public void run() {
+					try {
+						theReceived[0] = theSelect.select();
+						theReceived[1] = new Integer(theSelect.getIndex());
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theReceiver.start();
+			waitParked(theReceiver);
+
+			if(c == 0) {
+				thePort.send("p");
+			}
+			else {
+				theChannel.send("c");
+			}
+
+			theReceiver.join(10000);
+			assertTrue(!theReceiver.isAlive());
+			assertEquals(c == 0 ? "p" : "c", theReceived[0]);
+			assertEquals(new Integer(c), theReceived[1]);
+		}
+
+		// Nothing comes.
+		long theStart = System.currentTimeMillis();
+		assertNull(theSelect.select(null, 50));
+		assertTrue(System.currentTimeMillis() - theStart >= 40);
+
+		// A message on a closed Channel does not wake the Receiver up.
+		theStart = System.currentTimeMillis();
+		thePort.send("closed");
+		assertNull(theSelect.select(new boolean[] { false, true }, 50));
+		assertTrue(System.currentTimeMillis() - theStart >= 40);
+		assertEquals("closed", thePort.receive());
+
+		Thread theInterrupted = new Thread("Interrupted") {
+			public void run() {
+				try {
+					theSelect.select();
+					fail("interruption not detected");
+				}
+				catch(InterruptedException ex) {
+					// Expected.
+				}
+			}
+		};
+		theInterrupted.start();
+		waitParked(theInterrupted);
+		theInterrupted.interrupt();
+		theInterrupted.join(10000);
+		assertTrue(!theInterrupted.isAlive());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a Receiver selecting over Ports and a SynchronousChannel fed by
+	 * many Senders: each message is received once.
+	 */
+	public void test_3() throws Exception {
+		final SelectableChannel[] theChannels = new SelectableChannel[] {
+			new Port(MAX_CAPACITY), new Port(1), new Port(MAX_CAPACITY), new SynchronousChannel()
+		};
+
+		Thread[] theSenders = new Thread[theChannels.length];
+		for(int s = 0; s < theSenders.length; ++s) {
+			final SelectableChannel theChannel = theChannels[s];
+
+			theSenders[s] = new Thread("Sender" + s) {
+				public void run() {
+					try {
+						for(int i = 0; i < COUNT; ++i) {
+							theChannel.send(new Integer(i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theSenders[s].start();
+		}
+
+		Select theSelect = new Select(theChannels);
+		int[] theNext = new int[theChannels.length];
+
+		for(int i = 0; i < theChannels.length * COUNT; ++i) {
+			Object theMessage = theSelect.select(null, 10000);
+
+			assertNotNull(theMessage);
+			assertEquals(theNext[theSelect.getIndex()]++, ((Integer)theMessage).intValue());
+		}
+
+		for(int s = 0; s < theSenders.length; ++s) {
+			theSenders[s].join();
+			assertEquals(COUNT, theNext[s]);
+		}
+		assertNull(theSelect.select(null, 0));
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
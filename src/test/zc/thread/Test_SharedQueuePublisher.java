@@ -0,0 +1,293 @@
+// ----------------------------------------------------------------------------
+//  Test_SharedQueuePublisher.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_SharedQueuePublisher - class
+// ----------------------------------------------------------------------------
+public class Test_SharedQueuePublisher extends TestCase {
+
+	public final static int MAX_CAPACITY = 10;
+	public final static int COUNT = 100000;
+
+	private ExecutorService fExecutor;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_SharedQueuePublisher.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_SharedQueuePublisher.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_SharedQueuePublisher(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+		fExecutor = Executors.newFixedThreadPool(2);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		fExecutor.shutdownNow();
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/**
+	 * A Subscriber that records what it receives, and requests a batch of
+	 * objects each time it has received the previous one.
+	 */
+	private static class Recorder implements Flow.Subscriber {
+		final int fBatch;
+		final List fObjects = new ArrayList();
+		final Latch fTerminated = new Latch();
+		volatile Flow.Subscription fSubscription = null;
+		volatile Throwable fError = null;
+		volatile boolean fCompleted = false;
+		volatile boolean fConcurrent = false;
+		private volatile boolean fBusy = false;
+
+		Recorder(int inBatch) {
+			fBatch = inBatch;
+		}
+
+		public void onSubscribe(Flow.Subscription inSubscription) {
+			fSubscription = inSubscription;
+			if(fBatch > 0) {
+				inSubscription.request(fBatch);
+			}
+		}
+
+		public void onNext(Object inObject) {
+			if(fBusy) {
+				fConcurrent = true;
+			}
+			fBusy = true;
+
+			synchronized(fObjects) {
+				fObjects.add(inObject);
+				if(fBatch > 0 && fObjects.size() % fBatch == 0) {
+					fSubscription.request(fBatch);
+				}
+			}
+
+			fBusy = false;
+		}
+
+		public void onError(Throwable inError) {
+			fError = inError;
+			fTerminated.fire();
+		}
+
+		public void onComplete() {
+			fCompleted = true;
+			fTerminated.fire();
+		}
+
+		int size() {
+			synchronized(fObjects) {
+				return fObjects.size();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	private void waitForSize(Recorder inRecorder, int inSize) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inRecorder.size() < inSize && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(inSize, inRecorder.size());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test a Producer feeding a Subscriber through a small queue: the objects
+	 * come in order, never concurrently, and the Subscriber is completed once
+	 * the publisher is closed.
+	 */
+	public void test_1() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		final SharedQueuePublisher thePublisher = new SharedQueuePublisher(theBSQ, fExecutor);
+		Recorder theRecorder = new Recorder(7);
+
+		thePublisher.subscribe(theRecorder);
+		assertEquals(1, thePublisher.getSubscriberCount());
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < COUNT; ++i) {
+						theBSQ.add(new Integer(i));
+					}
+					thePublisher.close();
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+		assertTrue(theRecorder.fTerminated.await(30000));
+		theProducer.join();
+
+		assertTrue(theRecorder.fCompleted);
+		assertNull(theRecorder.fError);
+		assertTrue(!theRecorder.fConcurrent);
+		assertEquals(COUNT, theRecorder.fObjects.size());
+		for(int i = 0; i < COUNT; ++i) {
+			assertEquals(new Integer(i), theRecorder.fObjects.get(i));
+		}
+		assertTrue(theBSQ.isEmpty());
+		assertEquals(0, thePublisher.getSubscriberCount());
+
+		// A late Subscriber is completed right away.
+		Recorder theLate = new Recorder(0);
+		thePublisher.subscribe(theLate);
+		assertTrue(theLate.fTerminated.await(10000));
+		assertTrue(theLate.fCompleted);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that no more objects are delivered than requested, the others stay
+	 * in the queue, and that the illegal calls are rejected.
+	 */
+	public void test_2() throws Exception {
+		Port thePort = new Port(MAX_CAPACITY);
+		SharedQueuePublisher thePublisher = new SharedQueuePublisher(thePort, fExecutor);
+		Recorder theRecorder = new Recorder(0);
+
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			thePort.send(new Integer(i));
+		}
+
+		thePublisher.subscribe(theRecorder);
+		while(theRecorder.fSubscription == null) {
+			Thread.sleep(1);
+		}
+
+		theRecorder.fSubscription.request(3);
+		waitForSize(theRecorder, 3);
+		Thread.sleep(50);
+		assertEquals(3, theRecorder.size());
+		assertEquals(MAX_CAPACITY - 3, thePort.size());
+
+		// An unbounded demand takes the rest, then what comes next.
+		theRecorder.fSubscription.request(Long.MAX_VALUE);
+		theRecorder.fSubscription.request(Long.MAX_VALUE);
+		waitForSize(theRecorder, MAX_CAPACITY);
+		thePort.send(new Integer(MAX_CAPACITY));
+		waitForSize(theRecorder, MAX_CAPACITY + 1);
+		assertTrue(thePort.isEmpty());
+
+		// A request of zero terminates the subscription.
+		theRecorder.fSubscription.request(0);
+		assertTrue(theRecorder.fTerminated.await(10000));
+		assertTrue(theRecorder.fError instanceof IllegalArgumentException);
+		assertEquals(0, thePublisher.getSubscriberCount());
+
+		thePort.send(new Integer(-1));
+		Thread.sleep(50);
+		assertEquals(MAX_CAPACITY + 1, theRecorder.size());
+		assertEquals(1, thePort.size());
+
+		try {
+			thePublisher.subscribe(null);
+			fail("null subscriber accepted");
+		}
+		catch(NullPointerException ex) {
+			// Expected.
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test Subscribers competing for the objects, one of them cancelling on
+	 * the way: each object goes to a single Subscriber.
+	 */
+	public void test_3() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY);
+		final SharedQueuePublisher thePublisher = new SharedQueuePublisher(theBSQ, fExecutor);
+		final int theCancelCount = 100;
+
+		Recorder theCancelling = new Recorder(1) {
+			public void onNext(Object inObject) {
+				super.onNext(inObject);
+				if(size() == theCancelCount) {
+					fSubscription.cancel();
+				}
+			}
+		};
+		Recorder[] theRecorders = new Recorder[] { new Recorder(5), new Recorder(50), theCancelling };
+
+		for(int i = 0; i < theRecorders.length; ++i) {
+			thePublisher.subscribe(theRecorders[i]);
+		}
+
+		for(int i = 0; i < COUNT; ++i) {
+			theBSQ.add(new Integer(i));
+		}
+		thePublisher.close();
+
+		assertTrue(theRecorders[0].fTerminated.await(30000));
+		assertTrue(theRecorders[1].fTerminated.await(30000));
+		assertTrue(!theCancelling.fTerminated.hasFired());
+		assertEquals(theCancelCount, theCancelling.size());
+
+		boolean[] theSeen = new boolean[COUNT];
+		for(int r = 0; r < theRecorders.length; ++r) {
+			List theObjects = theRecorders[r].fObjects;
+			int theLast = -1;
+
+			for(int i = 0; i < theObjects.size(); ++i) {
+				int theValue = ((Integer)theObjects.get(i)).intValue();
+
+				assertTrue(!theSeen[theValue]);
+				assertTrue(theValue > theLast);
+				theSeen[theValue] = true;
+				theLast = theValue;
+			}
+		}
+		for(int i = 0; i < COUNT; ++i) {
+			assertTrue(theSeen[i]);
+		}
+		assertTrue(theBSQ.isEmpty());
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
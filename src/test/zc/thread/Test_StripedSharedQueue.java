@@ -0,0 +1,309 @@
+// ----------------------------------------------------------------------------
+//  Test_StripedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.ArrayList;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_StripedSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_StripedSharedQueue extends TestCase {
+
+	private final static int SHARD_COUNT = 4;
+	private final static int SHARD_CAPACITY = 8;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_StripedSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_StripedSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_StripedSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(StripedSharedQueue inSSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(SHARD_COUNT * SHARD_CAPACITY, inSSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inSSQ.size());
+		assertTrue(inSSQ.isEmpty());
+		assertTrue(!inSSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the FIFO mode keeps the order across the shards, with all the
+	 * ways to add and remove.
+	 */
+	public void test_1() throws Exception {
+		StripedSharedQueue theSSQ = new StripedSharedQueue(SHARD_COUNT, SHARD_CAPACITY);
+		int theCapacity = SHARD_COUNT * SHARD_CAPACITY;
+
+		checkEmptyness(theSSQ);
+
+		for(int i = 0; i < theCapacity; ++i) {
+			theSSQ.add(new Integer(i));
+		}
+		assertTrue(theSSQ.isFull());
+		assertEquals(theCapacity, theSSQ.size());
+
+		for(int i = 0; i < theCapacity / 2; ++i) {
+			assertEquals(new Integer(i), theSSQ.remove());
+		}
+
+		Object[] theObjects = new Object[theCapacity / 2];
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(theCapacity + i);
+		}
+		theSSQ.addAll(theObjects, 0, theObjects.length);
+
+		Object[] theResult = new Object[5];
+		assertEquals(5, theSSQ.removeAll(theResult));
+		for(int i = 0; i < 5; ++i) {
+			assertEquals(new Integer(theCapacity / 2 + i), theResult[i]);
+		}
+
+		ArrayList theList = new ArrayList();
+		assertEquals(theCapacity - 5, theSSQ.drainTo(theList, Integer.MAX_VALUE));
+		for(int i = 0; i < theList.size(); ++i) {
+			assertEquals(new Integer(theCapacity / 2 + 5 + i), theList.get(i));
+		}
+
+		checkEmptyness(theSSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that, in relaxed mode, a Consumer steals from the other shards and
+	 * a Producer spills into them when its home shard is full.
+	 */
+	public void test_2() throws Exception {
+		StripedSharedQueue theSSQ = new StripedSharedQueue(SHARD_COUNT, SHARD_CAPACITY, true);
+		int theCapacity = SHARD_COUNT * SHARD_CAPACITY;
+
+		assertTrue(theSSQ.isRelaxed());
+
+		// A single thread fills all the shards, not only its home shard.
+		for(int i = 0; i < theCapacity; ++i) {
+			theSSQ.add(new Integer(i));
+		}
+		assertTrue(theSSQ.isFull());
+
+		boolean[] theSeen = new boolean[theCapacity];
+		for(int i = 0; i < theCapacity; ++i) {
+			int theValue = ((Integer)theSSQ.remove()).intValue();
+			assertTrue(!theSeen[theValue]);
+			theSeen[theValue] = true;
+		}
+
+		checkEmptyness(theSSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test many Producers and Consumers, in both modes: every object is
+	 * delivered once, and blocked Consumers are woken up.
+	 */
+	public void test_3() throws Exception {
+		check_concurrent(new StripedSharedQueue(SHARD_COUNT, SHARD_CAPACITY, false));
+		check_concurrent(new StripedSharedQueue(SHARD_COUNT, SHARD_CAPACITY, true));
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that, in FIFO mode, an interrupted Producer or Consumer does not
+	 * lose its ticket: nobody waits for an object that never comes.
+	 */
+	public void test_4() throws Exception {
+		final StripedSharedQueue theSSQ = new StripedSharedQueue(2, 1);
+		final boolean[] theInterrupted = new boolean[1];
+
+		theSSQ.add("A");
+		theSSQ.add("B");
+
+		// The Producer of C blocks on the full shard of A.
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theSSQ.add("C");
+					theInterrupted[0] = Thread.currentThread().isInterrupted();
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+		theProducer.start();
+		waitBlocked(theProducer);
+		theProducer.interrupt();
+		Thread.sleep(50);
+		assertTrue(theProducer.isAlive());
+
+		Object[] theObjects = new Object[3];
+		int theCount = theSSQ.removeAll(theObjects);
+		theProducer.join(10000);
+		assertTrue(!theProducer.isAlive());
+		assertTrue(theInterrupted[0]);
+
+		// C may not be there yet when removeAll takes what is available.
+		if(theCount < 3) {
+			theObjects[theCount++] = theSSQ.remove();
+		}
+		assertEquals(3, theCount);
+		assertEquals("A", theObjects[0]);
+		assertEquals("B", theObjects[1]);
+		assertEquals("C", theObjects[2]);
+
+		// An interrupted Consumer gives its ticket back to the next one.
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					theSSQ.remove();
+					fail("interruption not detected");
+				}
+				catch(InterruptedException ex) {
+					// Expected.
+				}
+			}
+		};
+		theConsumer.start();
+		waitBlocked(theConsumer);
+		theConsumer.interrupt();
+		theConsumer.join(10000);
+		assertTrue(!theConsumer.isAlive());
+
+		theSSQ.add("D");
+		assertEquals(1, theSSQ.drainTo(new ArrayList(), 1));
+		theSSQ.add("E");
+		assertEquals("E", theSSQ.remove());
+		assertTrue(theSSQ.isEmpty());
+	}
+
+	// ----------------------------------------------------------------------------
+	/** Wait until the given thread is blocked. */
+	private void waitBlocked(Thread inThread) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(Thread.State.WAITING, inThread.getState());
+	}
+
+	// ----------------------------------------------------------------------------
+	private void check_concurrent(final StripedSharedQueue inSSQ) throws Exception {
+		final int theProducerCount = 8;
+		final int theConsumerCount = 3;
+		final int thePerProducer = 20000;
+		final long[] theSums = new long[theConsumerCount];
+		final int[] theCounts = new int[theConsumerCount];
+		Thread[] theThreads = new Thread[theProducerCount + theConsumerCount];
+
+		for(int p = 0; p < theProducerCount; ++p) {
+			final int theBase = p * thePerProducer;
+			theThreads[p] = new Thread("Producer" + p) {
+				public void run() {
+					try {
+						for(int i = 0; i < thePerProducer; ++i) {
+							inSSQ.add(new Integer(theBase + i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+		}
+
+		final int theTotal = theProducerCount * thePerProducer;
+
+		for(int c = 0; c < theConsumerCount; ++c) {
+			final int theIndex = c;
+			// Each Consumer takes its share, some with removeAll.
+			final int theShare = theTotal / theConsumerCount + (c < theTotal % theConsumerCount ? 1 : 0);
+			theThreads[theProducerCount + c] = new Thread("Consumer" + c) {
+				public void run() {
+					try {
+						Object[] theBatch = new Object[3];
+						while(theCounts[theIndex] < theShare) {
+							if(theIndex == 0) {
+								theSums[theIndex] += ((Integer)inSSQ.remove()).intValue();
+								++theCounts[theIndex];
+							}
+							else {
+								int theMax = Math.min(theBatch.length, theShare - theCounts[theIndex]);
+								Object[] theResult = theMax == theBatch.length ? theBatch : new Object[theMax];
+								int theCount = inSSQ.removeAll(theResult);
+								for(int i = 0; i < theCount; ++i) {
+									theSums[theIndex] += ((Integer)theResult[i]).intValue();
+								}
+								theCounts[theIndex] += theCount;
+							}
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+		}
+
+		for(int i = 0; i < theThreads.length; ++i) {
+			theThreads[i].start();
+		}
+		for(int i = 0; i < theThreads.length; ++i) {
+			theThreads[i].join(30000);
+			assertTrue(!theThreads[i].isAlive());
+		}
+
+		long theSum = 0;
+		int theCount = 0;
+		for(int c = 0; c < theConsumerCount; ++c) {
+			theSum += theSums[c];
+			theCount += theCounts[c];
+		}
+
+		assertEquals(theTotal, theCount);
+		assertEquals((long)theTotal * (theTotal - 1) / 2, theSum);
+
+		checkEmptyness(inSSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,404 @@
+// ----------------------------------------------------------------------------
+//  Test_TwoLockBoundedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_TwoLockBoundedSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_TwoLockBoundedSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 5;
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_TwoLockBoundedSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_TwoLockBoundedSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_TwoLockBoundedSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	private void checkEmptyness(TwoLockBoundedSharedQueue inSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inSQ.capacity());
+		// make sure that the queue properties are right
+		assertEquals(0, inSQ.size());
+		assertTrue(inSQ.isEmpty());
+		assertTrue(!inSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the properties of the TwoLockBoundedSharedQueue always bear correct values.
+	 */
+	public void test_1() throws Exception {
+		TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure that the queue properties are right
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		// Fill the Queue
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		// make sure the size is right after the filling loop
+		assertEquals(theSQ.capacity(), theSQ.size());
+		// make sure that the queue properties are right
+		assertTrue(!theSQ.isEmpty());
+		assertTrue(theSQ.isFull());
+
+		// Empty the queue
+		for(int i = theSQ.capacity(); i > 0 ; --i) {
+			assertEquals(i, theSQ.size());
+			Object theObject = theSQ.remove();
+			assertEquals(theObject, new Integer(theSQ.capacity()-i));
+		}
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the TwoLockBoundedSharedQueue.clear() function.
+	 */
+	public void test_2() throws Exception {
+		TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+
+		assertEquals(MAX_CAPACITY, theSQ.capacity());
+		assertTrue(theSQ.isEmpty());
+		assertTrue(!theSQ.isFull());
+
+		for(int i = 0; i < theSQ.capacity(); ++i) {
+			assertEquals(i, theSQ.size());
+			theSQ.add(new Integer(i));
+		}
+
+		// clear the queue
+		theSQ.clear();
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that TwoLockBoundedSharedQueue.get() retrieve element in the same order as
+	 * they where put by TwoLockBoundedSharedQueue.put().
+	 */
+	public void test_3() throws Exception {
+		final TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						theSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					for(int i = 0; i < MAX_CAPACITY * 1000; ++i) {
+						Integer theInteger = (Integer)theSQ.remove();
+						// Consume the Integers, make sure they arrive in the same
+						// order they where produced
+						assertEquals(i, theInteger.intValue());
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+		theConsumer.start();
+
+		theProducer.join();
+		theConsumer.join();
+
+		// Make sure avery and all Integers have been consumed
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that putting a null element throw a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+
+		try {
+			theSQ.add(null);  // null is not an accepted value
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that constructing a TwoLockBoundedSharedQueue whith a zero or less size throws
+	 * a IllegalArgumentException.
+	 */
+	public void test_5() throws Exception {
+		try {
+			TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(0);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test the batch operations, including moves that wrap around the end of the ring.
+	 */
+	public void test_6() throws Exception {
+		TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+		Object[] theObjects = new Object[MAX_CAPACITY * 2];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		// Shift the cursors so that the next batch wraps around the ring.
+		theSQ.add(new Integer(-1));
+		theSQ.add(new Integer(-2));
+		assertEquals(new Integer(-1), theSQ.remove());
+		assertEquals(new Integer(-2), theSQ.remove());
+
+		theSQ.addAll(theObjects, 1, MAX_CAPACITY);
+		assertTrue(theSQ.isFull());
+
+		Object[] theResult = new Object[3];
+		assertEquals(3, theSQ.removeAll(theResult));
+		for(int i = 0; i < 3; ++i) {
+			assertEquals(new Integer(i + 1), theResult[i]);
+		}
+
+		java.util.List theList = new java.util.ArrayList();
+		assertEquals(1, theSQ.drainTo(theList, 1));
+		assertEquals(MAX_CAPACITY - 4, theSQ.drainTo(theList, MAX_CAPACITY));
+		assertEquals(MAX_CAPACITY - 3, theList.size());
+		for(int i = 0; i < theList.size(); ++i) {
+			assertEquals(new Integer(i + 4), theList.get(i));
+		}
+
+		checkEmptyness(theSQ);
+
+		// A null object in the range is rejected before anything is enqueued.
+		theObjects[3] = null;
+		try {
+			theSQ.addAll(theObjects, 0, 5);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a batch larger than the capacity is moved in several steps
+	 * while a Consumer drains the queue.
+	 */
+	public void test_7() throws Exception {
+		final TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+		final Object[] theObjects = new Object[MAX_CAPACITY * 100];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new Integer(i);
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theSQ.addAll(theObjects, 0, theObjects.length);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		Object[] theResult = new Object[3];
+		int theNext = 0;
+		while(theNext < theObjects.length) {
+			int theCount = theSQ.removeAll(theResult);
+			for(int i = 0; i < theCount; ++i) {
+				assertEquals(theNext++, ((Integer)theResult[i]).intValue());
+			}
+		}
+
+		theProducer.join();
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that several Producers and several Consumers exchange every object
+	 * exactly once.
+	 */
+	public void test_8() throws Exception {
+		final TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+		final int theCount = MAX_CAPACITY * 1000;
+		final long[] theSums = new long[4];
+
+		Thread[] theThreads = new Thread[8];
+
+		for(int t = 0; t < 4; ++t) {
+			theThreads[t] = new Thread("Producer" + t) {
+				public void run() {
+					try {
+						for(int i = 1; i <= theCount; ++i) {
+							theSQ.add(new Integer(i));
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+
+			final int theIndex = t;
+			theThreads[t + 4] = new Thread("Consumer" + t) {
+				public void run() {
+					try {
+						for(int i = 0; i < theCount; ++i) {
+							theSums[theIndex] += ((Integer)theSQ.remove()).intValue();
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+		}
+
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].start();
+		}
+		for(int t = 0; t < theThreads.length; ++t) {
+			theThreads[t].join();
+		}
+
+		long theSum = theSums[0] + theSums[1] + theSums[2] + theSums[3];
+		assertEquals(4L * theCount * (theCount + 1) / 2, theSum);
+
+		checkEmptyness(theSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a Consumer interrupted as it is notified does not swallow the
+	 * notification: the other blocked Consumer still receives the object.
+	 */
+	public void test_9() throws Exception {
+		final TwoLockBoundedSharedQueue theSQ = new TwoLockBoundedSharedQueue(MAX_CAPACITY);
+
+		for(int n = 0; n < 100; ++n) {
+			final Object[] theReceived = new Object[2];
+			Thread[] theConsumers = new Thread[2];
+
+			for(int c = 0; c < 2; ++c) {
+				final int theIndex = c;
+
+				theConsumers[c] = new Thread("Consumer" + c) {
+					public void run() {
+						try {
+							theReceived[theIndex] = theSQ.remove();
+						}
+						catch(InterruptedException ex) {
+							// Expected for the first one, unless it got the object.
+						}
+					}
+				};
+				theConsumers[c].start();
+				waitBlocked(theConsumers[c]);
+			}
+
+			// Race the notification of the first Consumer with its interrupt.
+			theSQ.add("first");
+			theConsumers[0].interrupt();
+
+			theConsumers[0].join(10000);
+			assertTrue(!theConsumers[0].isAlive());
+
+			if(theReceived[0] != null) {
+				// The first one got the object, release the second one.
+				theSQ.add("second");
+			}
+
+			theConsumers[1].join(10000);
+			assertTrue("notification lost", !theConsumers[1].isAlive());
+			assertNotNull(theReceived[1]);
+			checkEmptyness(theSQ);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/** Wait until the given thread is blocked. */
+	private void waitBlocked(Thread inThread) throws Exception {
+		long theEnd = System.currentTimeMillis() + 10000;
+
+		while(inThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(Thread.State.WAITING, inThread.getState());
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
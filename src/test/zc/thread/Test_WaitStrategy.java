@@ -0,0 +1,229 @@
+// ----------------------------------------------------------------------------
+//  Test_WaitStrategy.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_WaitStrategy - class
+// ----------------------------------------------------------------------------
+public class Test_WaitStrategy extends TestCase {
+
+	public final static int MAX_CAPACITY = 4;
+	public final static int COUNT = 5000;
+	/** The count for the spinning strategies, that share the processors badly. */
+	public final static int SPIN_COUNT = 500;
+
+	public final static WaitStrategy[] STRATEGIES = {
+		WaitStrategy.BUSY_SPIN,
+		WaitStrategy.SPIN_YIELD,
+		WaitStrategy.SPIN_PARK,
+		WaitStrategy.BLOCKING
+	};
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_WaitStrategy.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_WaitStrategy.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_WaitStrategy(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/**
+	 * Return the number of objects to transfer with the given strategy: a
+	 * busy spinning thread only yields the only processor at the end of its
+	 * time slice, so BUSY_SPIN is not worth a transfer on a single one.
+	 */
+	private static int transferCount(WaitStrategy inStrategy) {
+		if(inStrategy == WaitStrategy.BUSY_SPIN) {
+			return Runtime.getRuntime().availableProcessors() > 1 ? SPIN_COUNT : 0;
+		}
+		if(inStrategy == WaitStrategy.SPIN_YIELD) {
+			return SPIN_COUNT;
+		}
+
+		return COUNT;
+	}
+
+	/**
+	 * One Producer sends inCount objects, the calling thread receives them,
+	 * alternately one by one and in batches.
+	 */
+	private void checkTransfer(final SharedQueue inSQ, final int inCount) throws Exception {
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					for(int i = 0; i < inCount; ++i) {
+						inSQ.add(new Integer(i));
+					}
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		Object[] theObjects = new Object[3];
+		int theNext = 0;
+		while(theNext < inCount) {
+			if(theNext % 2 == 0) {
+				assertEquals(new Integer(theNext++), inSQ.remove());
+			}
+			else {
+				int theCount = inSQ.removeAll(theObjects);
+				for(int i = 0; i < theCount; ++i) {
+					assertEquals(new Integer(theNext++), theObjects[i]);
+				}
+			}
+		}
+
+		theProducer.join();
+
+		assertTrue(inSQ.isEmpty());
+	}
+
+	/**
+	 * Check that a Consumer waiting on an empty queue can be interrupted.
+	 */
+	private void checkInterrupt(final SharedQueue inSQ) throws Exception {
+		final boolean[] theInterrupted = { false };
+
+		Thread theConsumer = new Thread("Consumer") {
+			public void run() {
+				try {
+					inSQ.remove();
+				}
+				catch(InterruptedException ex) {
+					theInterrupted[0] = true;
+				}
+			}
+		};
+
+		theConsumer.start();
+		Thread.sleep(50);
+		theConsumer.interrupt();
+		theConsumer.join(5000);
+
+		assertTrue(theInterrupted[0]);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test each strategy with the monitor based BoundedSharedQueue.
+	 */
+	public void test_1() throws Exception {
+		for(int i = 0; i < STRATEGIES.length; ++i) {
+			int theCount = transferCount(STRATEGIES[i]);
+
+			checkTransfer(new BoundedSharedQueue(MAX_CAPACITY, STRATEGIES[i]), theCount);
+			checkTransfer(new UnboundedSharedQueue(MAX_CAPACITY, STRATEGIES[i]), theCount);
+			checkInterrupt(new BoundedSharedQueue(MAX_CAPACITY, STRATEGIES[i]));
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test each strategy with the lock free queues.
+	 */
+	public void test_2() throws Exception {
+		for(int i = 0; i < STRATEGIES.length; ++i) {
+			int theCount = transferCount(STRATEGIES[i]);
+
+			checkTransfer(new SPSCSharedQueue(MAX_CAPACITY, STRATEGIES[i]), theCount);
+			checkTransfer(new LockFreeBoundedSharedQueue(MAX_CAPACITY, STRATEGIES[i]), theCount);
+			checkTransfer(new LockFreeUnboundedSharedQueue(STRATEGIES[i]), theCount);
+			checkInterrupt(new LockFreeBoundedSharedQueue(MAX_CAPACITY, STRATEGIES[i]));
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a Producer waiting on a full queue with a spinning strategy is
+	 * released by clear.
+	 */
+	public void test_3() throws Exception {
+		final BoundedSharedQueue theBSQ = new BoundedSharedQueue(1, WaitStrategy.SPIN_PARK);
+
+		theBSQ.add("first");
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theBSQ.add("second");
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+		Thread.sleep(50);
+		assertTrue(theProducer.isAlive());
+
+		theBSQ.clear();
+		theProducer.join(5000);
+
+		assertTrue(!theProducer.isAlive());
+		assertEquals("second", theBSQ.remove());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * test that a null strategy throws a IllegalArgumentException.
+	 */
+	public void test_4() throws Exception {
+		try {
+			BoundedSharedQueue theBSQ = new BoundedSharedQueue(MAX_CAPACITY, null);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+
+		try {
+			SPSCSharedQueue theSQ = new SPSCSharedQueue(MAX_CAPACITY, null);
+			fail("should throw an IllegalArgumentException");
+		}
+		catch(IllegalArgumentException ex) {
+			// OK
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
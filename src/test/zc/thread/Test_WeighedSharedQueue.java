@@ -0,0 +1,229 @@
+// ----------------------------------------------------------------------------
+//  Test_WeighedSharedQueue.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import java.util.Random;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_WeighedSharedQueue - class
+// ----------------------------------------------------------------------------
+public class Test_WeighedSharedQueue extends TestCase {
+
+	public final static int MAX_CAPACITY = 100;
+	public final static long MAX_WEIGHT = 1000;
+
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_WeighedSharedQueue.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_WeighedSharedQueue.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_WeighedSharedQueue(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	/** The weight of a byte array is its length. */
+	private final static WeighedSharedQueue.Weigher LENGTH = new WeighedSharedQueue.Weigher() {
+		public int weigh(Object inObject) {
+			return ((byte[])inObject).length;
+		}
+	};
+
+	private void checkEmptyness(WeighedSharedQueue inWSQ) {
+		// make sure the capacity doesn't evolve
+		assertEquals(MAX_CAPACITY, inWSQ.capacity());
+		assertEquals(MAX_WEIGHT, inWSQ.getMaxWeight());
+		// make sure that the queue properties are right
+		assertEquals(0, inWSQ.size());
+		assertEquals(0, inWSQ.getWeight());
+		assertTrue(inWSQ.isEmpty());
+		assertTrue(!inWSQ.isFull());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the queue is full once the weight reaches the budget, that a
+	 * heavy object still goes through an empty queue, and that the number of
+	 * objects is bounded too.
+	 */
+	public void test_1() throws Exception {
+		WeighedSharedQueue theWSQ = new WeighedSharedQueue(MAX_CAPACITY, MAX_WEIGHT, LENGTH);
+
+		checkEmptyness(theWSQ);
+
+		for(int i = 0; i < 3; ++i) {
+			theWSQ.add(new byte[300]);
+		}
+		assertEquals(900, theWSQ.getWeight());
+		assertTrue(!theWSQ.isFull());
+
+		// The budget is soft: the last object may exceed it.
+		assertTrue(theWSQ.offer(new byte[200]));
+		assertEquals(1100, theWSQ.getWeight());
+		assertTrue(theWSQ.isFull());
+		assertTrue(!theWSQ.offer(new byte[0]));
+
+		assertEquals(300, ((byte[])theWSQ.remove()).length);
+		assertEquals(800, theWSQ.getWeight());
+		assertTrue(!theWSQ.isFull());
+
+		Object[] theObjects = new Object[10];
+		assertEquals(3, theWSQ.removeAll(theObjects));
+		checkEmptyness(theWSQ);
+
+		// An object heavier than the budget goes through an empty queue.
+		theWSQ.add(new byte[5000]);
+		assertTrue(theWSQ.isFull());
+		assertEquals(5000, ((byte[])theWSQ.poll()).length);
+		checkEmptyness(theWSQ);
+
+		// Weightless objects are bounded by the capacity, the storage grows.
+		for(int i = 0; i < MAX_CAPACITY; ++i) {
+			theWSQ.add(new byte[0]);
+		}
+		assertTrue(theWSQ.isFull());
+		assertEquals(0, theWSQ.getWeight());
+		theWSQ.clear();
+		checkEmptyness(theWSQ);
+
+		try {
+			theWSQ.add(new Object());
+			fail("unweighable object accepted");
+		}
+		catch(ClassCastException ex) {
+			// Expected.
+		}
+		checkEmptyness(theWSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that a Producer blocks when the budget is exhausted, in the middle
+	 * of an addAll, and resumes when a Consumer frees some weight.
+	 */
+	public void test_2() throws Exception {
+		final WeighedSharedQueue theWSQ = new WeighedSharedQueue(MAX_CAPACITY, MAX_WEIGHT, LENGTH);
+		final Object[] theObjects = new Object[10];
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			theObjects[i] = new byte[400];
+		}
+
+		Thread theProducer = new Thread("Producer") {
+			public void run() {
+				try {
+					theWSQ.addAll(theObjects, 0, theObjects.length);
+				}
+				catch(Exception ex) {
+					fail(ex.getMessage());
+				}
+			}
+		};
+
+		theProducer.start();
+
+		long theEnd = System.currentTimeMillis() + 10000;
+		while(theWSQ.size() < 3 && System.currentTimeMillis() < theEnd) {
+			Thread.sleep(1);
+		}
+		Thread.sleep(50);
+		assertEquals(3, theWSQ.size());
+		assertEquals(1200, theWSQ.getWeight());
+		assertTrue(theProducer.isAlive());
+
+		for(int i = 0; i < theObjects.length; ++i) {
+			assertSame(theObjects[i], theWSQ.remove());
+			assertTrue(theWSQ.getWeight() <= MAX_WEIGHT + 400);
+		}
+
+		theProducer.join();
+		checkEmptyness(theWSQ);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test Producers of objects of random weights and a Consumer: the budget
+	 * holds all along and the weight gets back to zero.
+	 */
+	public void test_3() throws Exception {
+		final WeighedSharedQueue theWSQ = new WeighedSharedQueue(MAX_CAPACITY, MAX_WEIGHT, LENGTH);
+		final int theCount = 20000;
+		final int theProducerCount = 4;
+		final long[] theSums = new long[theProducerCount];
+
+		Thread[] theProducers = new Thread[theProducerCount];
+		for(int p = 0; p < theProducerCount; ++p) {
+			final int theIndex = p;
+
+			theProducers[p] = new Thread("Producer" + p) {
+				public void run() {
+					try {
+						Random theRandom = new Random(theIndex);
+
+						for(int i = 0; i < theCount; ++i) {
+							byte[] theObject = new byte[theRandom.nextInt(200)];
+
+							theSums[theIndex] += theObject.length;
+							theWSQ.add(theObject);
+						}
+					}
+					catch(Exception ex) {
+						fail(ex.getMessage());
+					}
+				}
+			};
+			theProducers[p].start();
+		}
+
+		long theSum = 0;
+		for(int i = 0; i < theProducerCount * theCount; ++i) {
+			assertTrue(theWSQ.getWeight() < MAX_WEIGHT + 200);
+			theSum += ((byte[])theWSQ.remove()).length;
+		}
+
+		long theExpected = 0;
+		for(int p = 0; p < theProducerCount; ++p) {
+			theProducers[p].join();
+			theExpected += theSums[p];
+		}
+
+		assertEquals(theExpected, theSum);
+		checkEmptyness(theWSQ);
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------
@@ -0,0 +1,176 @@
+// ----------------------------------------------------------------------------
+//  Test_WorkStealingDeque.java
+//	ZCThread Library
+//
+//	(c) Copyright Zart Colwing, 2002-2003. All rights reserved.
+// ----------------------------------------------------------------------------
+
+package zc.thread;
+
+import junit.extensions.*;
+import junit.framework.*;
+
+
+// ----------------------------------------------------------------------------
+//		Test_WorkStealingDeque - class
+// ----------------------------------------------------------------------------
+public class Test_WorkStealingDeque extends TestCase {
+
+	// ----------------------------------------------------------------------------
+	public static void main(String[] args) {
+		junit.awtui.TestRunner.run(Test_WorkStealingDeque.class);
+	}
+
+	// ----------------------------------------------------------------------------
+	public static Test suite() {
+		TestSuite theSuite;
+
+		if(true) {
+			// Let JUnit add all tests into the suite.
+			theSuite = new TestSuite(Test_WorkStealingDeque.class);
+		}
+
+		return theSuite;
+	}
+
+	// ----------------------------------------------------------------------------
+	public Test_WorkStealingDeque(String name) {
+		super(name);
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	// ----------------------------------------------------------------------------
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	// ----- the tests -----
+
+	// ----------------------------------------------------------------------------
+	private void checkEmptyness(WorkStealingDeque inDeque) {
+		assertTrue(inDeque.isEmpty());
+		assertEquals(0, inDeque.size());
+		assertNull(inDeque.pop());
+		assertNull(inDeque.steal());
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that the owner pops in LIFO order and the thieves steal in FIFO
+	 * order, beyond the initial capacity.
+	 */
+	public void test_1() throws Exception {
+		WorkStealingDeque theDeque = new WorkStealingDeque();
+		int theCount = WorkStealingDeque.INITIAL_CAPACITY * 4 + 3;
+
+		checkEmptyness(theDeque);
+
+		try {
+			theDeque.push(null);
+			fail("null push accepted");
+		}
+		catch(IllegalArgumentException ex) {
+			// Expected.
+		}
+
+		for(int i = 0; i < theCount; ++i) {
+			theDeque.push(new Integer(i));
+		}
+		assertEquals(theCount, theDeque.size());
+
+		assertEquals(new Integer(0), theDeque.steal());
+		assertEquals(new Integer(1), theDeque.steal());
+		assertEquals(new Integer(theCount - 1), theDeque.pop());
+		assertEquals(new Integer(theCount - 2), theDeque.pop());
+		assertEquals(theCount - 4, theDeque.size());
+
+		for(int i = theCount - 3; i >= 2; --i) {
+			assertEquals(new Integer(i), theDeque.pop());
+		}
+
+		checkEmptyness(theDeque);
+	}
+
+	// ----------------------------------------------------------------------------
+	/**
+	 * Test that, with one owner and several thieves racing, every object is
+	 * taken exactly once.
+	 */
+	public void test_2() throws Exception {
+		final WorkStealingDeque theDeque = new WorkStealingDeque();
+		final int theCount = 200000;
+		final int theThiefCount = 3;
+		final boolean[] theTaken = new boolean[theCount];
+		final int[] theTotals = new int[theThiefCount + 1];
+		final Latch theDone = new Latch();
+		Thread[] theThieves = new Thread[theThiefCount];
+
+		for(int t = 0; t < theThiefCount; ++t) {
+			final int theIndex = t;
+			theThieves[t] = new Thread("thief" + t) {
+				public void run() {
+					for(;;) {
+						Integer theObject = (Integer)theDeque.steal();
+						if(theObject != null) {
+							take(theTaken, theObject.intValue());
+							++theTotals[theIndex];
+						}
+						else if(theDone.hasFired()) {
+							break;
+						}
+					}
+				}
+			};
+			theThieves[t].start();
+		}
+
+		// The owner pushes, and pops one object out of three.
+		for(int i = 0; i < theCount; ++i) {
+			theDeque.push(new Integer(i));
+			if(i % 3 == 0) {
+				Integer theObject = (Integer)theDeque.pop();
+				if(theObject != null) {
+					take(theTaken, theObject.intValue());
+					++theTotals[theThiefCount];
+				}
+			}
+		}
+
+		Integer theObject;
+		while((theObject = (Integer)theDeque.pop()) != null) {
+			take(theTaken, theObject.intValue());
+			++theTotals[theThiefCount];
+		}
+
+		theDone.fire();
+		for(int t = 0; t < theThiefCount; ++t) {
+			theThieves[t].join();
+		}
+
+		int theSum = 0;
+		for(int t = 0; t <= theThiefCount; ++t) {
+			theSum += theTotals[t];
+		}
+		assertEquals(theCount, theSum);
+
+		for(int i = 0; i < theCount; ++i) {
+			assertTrue("lost " + i, theTaken[i]);
+		}
+
+		checkEmptyness(theDeque);
+	}
+
+	// ----------------------------------------------------------------------------
+	private static void take(boolean[] inTaken, int inIndex) {
+		synchronized(inTaken) {
+			assertTrue("taken twice " + inIndex, !inTaken[inIndex]);
+			inTaken[inIndex] = true;
+		}
+	}
+}
+
+// ----- THAT'S ALL FOLKS -----------------------------------------------------